@@ -0,0 +1,104 @@
+//
+// ArithmeticBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Data;
+import visad.FlatField;
+import visad.Real;
+
+/**
+ * Binary and unary FlatField arithmetic on size x size fields sharing
+ * a Linear2DSet domain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArithmeticBenchmark {
+
+  @Param({"1024"})
+  public int size;
+
+  private FlatField a;
+  private FlatField b;
+  private Real scalar;
+
+  @Setup
+  public void setup() throws Exception {
+    a = BenchmarkData.field(BenchmarkData.linear2D(size));
+    b = (FlatField) a.sqrt();
+    scalar = new Real(BenchmarkData.VALUE, 0.5);
+  }
+
+  @Benchmark
+  public Data add() throws Exception {
+    return a.add(b);
+  }
+
+  @Benchmark
+  public Data multiply() throws Exception {
+    return a.multiply(b);
+  }
+
+  @Benchmark
+  public Data multiplyReal() throws Exception {
+    return a.multiply(scalar);
+  }
+
+  @Benchmark
+  public Data sqrt() throws Exception {
+    return a.sqrt();
+  }
+
+  @Benchmark
+  public Data log() throws Exception {
+    return a.log();
+  }
+
+  /** a * b + a, as a chain of binary operations */
+  @Benchmark
+  public Data chain() throws Exception {
+    return a.multiply(b).add(a);
+  }
+}
@@ -0,0 +1,171 @@
+//
+// BenchmarkData.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.Random;
+
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Gridded2DSet;
+import visad.Gridded3DSet;
+import visad.Irregular2DSet;
+import visad.Linear2DSet;
+import visad.RealTupleType;
+import visad.RealType;
+import visad.Set;
+import visad.SetType;
+import visad.VisADException;
+
+/**
+ * BenchmarkData builds the fields and sets shared by the benchmarks.
+ * All data are deterministic, so runs are comparable.
+ */
+final class BenchmarkData {
+
+  static final RealType X = RealType.getRealType("bench_x");
+  static final RealType Y = RealType.getRealType("bench_y");
+  static final RealType Z = RealType.getRealType("bench_z");
+  static final RealType VALUE = RealType.getRealType("bench_value");
+
+  static final RealTupleType DOMAIN_2D = tuple(new RealType[] {X, Y});
+  static final RealTupleType DOMAIN_3D = tuple(new RealType[] {X, Y, Z});
+
+  /** seed of all random data */
+  static final long SEED = 19960101L;
+
+  private BenchmarkData() {}
+
+  private static RealTupleType tuple(RealType[] types) {
+    try {
+      return new RealTupleType(types);
+    }
+    catch (VisADException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** a size x size Linear2DSet over the unit square */
+  static Linear2DSet linear2D(int size) throws VisADException {
+    return new Linear2DSet(DOMAIN_2D, 0.0, 1.0, size, 0.0, 1.0, size);
+  }
+
+  /** a size x size Gridded2DSet over the unit square, with warped rows
+      and columns so it is not a LinearSet */
+  static Gridded2DSet gridded2D(int size) throws VisADException {
+    float[][] samples = new float[2][size * size];
+    for (int j=0; j<size; j++) {
+      for (int i=0; i<size; i++) {
+        double u = i / (double) (size - 1);
+        double v = j / (double) (size - 1);
+        samples[0][j * size + i] =
+          (float) (u + 0.02 * Math.sin(2.0 * Math.PI * v) * u * (1.0 - u));
+        samples[1][j * size + i] =
+          (float) (v + 0.02 * Math.sin(2.0 * Math.PI * u) * v * (1.0 - v));
+      }
+    }
+    return new Gridded2DSet(DOMAIN_2D, samples, size, size);
+  }
+
+  /** an Irregular2DSet of n random points covering the unit square */
+  static Irregular2DSet irregular2D(int n) throws VisADException {
+    Random random = new Random(SEED);
+    float[][] samples = new float[2][n];
+    samples[0][0] = 0.0f; samples[1][0] = 0.0f;
+    samples[0][1] = 1.0f; samples[1][1] = 0.0f;
+    samples[0][2] = 0.0f; samples[1][2] = 1.0f;
+    samples[0][3] = 1.0f; samples[1][3] = 1.0f;
+    for (int i=4; i<n; i++) {
+      samples[0][i] = random.nextFloat();
+      samples[1][i] = random.nextFloat();
+    }
+    return new Irregular2DSet(DOMAIN_2D, samples);
+  }
+
+  /** a size x size x size Gridded3DSet over the unit cube, with warped
+      grid lines so it is not a LinearSet */
+  static Gridded3DSet gridded3D(int size) throws VisADException {
+    int n = size * size * size;
+    float[][] samples = new float[3][n];
+    int k = 0;
+    for (int l=0; l<size; l++) {
+      for (int j=0; j<size; j++) {
+        for (int i=0; i<size; i++) {
+          double u = i / (double) (size - 1);
+          double v = j / (double) (size - 1);
+          double w = l / (double) (size - 1);
+          samples[0][k] = (float) (u + 0.05 * u * (1.0 - u) * w);
+          samples[1][k] = (float) (v + 0.05 * v * (1.0 - v) * u);
+          samples[2][k] = (float) (w + 0.05 * w * (1.0 - w) * v);
+          k++;
+        }
+      }
+    }
+    return new Gridded3DSet(DOMAIN_3D, samples, size, size, size);
+  }
+
+  /** values of a smooth function at the samples of set */
+  static float[] values(Set set) throws VisADException {
+    float[][] samples = set.getSamples(false);
+    int n = set.getLength();
+    float[] values = new float[n];
+    for (int i=0; i<n; i++) {
+      double f = 1.0;
+      for (int d=0; d<samples.length; d++) {
+        f *= Math.cos(6.0 * samples[d][i]);
+      }
+      values[i] = (float) (2.0 + f);
+    }
+    return values;
+  }
+
+  /** a FlatField of values(set) on set */
+  static FlatField field(Set set) throws VisADException {
+    FunctionType type = new FunctionType(((SetType) set.getType()).getDomain(),
+                                         VALUE);
+    FlatField field = new FlatField(type, set);
+    try {
+      field.setSamples(new float[][] {values(set)}, false);
+    }
+    catch (java.rmi.RemoteException e) {
+      throw new VisADException(e.toString());
+    }
+    return field;
+  }
+
+  /** n random points in the unit square or cube */
+  static float[][] points(int dimension, int n) {
+    Random random = new Random(SEED + dimension);
+    float[][] points = new float[dimension][n];
+    for (int d=0; d<dimension; d++) {
+      for (int i=0; i<n; i++) {
+        points[d][i] = 0.01f + 0.98f * random.nextFloat();
+      }
+    }
+    return points;
+  }
+}
@@ -0,0 +1,155 @@
+//
+// BinaryWriteSeriesBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Data;
+import visad.ErrorEstimate;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Integer1DSet;
+import visad.Linear2DSet;
+import visad.MathType;
+import visad.Real;
+import visad.RealTupleType;
+import visad.RealType;
+import visad.SI;
+import visad.Tuple;
+import visad.TupleType;
+import visad.data.visad.BinarySizer;
+import visad.data.visad.BinaryWriter;
+
+/**
+ * Writing a length-long time series FieldImpl in the VisAD binary format.
+ * Each sample is a Tuple of a small FlatField, with a multi-component
+ * range, and two Reals carrying their own ErrorEstimates, so the writer's
+ * MathType, Unit and ErrorEstimate caches grow with the series.
+ * The encoded size comes from a BinarySizer, and the bytes counter
+ * reports the write throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryWriteSeriesBenchmark {
+
+  @Param({"10000"})
+  public int length;
+
+  private FieldImpl series;
+  private int encodedSize;
+
+  /** bytes written, reported per second next to the write rate */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Bytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    RealType time = RealType.getRealType("bench_time", SI.second);
+    RealType temp = RealType.getRealType("bench_temp", SI.kelvin);
+    RealType pres = RealType.getRealType("bench_pres",
+                                         SI.kilogram.divide(SI.meter)
+                                                    .divide(SI.second.pow(2)));
+    RealType speed = RealType.getRealType("bench_speed",
+                                          SI.meter.divide(SI.second));
+    RealTupleType range =
+      new RealTupleType(new RealType[] {temp, pres, speed});
+
+    Linear2DSet domain = BenchmarkData.linear2D(4);
+    FunctionType gridType =
+      new FunctionType(BenchmarkData.DOMAIN_2D, range);
+    TupleType sampleType = new TupleType(new MathType[] {
+      gridType, temp, pres});
+
+    series = new FieldImpl(new FunctionType(time, sampleType),
+                           new Integer1DSet(time, length));
+
+    final int n = domain.getLength();
+    for (int t=0; t<length; t++) {
+      FlatField grid = new FlatField(gridType, domain);
+      float[][] values = new float[3][n];
+      for (int i=0; i<n; i++) {
+        values[0][i] = 273.15f + t + i;
+        values[1][i] = 101325.0f - t - i;
+        values[2][i] = 0.5f * i;
+      }
+      grid.setSamples(values, false);
+
+      Real t0 = new Real(temp, 273.15 + t, temp.getDefaultUnit(),
+                         new ErrorEstimate(273.15 + t, 0.01 * (t + 1),
+                                           temp.getDefaultUnit()));
+      Real p0 = new Real(pres, 101325.0 - t, pres.getDefaultUnit(),
+                         new ErrorEstimate(101325.0 - t, 0.1 * (t + 1),
+                                           pres.getDefaultUnit()));
+      series.setSample(t, new Tuple(sampleType,
+                                    new Data[] {grid, t0, p0},
+                                    false), false);
+    }
+
+    BinarySizer sizer = new BinarySizer();
+    sizer.process(series, null);
+    encodedSize = sizer.getSize();
+  }
+
+  @Benchmark
+  public byte[] write(Bytes counter) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(encodedSize);
+    BinaryWriter writer = new BinaryWriter(bytes);
+    writer.save(series);
+    writer.close();
+    counter.bytes += bytes.size();
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,111 @@
+//
+// ContourBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Contour2D;
+import visad.Gridded3DSet;
+
+/**
+ * Contour2D.contour of a smooth size x size grid at ten contour
+ * intervals, as lines and as filled contours.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContourBenchmark {
+
+  @Param({"512"})
+  public int size;
+
+  @Param({"false", "true"})
+  public boolean fill;
+
+  private float[] grid;
+  private float[] intervals;
+  private byte[][] intervalColors;
+  private Gridded3DSet spatialSet;
+  private float[][][] normals;
+
+  @Setup
+  public void setup() throws Exception {
+    int n = size * size;
+    grid = BenchmarkData.values(BenchmarkData.linear2D(size));
+
+    intervals = new float[10];
+    intervalColors = new byte[3][intervals.length];
+    for (int i=0; i<intervals.length; i++) {
+      intervals[i] = 1.05f + 0.2f * i;
+      intervalColors[0][i] = (byte) (25 * i);
+      intervalColors[1][i] = (byte) (255 - 25 * i);
+      intervalColors[2][i] = (byte) 127;
+    }
+
+    // the display locations of the grid points, in the z = 0 plane
+    float[][] samples = new float[3][n];
+    for (int j=0; j<size; j++) {
+      for (int i=0; i<size; i++) {
+        samples[0][j * size + i] = -1.0f + 2.0f * i / (size - 1);
+        samples[1][j * size + i] = -1.0f + 2.0f * j / (size - 1);
+      }
+    }
+    spatialSet = new Gridded3DSet(BenchmarkData.DOMAIN_3D, samples,
+                                  size, size);
+
+    // filled contours are shaded with the normals of the z = 0 plane
+    normals = new float[size][size][];
+    for (int j=0; j<size; j++) {
+      for (int i=0; i<size; i++) normals[j][i] = new float[] {0.0f, 0.0f, 1.0f};
+    }
+  }
+
+  @Benchmark
+  public Object contour() throws Exception {
+    return Contour2D.contour(grid, size, size, intervals, 0.0f, 4.0f, 0.0f,
+                             false, null, new boolean[] {false, false, false},
+                             fill, normals, intervalColors,
+                             new double[] {1.0, 1.0, 1.0}, 1.0, 0, 1, 1.0,
+                             false, null, null, false, spatialSet);
+  }
+}
@@ -0,0 +1,121 @@
+//
+// CoordinateSystemBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.CoordinateSystem;
+import visad.Display;
+import visad.PolarCoordinateSystem;
+import visad.RealTupleType;
+import visad.SphericalCoordinateSystem;
+
+/**
+ * CoordinateSystem.toReference of float and double arrays for the polar
+ * (2-D) and spherical (3-D) coordinate systems.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateSystemBenchmark {
+
+  @Param({"polar", "spherical"})
+  public String system;
+
+  @Param({"1000000"})
+  public int length;
+
+  private CoordinateSystem coordinateSystem;
+  private float[][] floats;
+  private double[][] doubles;
+
+  @Setup
+  public void setup() throws Exception {
+    int dimension;
+    if ("polar".equals(system)) {
+      coordinateSystem = new PolarCoordinateSystem(
+        new RealTupleType(Display.XAxis, Display.YAxis));
+      dimension = 2;
+    }
+    else {
+      coordinateSystem = new SphericalCoordinateSystem(
+        new RealTupleType(Display.XAxis, Display.YAxis, Display.ZAxis));
+      dimension = 3;
+    }
+    float[][] points = BenchmarkData.points(dimension, length);
+    floats = new float[dimension][length];
+    doubles = new double[dimension][length];
+    for (int i=0; i<length; i++) {
+      if (dimension == 2) {
+        // angle in degrees, radius
+        floats[0][i] = 360.0f * points[0][i];
+        floats[1][i] = 1.0f + points[1][i];
+      }
+      else {
+        // latitude, longitude in degrees, radius
+        floats[0][i] = 180.0f * points[0][i] - 90.0f;
+        floats[1][i] = 360.0f * points[1][i];
+        floats[2][i] = 1.0f + points[2][i];
+      }
+    }
+    for (int d=0; d<dimension; d++) {
+      for (int i=0; i<length; i++) doubles[d][i] = floats[d][i];
+    }
+  }
+
+  // toReference may transform in place; give it copies
+
+  @Benchmark
+  public float[][] toReferenceFloat() throws Exception {
+    float[][] tuples = new float[floats.length][];
+    for (int d=0; d<floats.length; d++) tuples[d] = floats[d].clone();
+    return coordinateSystem.toReference(tuples);
+  }
+
+  @Benchmark
+  public double[][] toReferenceDouble() throws Exception {
+    double[][] tuples = new double[doubles.length][];
+    for (int d=0; d<doubles.length; d++) tuples[d] = doubles[d].clone();
+    return coordinateSystem.toReference(tuples);
+  }
+}
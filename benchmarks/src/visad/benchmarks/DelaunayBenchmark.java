@@ -0,0 +1,99 @@
+//
+// DelaunayBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Delaunay;
+import visad.DelaunayClarkson;
+import visad.DelaunayFast;
+import visad.DelaunayParallel;
+import visad.DelaunayWatson;
+
+/**
+ * 2-D Delaunay triangulation of random points by each Delaunay
+ * method.  Clarkson's method rounds coordinates to integers, so it
+ * gets the points scaled up by 1e6.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DelaunayBenchmark {
+
+  @Param({"20000"})
+  public int points;
+
+  private float[][] samples;
+  private float[][] scaled;
+
+  @Setup
+  public void setup() {
+    samples = BenchmarkData.points(2, points);
+    scaled = new float[2][points];
+    for (int d=0; d<2; d++) {
+      for (int i=0; i<points; i++) scaled[d][i] = 1.0e6f * samples[d][i];
+    }
+  }
+
+  @Benchmark
+  public Delaunay parallel() throws Exception {
+    return new DelaunayParallel(samples);
+  }
+
+  @Benchmark
+  public Delaunay fast() throws Exception {
+    DelaunayFast delan = new DelaunayFast(samples);
+    delan.improve(samples, 1);
+    return delan;
+  }
+
+  @Benchmark
+  public Delaunay clarkson() throws Exception {
+    return new DelaunayClarkson(scaled);
+  }
+
+  @Benchmark
+  public Delaunay watson() throws Exception {
+    return new DelaunayWatson(samples);
+  }
+}
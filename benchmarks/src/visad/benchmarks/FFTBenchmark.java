@@ -0,0 +1,104 @@
+//
+// FFTBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.math.FFT;
+import visad.math.FFTPlan;
+
+/**
+ * 1-D and 2-D Fourier transforms of a power of two length, a
+ * mixed radix length and a prime length (done by Bluestein's
+ * algorithm), as complex values and as real values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FFTBenchmark {
+
+  @Param({"65536", "60000", "65537"})
+  public int length;
+
+  private double[][] complex;
+  private double[] real, re, im;
+  private FFTPlan plan;
+  private double[][] grid;
+
+  @Setup
+  public void setup() throws Exception {
+    float[][] p = BenchmarkData.points(2, length);
+    complex = new double[2][length];
+    real = new double[length];
+    for (int i=0; i<length; i++) {
+      complex[0][i] = p[0][i];
+      complex[1][i] = p[1][i];
+      real[i] = p[0][i];
+    }
+    re = new double[length];
+    im = new double[length];
+    plan = FFTPlan.getPlan(length);
+    grid = new double[2][512 * 512];
+    float[][] g = BenchmarkData.points(2, 512 * 512);
+    for (int i=0; i<grid[0].length; i++) {
+      grid[0][i] = g[0][i];
+      grid[1][i] = g[1][i];
+    }
+  }
+
+  @Benchmark
+  public double[][] complex1D() throws Exception {
+    return FFT.FT1D(complex, true);
+  }
+
+  @Benchmark
+  public double[] real1D() {
+    plan.realTransform(real, re, im, true);
+    return re;
+  }
+
+  @Benchmark
+  public double[][] complex2D() throws Exception {
+    return FFT.FT2D(512, 512, grid, true);
+  }
+}
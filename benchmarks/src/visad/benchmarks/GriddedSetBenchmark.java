@@ -0,0 +1,92 @@
+//
+// GriddedSetBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Gridded3DSet;
+import visad.VisADGeometryArray;
+
+/**
+ * Gridded3DSet.valueToGrid of random points, and
+ * Gridded3DSet.makeIsoSurface, on a warped size^3 grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GriddedSetBenchmark {
+
+  @Param({"64"})
+  public int size;
+
+  @Param({"100000"})
+  public int points;
+
+  private Gridded3DSet set;
+  private float[][] values;
+  private float[] field;
+  private float isolevel;
+
+  @Setup
+  public void setup() throws Exception {
+    set = BenchmarkData.gridded3D(size);
+    values = BenchmarkData.points(3, points);
+    field = BenchmarkData.values(set);
+    isolevel = 2.0f;
+  }
+
+  @Benchmark
+  public float[][] valueToGrid() throws Exception {
+    return set.valueToGrid(values);
+  }
+
+  @Benchmark
+  public VisADGeometryArray makeIsoSurface() throws Exception {
+    return set.makeIsoSurface(isolevel, field, null, false);
+  }
+
+  @Benchmark
+  public VisADGeometryArray makeIsoSurfaceIndexed() throws Exception {
+    return set.makeIsoSurface(isolevel, field, null, true);
+  }
+}
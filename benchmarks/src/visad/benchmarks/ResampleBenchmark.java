@@ -0,0 +1,101 @@
+//
+// ResampleBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.Data;
+import visad.Field;
+import visad.FlatField;
+import visad.Set;
+
+/**
+ * FlatField.resample of a field on a Linear, Gridded or Irregular 2-D
+ * domain onto a size x size Linear2DSet, with nearest neighbor or
+ * weighted average sampling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResampleBenchmark {
+
+  @Param({"linear", "gridded", "irregular"})
+  public String domain;
+
+  @Param({"nearest", "weighted"})
+  public String sampling;
+
+  @Param({"256"})
+  public int size;
+
+  private FlatField field;
+  private Set target;
+  private int samplingMode;
+
+  @Setup
+  public void setup() throws Exception {
+    Set set;
+    if ("linear".equals(domain)) {
+      set = BenchmarkData.linear2D(size);
+    }
+    else if ("gridded".equals(domain)) {
+      set = BenchmarkData.gridded2D(size);
+    }
+    else {
+      // the triangulation dominates setup time; a quarter of the
+      // samples keeps it reasonable
+      set = BenchmarkData.irregular2D(size * size / 4);
+    }
+    field = BenchmarkData.field(set);
+    // offset from the source samples, so every sample is interpolated
+    target = new visad.Linear2DSet(BenchmarkData.DOMAIN_2D,
+                                   0.001, 0.999, size, 0.001, 0.999, size);
+    samplingMode = "nearest".equals(sampling) ?
+                   Data.NEAREST_NEIGHBOR : Data.WEIGHTED_AVERAGE;
+  }
+
+  @Benchmark
+  public Field resample() throws Exception {
+    return field.resample(target, samplingMode, Data.NO_ERRORS);
+  }
+}
@@ -0,0 +1,99 @@
+//
+// UnitBenchmark.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visad.SI;
+import visad.Unit;
+
+/**
+ * Unit.toThis of float and double arrays between an offset unit
+ * (celsius to kelvin), a scaled unit (kilometer to meter) and a derived
+ * unit (kilometer per hour to meter per second).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitBenchmark {
+
+  @Param({"offset", "scaled", "derived"})
+  public String conversion;
+
+  @Param({"1000000"})
+  public int length;
+
+  private Unit unit;
+  private Unit that;
+  private float[] floats;
+  private double[] doubles;
+
+  @Setup
+  public void setup() throws Exception {
+    if ("offset".equals(conversion)) {
+      unit = SI.kelvin;
+      that = SI.kelvin.shift(273.15);
+    }
+    else if ("scaled".equals(conversion)) {
+      unit = SI.meter;
+      that = SI.meter.scale(1000.0);
+    }
+    else {
+      unit = SI.meter.divide(SI.second);
+      that = SI.meter.scale(1000.0).divide(SI.second.scale(3600.0));
+    }
+    floats = BenchmarkData.points(1, length)[0];
+    doubles = new double[length];
+    for (int i=0; i<length; i++) doubles[i] = floats[i];
+  }
+
+  @Benchmark
+  public float[] toThisFloat() throws Exception {
+    return unit.toThis(floats, that);
+  }
+
+  @Benchmark
+  public double[] toThisDouble() throws Exception {
+    return unit.toThis(doubles, that);
+  }
+}
@@ -133,6 +133,59 @@ public class ABINnav extends AREAnav {
      *         latitudes and {@code latlon[indexLon]} are longitudes.
      */
     public double[][] toLatLon(double[][] linele) {
+        int length = linele[indexLine].length;
+        double[][] latLons = new double[2][length];
+        double[][] imageLineElems = areaCoordToImageCoord(linele);
+        double[] latLon = new double[2];
+
+        for (int point = 0; point < length; point++) {
+            imageToLatLon(imageLineElems[indexLine][point],
+                          imageLineElems[indexEle][point], latLon);
+            latLons[indexLat][point] = latLon[indexLat];
+            latLons[indexLon][point] = latLon[indexLon];
+        }
+        return latLons;
+    }
+
+    /**
+     * Convert satellite lines/elements to latitude/longitude coordinates,
+     * without going through {@code double} arrays.  The image coordinates
+     * are computed in the returned array, which is then overwritten point
+     * by point with the latitudes and longitudes.
+     *
+     * @param linele Array of line/element pairs.
+     *               Where {@code linele[indexLine]} are {@literal "lines"}
+     *               and {@code linele[indexEle]} are {@literal "elements"}.
+     *               These coordinates must be {@literal "file"} rather than
+     *               {@literal "image"} coordinates.
+     *
+     * @return Array of latitude/longitude pairs. {@code latlon[indexLat]} are
+     *         latitudes and {@code latlon[indexLon]} are longitudes.
+     */
+    public float[][] toLatLon(float[][] linele) {
+        int length = linele[indexLine].length;
+        float[][] latLons =
+            areaCoordToImageCoord(linele, new float[2][length]);
+        double[] latLon = new double[2];
+
+        for (int point = 0; point < length; point++) {
+            imageToLatLon(latLons[indexLine][point],
+                          latLons[indexEle][point], latLon);
+            latLons[indexLat][point] = (float) latLon[indexLat];
+            latLons[indexLon][point] = (float) latLon[indexLon];
+        }
+        return latLons;
+    }
+
+    /**
+     * Convert one image line/element to latitude/longitude.
+     *
+     * @param rlin Image line.
+     * @param rele Image element.
+     * @param latLon Receives the latitude at {@code indexLat} and the
+     *               longitude at {@code indexLon}.
+     */
+    private void imageToLatLon(double rlin, double rele, double[] latLon) {
         final double sub_lon_radians = plon * (PI / 180.0);
 
         double xlin;
@@ -155,96 +208,66 @@ public class ABINnav extends AREAnav {
         double s3;
         double sxy;
 
-        int length = linele[indexLine].length;
-        double[][] latLons = new double[2][length];
-        double[][] imageLineElems = areaCoordToImageCoord(linele);
+        double xlat;
+        double xlon;
 
-        for (int point = 0; point < length; point++) {
-            double rlin = imageLineElems[indexLine][point];
-            double rele = imageLineElems[indexEle][point];
-
-            // start img_to_ll
-            xlin = 0.0;
-            xele = 0.0;
-            lamda_goes = 0.0;
-            theta_goes = 0.0;
-            lamda_geos = 0.0;
-            theta_geos = 0.0;
-            cosx = 0.0;
-            cosy = 0.0;
-            sinx = 0.0;
-            siny = 0.0;
-
-            c1 = 0.0;
-            c2 = 0.0;
-            sd = 0.0;
-            sdd = 0.0;
-            sn = 0.0;
-            s1 = 0.0;
-            s2 = 0.0;
-            s3 = 0.0;
-            sxy = 0.0;
-
-            double xlat;
-            double xlon;
-
-            // adjust using Base RESolution
-            xlin = (rlin - ((bres - 1) / 2.0)) / bres;
-            xele = (rele - ((bres - 1) / 2.0)) / bres;
-
-            // Intermediate coordinates (coordinates will be radians)
-            theta_goes = xlin * lfac + loff;
-            lamda_goes = xele * cfac + coff;
-
-            // convert GOES to GEOS
-            theta_geos = asin(sin(theta_goes) * cos(lamda_goes));
-            lamda_geos = atan(tan(lamda_goes) / cos(theta_goes));
-
-            // SIN and COS for computations below
-            cosx = cos(lamda_geos);
-            cosy = cos(theta_geos);
-            sinx = sin(lamda_geos);
-            siny = sin(theta_geos);
-
-            c1 = dh * cosx * cosy * dh * cosx * cosy;
-            c2 = (cosy * cosy + FP * siny * siny) * d;
-
-            sdd = c1 - c2;
-            if ((sdd < 0.0))  {
-                xlat = Double.NaN;
-                xlon = Double.NaN;
-            } else {
-                sd = sqrt(sdd);
-
-                sn = (dh * cosx * cosy - sd) / (cosy * cosy + FP * siny * siny);
-
-                s1 = dh - sn * cosx * cosy;
-                s2 = sn * sinx * cosy;
-                s3 = -(sn * siny);
-
-                sxy = sqrt(s1 * s1 + (s2 * s2));
-                xlon = atan(s2 / s1) + sub_lon_radians;
-
-                xlat = atan(-(FP * s3 / sxy));
-
-                // convert radians to degrees
-                xlon = xlon * (180.0 / PI);
-                xlat = xlat * (180.0 / PI);
-
-                // Longitudes in [-180,180]
-                if ((xlon > 180)) {
-                    xlon = xlon - 360.0;
-                }
-                if ((xlon < -180)) {
-                    xlon = xlon + 360.0;
-                }
-            }
-            // end img_to_ll
+        // start img_to_ll
+
+        // adjust using Base RESolution
+        xlin = (rlin - ((bres - 1) / 2.0)) / bres;
+        xele = (rele - ((bres - 1) / 2.0)) / bres;
 
-            latLons[indexLat][point] = xlat;
-            latLons[indexLon][point] = xlon;
+        // Intermediate coordinates (coordinates will be radians)
+        theta_goes = xlin * lfac + loff;
+        lamda_goes = xele * cfac + coff;
+
+        // convert GOES to GEOS
+        theta_geos = asin(sin(theta_goes) * cos(lamda_goes));
+        lamda_geos = atan(tan(lamda_goes) / cos(theta_goes));
+
+        // SIN and COS for computations below
+        cosx = cos(lamda_geos);
+        cosy = cos(theta_geos);
+        sinx = sin(lamda_geos);
+        siny = sin(theta_geos);
+
+        c1 = dh * cosx * cosy * dh * cosx * cosy;
+        c2 = (cosy * cosy + FP * siny * siny) * d;
+
+        sdd = c1 - c2;
+        if ((sdd < 0.0))  {
+            xlat = Double.NaN;
+            xlon = Double.NaN;
+        } else {
+            sd = sqrt(sdd);
+
+            sn = (dh * cosx * cosy - sd) / (cosy * cosy + FP * siny * siny);
+
+            s1 = dh - sn * cosx * cosy;
+            s2 = sn * sinx * cosy;
+            s3 = -(sn * siny);
+
+            sxy = sqrt(s1 * s1 + (s2 * s2));
+            xlon = atan(s2 / s1) + sub_lon_radians;
+
+            xlat = atan(-(FP * s3 / sxy));
+
+            // convert radians to degrees
+            xlon = xlon * (180.0 / PI);
+            xlat = xlat * (180.0 / PI);
+
+            // Longitudes in [-180,180]
+            if ((xlon > 180)) {
+                xlon = xlon - 360.0;
+            }
+            if ((xlon < -180)) {
+                xlon = xlon + 360.0;
+            }
         }
-        return latLons;
+        // end img_to_ll
+
+        latLon[indexLat] = xlat;
+        latLon[indexLon] = xlon;
     }
 
     /**
@@ -259,6 +282,54 @@ public class ABINnav extends AREAnav {
      *         {@literal "file"} rather than {@literal "image"} coordinates.
      */
     public double[][] toLinEle(double[][] latlon) {
+        int length = latlon[indexLat].length;
+        double[][] lineEles = new double[2][length];
+        double[] linEle = new double[2];
+
+        for (int point = 0; point < length; point++) {
+            latLonToImage(latlon[indexLat][point], latlon[indexLon][point],
+                          linEle);
+            lineEles[indexLine][point] = linEle[indexLine];
+            lineEles[indexEle][point] = linEle[indexEle];
+        }
+        return imageCoordToAreaCoord(lineEles, lineEles);
+    }
+
+    /**
+     * Convert latitudes/longitudes to satellite lines/elements, without
+     * going through {@code double} arrays.
+     *
+     * @param latlon Array of latitude/longitude pairs.
+     *               Where {@code latlon[indexLat]} are latitudes and
+     *               {@code latlon[indexLon]} are longitudes.
+     *
+     * @return Array of line/element pairs. {@code linele[indexLine]} are lines
+     *         and {@code linele[indexEle]} are elements. These coordinates are
+     *         {@literal "file"} rather than {@literal "image"} coordinates.
+     */
+    public float[][] toLinEle(float[][] latlon) {
+        int length = latlon[indexLat].length;
+        float[][] lineEles = new float[2][length];
+        double[] linEle = new double[2];
+
+        for (int point = 0; point < length; point++) {
+            latLonToImage(latlon[indexLat][point], latlon[indexLon][point],
+                          linEle);
+            lineEles[indexLine][point] = (float) linEle[indexLine];
+            lineEles[indexEle][point] = (float) linEle[indexEle];
+        }
+        return imageCoordToAreaCoord(lineEles, lineEles);
+    }
+
+    /**
+     * Convert one latitude/longitude to image line/element.
+     *
+     * @param rlat Latitude.
+     * @param rlon Longitude.
+     * @param linEle Receives the image line at {@code indexLine} and the
+     *               image element at {@code indexEle}.
+     */
+    private void latLonToImage(double rlat, double rlon, double[] linEle) {
         final double d_geographic_ssl = plon * deg_to_rad;
 
         double rlin;
@@ -273,66 +344,57 @@ public class ABINnav extends AREAnav {
         double lamda;
         double theta;
 
-        int length = latlon[indexLat].length;
-        double[][] lineEles = new double[2][length];
+        if (!isEastPositive) {
+            rlon = -rlon;
+        }
 
-        for (int point = 0; point < length; point++) {
-            double rlat = latlon[indexLat][point];
-            double rlon = latlon[indexLon][point];
-            if (!isEastPositive) {
-                rlon = -rlon;
-            }
+        double xlin;
+        double xele;
 
-            // start ll_to_img
-            rlin = 0.0;
-            rele = 0.0;
-            d_geographic_lat = 0.0;
-            d_geocentric_lat = 0.0;
-            d_geographic_lon = 0.0;
-            r_earth = 0.0;
-            r_1 = 0.0;
-            r_2 = 0.0;
-            r_3 = 0.0;
-            lamda = 0.0;
-            theta = 0.0;
+        // start ll_to_img
 
-            double xlin;
-            double xele;
+        // Earth (Geographic) Coordinates are converted to Radians
+        d_geographic_lat = rlat * deg_to_rad;
+        d_geographic_lon = rlon * deg_to_rad;
 
-            // Earth (Geographic) Coordinates are converted to Radians
-            d_geographic_lat = rlat * deg_to_rad;
-            d_geographic_lon = rlon * deg_to_rad;
+        d_geocentric_lat = atan(drpo2 / dreq2 * tan(d_geographic_lat));
 
-            d_geocentric_lat = atan(drpo2 / dreq2 * tan(d_geographic_lat));
+        r_earth = drpo / sqrt(1.0 - (dreq2 - drpo2) / dreq2 * cos(d_geocentric_lat) * cos(d_geocentric_lat));
 
-            r_earth = drpo / sqrt(1.0 - (dreq2 - drpo2) / dreq2 * cos(d_geocentric_lat) * cos(d_geocentric_lat));
+        r_1 = dh - r_earth * cos(d_geocentric_lat) * cos(d_geographic_lon - d_geographic_ssl);
 
-            r_1 = dh - r_earth * cos(d_geocentric_lat) * cos(d_geographic_lon - d_geographic_ssl);
+        r_2 = -(r_earth * cos(d_geocentric_lat) * sin(d_geographic_lon - d_geographic_ssl));
 
-            r_2 = -(r_earth * cos(d_geocentric_lat) * sin(d_geographic_lon - d_geographic_ssl));
+        r_3 = r_earth * sin(d_geocentric_lat);
 
-            r_3 = r_earth * sin(d_geocentric_lat);
+        if ((r_1 > dh))  {
+            xlin = Double.NaN;
+            xele = Double.NaN;
+        } else {
+            lamda = asin(-(r_2 / sqrt(r_1 * r_1 + r_2 * r_2 + r_3 * r_3)));
+            theta = atan(r_3 / r_1);
 
-            if ((r_1 > dh))  {
-                xlin = Double.NaN;
-                xele = Double.NaN;
-            } else {
-                lamda = asin(-(r_2 / sqrt(r_1 * r_1 + r_2 * r_2 + r_3 * r_3)));
-                theta = atan(r_3 / r_1);
+            // image line and element
+            rlin = (theta - loff) / lfac;
+            rele = (lamda - coff) / cfac;
 
-                // image line and element
-                rlin = (theta - loff) / lfac;
-                rele = (lamda - coff) / cfac;
+            // Adjust using Base RESolution
+            xlin = (rlin * bres) + (bres - 1) / 2.0;
+            xele = (rele * bres) + (bres - 1) / 2.0;
+        }
+        // end of ll_to_img
 
-                // Adjust using Base RESolution
-                xlin = (rlin * bres) + (bres - 1) / 2.0;
-                xele = (rele * bres) + (bres - 1) / 2.0;
-            }
-            // end of ll_to_img
+        linEle[indexLine] = xlin;
+        linEle[indexEle] = xele;
+    }
 
-            lineEles[indexLine][point] = xlin;
-            lineEles[indexEle][point] = xele;
-        }
-        return imageCoordToAreaCoord(lineEles, lineEles);
+    /**
+     * ABIN navigation keeps no state while navigating, so it may be
+     * used from several threads at once.
+     *
+     * @return {@code true}
+     */
+    public boolean canNavigateConcurrently() {
+        return true;
     }
 }
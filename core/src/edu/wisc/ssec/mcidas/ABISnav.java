@@ -324,9 +324,10 @@ public class ABISnav extends AREAnav {
   public float[][] toLatLon(float[][] linele) {
 
     int number = linele[0].length;
-    float[][] latlon = new float[2][number];
-    //  transform line/pixel to geographic coordinates:
-    float imglinele[][] = areaCoordToImageCoord(linele);
+    //  transform line/pixel to geographic coordinates, in the array
+    //  which will then hold the lat/lon of each point
+    float imglinele[][] = areaCoordToImageCoord(linele, new float[2][number]);
+    float[][] latlon = imglinele;
     double xlin, xele, xele2, xlin2, x, y, xr, yr, rs, tanx, tany, val1, val2,
            yk;
     double vmu, cosrf, sinrf, xt, yt, zt, teta, xfi, xla, ylat, ylon;
@@ -461,4 +462,14 @@ public class ABISnav extends AREAnav {
     return imageCoordToAreaCoord(linele, linele);
   }
 
+  /**
+   * ABIS navigation only reads the state set up by the constructor,
+   * so it may be used from several threads at once.
+   *
+   * @return true
+   */
+  public boolean canNavigateConcurrently() {
+    return true;
+  }
+
 }
@@ -702,6 +702,16 @@ public abstract class AREAnav
       return true;
   }
 
+  /**
+   * See if toLatLon and toLinEle may be called from several threads at
+   * once, as {@link ParallelNav} does.  Subclasses which keep no scratch
+   * state while navigating can override this to return true.
+   * @return false
+   */
+  public boolean canNavigateConcurrently() {
+      return false;
+  }
+
   /**
    * Convert arrays of floats to doubles
    * @param value  arrays of floats
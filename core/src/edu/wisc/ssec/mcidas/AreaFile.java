@@ -969,36 +969,22 @@ public class AreaFile implements java.io.Serializable {
       }
     }
 
-    // get all bands
-    if (subset == null) {
-      for (int band_idx = 0; band_idx < inData.length; band_idx++) {
-        for (int line = 0; line < inData[0].length; line++) {
-          for (int elem = 0; elem < inData[0][0].length; elem++) {
-            if (calibrator != null) {
-              outData[band_idx][line][elem] =
-                calibrator.calibrate((float)inData[band_idx][line][elem],
-                                     band_idx + 1, calType);
-            }
-            else {
-              outData[band_idx][line][elem] = inData[band_idx][line][elem];
-            }
+    // get all bands, or just the subsetted band
+    int numBands = (subset == null) ? inData.length : 1;
+    for (int band_idx = 0; band_idx < numBands; band_idx++) {
+      int band = (subset == null) ? band_idx + 1 : subset.bandNumber;
+      for (int line = 0; line < inData[band_idx].length; line++) {
+        int[] inLine = inData[band_idx][line];
+        float[] outLine = outData[band_idx][line];
+        if (calibrator != null) {
+          for (int elem = 0; elem < inLine.length; elem++) {
+            outLine[elem] =
+              calibrator.calibrate((float)inLine[elem], band, calType);
           }
         }
-      }
-
-      // just subsetted band
-    }
-    else {
-      for (int line = 0; line < inData[0].length; line++) {
-        for (int elem = 0; elem < inData[0][0].length; elem++) {
-          if (!isRemote && calType != Calibrator.CAL_NONE &&
-              calibrator != null) {
-            outData[0][line][elem] =
-              calibrator.calibrate((float)inData[0][line][elem],
-                                   subset.bandNumber, calType);
-          }
-          else {
-            outData[0][line][elem] = inData[0][line][elem];
+        else {
+          for (int elem = 0; elem < inLine.length; elem++) {
+            outLine[elem] = inLine[elem];
           }
         }
       }
@@ -1076,26 +1062,75 @@ public class AreaFile implements java.io.Serializable {
   }
 
   /**
+   * Read as much of a line of data as is available.
    *
+   * @param in stream to read from
+   * @param line buffer to fill
    *
-   * @param s
-   *
-   * @return flipped value
+   * @return the number of bytes read, which is less than the buffer
+   *         length only if the end of the data was reached
    */
-  private int flipShort(short s) {
-    return (int)(((s >> 8) & 0xff) | ((s << 8) & 0xff00));
+  private static int readLine(DataInputStream in, byte[] line) {
+    int count = 0;
+    while (count < line.length) {
+      int n;
+      try {
+        n = in.read(line, count, line.length - count);
+      }
+      catch (IOException e) {
+        break;
+      }
+      if (n < 0) break;
+      count += n;
+    }
+    return count;
   }
 
   /**
+   * Decode the elements of one line of one band.  All 1- and 2-byte
+   * data are un-signed; data are byte-flipped if the file needs it.
    *
-   *
-   * @param i
-   *
-   * @return flipped value
+   * @param line raw bytes of the line
+   * @param offset offset of the first element in <code>line</code>
+   * @param stride bytes from one element to the next
+   * @param numEles number of elements to decode
+   * @param values destination for the element values
    */
-  private int flipInt(int i) {
-    return ((i >>> 24) & 0xff) | ((i >>> 8) & 0xff00) | ((i & 0xff) << 24)
-           | ((i & 0xff00) << 8);
+  private void decodeLine(byte[] line, int offset, int stride, int numEles,
+                          int[] values) {
+    int width = dir[AD_DATAWIDTH];
+    int p = offset;
+    if (width == 1) {
+      for (int j = 0; j < numEles; j++, p += stride) {
+        values[j] = line[p] & 0xff;
+      }
+    }
+    else if (width == 2) {
+      if (flipwords) {
+        for (int j = 0; j < numEles; j++, p += stride) {
+          values[j] = (line[p] & 0xff) | ((line[p + 1] & 0xff) << 8);
+        }
+      }
+      else {
+        for (int j = 0; j < numEles; j++, p += stride) {
+          values[j] = ((line[p] & 0xff) << 8) | (line[p + 1] & 0xff);
+        }
+      }
+    }
+    else if (width == 4) {
+      if (flipwords) {
+        for (int j = 0; j < numEles; j++, p += stride) {
+          values[j] = (line[p] & 0xff) | ((line[p + 1] & 0xff) << 8) |
+                      ((line[p + 2] & 0xff) << 16) | (line[p + 3] << 24);
+        }
+      }
+      else {
+        for (int j = 0; j < numEles; j++, p += stride) {
+          values[j] = (line[p] << 24) | ((line[p + 1] & 0xff) << 16) |
+                      ((line[p + 2] & 0xff) << 8) | (line[p + 3] & 0xff);
+        }
+      }
+    }
   }
 
   /**
@@ -1149,9 +1184,6 @@ public class AreaFile implements java.io.Serializable {
     int nextReadSkip = readSkip + lineSkip;
     int nextElementSkip = bandSkip + elementSkip;
 
-    short shdata;
-    int intdata;
-
     try {
       DataInputStream df = getInputStreamForData();
       if (df != af) {
@@ -1170,47 +1202,27 @@ public class AreaFile implements java.io.Serializable {
       throw new AreaFileException("Error skipping to start of data", e);
     }
 
-    for (int i = 0; i < numLines; i++) {
-      for (int j = 0; j < numEles; j++) {
-
-        try {
-          // all 1- and 2-byte data are un-signed!
-          if (dir[AD_DATAWIDTH] == 1) {
-            target[0][i][j] = ((int)af.readByte()) & 0xff;
-
-          }
-          else if (dir[AD_DATAWIDTH] == 2) {
-            shdata = af.readShort();
-            if (flipwords) {
-              target[0][i][j] = flipShort(shdata) & 0xffff;
-            }
-            else {
-              target[0][i][j] = ((int)shdata) & 0xffff;
-            }
-
-          }
-          else if (dir[AD_DATAWIDTH] == 4) {
-            intdata = af.readInt();
-            if (flipwords) {
-              target[0][i][j] = flipInt(intdata);
-            }
-            else {
-              target[0][i][j] = intdata;
-            }
-          }
+    // read each line as one block, from the first wanted element
+    // through the last, and pick the wanted elements out of it
+    int width = dir[AD_DATAWIDTH];
+    int elementStride = width + nextElementSkip;
+    int spanLength = (numEles - 1) * elementStride + width;
+    int lineStride = numEles * elementStride + nextReadSkip;
+    byte[] line = new byte[Math.max(spanLength, 0)];
 
-          af.skipBytes(nextElementSkip);
+    for (int i = 0; i < numLines; i++) {
 
-        }
-        catch (IOException e) {
-          throw new AreaFileException("Error reading element " + i +
-                                      " in line " + j, e);
-        }
+      try {
+        af.readFully(line);
+      }
+      catch (IOException e) {
+        throw new AreaFileException("Error reading line " + i, e);
       }
+      decodeLine(line, 0, elementStride, numEles, target[0][i]);
 
       // done with line, skip to relavent element in next relavent line
       try {
-        af.skipBytes(nextReadSkip);
+        af.skipBytes(lineStride - spanLength);
       }
       catch (IOException e) {
         throw new AreaFileException("Error skipping to next line", e);
@@ -1246,8 +1258,10 @@ public class AreaFile implements java.io.Serializable {
 
     }
     
-    short shdata;
-    int intdata;
+    // read each line of interleaved bands as one block
+    int width = dir[AD_DATAWIDTH];
+    int elementStride = origNumBands * width;
+    byte[] line = new byte[numEles * elementStride];
 
     for (i = 0; i < numLines; i++) {
 
@@ -1267,48 +1281,19 @@ public class AreaFile implements java.io.Serializable {
         break;
       }
 
-      for (j = 0; j < numEles; j++) {
-
-        for (k = 0; k < origNumBands; k++) {
+      int count = readLine(af, line);
+      position = position + count;
 
-          if (j > lineDataLen) {
-            target[k][i][j] = 0;
-          }
-          else {
-
-            try {
-              // all 1- and 2-byte data are un-signed!
-
-              if (dir[AD_DATAWIDTH] == 1) {
-                target[k][i][j] = ((int)af.readByte()) & 0xff;
-                position = position + 1;
-              }
-              else if (dir[AD_DATAWIDTH] == 2) {
-                shdata = af.readShort();
-                if (flipwords) {
-                  target[k][i][j] = flipShort(shdata) & 0xffff;
-                }
-                else {
-                  target[k][i][j] = ((int)shdata) & 0xffff;
-                }
-                position = position + 2;
-              }
-              else if (dir[AD_DATAWIDTH] == 4) {
-                intdata = af.readInt();
-                if (flipwords) {
-                  target[k][i][j] = flipInt(intdata);
-                }
-                else {
-                  target[k][i][j] = intdata;
-                }
-                position = position + 4;
-              }
-
-            }
-            catch (IOException e) {
-              target[k][i][j] = 0;
-            }
-          }
+      // elements cut short by the end of the data are zero
+      for (k = 0; k < origNumBands; k++) {
+        int available = 0;
+        if (count >= (k + 1) * width) {
+          available = Math.min(numEles,
+                       (count - (k + 1) * width) / elementStride + 1);
+        }
+        decodeLine(line, k * width, elementStride, available, target[k][i]);
+        for (j = available; j < numEles; j++) {
+          target[k][i][j] = 0;
         }
       }
 
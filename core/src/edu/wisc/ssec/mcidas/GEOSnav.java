@@ -89,158 +89,237 @@ public class GEOSnav extends AREAnav {
   */
 
   public double[][] toLinEle(double[][] latlon) {
-    double xlat, xlon, xlin, xele, rlin, rele;
-    double c_lat, cosc_lat, rn, r1, r2, r3, rl;
-    double x,y;
-    double lat,lon,splon;
-    double ad2, bd, cd, delta2, halfsom, r_eq2, r_pol2;
-
     int number = latlon[0].length;
     double[][] linele = new double[2][number];
+    double[] imgLinEle = new double[2];
 
     for (int point=0; point < number; point++) {
-      xlat = latlon[indexLat][point];
-      xlon = latlon[indexLon][point];
-      if (!isEastPositive) xlon = -xlon;
-
-
-      // --- Coordinates are computed accroding EUMETSAT's LRIT/HRIT Global Spec
-      // --- Doc No: CGMS 03
-
-      // --- Coordinates are converted to Radians
-      lat   = xlat*Math.PI/180.;
-      lon   = xlon*Math.PI/180.0;
-      splon = plon/10. * Math.PI/180.0;
-
-      // --- Intermediate data
-      c_lat=Math.atan(0.993243*Math.tan(lat));
-      cosc_lat=Math.cos(c_lat);
-      r_pol2= radpol * radpol;
-      r_eq2 = radeq * radeq;
-      rl=radpol/(Math.sqrt(1-((r_eq2-r_pol2)/r_eq2)*cosc_lat*cosc_lat));
-      r1=X42-rl*cosc_lat*Math.cos(lon-splon);
-      r2=-rl*cosc_lat*Math.sin(lon-splon);
-      r3=rl*Math.sin(c_lat);
-      rn=Math.sqrt(r1*r1+r2*r2+r3*r3);
-
-      // --- Compute variables useful to check if pixel is visible
-      ad2 = r1*r1 + r2*r2 + r3*r3*r_eq2 / r_pol2;
-      bd = X42*r1;
-      cd = X42*X42 - r_eq2;
-      delta2 = bd*bd-ad2*cd;
-      halfsom = bd*rn/ad2;
-
-      if ((delta2 >= 0.) && (rn <= halfsom)) {
-      // ------- Intermediate coordinates
-        x = Math.atan(-r2/r1);
-        y = Math.asin(-r3/rn);
-        x = x * 180./Math.PI;
-        y = y * 180./Math.PI;
-
-        xele = coff/10. + x / Math.pow(2,16) * cfac/10.;
-        xlin = loff/10. + y / Math.pow(2,16) * lfac/10.;
-        
-        // TJJ Dec 2017 - now checking pixel offset flag for AHI adjustment
-        if (pixelOffsetFlag == 1) {
-            rlin = (xlin * bres) - ((bres - 1) / 2.0);
-            rele = (xele * bres) - ((bres - 1) / 2.0);            
-        } else {
-            rlin = (xlin * bres) - (bres - 1);
-            rele = (xele * bres) - (bres - 1);
-        }
-        
-      } else {
-
-        rlin=Double.NaN;
-        rele=Double.NaN;
-      }
-
-      linele[indexLine][point] = rlin;
-      linele[indexEle][point] = rele;
+      latLonToImage(latlon[indexLat][point], latlon[indexLon][point],
+                    imgLinEle);
+      linele[indexLine][point] = imgLinEle[indexLine];
+      linele[indexEle][point] = imgLinEle[indexEle];
     }
 
     return imageCoordToAreaCoord(linele, linele);
 
   }
 
-  public double[][] toLatLon(double[][] linele) {
+  /**
+  * Float version of {@link #toLinEle(double[][])}, which does not
+  * go through double arrays.
+  *
+  * @param latlon lat and lon of points (N and E are positive)
+  */
+
+  public float[][] toLinEle(float[][] latlon) {
+    int number = latlon[0].length;
+    float[][] linele = new float[2][number];
+    double[] imgLinEle = new double[2];
 
+    for (int point=0; point < number; point++) {
+      latLonToImage(latlon[indexLat][point], latlon[indexLon][point],
+                    imgLinEle);
+      linele[indexLine][point] = (float) imgLinEle[indexLine];
+      linele[indexEle][point] = (float) imgLinEle[indexEle];
+    }
 
-    double xlat, xlon, xlin, xele, rlin, rele;
+    return imageCoordToAreaCoord(linele, linele);
+
+  }
+
+  /**
+  * Convert one lat/lon to image line/element.
+  *
+  * @param xlat latitude
+  * @param xlon longitude
+  * @param imgLinEle receives the image line and element
+  */
+  private void latLonToImage(double xlat, double xlon, double[] imgLinEle) {
+    double xlin, xele, rlin, rele;
+    double c_lat, cosc_lat, rn, r1, r2, r3, rl;
     double x,y;
-    double s1, s2, s3, sxy, sn, sd, sdd;
-    double aux, aux2;
-    double cosx, cosy, sinx, siny;
+    double lat,lon,splon;
+    double ad2, bd, cd, delta2, halfsom, r_eq2, r_pol2;
 
+    if (!isEastPositive) xlon = -xlon;
 
 
     // --- Coordinates are computed accroding EUMETSAT's LRIT/HRIT Global Spec
     // --- Doc No: CGMS 03
 
-    int number = linele[0].length;
-    double[][] latlon = new double[2][number];
-    double[][] imglinele = areaCoordToImageCoord(linele);
-
-    for (int point=0; point < number; point++ ) {
-
-      rlin = imglinele[indexLine][point];
-      rele = imglinele[indexEle][point];
+    // --- Coordinates are converted to Radians
+    lat   = xlat*Math.PI/180.;
+    lon   = xlon*Math.PI/180.0;
+    splon = plon/10. * Math.PI/180.0;
+
+    // --- Intermediate data
+    c_lat=Math.atan(0.993243*Math.tan(lat));
+    cosc_lat=Math.cos(c_lat);
+    r_pol2= radpol * radpol;
+    r_eq2 = radeq * radeq;
+    rl=radpol/(Math.sqrt(1-((r_eq2-r_pol2)/r_eq2)*cosc_lat*cosc_lat));
+    r1=X42-rl*cosc_lat*Math.cos(lon-splon);
+    r2=-rl*cosc_lat*Math.sin(lon-splon);
+    r3=rl*Math.sin(c_lat);
+    rn=Math.sqrt(r1*r1+r2*r2+r3*r3);
+
+    // --- Compute variables useful to check if pixel is visible
+    ad2 = r1*r1 + r2*r2 + r3*r3*r_eq2 / r_pol2;
+    bd = X42*r1;
+    cd = X42*X42 - r_eq2;
+    delta2 = bd*bd-ad2*cd;
+    halfsom = bd*rn/ad2;
+
+    if ((delta2 >= 0.) && (rn <= halfsom)) {
+    // ------- Intermediate coordinates
+      x = Math.atan(-r2/r1);
+      y = Math.asin(-r3/rn);
+      x = x * 180./Math.PI;
+      y = y * 180./Math.PI;
+
+      xele = coff/10. + x / Math.pow(2,16) * cfac/10.;
+      xlin = loff/10. + y / Math.pow(2,16) * lfac/10.;
       
-      // use bres to adjust the coordinates
       // TJJ Dec 2017 - now checking pixel offset flag for AHI adjustment
       if (pixelOffsetFlag == 1) {
-          xlin = (rlin + ((bres - 1) / 2.0)) / bres;
-          xele = (rele + ((bres - 1) / 2.0)) / bres;
+          rlin = (xlin * bres) - ((bres - 1) / 2.0);
+          rele = (xele * bres) - ((bres - 1) / 2.0);            
       } else {
-          xlin = (rlin + (bres - 1)) / bres;
-          xele = (rele + (bres - 1)) / bres;
+          rlin = (xlin * bres) - (bres - 1);
+          rele = (xele * bres) - (bres - 1);
       }
+      
+    } else {
 
-      // --- Intermediate coordinates
-      x = (xele - coff/10.) * Math.pow(2,16) / (cfac/10.);
-      y = (xlin - loff/10.) * Math.pow(2,16) / (lfac/10.);
-      x = x * Math.PI/180.;
-      y = y * Math.PI/180.;
-
-      //c --- Intermediate data
-      cosx=Math.cos(x);
-      cosy=Math.cos(y);
-      sinx=Math.sin(x);
-      siny=Math.sin(y);
-
-      aux=X42*cosx*cosy;
-      aux2=cosy*cosy+1.006803*siny*siny;
-      sdd=aux*aux-aux2*1737121856.0;
-      if (sdd < 0.0) {
-        xlat=Double.NaN;
-        xlon=Double.NaN;
-      } else {
- 
-        sd=Math.sqrt(sdd);
-        sn=(aux-sd)/aux2;
-        s1=X42 - sn*cosx*cosy;
-        s2=sn*sinx*cosy;
-        s3= -sn*siny;
-        sxy=Math.sqrt(s1*s1+s2*s2);
- 
-        // --- Computation
-        xlon = Math.atan(s2/s1);
-        xlon = xlon * 180./Math.PI + plon/10.;
-        xlat = Math.atan(1.006803*s3/sxy)* 180./Math.PI;
- 
-        // --- Longitudes in [-180,180]
-        if(xlon >  180.0) xlon = xlon - 360.;
-        if(xlon < -180.0) xlon = xlon + 360.;
-      }
+      rlin=Double.NaN;
+      rele=Double.NaN;
+    }
+
+    imgLinEle[indexLine] = rlin;
+    imgLinEle[indexEle] = rele;
+  }
+
+  public double[][] toLatLon(double[][] linele) {
+
+    int number = linele[0].length;
+    double[][] latlon = new double[2][number];
+    double[][] imglinele = areaCoordToImageCoord(linele);
+    double[] latLon = new double[2];
+
+    for (int point=0; point < number; point++ ) {
+      imageToLatLon(imglinele[indexLine][point], imglinele[indexEle][point],
+                    latLon);
+      latlon[indexLat][point] = latLon[indexLat];
+      latlon[indexLon][point] = latLon[indexLon];
+    }
+
+    return latlon;
+  }
 
-      if (!isEastPositive) xlon = -xlon;
+  /**
+  * Float version of {@link #toLatLon(double[][])}, which does not
+  * go through double arrays.  The image coordinates are computed in
+  * the returned array, then replaced point by point with lat/lon.
+  *
+  * @param linele line and element of points, in file coordinates
+  */
+  public float[][] toLatLon(float[][] linele) {
 
-      latlon[indexLat][point] = xlat;
-      latlon[indexLon][point] = xlon;
+    int number = linele[0].length;
+    float[][] latlon = areaCoordToImageCoord(linele, new float[2][number]);
+    double[] latLon = new double[2];
 
+    for (int point=0; point < number; point++ ) {
+      imageToLatLon(latlon[indexLine][point], latlon[indexEle][point],
+                    latLon);
+      latlon[indexLat][point] = (float) latLon[indexLat];
+      latlon[indexLon][point] = (float) latLon[indexLon];
     }
 
     return latlon;
   }
+
+  /**
+  * Convert one image line/element to lat/lon.
+  *
+  * @param rlin image line
+  * @param rele image element
+  * @param latLon receives the latitude and longitude
+  */
+  private void imageToLatLon(double rlin, double rele, double[] latLon) {
+
+    double xlat, xlon, xlin, xele;
+    double x,y;
+    double s1, s2, s3, sxy, sn, sd, sdd;
+    double aux, aux2;
+    double cosx, cosy, sinx, siny;
+
+
+
+    // --- Coordinates are computed accroding EUMETSAT's LRIT/HRIT Global Spec
+    // --- Doc No: CGMS 03
+
+    // use bres to adjust the coordinates
+    // TJJ Dec 2017 - now checking pixel offset flag for AHI adjustment
+    if (pixelOffsetFlag == 1) {
+        xlin = (rlin + ((bres - 1) / 2.0)) / bres;
+        xele = (rele + ((bres - 1) / 2.0)) / bres;
+    } else {
+        xlin = (rlin + (bres - 1)) / bres;
+        xele = (rele + (bres - 1)) / bres;
+    }
+
+    // --- Intermediate coordinates
+    x = (xele - coff/10.) * Math.pow(2,16) / (cfac/10.);
+    y = (xlin - loff/10.) * Math.pow(2,16) / (lfac/10.);
+    x = x * Math.PI/180.;
+    y = y * Math.PI/180.;
+
+    //c --- Intermediate data
+    cosx=Math.cos(x);
+    cosy=Math.cos(y);
+    sinx=Math.sin(x);
+    siny=Math.sin(y);
+
+    aux=X42*cosx*cosy;
+    aux2=cosy*cosy+1.006803*siny*siny;
+    sdd=aux*aux-aux2*1737121856.0;
+    if (sdd < 0.0) {
+      xlat=Double.NaN;
+      xlon=Double.NaN;
+    } else {
+
+      sd=Math.sqrt(sdd);
+      sn=(aux-sd)/aux2;
+      s1=X42 - sn*cosx*cosy;
+      s2=sn*sinx*cosy;
+      s3= -sn*siny;
+      sxy=Math.sqrt(s1*s1+s2*s2);
+
+      // --- Computation
+      xlon = Math.atan(s2/s1);
+      xlon = xlon * 180./Math.PI + plon/10.;
+      xlat = Math.atan(1.006803*s3/sxy)* 180./Math.PI;
+
+      // --- Longitudes in [-180,180]
+      if(xlon >  180.0) xlon = xlon - 360.;
+      if(xlon < -180.0) xlon = xlon + 360.;
+    }
+
+    if (!isEastPositive) xlon = -xlon;
+
+    latLon[indexLat] = xlat;
+    latLon[indexLon] = xlon;
+  }
+
+  /**
+  * GEOS navigation keeps no state while navigating, so it may be
+  * used from several threads at once.
+  *
+  * @return true
+  */
+  public boolean canNavigateConcurrently() {
+    return true;
+  }
  
 }
@@ -1210,4 +1210,14 @@ public class GVARnav extends AREAnav
     return imageCoordToAreaCoord(linele, linele);
   }
 
+  /**
+   * GVAR navigation only reads the state set up by the constructor,
+   * so it may be used from several threads at once.
+   *
+   * @return true
+   */
+  public boolean canNavigateConcurrently() {
+    return true;
+  }
+
 }
@@ -412,4 +412,15 @@ public final class MSGnav extends AREAnav
       return imageCoordToAreaCoord(linele, linele);
 
     }
+
+    /**
+     * MSG navigation only reads the state set up by the constructor,
+     * so it may be used from several threads at once.
+     *
+     * @return true
+     */
+    public boolean canNavigateConcurrently() {
+        return true;
+    }
+
 }
@@ -0,0 +1,232 @@
+//
+// ParallelNav.java
+//
+
+/*
+This source file is part of the edu.wisc.ssec.mcidas package and is
+Copyright (C) 1998 - 2018 by Tom Whittaker, Tommy Jasmin, Tom Rink,
+Don Murray, James Kelly, Bill Hibbard, Dave Glowacki, Curtis Rueden
+and others.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package edu.wisc.ssec.mcidas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelNav navigates large arrays of points in chunks on a fork-join
+ * pool, so that, for example, the lat/lon of every pixel of a full-disk
+ * image are computed on all processors.  Each chunk is handed to the
+ * ordinary {@link AREAnav#toLatLon(float[][])} (or toLinEle) of the
+ * navigation, so results are identical to navigating sequentially.
+ * <p>
+ * Chunks are only run in parallel when the parallelism level is above 1,
+ * there are at least two chunks worth of points, and the navigation says
+ * it {@link AREAnav#canNavigateConcurrently() can be used concurrently};
+ * otherwise the navigation is simply called directly.  The level defaults
+ * to the <code>visad.mcidas.nav.parallelism</code> system property, or 1.
+ *
+ * @see visad.data.mcidas.AREACoordinateSystem
+ */
+public final class ParallelNav {
+
+  /** default parallelism level; 1 means navigate sequentially */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.mcidas.nav.parallelism", 1).intValue();
+
+  /** smallest number of points in a chunk */
+  private static volatile int chunkSize =
+    Integer.getInteger("visad.mcidas.nav.chunksize", 65536).intValue();
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  private ParallelNav() {}
+
+  /**
+   * Set the number of threads used to navigate large arrays.
+   * @param level number of threads; 1 (or less) navigates sequentially
+   */
+  public static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  /**
+   * @return the number of threads used to navigate large arrays
+   */
+  public static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Set the smallest number of points navigated by one thread.
+   * @param size points per chunk
+   */
+  public static void setChunkSize(int size) {
+    chunkSize = Math.max(1, size);
+  }
+
+  /**
+   * @return the smallest number of points navigated by one thread
+   */
+  public static int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Convert file line/element to lat/lon, in parallel if worthwhile.
+   * @param nav navigation to use
+   * @param linele line/element pairs, as for {@link AREAnav#toLatLon(float[][])}
+   * @return lat/lon pairs
+   */
+  public static float[][] toLatLon(AREAnav nav, float[][] linele) {
+    int level = parallelism;
+    if (!accepts(nav, linele[0].length, level)) return nav.toLatLon(linele);
+    float[][] latlon = new float[2][linele[0].length];
+    run(nav, true, linele, latlon, null, null, level);
+    return latlon;
+  }
+
+  /**
+   * Convert lat/lon to file line/element, in parallel if worthwhile.
+   * @param nav navigation to use
+   * @param latlon lat/lon pairs, as for {@link AREAnav#toLinEle(float[][])}
+   * @return line/element pairs
+   */
+  public static float[][] toLinEle(AREAnav nav, float[][] latlon) {
+    int level = parallelism;
+    if (!accepts(nav, latlon[0].length, level)) return nav.toLinEle(latlon);
+    float[][] linele = new float[2][latlon[0].length];
+    run(nav, false, latlon, linele, null, null, level);
+    return linele;
+  }
+
+  /**
+   * Convert file line/element to lat/lon, in parallel if worthwhile.
+   * @param nav navigation to use
+   * @param linele line/element pairs, as for {@link AREAnav#toLatLon(double[][])}
+   * @return lat/lon pairs
+   */
+  public static double[][] toLatLon(AREAnav nav, double[][] linele) {
+    int level = parallelism;
+    if (!accepts(nav, linele[0].length, level)) return nav.toLatLon(linele);
+    double[][] latlon = new double[2][linele[0].length];
+    run(nav, true, null, null, linele, latlon, level);
+    return latlon;
+  }
+
+  /**
+   * Convert lat/lon to file line/element, in parallel if worthwhile.
+   * @param nav navigation to use
+   * @param latlon lat/lon pairs, as for {@link AREAnav#toLinEle(double[][])}
+   * @return line/element pairs
+   */
+  public static double[][] toLinEle(AREAnav nav, double[][] latlon) {
+    int level = parallelism;
+    if (!accepts(nav, latlon[0].length, level)) return nav.toLinEle(latlon);
+    double[][] linele = new double[2][latlon[0].length];
+    run(nav, false, null, null, latlon, linele, level);
+    return linele;
+  }
+
+  private static boolean accepts(AREAnav nav, int length, int level) {
+    return level > 1 && length >= 2 * chunkSize &&
+           nav.canNavigateConcurrently();
+  }
+
+  /**
+   * Navigate the points of either the float or the double arrays,
+   * in chunks of at least chunkSize points.
+   */
+  private static void run(AREAnav nav, boolean toLatLon,
+                          float[][] fin, float[][] fout,
+                          double[][] din, double[][] dout, int level) {
+    int length = (fin != null) ? fin[0].length : din[0].length;
+    int nchunks = Math.max(1, Math.min(4 * level, length / chunkSize));
+    int size = (length + nchunks - 1) / nchunks;
+    final List<Chunk> tasks = new ArrayList<Chunk>(nchunks);
+    for (int start=0; start<length; start+=size) {
+      tasks.add(new Chunk(nav, toLatLon, fin, fout, din, dout, start,
+                          Math.min(length, start + size)));
+    }
+    getPool(level).invoke(new RecursiveAction() {
+      protected void compute() {
+        ForkJoinTask.invokeAll(tasks);
+      }
+    });
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+  /** navigation of the points start .. end-1 */
+  private static class Chunk extends RecursiveAction {
+    private final AREAnav nav;
+    private final boolean toLatLon;
+    private final float[][] fin, fout;
+    private final double[][] din, dout;
+    private final int start, end;
+
+    Chunk(AREAnav nav, boolean toLatLon, float[][] fin, float[][] fout,
+          double[][] din, double[][] dout, int start, int end) {
+      this.nav = nav;
+      this.toLatLon = toLatLon;
+      this.fin = fin;
+      this.fout = fout;
+      this.din = din;
+      this.dout = dout;
+      this.start = start;
+      this.end = end;
+    }
+
+    protected void compute() {
+      int n = end - start;
+      if (fin != null) {
+        float[][] in = new float[2][n];
+        System.arraycopy(fin[0], start, in[0], 0, n);
+        System.arraycopy(fin[1], start, in[1], 0, n);
+        float[][] out = toLatLon ? nav.toLatLon(in) : nav.toLinEle(in);
+        System.arraycopy(out[0], 0, fout[0], start, n);
+        System.arraycopy(out[1], 0, fout[1], start, n);
+      }
+      else {
+        double[][] in = new double[2][n];
+        System.arraycopy(din[0], start, in[0], 0, n);
+        System.arraycopy(din[1], start, in[1], 0, n);
+        double[][] out = toLatLon ? nav.toLatLon(in) : nav.toLinEle(in);
+        System.arraycopy(out[0], 0, dout[0], start, n);
+        System.arraycopy(out[1], 0, dout[1], start, n);
+      }
+    }
+  }
+}
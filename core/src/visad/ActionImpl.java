@@ -30,7 +30,13 @@ import java.rmi.RemoteException;
 
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import visad.util.ActionExecutors;
 import visad.util.ThreadPool;
 
 /*
@@ -69,6 +75,16 @@ call stacks:
  *
  * ActionImpl is the superclass of DisplayImpl and CellImpl.<P>
  *
+ * ActionImpls run on the shared "ActionThread" ThreadPool unless an
+ * Executor is installed for all ActionImpls with setDefaultExecutor (or
+ * the system property visad.actionimpl.executor, see
+ * {@link ActionExecutors}) or for a single ActionImpl with setExecutor.
+ * Requests for activity that arrive while an ActionImpl is already
+ * queued are coalesced into the queued run, and requests that arrive
+ * while it is running cause exactly one more run, so a burst of changes
+ * to a linked ThingReference triggers one doAction.  Set the system
+ * property visad.actionimpl.coalesce to false to queue every request.<P>
+ *
  * ActionImpl is not Serializable and should not be copied
  * between JVMs.<P>
  */
@@ -99,11 +115,58 @@ public abstract class ActionImpl implements Action, Runnable {
   /**           */
   private static Object poolLock = new Object();
 
+  /** whether requests for activity are coalesced */
+  private static final boolean COALESCE =
+    Boolean.parseBoolean(System.getProperty("visad.actionimpl.coalesce",
+                                            "true"));
+
+  /** Executor of ActionImpls without their own, or null for the pool */
+  private static volatile Executor defaultExecutor = executorProperty();
+
+  /** scheduling states, see schedule() */
+  private static final int IDLE = 0;
+  private static final int QUEUED = 1;
+  private static final int RUNNING = 2;
+  private static final int RUNNING_REQUEUE = 3;
+
+  // statistics over all ActionImpls, kept when requests are coalesced
+  private static final AtomicInteger queuedCount = new AtomicInteger();
+  private static final AtomicInteger runningCount = new AtomicInteger();
+  private static final AtomicLong runCount = new AtomicLong();
+  private static final AtomicLong coalescedCount = new AtomicLong();
+  private static final AtomicLong totalQueueNanos = new AtomicLong();
+  private static final AtomicLong maxQueueNanos = new AtomicLong();
+  private static final AtomicLong totalRunNanos = new AtomicLong();
+
+  /** tasks submitted to Executors other than the pool and not done */
+  private static int executorTasks = 0;
+  private static final Object executorTasksLock = new Object();
+
+  /** Executor of this ActionImpl, or null for the default */
+  private volatile Executor executor = null;
+
+  /** scheduling state of this ActionImpl */
+  private final AtomicInteger state = new AtomicInteger(IDLE);
+
+  /** System.nanoTime() when this ActionImpl was last queued */
+  private volatile long queueTime;
+
+  /** runs this ActionImpl when it is taken off a queue */
+  private final Runnable dispatcher = new Runnable() {
+    public void run() {
+      dispatch();
+    }
+  };
+
   /**           */
   private boolean enabled = true;
 
-  /**           */
-  private Object lockEnabled = new Object();
+  /**
+   * held while this ActionImpl runs; a ReentrantLock rather than a
+   * monitor, so that a virtual thread running doAction() doesn't pin
+   * its carrier thread
+   */
+  private final ReentrantLock lockEnabled = new ReentrantLock();
 
   /**           */
   private boolean peek = false;
@@ -148,6 +211,23 @@ public abstract class ActionImpl implements Action, Runnable {
     link_id = 0;
   }
 
+  /**
+   * @return the Executor named by the system property
+   *         visad.actionimpl.executor, or null for the shared ThreadPool
+   *         if it is unset or not understood
+   */
+  private static Executor executorProperty() {
+    String spec = System.getProperty("visad.actionimpl.executor");
+    try {
+      return ActionExecutors.fromSpec("ActionThread", spec);
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println("ActionImpl: ignoring visad.actionimpl.executor: " +
+                         e.getMessage());
+      return null;
+    }
+  }
+
   /** used internally to create the shared Action thread pool */
   private static void startThreadPool() {
     synchronized (poolLock) {
@@ -170,8 +250,110 @@ public abstract class ActionImpl implements Action, Runnable {
    * @return number of queued and active tasks
    */
   public static int getTaskCount() {
-    if (pool == null) return 0;
-    return pool.getTaskCount();
+    int count;
+    synchronized (executorTasksLock) {
+      count = executorTasks;
+    }
+    if (pool == null) return count;
+    return count + pool.getTaskCount();
+  }
+
+  /**
+   * set the Executor that runs ActionImpls which have no Executor
+   * of their own
+   * @param exec Executor, or null for the shared ThreadPool
+   */
+  public static void setDefaultExecutor(Executor exec) {
+    defaultExecutor = exec;
+  }
+
+  /**
+   * @return the Executor that runs ActionImpls which have no Executor
+   *         of their own, or null for the shared ThreadPool
+   */
+  public static Executor getDefaultExecutor() {
+    return defaultExecutor;
+  }
+
+  /**
+   * set the Executor that runs this ActionImpl; an Executor may be
+   * shared by a group of ActionImpls to bound the threads they use,
+   * see {@link ActionExecutors}
+   * @param exec Executor, or null for the default Executor
+   */
+  public void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * @return the Executor of this ActionImpl, or null if it runs on
+   *         the default Executor
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * @return number of ActionImpls queued and waiting to run
+   */
+  public static int getQueuedActionCount() {
+    return queuedCount.get();
+  }
+
+  /**
+   * @return number of ActionImpls currently running
+   */
+  public static int getRunningActionCount() {
+    return runningCount.get();
+  }
+
+  /**
+   * @return number of times ActionImpls were taken off a queue and run
+   */
+  public static long getRunCount() {
+    return runCount.get();
+  }
+
+  /**
+   * @return number of requests for activity merged into an already
+   *         queued or running ActionImpl
+   */
+  public static long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * @return average time in milliseconds ActionImpls waited in a queue
+   */
+  public static double getAverageQueueLatency() {
+    long runs = runCount.get();
+    return (runs == 0) ? 0.0 : totalQueueNanos.get() / (runs * 1.0e6);
+  }
+
+  /**
+   * @return longest time in milliseconds an ActionImpl waited in a queue
+   */
+  public static double getMaxQueueLatency() {
+    return maxQueueNanos.get() / 1.0e6;
+  }
+
+  /**
+   * @return average time in milliseconds of an ActionImpl run
+   */
+  public static double getAverageRunTime() {
+    long runs = runCount.get();
+    return (runs == 0) ? 0.0 : totalRunNanos.get() / (runs * 1.0e6);
+  }
+
+  /**
+   * reset the run, coalescing and latency statistics
+   */
+  public static void resetStatistics() {
+    runCount.set(0);
+    coalescedCount.set(0);
+    totalQueueNanos.set(0);
+    maxQueueNanos.set(0);
+    totalRunNanos.set(0);
   }
 
 
@@ -229,8 +411,9 @@ public abstract class ActionImpl implements Action, Runnable {
     }
 
     // WLH 17 Dec 2001
-    if (pool != null && !pool.isTerminated()) {
-      pool.queue(this);
+    if (getEffectiveExecutor() != null ||
+        (pool != null && !pool.isTerminated())) {
+      schedule();
     }
     run_links = null;
 
@@ -310,9 +493,13 @@ public abstract class ActionImpl implements Action, Runnable {
 // System.out.println("disableAction " + getName());
     enabled = false;
     // wait for possible current run() invocation to finish
-    synchronized (lockEnabled) {
+    lockEnabled.lock();
+    try {
       enabled = false; // probably not necessary, just don't trust a nop
     }
+    finally {
+      lockEnabled.unlock();
+    }
   }
 
   /**
@@ -332,7 +519,8 @@ public abstract class ActionImpl implements Action, Runnable {
    */
   public boolean setEnabled(boolean enable) {
     boolean wasEnabled;
-    synchronized (lockEnabled) {
+    lockEnabled.lock();
+    try {
       wasEnabled = enabled;
       if (enable && !wasEnabled) {
         enableAction();
@@ -341,6 +529,9 @@ public abstract class ActionImpl implements Action, Runnable {
         disableAction();
       }
     }
+    finally {
+      lockEnabled.unlock();
+    }
     return wasEnabled;
   }
 
@@ -377,7 +568,8 @@ public abstract class ActionImpl implements Action, Runnable {
     // thread can be running at a time.
     currentActionThread = Thread.currentThread();
 
-    synchronized (lockEnabled) {
+    lockEnabled.lock();
+    try {
 // if (getName() != null) System.out.println("ENABLED = " + enabled + " " + getName());
       if (enabled) {
         try {
@@ -468,15 +660,19 @@ public abstract class ActionImpl implements Action, Runnable {
       } // end if (enabled)
 
       // if there's more to do, add this to the end of the task list
+      // (only without coalescing; otherwise dispatch() requeues)
       if (requeue) {
-        if (pool != null) {
+        if (pool != null || getEffectiveExecutor() != null) {
 // if (getName() != null) System.out.println("requeue " + getName());
-          pool.queue(this);
+          submit(this);
         }
         requeue = false;
       }
 
-    } // end synchronized (lockEnabled)
+    }
+    finally {
+      lockEnabled.unlock();
+    }
     currentActionThread = null;
   }
 
@@ -541,23 +737,148 @@ public abstract class ActionImpl implements Action, Runnable {
    */
   void notifyAction() {
 // if (getName() != null) DisplayImpl.printStack("notifyAction " + getName());
-    requeue = true;
-    if (pool == null) {
-      startThreadPool();
-    }
     if (TRACE_STACK) {
       stackTrace = visad.util.Util.getStackTrace();
     }
-    pool.queue(this);
+    schedule();
   }
 
   /**
-   * wait for all queued tasks in ThreadPool to finish
+   * queue this ActionImpl to run, unless it is already queued; if it
+   * is running, run it once more when the current run ends
+   */
+  private void schedule() {
+    if (!COALESCE) {
+      requeue = true;
+      submit(this);
+      return;
+    }
+    while (true) {
+      int s = state.get();
+      if (s == IDLE) {
+        if (state.compareAndSet(IDLE, QUEUED)) {
+          enqueue();
+          return;
+        }
+      }
+      else if (s == RUNNING) {
+        if (state.compareAndSet(RUNNING, RUNNING_REQUEUE)) {
+          coalescedCount.incrementAndGet();
+          return;
+        }
+      }
+      else {
+        // QUEUED or RUNNING_REQUEUE
+        coalescedCount.incrementAndGet();
+        return;
+      }
+    }
+  }
+
+  /** submit the dispatcher of this ActionImpl, which is QUEUED */
+  private void enqueue() {
+    queueTime = System.nanoTime();
+    queuedCount.incrementAndGet();
+    try {
+      submit(dispatcher);
+    }
+    catch (RuntimeException e) {
+      queuedCount.decrementAndGet();
+      state.set(IDLE);
+      throw e;
+    }
+  }
+
+  /** take this ActionImpl off the queue and run it */
+  private void dispatch() {
+    long start = System.nanoTime();
+    long wait = start - queueTime;
+    queuedCount.decrementAndGet();
+    totalQueueNanos.addAndGet(wait);
+    while (true) {
+      long max = maxQueueNanos.get();
+      if (wait <= max || maxQueueNanos.compareAndSet(max, wait)) break;
+    }
+    state.set(RUNNING);
+    runningCount.incrementAndGet();
+    try {
+      run();
+    }
+    finally {
+      runningCount.decrementAndGet();
+      runCount.incrementAndGet();
+      totalRunNanos.addAndGet(System.nanoTime() - start);
+      // requests that arrived during the run need one more run
+      if (!state.compareAndSet(RUNNING, IDLE)) {
+        state.set(QUEUED);
+        enqueue();
+      }
+    }
+  }
+
+  /** @return Executor of this ActionImpl, or null for the pool */
+  private Executor getEffectiveExecutor() {
+    Executor exec = executor;
+    return (exec != null) ? exec : defaultExecutor;
+  }
+
+  /** run task on the Executor of this ActionImpl */
+  private void submit(final Runnable task) {
+    Executor exec = getEffectiveExecutor();
+    if (exec == null) {
+      if (pool == null) {
+        startThreadPool();
+      }
+      pool.queue(task);
+      return;
+    }
+    synchronized (executorTasksLock) {
+      executorTasks++;
+    }
+    try {
+      exec.execute(new Runnable() {
+        public void run() {
+          try {
+            task.run();
+          }
+          finally {
+            executorTaskDone();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      executorTaskDone();
+      throw e;
+    }
+  }
+
+  private static void executorTaskDone() {
+    synchronized (executorTasksLock) {
+      executorTasks--;
+      if (executorTasks == 0) executorTasksLock.notifyAll();
+    }
+  }
+
+  /**
+   * wait for all queued tasks in ThreadPool, and in any Executors
+   * running ActionImpls, to finish
    */
   public void waitForTasks() {
     if (pool != null) {
       pool.waitForTasks();
     }
+    synchronized (executorTasksLock) {
+      while (executorTasks > 0) {
+        try {
+          executorTasksLock.wait();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
   }
 
   /**
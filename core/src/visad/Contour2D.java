@@ -237,6 +237,26 @@ public class Contour2D {
 			double label_size, boolean labelAlign,
 			byte[] labelColor, Object labelFont, boolean sphericalDisplayCS,
 			Gridded3DSet spatial_set) throws VisADException {
+		return contour(g, nr, nc, values, lowlimit, highlimit, base, dash,
+				auxValues, swap, fill, grd_normals, interval_colors, scale,
+				scale_ratio, label_freq, label_line_skip, label_size,
+				labelAlign, labelColor, labelFont, sphericalDisplayCS,
+				spatial_set, false);
+	}
+
+	/**
+	 * As above; if tile is true, g is one tile of a larger grid and
+	 * lines of a single segment are kept, since they may be joined
+	 * with lines of the neighboring tiles.
+	 */
+	static ContourOutput contour(float g[], int nr, int nc,
+			float[] values, float lowlimit, float highlimit, float base,
+			boolean dash, byte[][] auxValues, boolean[] swap, boolean fill,
+			float[][][] grd_normals, byte[][] interval_colors, double[] scale,
+			double scale_ratio, int label_freq, int label_line_skip,
+			double label_size, boolean labelAlign,
+			byte[] labelColor, Object labelFont, boolean sphericalDisplayCS,
+			Gridded3DSet spatial_set, boolean tile) throws VisADException {
 
 		dash = fill ? false : dash;
 		int ir, ic;
@@ -468,6 +488,7 @@ public class Contour2D {
 
 		ContourStripSet ctrSet = new ContourStripSet(myvals, swap,
 				scale_ratio, label_freq, label_line_skip, label_size, nr, nc, spatial_set);
+		ctrSet.keepSingleSegments = tile;
 
 		visad.util.Trace.call1("Contour2d.loop", " nrm=" + nrm + " ncm=" + ncm
 				+ " naux=" + naux + " myvals.length=" + myvals.length);
@@ -4300,6 +4321,9 @@ class ContourStripSet {
 
 	public int labelLineSkip = ContourControl.EVERY_NTH_DEFAULT;
 
+	/** true to keep lines of a single segment, see Contour2D.contour */
+	boolean keepSingleSegments = false;
+
 	/**
 	 * 
 	 * @param levels
@@ -5537,7 +5561,7 @@ class ContourStrip {
 			if (lineColors.length > 0) {
 				lineArray.colors = lineColors;
 			}
-			if (totalPts >= 2) {
+			if (totalPts >= 2 || (totalPts == 1 && css.keepSingleSegments)) {
 				if (isDashed) {
 					css.cntrLinesStyled.add(lineArray);
 				} else {
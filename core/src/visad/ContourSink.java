@@ -0,0 +1,72 @@
+//
+// ContourSink.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad;
+
+/**
+ * ContourSink receives the geometry of contours as it is produced by
+ * {@link Gridded3DSet#makeIsoLines(float[], float, float, float, float[],
+ * byte[][], boolean[], boolean, boolean, ScalarMap[], double[], double,
+ * boolean, ContourSink)}, one block of tiles at a time, so that it may
+ * be rendered, written or discarded without holding the contours of the
+ * whole grid in memory.<P>
+ *
+ * Methods are called from the thread that called makeIsoLines, never
+ * concurrently.
+ */
+public interface ContourSink {
+
+  /**
+   * Receive contour lines.
+   * @param lines     line strips in display coordinates, with colors if
+   *                  the contoured field has colors
+   * @param styled    true if the lines should be drawn with the dashed
+   *                  line style (contour levels below the base)
+   */
+  void addLines(VisADLineStripArray lines, boolean styled)
+       throws VisADException;
+
+  /**
+   * Receive the pieces of contour lines hidden behind labels, to be
+   * drawn in their place if labels are not shown.
+   * @param lines     line strips in display coordinates
+   * @param styled    true if the lines should be drawn with the dashed
+   *                  line style
+   */
+  void addLabelLines(VisADLineStripArray lines, boolean styled)
+       throws VisADException;
+
+  /**
+   * Receive a contour label.
+   */
+  void addLabel(ContourLabelGeometry label) throws VisADException;
+
+  /**
+   * Receive filled contour triangles.
+   */
+  void addFill(VisADTriangleStripArray fill) throws VisADException;
+}
@@ -0,0 +1,1493 @@
+//
+// DeferredFlatField.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.io.ObjectStreamException;
+import java.lang.ref.WeakReference;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+   DeferredFlatField is a FlatField whose range values are defined by an
+   expression of unary and binary operations on other FlatFields, and
+   are not computed until they are first needed.<P>
+
+   When deferred arithmetic is enabled (see {@link #setDeferredArithmetic}
+   or the <code>visad.flatfield.deferred</code> system property), or when
+   one of the operands is already a DeferredFlatField, FlatField.binary and
+   FlatField.unary return a DeferredFlatField instead of computing a new
+   range array.  Further operations on that result extend its expression,
+   so that an expression like <code>(a - b) * c / sqrt(d)</code> is
+   computed in a single pass over the domain, one chunk of samples at a
+   time, with no full size temporary arrays.<P>
+
+   Only operations whose result does not depend on the whole range array
+   are deferred: operands must share the same domain Set after resampling,
+   must not involve range CoordinateSystems, and must not need
+   ErrorEstimate propagation.  Anything else falls back to the ordinary
+   FlatField code, so Units, ErrorEstimates, sampling modes and float or
+   double precision are exactly those of the immediate computation.<P>
+
+   The operands of a DeferredFlatField are referenced, not copied.
+   Changing an operand through its setSamples, setSample or
+   setPackedSamples methods first computes the range values of the
+   DeferredFlatFields that read it, so they keep the values the operands
+   had when they were created; changes made directly to arrays returned
+   with copy false are not seen, as for any FlatField.<P>
+*/
+public class DeferredFlatField extends FlatField {
+
+  /** whether FlatField arithmetic returns DeferredFlatFields */
+  private static boolean deferArithmetic =
+    Boolean.parseBoolean(System.getProperty("visad.flatfield.deferred",
+                                            "false"));
+
+  /** number of samples computed per pass of an expression */
+  private static int chunkSize =
+    Integer.parseInt(System.getProperty("visad.flatfield.deferred.chunksize",
+                                        "16384"));
+
+  /** expressions deeper than this use their operand as a leaf */
+  private static final int MAX_DEPTH = 32;
+
+  /** expression for the range values; null once they are computed */
+  private transient volatile Node expression;
+
+  private DeferredFlatField(FunctionType type, Set domain_set,
+                            CoordinateSystem range_coord_sys,
+                            CoordinateSystem[] range_coord_syses,
+                            Set[] range_sets, Unit[] units, Node expression)
+          throws VisADException {
+    super(type, domain_set, range_coord_sys, range_coord_syses,
+          range_sets, units);
+    this.expression = expression;
+  }
+
+  /**
+   * Turn deferred evaluation of FlatField arithmetic on or off.
+   * @param defer  true to have FlatField.binary and FlatField.unary
+   *               return DeferredFlatFields where possible
+   */
+  public static void setDeferredArithmetic(boolean defer) {
+    deferArithmetic = defer;
+  }
+
+  /**
+   * @return  true if FlatField arithmetic is deferred
+   */
+  public static boolean isDeferredArithmetic() {
+    return deferArithmetic;
+  }
+
+  /**
+   * Set the number of samples computed per pass when an expression
+   * is evaluated.
+   * @param size  samples per chunk, must be positive
+   */
+  public static void setChunkSize(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("DeferredFlatField: bad chunk size");
+    }
+    chunkSize = size;
+  }
+
+  /**
+   * @return  the number of samples computed per pass
+   */
+  public static int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Return a DeferredFlatField with the same type, domain, Units and
+   * values as field, so that arithmetic on it is deferred regardless
+   * of {@link #isDeferredArithmetic}.
+   * @param field  FlatField to wrap
+   * @return  DeferredFlatField whose values are those of field
+   * @throws VisADException  couldn't create the new FlatField
+   */
+  public static DeferredFlatField wrap(FlatField field)
+         throws VisADException {
+    if (field.isMissing()) {
+      throw new FieldException("DeferredFlatField.wrap: field is missing");
+    }
+    Node node = new Leaf(field);
+    return make(field, (FunctionType) field.getType(), field.RangeUnits,
+                node);
+  }
+
+  /**
+   * @return  true if the range values have been computed
+   */
+  public boolean isEvaluated() {
+    return expression == null;
+  }
+
+  /**
+   * Compute the range values now, if that has not been done yet.
+   * @throws VisADException  couldn't compute the values
+   */
+  public void evaluate() throws VisADException {
+    evaluateDeferred();
+  }
+
+  synchronized void evaluateDeferred() throws VisADException {
+    Node node = expression;
+    if (node == null) return;
+    int length = getLength();
+    int dim = getRangeDimension();
+    int chunk = chunkSize;
+    Context ctx = new Context(chunk);
+    if (node.isDouble) {
+      double[][] values = new double[dim][length];
+      for (int comp=0; comp<dim; comp++) {
+        for (int start=0; start<length; start+=chunk) {
+          int count = Math.min(chunk, length - start);
+          node.evaluate(ctx, comp, start, count, values[comp], start);
+        }
+      }
+      packValues(values, false);
+    }
+    else {
+      float[][] values = new float[dim][length];
+      for (int comp=0; comp<dim; comp++) {
+        for (int start=0; start<length; start+=chunk) {
+          int count = Math.min(chunk, length - start);
+          node.evaluate(ctx, comp, start, count, values[comp], start);
+        }
+      }
+      packValues(values, false);
+    }
+    expression = null;
+  }
+
+  private Node getExpression() {
+    return expression;
+  }
+
+  private synchronized void dropExpression() {
+    expression = null;
+  }
+
+  /**
+   * Return the expression node to use for field as an operand.
+   */
+  private static Node operand(FlatField field) {
+    if (field instanceof DeferredFlatField) {
+      Node node = ((DeferredFlatField) field).getExpression();
+      if (node != null && node.depth < MAX_DEPTH) return node;
+    }
+    return new Leaf(field);
+  }
+
+  /**
+   * Create the DeferredFlatField for an operation on field, with
+   * the domain and range CoordinateSystems cloneFloat or cloneDouble
+   * would give it.
+   */
+  private static DeferredFlatField make(FlatField field, FunctionType type,
+                                        Unit[] units, Node node)
+          throws VisADException {
+    RealTupleType flat_range = type.getFlatRange();
+    int dim = flat_range.getDimension();
+    Set[] sets = new Set[dim];
+    for (int i=0; i<dim; i++) {
+      SetType set_type = new SetType(flat_range.getComponent(i));
+      sets[i] = node.isDouble ? (Set) new DoubleSet(set_type)
+                              : (Set) new FloatSet(set_type);
+    }
+    RealTupleType d_type = type.getDomain();
+    Set new_set = field.getDomainSet();
+    if (!d_type.equals(((FunctionType) field.getType()).getDomain())) {
+      new_set = (Set) new_set.cloneButType(d_type);
+    }
+    DeferredFlatField result =
+      new DeferredFlatField(type, new_set, field.RangeCoordinateSystem,
+                            field.RangeCoordinateSystems, sets, units, node);
+    IdentityHashMap<FlatField, Boolean> leaves =
+      new IdentityHashMap<FlatField, Boolean>();
+    node.addLeaves(leaves);
+    for (FlatField leaf : leaves.keySet()) {
+      leaf.addDeferredDependent(result);
+    }
+    return result;
+  }
+
+  private static boolean shouldDefer(Data a, Data b) {
+    return deferArithmetic || a instanceof DeferredFlatField ||
+           b instanceof DeferredFlatField;
+  }
+
+  private static boolean needErrors(int error_mode, ErrorEstimate[] a,
+                                    ErrorEstimate[] b) {
+    if (error_mode == NO_ERRORS) return false;
+    for (int j=0; j<a.length; j++) {
+      if (a[j] != null && (b == null || b[j] != null)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Return a DeferredFlatField for 'field op data', where data has
+   * already been resampled to the domain of field, or null if the
+   * operation cannot be deferred.
+   */
+  static FlatField deferBinary(FlatField field, FlatField data, int op,
+                          MathType new_type, int error_mode)
+         throws VisADException {
+    if (!shouldDefer(field, data)) return null;
+    FunctionType type = (FunctionType) field.getType();
+    FunctionType data_type = (FunctionType) data.getType();
+    if (!type.getReal() || !data_type.getReal() ||
+        field.RangeCoordinateSystem != null ||
+        data.RangeCoordinateSystem != null ||
+        type.getFlatRange().getCoordinateSystem() != null ||
+        data_type.getFlatRange().getCoordinateSystem() != null ||
+        data.getLength() != field.getLength()) {
+      return null;
+    }
+    if (needErrors(error_mode, field.getRangeErrors(),
+                   data.getRangeErrors())) {
+      return null;
+    }
+
+    int dim = field.getRangeDimension();
+    Unit[] thisUnits = (Unit[]) field.RangeUnits.clone();
+    Unit[] thatUnits = new Unit[dim];
+    Unit[][] data_units = data.getRangeUnits();
+    for (int j=0; j<dim; j++) thatUnits[j] = data_units[j][0];
+    Unit[] thisTo = new Unit[dim];
+    Unit[] thisFrom = new Unit[dim];
+    Unit[] thatTo = new Unit[dim];
+    Unit[] thatFrom = new Unit[dim];
+    Unit[] outUnits;
+    try {
+      outUnits = binaryUnits(op, thisUnits, thisTo, thisFrom,
+                             thatUnits, thatTo, thatFrom);
+    }
+    catch (UnitException e) {
+      // let the immediate computation report it
+      return null;
+    }
+    if (outUnits == null) return null;
+
+    boolean isDouble = field.shouldBeDouble() && data.shouldBeDouble();
+    Node left = convert(operand(field), thisTo, thisFrom, isDouble);
+    Node right = convert(operand(data), thatTo, thatFrom, isDouble);
+    return make(field, (FunctionType) new_type, outUnits,
+                new BinaryNode(op, left, right, isDouble));
+  }
+
+  /**
+   * Return a DeferredFlatField for 'field op data', or null if the
+   * operation cannot be deferred.
+   */
+  static FlatField deferBinary(FlatField field, Real data, int op,
+                          MathType new_type, int error_mode)
+         throws VisADException {
+    if (!shouldDefer(field, data)) return null;
+    int dim = field.getRangeDimension();
+    ErrorEstimate[] thatErrs = new ErrorEstimate[dim];
+    for (int j=0; j<dim; j++) thatErrs[j] = data.getError();
+    if (needErrors(error_mode, field.getRangeErrors(), thatErrs)) {
+      return null;
+    }
+
+    Unit[] thisUnits = (Unit[]) field.RangeUnits.clone();
+    Unit[] thatUnits = new Unit[dim];
+    for (int j=0; j<dim; j++) thatUnits[j] = data.getUnit();
+    Unit[] thisTo = new Unit[dim];
+    Unit[] thisFrom = new Unit[dim];
+    Unit[] thatTo = new Unit[dim];
+    Unit[] thatFrom = new Unit[dim];
+    Unit[] outUnits;
+    double[] values = new double[dim];
+    try {
+      outUnits = binaryUnits(op, thisUnits, thisTo, thisFrom,
+                             thatUnits, thatTo, thatFrom);
+      if (outUnits == null) return null;
+      for (int j=0; j<dim; j++) {
+        values[j] = data.getValue();
+        if (thatTo[j] != null) {
+          values[j] = thatTo[j].toThis(values[j], thatFrom[j]);
+        }
+      }
+    }
+    catch (UnitException e) {
+      return null;
+    }
+
+    boolean isDouble = field.shouldBeDouble();
+    Node left = convert(operand(field), thisTo, thisFrom, isDouble);
+    return make(field, (FunctionType) new_type, outUnits,
+                new ConstantNode(op, left, values, isDouble));
+  }
+
+  /**
+   * Return a DeferredFlatField for 'op field', or null if the
+   * operation cannot be deferred.
+   */
+  static FlatField deferUnary(FlatField field, int op, MathType new_type,
+                         int error_mode)
+         throws VisADException {
+    if (!shouldDefer(field, null)) return null;
+    if (needErrors(error_mode, field.getRangeErrors(), null)) return null;
+
+    int dim = field.getRangeDimension();
+    Unit[] units_in = (Unit[]) field.RangeUnits.clone();
+    Unit[] to = new Unit[dim];
+    Unit[] from = new Unit[dim];
+    // same conversions as FlatField.makeRational
+    for (int j=0; j<dim; j++) {
+      Unit inputUnit = units_in[j];
+      if (inputUnit != null && !(inputUnit instanceof PromiscuousUnit)) {
+        Unit outputUnit = inputUnit.getAbsoluteUnit();
+        if (Unit.canConvert(outputUnit, CommonUnit.dimensionless)) {
+          outputUnit = CommonUnit.dimensionless;
+        }
+        if (!outputUnit.equals(inputUnit)) {
+          if (!Unit.canConvert(outputUnit, inputUnit)) return null;
+          to[j] = outputUnit;
+          from[j] = inputUnit;
+          units_in[j] = outputUnit;
+        }
+      }
+    }
+
+    Unit[] units_out = new Unit[dim];
+    boolean[] flags = new boolean[dim];
+    for (int j=0; j<dim; j++) {
+      switch (op) {
+        case ABS:
+        case CEIL:
+        case FLOOR:
+        case RINT:
+        case ROUND:
+        case NEGATE:
+        case NOP:
+          units_out[j] = units_in[j];
+          break;
+        case ACOS:
+        case ASIN:
+        case ATAN:
+          units_out[j] = CommonUnit.radian;
+          break;
+        case ACOS_DEGREES:
+        case ASIN_DEGREES:
+        case ATAN_DEGREES:
+          units_out[j] = CommonUnit.degree;
+          break;
+        case COS:
+        case SIN:
+        case TAN:
+          // arguments in degrees are converted to radians
+          flags[j] = CommonUnit.degree.equals(units_in[j]);
+          units_out[j] =
+            CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
+          break;
+        case COS_DEGREES:
+        case SIN_DEGREES:
+        case TAN_DEGREES:
+          // arguments in radians are not converted
+          flags[j] = CommonUnit.radian.equals(units_in[j]);
+          units_out[j] =
+            CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
+          break;
+        case EXP:
+        case LOG:
+          units_out[j] =
+            CommonUnit.dimensionless.equals(units_in[j]) ? units_in[j] : null;
+          break;
+        case SQRT:
+          if (units_in[j] == null) {
+            units_out[j] = null;
+          }
+          else {
+            try {
+              units_out[j] = units_in[j].sqrt();
+            }
+            catch (IllegalArgumentException e) {
+              units_out[j] = null;
+            }
+            catch (UnitException e) {
+              units_out[j] = null;
+            }
+          }
+          break;
+        default:
+          return null;
+      }
+    }
+
+    boolean isDouble = field.shouldBeDouble();
+    Node child = convert(operand(field), to, from, isDouble);
+    return make(field, (FunctionType) new_type, units_out,
+                new UnaryNode(op, child, flags, isDouble));
+  }
+
+  /**
+   * Work out the output Units of a binary operation the way
+   * FlatField.binary does, recording the conversions it applies to
+   * each operand in the 'to' and 'from' arrays.  Returns null if the
+   * Units are inconvertible and the immediate computation should
+   * decide what to do.
+   */
+  private static Unit[] binaryUnits(int op, Unit[] thisUnits, Unit[] thisTo,
+                                    Unit[] thisFrom, Unit[] thatUnits,
+                                    Unit[] thatTo, Unit[] thatFrom)
+          throws UnitException {
+    int dim = thisUnits.length;
+    Unit[] outUnits = new Unit[dim];
+    for (int j=0; j<dim; j++) {
+      switch (op) {
+        case ADD:
+        case SUBTRACT:
+        case INV_SUBTRACT:
+        case MAX:
+        case MIN:
+          if (thisUnits[j] == null || thatUnits[j] == null) {
+            outUnits[j] = null;
+          }
+          else if (thisUnits[j] == CommonUnit.promiscuous) {
+            outUnits[j] = thatUnits[j].getAbsoluteUnit();
+          }
+          else if (thatUnits[j] == CommonUnit.promiscuous) {
+            outUnits[j] = thisUnits[j].getAbsoluteUnit();
+          }
+          else {
+            outUnits[j] = thisUnits[j].getAbsoluteUnit();
+            if (!Unit.canConvert(outUnits[j], thisUnits[j]) ||
+                !Unit.canConvert(outUnits[j], thatUnits[j])) {
+              return null;
+            }
+            if (!outUnits[j].equals(thisUnits[j])) {
+              thisTo[j] = outUnits[j];
+              thisFrom[j] = thisUnits[j];
+            }
+            if (!outUnits[j].equals(thatUnits[j])) {
+              thatTo[j] = outUnits[j];
+              thatFrom[j] = thatUnits[j];
+            }
+          }
+          break;
+
+        case MULTIPLY:
+        case DIVIDE:
+        case INV_DIVIDE:
+          absolute(j, thisUnits, thisTo, thisFrom);
+          absolute(j, thatUnits, thatTo, thatFrom);
+          if (thisUnits[j] == null || thatUnits[j] == null) {
+            outUnits[j] = null;
+          }
+          else if (op == MULTIPLY) {
+            outUnits[j] =
+              thisUnits[j].equals(CommonUnit.promiscuous)
+                ? thatUnits[j]
+                : thatUnits[j].equals(CommonUnit.promiscuous)
+                  ? thisUnits[j]
+                  : thisUnits[j].multiply(thatUnits[j]);
+          }
+          else if (op == DIVIDE) {
+            outUnits[j] =
+              thatUnits[j].equals(CommonUnit.promiscuous)
+                ? thisUnits[j]
+                : thisUnits[j].divide(thatUnits[j]);
+          }
+          else {
+            outUnits[j] =
+              thisUnits[j].equals(CommonUnit.promiscuous)
+                ? thatUnits[j]
+                : thatUnits[j].divide(thisUnits[j]);
+          }
+          break;
+
+        case POW:
+          absolute(j, thisUnits, thisTo, thisFrom);
+          if (!CommonUnit.promiscuous.equals(thatUnits[j])) {
+            absolute(j, thatUnits, thatTo, thatFrom);
+          }
+          outUnits[j] = thisUnits[j] != null &&
+                        (thisUnits[j].equals(CommonUnit.promiscuous) ||
+                         thisUnits[j].equals(CommonUnit.dimensionless))
+                        ? thisUnits[j] : null;
+          break;
+
+        case INV_POW:
+          absolute(j, thatUnits, thatTo, thatFrom);
+          if (!CommonUnit.promiscuous.equals(thisUnits[j])) {
+            absolute(j, thisUnits, thisTo, thisFrom);
+          }
+          outUnits[j] = thatUnits[j] != null &&
+                        (thatUnits[j].equals(CommonUnit.promiscuous) ||
+                         thatUnits[j].equals(CommonUnit.dimensionless))
+                        ? thatUnits[j] : null;
+          break;
+
+        case ATAN2:
+        case ATAN2_DEGREES:
+        case INV_ATAN2:
+        case INV_ATAN2_DEGREES:
+        case REMAINDER:
+        case INV_REMAINDER:
+          if (thisUnits[j] != null && thatUnits[j] != null) {
+            Unit absUnit = thisUnits[j].getAbsoluteUnit();
+            if (!Unit.canConvert(absUnit, thatUnits[j])) return null;
+            if (!absUnit.equals(thisUnits[j])) {
+              thisTo[j] = absUnit;
+              thisFrom[j] = thisUnits[j];
+              thisUnits[j] = absUnit;
+            }
+            if (!absUnit.equals(thatUnits[j])) {
+              thatTo[j] = absUnit;
+              thatFrom[j] = thatUnits[j];
+              thatUnits[j] = absUnit;
+            }
+          }
+          if (op == ATAN2 || op == INV_ATAN2) {
+            outUnits[j] = CommonUnit.radian;
+          }
+          else if (op == ATAN2_DEGREES || op == INV_ATAN2_DEGREES) {
+            outUnits[j] = CommonUnit.degree;
+          }
+          else if (op == REMAINDER) {
+            outUnits[j] = thisUnits[j];
+          }
+          else {
+            outUnits[j] = thatUnits[j];
+          }
+          break;
+
+        default:
+          return null;
+      }
+    }
+    return outUnits;
+  }
+
+  /** convert component j of units to its absolute Unit */
+  private static void absolute(int j, Unit[] units, Unit[] to, Unit[] from) {
+    if (units[j] != null) {
+      Unit absUnit = units[j].getAbsoluteUnit();
+      if (!absUnit.equals(units[j])) {
+        to[j] = absUnit;
+        from[j] = units[j];
+        units[j] = absUnit;
+      }
+    }
+  }
+
+  private static Node convert(Node node, Unit[] to, Unit[] from,
+                              boolean isDouble) {
+    for (int j=0; j<to.length; j++) {
+      if (to[j] != null) return new ConvertNode(node, to, from, isDouble);
+    }
+    return node;
+  }
+
+  /*
+   * The remaining methods make sure the range values are computed
+   * before FlatField touches them.
+   */
+
+  public boolean isMissing() {
+    if (getExpression() != null) return false;
+    return super.isMissing();
+  }
+
+  public byte[][] grabBytes() {
+    try {
+      evaluateDeferred();
+    }
+    catch (VisADException e) {
+      throw new RuntimeException(e.toString());
+    }
+    return super.grabBytes();
+  }
+
+  protected double[][] unpackValues(boolean copy) throws VisADException {
+    evaluateDeferred();
+    return super.unpackValues(copy);
+  }
+
+  protected float[][] unpackFloats(boolean copy) throws VisADException {
+    evaluateDeferred();
+    return super.unpackFloats(copy);
+  }
+
+  protected double[] unpackOneRangeComp(int comp, boolean copy)
+            throws VisADException {
+    evaluateDeferred();
+    return super.unpackOneRangeComp(comp, copy);
+  }
+
+  protected float[] unpackOneFloatRangeComp(int comp, boolean copy)
+            throws VisADException {
+    evaluateDeferred();
+    return super.unpackOneFloatRangeComp(comp, copy);
+  }
+
+  public void unpackValues(int comp, int start, double[] values)
+         throws VisADException {
+    evaluateDeferred();
+    unpackStoredValues(comp, start, values);
+  }
+
+  protected double[] unpackValues(int s_index) throws VisADException {
+    evaluateDeferred();
+    return super.unpackValues(s_index);
+  }
+
+  protected float[] unpackFloats(int s_index) throws VisADException {
+    evaluateDeferred();
+    return super.unpackFloats(s_index);
+  }
+
+  public Data getSample(int index) throws VisADException, RemoteException {
+    evaluateDeferred();
+    return super.getSample(index);
+  }
+
+  public void setSample(int index, Data range)
+         throws VisADException, RemoteException {
+    evaluateDeferred();
+    super.setSample(index, range);
+  }
+
+  public void setSamples(int start, double[][] range)
+         throws VisADException, RemoteException {
+    evaluateDeferred();
+    super.setSamples(start, range);
+  }
+
+  public void setSamples(int[] indices, double[][] range)
+         throws VisADException, RemoteException {
+    evaluateDeferred();
+    super.setSamples(indices, range);
+  }
+
+  public void setSamples(double[][] range, ErrorEstimate[] errors,
+              boolean copy) throws VisADException, RemoteException {
+    evaluateDependents();
+    dropExpression();
+    super.setSamples(range, errors, copy);
+  }
+
+  public void setSamples(float[][] range, ErrorEstimate[] errors,
+              boolean copy) throws VisADException, RemoteException {
+    evaluateDependents();
+    dropExpression();
+    super.setSamples(range, errors, copy);
+  }
+
+  public void setPackedSamples(int comp, short[] values, boolean copy)
+         throws VisADException, RemoteException {
+    evaluateDeferred();
+    super.setPackedSamples(comp, values, copy);
+  }
+
+  public void setPackedSamples(int comp, byte[] values, boolean copy)
+         throws VisADException, RemoteException {
+    evaluateDeferred();
+    super.setPackedSamples(comp, values, copy);
+  }
+
+  public Object clone() {
+    try {
+      evaluateDeferred();
+    }
+    catch (VisADException e) {
+      throw new RuntimeException(e.toString());
+    }
+    return super.clone();
+  }
+
+  /**
+   * Compute the range values before this is serialized.
+   * @return this
+   * @throws ObjectStreamException never
+   */
+  protected Object writeReplace() throws ObjectStreamException {
+    try {
+      evaluateDeferred();
+    }
+    catch (VisADException e) {
+      throw new RuntimeException(e.toString());
+    }
+    return this;
+  }
+
+  /**
+   * The DeferredFlatFields whose expressions read the range values of
+   * a FlatField.  They are held weakly, so that results nobody uses
+   * any more are not kept, or computed, on behalf of their operands.
+   */
+  static final class Dependents {
+    private final ArrayList<WeakReference<DeferredFlatField>> list =
+      new ArrayList<WeakReference<DeferredFlatField>>();
+    /** size at which to drop collected and evaluated dependents */
+    private int pruneSize = 16;
+
+    synchronized void add(DeferredFlatField dependent) {
+      if (list.size() >= pruneSize) {
+        Iterator<WeakReference<DeferredFlatField>> it = list.iterator();
+        while (it.hasNext()) {
+          DeferredFlatField d = it.next().get();
+          if (d == null || d.isEvaluated()) it.remove();
+        }
+        pruneSize = Math.max(16, 2 * list.size());
+      }
+      list.add(new WeakReference<DeferredFlatField>(dependent));
+    }
+
+    /** compute the range values of all dependents not yet computed */
+    void evaluate() throws VisADException {
+      ArrayList<WeakReference<DeferredFlatField>> refs;
+      synchronized (this) {
+        if (list.isEmpty()) return;
+        refs = new ArrayList<WeakReference<DeferredFlatField>>(list);
+        list.clear();
+      }
+      for (WeakReference<DeferredFlatField> ref : refs) {
+        DeferredFlatField d = ref.get();
+        if (d != null) d.evaluateDeferred();
+      }
+    }
+  }
+
+  /**
+   * Scratch space and unpacked operand values for one evaluation.
+   */
+  private static class Context {
+    private final int chunk;
+    private final IdentityHashMap<FlatField, float[][]> floats =
+      new IdentityHashMap<FlatField, float[][]>();
+    private final IdentityHashMap<FlatField, double[][]> doubles =
+      new IdentityHashMap<FlatField, double[][]>();
+    private final ArrayList<float[]> floatStack = new ArrayList<float[]>();
+    private final ArrayList<double[]> doubleStack = new ArrayList<double[]>();
+    private int floatTop = 0;
+    private int doubleTop = 0;
+
+    Context(int chunk) {
+      this.chunk = chunk;
+    }
+
+    float[][] floats(FlatField field) throws VisADException {
+      float[][] values = floats.get(field);
+      if (values == null) {
+        values = field.unpackFloats(false);
+        floats.put(field, values);
+      }
+      return values;
+    }
+
+    double[][] doubles(FlatField field) throws VisADException {
+      double[][] values = doubles.get(field);
+      if (values == null) {
+        values = field.unpackValues(false);
+        doubles.put(field, values);
+      }
+      return values;
+    }
+
+    float[] pushFloat() {
+      if (floatTop == floatStack.size()) floatStack.add(new float[chunk]);
+      return floatStack.get(floatTop++);
+    }
+
+    void popFloat() {
+      floatTop--;
+    }
+
+    double[] pushDouble() {
+      if (doubleTop == doubleStack.size()) {
+        doubleStack.add(new double[chunk]);
+      }
+      return doubleStack.get(doubleTop++);
+    }
+
+    void popDouble() {
+      doubleTop--;
+    }
+  }
+
+  /**
+   * A node of a deferred expression.  Each node computes in float or
+   * double precision, as the corresponding FlatField operation would.
+   */
+  private static abstract class Node {
+    final boolean isDouble;
+    final int depth;
+
+    Node(boolean isDouble, int depth) {
+      this.isDouble = isDouble;
+      this.depth = depth;
+    }
+
+    /** put the FlatFields this node reads into leaves */
+    abstract void addLeaves(IdentityHashMap<FlatField, Boolean> leaves);
+
+    /** compute count values of component comp in float precision */
+    abstract void compute(Context ctx, int comp, int start, int count,
+                          float[] out, int off) throws VisADException;
+
+    /** compute count values of component comp in double precision */
+    abstract void compute(Context ctx, int comp, int start, int count,
+                          double[] out, int off) throws VisADException;
+
+    /** values as floats, like FlatField.unpackFloats */
+    void evaluate(Context ctx, int comp, int start, int count,
+                  float[] out, int off) throws VisADException {
+      if (!isDouble) {
+        compute(ctx, comp, start, count, out, off);
+        return;
+      }
+      double[] tmp = ctx.pushDouble();
+      compute(ctx, comp, start, count, tmp, 0);
+      for (int i=0; i<count; i++) out[off + i] = (float) tmp[i];
+      ctx.popDouble();
+    }
+
+    /** values as doubles, like FlatField.unpackValues */
+    void evaluate(Context ctx, int comp, int start, int count,
+                  double[] out, int off) throws VisADException {
+      if (isDouble) {
+        compute(ctx, comp, start, count, out, off);
+        return;
+      }
+      float[] tmp = ctx.pushFloat();
+      compute(ctx, comp, start, count, tmp, 0);
+      for (int i=0; i<count; i++) out[off + i] = (double) tmp[i];
+      ctx.popFloat();
+    }
+  }
+
+  /** the range values of a FlatField */
+  private static class Leaf extends Node {
+    private final FlatField field;
+
+    Leaf(FlatField field) {
+      super(field.shouldBeDouble(), 0);
+      this.field = field;
+    }
+
+    void addLeaves(IdentityHashMap<FlatField, Boolean> leaves) {
+      leaves.put(field, Boolean.TRUE);
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 float[] out, int off) throws VisADException {
+      System.arraycopy(ctx.floats(field)[comp], start, out, off, count);
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 double[] out, int off) throws VisADException {
+      System.arraycopy(ctx.doubles(field)[comp], start, out, off, count);
+    }
+
+    void evaluate(Context ctx, int comp, int start, int count,
+                  float[] out, int off) throws VisADException {
+      compute(ctx, comp, start, count, out, off);
+    }
+
+    void evaluate(Context ctx, int comp, int start, int count,
+                  double[] out, int off) throws VisADException {
+      compute(ctx, comp, start, count, out, off);
+    }
+  }
+
+  /** Unit conversion of an operand, in the precision of the operation */
+  private static class ConvertNode extends Node {
+    private final Node child;
+    private final Unit[] to;
+    private final Unit[] from;
+
+    ConvertNode(Node child, Unit[] to, Unit[] from, boolean isDouble) {
+      super(isDouble, child.depth + 1);
+      this.child = child;
+      this.to = (Unit[]) to.clone();
+      this.from = (Unit[]) from.clone();
+    }
+
+    void addLeaves(IdentityHashMap<FlatField, Boolean> leaves) {
+      child.addLeaves(leaves);
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 float[] out, int off) throws VisADException {
+      if (to[comp] == null) {
+        child.evaluate(ctx, comp, start, count, out, off);
+        return;
+      }
+      float[] tmp = ctx.pushFloat();
+      child.evaluate(ctx, comp, start, count, tmp, 0);
+      float[] values = to[comp].toThis(tmp, from[comp], false);
+      System.arraycopy(values, 0, out, off, count);
+      ctx.popFloat();
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 double[] out, int off) throws VisADException {
+      if (to[comp] == null) {
+        child.evaluate(ctx, comp, start, count, out, off);
+        return;
+      }
+      double[] tmp = ctx.pushDouble();
+      child.evaluate(ctx, comp, start, count, tmp, 0);
+      double[] values = to[comp].toThis(tmp, from[comp], false);
+      System.arraycopy(values, 0, out, off, count);
+      ctx.popDouble();
+    }
+  }
+
+  /** 'left op right' for two FlatFields, as in FlatField.binary */
+  private static class BinaryNode extends Node {
+    private final int op;
+    private final Node left;
+    private final Node right;
+
+    BinaryNode(int op, Node left, Node right, boolean isDouble) {
+      super(isDouble, Math.max(left.depth, right.depth) + 1);
+      this.op = op;
+      this.left = left;
+      this.right = right;
+    }
+
+    void addLeaves(IdentityHashMap<FlatField, Boolean> leaves) {
+      left.addLeaves(leaves);
+      right.addLeaves(leaves);
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 float[] out, int off) throws VisADException {
+      left.evaluate(ctx, comp, start, count, out, off);
+      float[] b = ctx.pushFloat();
+      right.evaluate(ctx, comp, start, count, b, 0);
+      int end = off + count;
+      int i, k;
+      switch (op) {
+        case ADD:
+          for (i=off, k=0; i<end; i++, k++) out[i] += b[k];
+          break;
+        case SUBTRACT:
+          for (i=off, k=0; i<end; i++, k++) out[i] -= b[k];
+          break;
+        case INV_SUBTRACT:
+          for (i=off, k=0; i<end; i++, k++) out[i] = b[k] - out[i];
+          break;
+        case MAX:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.max(out[i], b[k]);
+          break;
+        case MIN:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.min(out[i], b[k]);
+          break;
+        case MULTIPLY:
+          for (i=off, k=0; i<end; i++, k++) out[i] *= b[k];
+          break;
+        case DIVIDE:
+          for (i=off, k=0; i<end; i++, k++) out[i] /= b[k];
+          break;
+        case INV_DIVIDE:
+          for (i=off, k=0; i<end; i++, k++) out[i] = b[k] / out[i];
+          break;
+        case POW:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = (float) (Math.pow(out[i], b[k]));
+          }
+          break;
+        case INV_POW:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = (float) (Math.pow(b[k], out[i]));
+          }
+          break;
+        case ATAN2:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = (float) (Math.atan2(out[i], b[k]));
+          }
+          break;
+        case ATAN2_DEGREES:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES *
+                              Math.atan2(out[i], b[k]));
+          }
+          break;
+        case INV_ATAN2:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = (float) (Math.atan2(b[k], out[i]));
+          }
+          break;
+        case INV_ATAN2_DEGREES:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES *
+                              Math.atan2(b[k], out[i]));
+          }
+          break;
+        case REMAINDER:
+          for (i=off, k=0; i<end; i++, k++) out[i] %= b[k];
+          break;
+        case INV_REMAINDER:
+          for (i=off, k=0; i<end; i++, k++) out[i] = b[k] % out[i];
+          break;
+        default:
+          throw new ArithmeticException("DeferredFlatField: illegal operation");
+      }
+      ctx.popFloat();
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 double[] out, int off) throws VisADException {
+      left.evaluate(ctx, comp, start, count, out, off);
+      double[] b = ctx.pushDouble();
+      right.evaluate(ctx, comp, start, count, b, 0);
+      int end = off + count;
+      int i, k;
+      switch (op) {
+        case ADD:
+          for (i=off, k=0; i<end; i++, k++) out[i] += b[k];
+          break;
+        case SUBTRACT:
+          for (i=off, k=0; i<end; i++, k++) out[i] -= b[k];
+          break;
+        case INV_SUBTRACT:
+          for (i=off, k=0; i<end; i++, k++) out[i] = b[k] - out[i];
+          break;
+        case MAX:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.max(out[i], b[k]);
+          break;
+        case MIN:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.min(out[i], b[k]);
+          break;
+        case MULTIPLY:
+          for (i=off, k=0; i<end; i++, k++) out[i] *= b[k];
+          break;
+        case DIVIDE:
+          for (i=off, k=0; i<end; i++, k++) out[i] /= b[k];
+          break;
+        case INV_DIVIDE:
+          for (i=off, k=0; i<end; i++, k++) out[i] = b[k] / out[i];
+          break;
+        case POW:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.pow(out[i], b[k]);
+          break;
+        case INV_POW:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.pow(b[k], out[i]);
+          break;
+        case ATAN2:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.atan2(out[i], b[k]);
+          break;
+        case ATAN2_DEGREES:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.atan2(out[i], b[k]);
+          }
+          break;
+        case INV_ATAN2:
+          for (i=off, k=0; i<end; i++, k++) out[i] = Math.atan2(b[k], out[i]);
+          break;
+        case INV_ATAN2_DEGREES:
+          for (i=off, k=0; i<end; i++, k++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.atan2(b[k], out[i]);
+          }
+          break;
+        case REMAINDER:
+          for (i=off, k=0; i<end; i++, k++) out[i] %= b[k];
+          break;
+        case INV_REMAINDER:
+          for (i=off, k=0; i<end; i++, k++) out[i] = b[k] % out[i];
+          break;
+        default:
+          throw new ArithmeticException("DeferredFlatField: illegal operation");
+      }
+      ctx.popDouble();
+    }
+  }
+
+  /**
+   * 'left op value' for a FlatField and a Real; as in FlatField.binary
+   * the arithmetic is done in double even for float results.
+   */
+  private static class ConstantNode extends Node {
+    private final int op;
+    private final Node left;
+    private final double[] values;
+
+    ConstantNode(int op, Node left, double[] values, boolean isDouble) {
+      super(isDouble, left.depth + 1);
+      this.op = op;
+      this.left = left;
+      this.values = values;
+    }
+
+    void addLeaves(IdentityHashMap<FlatField, Boolean> leaves) {
+      left.addLeaves(leaves);
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 float[] out, int off) throws VisADException {
+      left.evaluate(ctx, comp, start, count, out, off);
+      double c = values[comp];
+      int end = off + count;
+      int i;
+      switch (op) {
+        case ADD:
+          for (i=off; i<end; i++) out[i] += c;
+          break;
+        case SUBTRACT:
+          for (i=off; i<end; i++) out[i] -= c;
+          break;
+        case INV_SUBTRACT:
+          for (i=off; i<end; i++) out[i] = (float) (c - out[i]);
+          break;
+        case MAX:
+          for (i=off; i<end; i++) out[i] = (float) (Math.max(out[i], c));
+          break;
+        case MIN:
+          for (i=off; i<end; i++) out[i] = (float) (Math.min(out[i], c));
+          break;
+        case MULTIPLY:
+          for (i=off; i<end; i++) out[i] *= c;
+          break;
+        case DIVIDE:
+          for (i=off; i<end; i++) out[i] /= c;
+          break;
+        case INV_DIVIDE:
+          for (i=off; i<end; i++) out[i] = (float) (c / out[i]);
+          break;
+        case POW:
+          for (i=off; i<end; i++) out[i] = (float) (Math.pow(out[i], c));
+          break;
+        case INV_POW:
+          for (i=off; i<end; i++) out[i] = (float) (Math.pow(c, out[i]));
+          break;
+        case ATAN2:
+          for (i=off; i<end; i++) out[i] = (float) (Math.atan2(out[i], c));
+          break;
+        case ATAN2_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan2(out[i], c));
+          }
+          break;
+        case INV_ATAN2:
+          for (i=off; i<end; i++) out[i] = (float) (Math.atan2(c, out[i]));
+          break;
+        case INV_ATAN2_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan2(c, out[i]));
+          }
+          break;
+        case REMAINDER:
+          for (i=off; i<end; i++) out[i] %= c;
+          break;
+        case INV_REMAINDER:
+          for (i=off; i<end; i++) out[i] = (float) (c % out[i]);
+          break;
+        default:
+          throw new ArithmeticException("DeferredFlatField: illegal operation");
+      }
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 double[] out, int off) throws VisADException {
+      left.evaluate(ctx, comp, start, count, out, off);
+      double c = values[comp];
+      int end = off + count;
+      int i;
+      switch (op) {
+        case ADD:
+          for (i=off; i<end; i++) out[i] += c;
+          break;
+        case SUBTRACT:
+          for (i=off; i<end; i++) out[i] -= c;
+          break;
+        case INV_SUBTRACT:
+          for (i=off; i<end; i++) out[i] = c - out[i];
+          break;
+        case MAX:
+          for (i=off; i<end; i++) out[i] = Math.max(out[i], c);
+          break;
+        case MIN:
+          for (i=off; i<end; i++) out[i] = Math.min(out[i], c);
+          break;
+        case MULTIPLY:
+          for (i=off; i<end; i++) out[i] *= c;
+          break;
+        case DIVIDE:
+          for (i=off; i<end; i++) out[i] /= c;
+          break;
+        case INV_DIVIDE:
+          for (i=off; i<end; i++) out[i] = c / out[i];
+          break;
+        case POW:
+          for (i=off; i<end; i++) out[i] = Math.pow(out[i], c);
+          break;
+        case INV_POW:
+          for (i=off; i<end; i++) out[i] = Math.pow(c, out[i]);
+          break;
+        case ATAN2:
+          for (i=off; i<end; i++) out[i] = Math.atan2(out[i], c);
+          break;
+        case ATAN2_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.atan2(out[i], c);
+          }
+          break;
+        case INV_ATAN2:
+          for (i=off; i<end; i++) out[i] = Math.atan2(c, out[i]);
+          break;
+        case INV_ATAN2_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.atan2(c, out[i]);
+          }
+          break;
+        case REMAINDER:
+          for (i=off; i<end; i++) out[i] %= c;
+          break;
+        case INV_REMAINDER:
+          for (i=off; i<end; i++) out[i] = c % out[i];
+          break;
+        default:
+          throw new ArithmeticException("DeferredFlatField: illegal operation");
+      }
+    }
+  }
+
+  /** 'op child', as in FlatField.unary */
+  private static class UnaryNode extends Node {
+    private final int op;
+    private final Node child;
+    // per component: input in degrees (COS, SIN, TAN) or
+    // in radians (COS_DEGREES, SIN_DEGREES, TAN_DEGREES)
+    private final boolean[] flags;
+
+    UnaryNode(int op, Node child, boolean[] flags, boolean isDouble) {
+      super(isDouble, child.depth + 1);
+      this.op = op;
+      this.child = child;
+      this.flags = flags;
+    }
+
+    void addLeaves(IdentityHashMap<FlatField, Boolean> leaves) {
+      child.addLeaves(leaves);
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 float[] out, int off) throws VisADException {
+      child.evaluate(ctx, comp, start, count, out, off);
+      int end = off + count;
+      int i;
+      switch (op) {
+        case ABS:
+          for (i=off; i<end; i++) out[i] = Math.abs(out[i]);
+          break;
+        case ACOS:
+          for (i=off; i<end; i++) out[i] = (float) (Math.acos(out[i]));
+          break;
+        case ACOS_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES * Math.acos(out[i]));
+          }
+          break;
+        case ASIN:
+          for (i=off; i<end; i++) out[i] = (float) (Math.asin(out[i]));
+          break;
+        case ASIN_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES * Math.asin(out[i]));
+          }
+          break;
+        case ATAN:
+          for (i=off; i<end; i++) out[i] = (float) (Math.atan(out[i]));
+          break;
+        case ATAN_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = (float) (Data.RADIANS_TO_DEGREES * Math.atan(out[i]));
+          }
+          break;
+        case CEIL:
+          for (i=off; i<end; i++) out[i] = (float) (Math.ceil(out[i]));
+          break;
+        case COS:
+        case COS_DEGREES:
+          if (flags[comp] == (op == COS)) {
+            for (i=off; i<end; i++) {
+              out[i] = (float) (Math.cos(Data.DEGREES_TO_RADIANS * out[i]));
+            }
+          }
+          else {
+            for (i=off; i<end; i++) out[i] = (float) (Math.cos(out[i]));
+          }
+          break;
+        case EXP:
+          for (i=off; i<end; i++) out[i] = (float) (Math.exp(out[i]));
+          break;
+        case FLOOR:
+          for (i=off; i<end; i++) out[i] = (float) (Math.floor(out[i]));
+          break;
+        case LOG:
+          for (i=off; i<end; i++) out[i] = (float) (Math.log(out[i]));
+          break;
+        case RINT:
+          for (i=off; i<end; i++) out[i] = (float) (Math.rint(out[i]));
+          break;
+        case ROUND:
+          for (i=off; i<end; i++) out[i] = Math.round(out[i]);
+          break;
+        case SIN:
+        case SIN_DEGREES:
+          if (flags[comp] == (op == SIN)) {
+            for (i=off; i<end; i++) {
+              out[i] = (float) (Math.sin(Data.DEGREES_TO_RADIANS * out[i]));
+            }
+          }
+          else {
+            for (i=off; i<end; i++) out[i] = (float) (Math.sin(out[i]));
+          }
+          break;
+        case SQRT:
+          for (i=off; i<end; i++) out[i] = (float) (Math.sqrt(out[i]));
+          break;
+        case TAN:
+        case TAN_DEGREES:
+          if (flags[comp] == (op == TAN)) {
+            for (i=off; i<end; i++) {
+              out[i] = (float) (Math.tan(Data.DEGREES_TO_RADIANS * out[i]));
+            }
+          }
+          else {
+            for (i=off; i<end; i++) out[i] = (float) (Math.tan(out[i]));
+          }
+          break;
+        case NEGATE:
+          for (i=off; i<end; i++) out[i] = -out[i];
+          break;
+        case NOP:
+          break;
+        default:
+          throw new ArithmeticException("DeferredFlatField: illegal operation");
+      }
+    }
+
+    void compute(Context ctx, int comp, int start, int count,
+                 double[] out, int off) throws VisADException {
+      child.evaluate(ctx, comp, start, count, out, off);
+      int end = off + count;
+      int i;
+      switch (op) {
+        case ABS:
+          for (i=off; i<end; i++) out[i] = Math.abs(out[i]);
+          break;
+        case ACOS:
+          for (i=off; i<end; i++) out[i] = Math.acos(out[i]);
+          break;
+        case ACOS_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.acos(out[i]);
+          }
+          break;
+        case ASIN:
+          for (i=off; i<end; i++) out[i] = Math.asin(out[i]);
+          break;
+        case ASIN_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.asin(out[i]);
+          }
+          break;
+        case ATAN:
+          for (i=off; i<end; i++) out[i] = Math.atan(out[i]);
+          break;
+        case ATAN_DEGREES:
+          for (i=off; i<end; i++) {
+            out[i] = Data.RADIANS_TO_DEGREES * Math.atan(out[i]);
+          }
+          break;
+        case CEIL:
+          for (i=off; i<end; i++) out[i] = Math.ceil(out[i]);
+          break;
+        case COS:
+        case COS_DEGREES:
+          if (flags[comp] == (op == COS)) {
+            for (i=off; i<end; i++) {
+              out[i] = Math.cos(Data.DEGREES_TO_RADIANS * out[i]);
+            }
+          }
+          else {
+            for (i=off; i<end; i++) out[i] = Math.cos(out[i]);
+          }
+          break;
+        case EXP:
+          for (i=off; i<end; i++) out[i] = Math.exp(out[i]);
+          break;
+        case FLOOR:
+          for (i=off; i<end; i++) out[i] = Math.floor(out[i]);
+          break;
+        case LOG:
+          for (i=off; i<end; i++) out[i] = Math.log(out[i]);
+          break;
+        case RINT:
+          for (i=off; i<end; i++) out[i] = Math.rint(out[i]);
+          break;
+        case ROUND:
+          for (i=off; i<end; i++) out[i] = Math.round(out[i]);
+          break;
+        case SIN:
+        case SIN_DEGREES:
+          if (flags[comp] == (op == SIN)) {
+            for (i=off; i<end; i++) {
+              out[i] = Math.sin(Data.DEGREES_TO_RADIANS * out[i]);
+            }
+          }
+          else {
+            for (i=off; i<end; i++) out[i] = Math.sin(out[i]);
+          }
+          break;
+        case SQRT:
+          for (i=off; i<end; i++) out[i] = Math.sqrt(out[i]);
+          break;
+        case TAN:
+        case TAN_DEGREES:
+          if (flags[comp] == (op == TAN)) {
+            for (i=off; i<end; i++) {
+              out[i] = Math.tan(Data.DEGREES_TO_RADIANS * out[i]);
+            }
+          }
+          else {
+            for (i=off; i<end; i++) out[i] = Math.tan(out[i]);
+          }
+          break;
+        case NEGATE:
+          for (i=off; i<end; i++) out[i] = -out[i];
+          break;
+        case NOP:
+          break;
+        default:
+          throw new ArithmeticException("DeferredFlatField: illegal operation");
+      }
+    }
+  }
+
+}
@@ -136,8 +136,10 @@ public abstract class Delaunay implements java.io.Serializable {
    * The factory class method heuristically decides which extension
    * to the Delaunay abstract class to use in order to construct the
    * fastest triangulation, and calls that extension, returning the
-   * finished triangulation. The method chooses from among the Fast,
-   * Clarkson, and Watson methods.
+   * finished triangulation. The method chooses from among the
+   * Clarkson, Watson and Parallel methods; since the Parallel method
+   * is exact and at least as fast as the Fast method, the
+   * triangulation is exact whether or not exact is requested.
    * @param samples locations of points for topology - dimensioned
    *                float[dimension][number_of_points]
    * @param exact flag indicating need for exact Delaunay triangulation
@@ -149,20 +151,19 @@ public abstract class Delaunay implements java.io.Serializable {
 
     /* Note: Clarkson doesn't work well for very closely clumped site values,
              since the algorithm rounds each value to the nearest integer
-             before computing the triangulation.  This fact should probably
-             be taken into account in this factory algorithm, but as of yet
-             is not.  In other words, if you need an exact triangulation
-             and have more than 3000 data sites, and they have closely
-             clumped values, be sure to scale them up before calling the
-             factory method. */
+             before computing the triangulation.  In 2-D, large sets are
+             triangulated by the Parallel method, which does not round;
+             in 3-D, if you need an exact triangulation and have more
+             than 3000 data sites, and they have closely clumped values,
+             be sure to scale them up before calling the factory method. */
 
     /* Note: The factory method will not take new Delaunay extensions into
              account unless it is extended as well. */
 
     int choice;
-    int FAST = 0;
     int CLARKSON = 1;
     int WATSON = 2;
+    int PARALLEL = 3;
 
     int dim = samples.length;
     if (dim < 2) throw new VisADException("Delaunay.factory: "
@@ -177,9 +178,10 @@ public abstract class Delaunay implements java.io.Serializable {
       for (int i=1; i<dim; i++) {
         nrs = Math.min(nrs, samples[i].length);
       }
-      if (dim == 2 && !exact && nrs > 10000) {
-        // use fast in 2-D with a very large set and exact not required
-        choice = FAST;
+      if (dim == 2 && nrs > 3000) {
+        // use divide-and-conquer in 2-D with a large set; it is exact,
+        // and as fast as the Fast method even on one processor
+        choice = PARALLEL;
       }
       else if (nrs > 3000) {
         // use Clarkson for large sets
@@ -191,12 +193,6 @@ public abstract class Delaunay implements java.io.Serializable {
     }
 
     try {
-      if (choice == FAST) {
-        // triangulate with the Fast method and one improvement pass
-        DelaunayFast delan = new DelaunayFast(samples);
-        delan.improve(samples, 1);
-        return (Delaunay) delan;
-      }
       if (choice == CLARKSON) {
         // triangulate with the Clarkson method
         DelaunayClarkson delan = new DelaunayClarkson(samples);
@@ -207,6 +203,11 @@ public abstract class Delaunay implements java.io.Serializable {
         DelaunayWatson delan = new DelaunayWatson(samples);
         return (Delaunay) delan;
       }
+      if (choice == PARALLEL) {
+        // triangulate with the divide-and-conquer method
+        DelaunayParallel delan = new DelaunayParallel(samples);
+        return (Delaunay) delan;
+      }
     }
     catch (Exception e) {
       if (choice != CLARKSON) {
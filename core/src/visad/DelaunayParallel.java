@@ -0,0 +1,647 @@
+//
+// DelaunayParallel.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/* The triangulation algorithm in this class is the divide-and-conquer
+ * algorithm of Guibas and Stolfi, on their quad-edge data structure:
+ *
+ *    Guibas, L. and Stolfi, J., 1985, Primitives for the manipulation of
+ *          general subdivisions and the computation of Voronoi diagrams:
+ *                       ACM Transactions on Graphics, 4(2), p. 74-123.
+ *
+ * The orientation and in-circle tests filter the floating point result
+ * with the error bounds of Shewchuk, falling back to exact arithmetic
+ * only when the sign is in doubt:
+ *
+ *    Shewchuk, J.R., 1997, Adaptive precision floating-point arithmetic
+ *          and fast robust geometric predicates:
+ *                Discrete & Computational Geometry, 18(3), p. 305-363.
+ *                                                                        */
+
+/**
+   DelaunayParallel represents an O(N*log(N)) method to find the
+   exact Delaunay triangulation of a set of samples of R^2.  The
+   samples are sorted, and the two halves of each large subproblem
+   are triangulated concurrently on a fork-join pool before they
+   are merged.<P>
+
+   Sample values are used as given (there is no rounding to integers
+   as in DelaunayClarkson), so closely clumped samples need no
+   scaling.  Duplicate samples are triangulated once; the other
+   copies belong to no triangle.<P>
+
+   The number of threads defaults to the
+   <code>visad.delaunay.parallelism</code> system property, or to the
+   number of processors.<P>
+*/
+public class DelaunayParallel extends Delaunay {
+
+  /** number of threads triangulating concurrently */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.delaunay.parallelism",
+                       Runtime.getRuntime().availableProcessors()).intValue();
+
+  /** subproblems with at most this many samples are not split
+      across threads */
+  private static volatile int grainSize =
+    Integer.getInteger("visad.delaunay.grainsize", 16384).intValue();
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  /**
+   * construct a Delaunay triangulation of the points in the
+   * samples array using the divide-and-conquer algorithm of
+   * Guibas and Stolfi
+   * @param samples locations of points for topology - dimensioned
+   *                float[2][number_of_points]
+   * @throws VisADException a VisAD error occurred
+   */
+  public DelaunayParallel(float[][] samples) throws VisADException {
+    if (samples.length != 2) {
+      throw new VisADException("DelaunayParallel: dimension must be 2");
+    }
+    int nrs = Math.min(samples[0].length, samples[1].length);
+
+    // sort samples by x then y, and merge duplicates
+    int[] order = sort(samples[0], samples[1], nrs);
+    int[] unique = new int[nrs];
+    int n = 0;
+    for (int i=0; i<nrs; i++) {
+      int k = order[i];
+      if (n > 0) {
+        int l = unique[n - 1];
+        if (samples[0][k] == samples[0][l] &&
+            samples[1][k] == samples[1][l]) continue;
+      }
+      unique[n++] = k;
+    }
+    if (n < 3) {
+      throw new VisADException("DelaunayParallel: need at least 3 " +
+                               "distinct samples");
+    }
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i=0; i<n; i++) {
+      x[i] = samples[0][unique[i]];
+      y[i] = samples[1][unique[i]];
+    }
+
+    Mesh mesh = new Mesh(x, y);
+    int level = parallelism;
+    if (level > 1 && n > grainSize) {
+      getPool(level).invoke(new Build(mesh, 0, n, grainSize));
+    }
+    else {
+      mesh.build(0, n);
+    }
+    mesh.extract(this, unique, nrs);
+  }
+
+  /**
+   * Set the number of threads used to triangulate large sets.
+   * @param level number of threads; 1 (or less) triangulates sequentially
+   */
+  public static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  /**
+   * @return the number of threads used to triangulate large sets
+   */
+  public static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Set the largest number of samples triangulated by one thread
+   * before merging.
+   * @param size samples per subproblem
+   */
+  public static void setGrainSize(int size) {
+    grainSize = Math.max(4, size);
+  }
+
+  /**
+   * @return the largest number of samples triangulated by one thread
+   *         before merging
+   */
+  public static int getGrainSize() {
+    return grainSize;
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+  /** return the indices of the first nrs samples, sorted by x then y */
+  private static int[] sort(float[] xs, float[] ys, int nrs)
+          throws VisADException {
+    long[] keys = new long[nrs];
+    for (int i=0; i<nrs; i++) {
+      if (xs[i] != xs[i] || ys[i] != ys[i]) {
+        throw new VisADException("DelaunayParallel: missing sample " + i);
+      }
+      keys[i] = ((long) sortable(xs[i]) << 32) | i;
+    }
+    Arrays.sort(keys);
+    int[] order = new int[nrs];
+    for (int i=0; i<nrs; i++) order[i] = (int) keys[i];
+
+    // sort runs of equal x by y
+    int start = 0;
+    for (int i=1; i<=nrs; i++) {
+      if (i < nrs && xs[order[i]] == xs[order[start]]) continue;
+      if (i - start > 1) {
+        for (int j=start; j<i; j++) {
+          keys[j] = ((long) sortable(ys[order[j]]) << 32) | order[j];
+        }
+        Arrays.sort(keys, start, i);
+        for (int j=start; j<i; j++) order[j] = (int) keys[j];
+      }
+      start = i;
+    }
+    return order;
+  }
+
+  /** return an int that sorts as f does (with -0 equal to 0) */
+  private static int sortable(float f) {
+    int bits = Float.floatToIntBits(f + 0.0f);
+    return bits ^ ((bits >> 31) & 0x7fffffff);
+  }
+
+  /** triangulation of the sorted points lo .. hi-1, triangulating
+      halves concurrently while they are larger than grain */
+  private static class Build extends RecursiveTask<Part> {
+    private final Mesh mesh;
+    private final int lo, hi, grain;
+
+    Build(Mesh mesh, int lo, int hi, int grain) {
+      this.mesh = mesh;
+      this.lo = lo;
+      this.hi = hi;
+      this.grain = grain;
+    }
+
+    protected Part compute() {
+      if (hi - lo <= grain) return mesh.build(lo, hi);
+      int mid = lo + (hi - lo) / 2;
+      Build left = new Build(mesh, lo, mid, grain);
+      left.fork();
+      Part right = new Build(mesh, mid, hi, grain).compute();
+      return mesh.merge(left.join(), right);
+    }
+  }
+
+  /** triangulation of a range of points: its outermost edges,
+      and the free quad-edges of its share of the edge arrays */
+  private static final class Part {
+    /** ccw convex hull edge out of the leftmost point */
+    int ldo;
+    /** cw convex hull edge out of the rightmost point */
+    int rdo;
+    /** list of freed quad-edges, linked through next[] */
+    int freeHead = -1;
+    int freeTail = -1;
+    /** quad-edges bump .. end-1 have never been used */
+    int bump;
+    int end;
+
+    Part(int bump, int end) {
+      this.bump = bump;
+      this.end = end;
+    }
+  }
+
+  /** quad-edge structure over the sorted, distinct points;
+      a triangulation of points lo .. hi-1 only uses quad-edges
+      3*lo .. 3*hi-1, so disjoint ranges can be built concurrently */
+  private static final class Mesh {
+
+    private static final double EPSILON = 1.1102230246251565E-16;
+    private static final double CCW_BOUND = (3.0 + 16.0 * EPSILON) * EPSILON;
+    private static final double ICC_BOUND = (10.0 + 96.0 * EPSILON) * EPSILON;
+
+    private final double[] x, y;
+
+    /** onext of the 4 directed edges of each quad-edge: directed
+        edge e is rotation e&3 of quad-edge e>>2; rotations 0 and 2
+        are the primal edges, 1 and 3 their duals */
+    private final int[] next;
+
+    /** origin point of primal directed edge e, at org[e>>1];
+        -1 for free quad-edges */
+    private final int[] org;
+
+    Mesh(double[] x, double[] y) {
+      this.x = x;
+      this.y = y;
+      int quads = 3 * x.length;
+      next = new int[4 * quads];
+      org = new int[2 * quads];
+      Arrays.fill(org, -1);
+    }
+
+    private static int rot(int e) {
+      return (e & ~3) | ((e + 1) & 3);
+    }
+
+    private static int rotInv(int e) {
+      return (e & ~3) | ((e + 3) & 3);
+    }
+
+    private static int sym(int e) {
+      return e ^ 2;
+    }
+
+    private int oprev(int e) {
+      return rot(next[rot(e)]);
+    }
+
+    private int lnext(int e) {
+      return rot(next[rotInv(e)]);
+    }
+
+    private int rprev(int e) {
+      return next[sym(e)];
+    }
+
+    private int orig(int e) {
+      return org[e >> 1];
+    }
+
+    private int dest(int e) {
+      return org[sym(e) >> 1];
+    }
+
+    private int makeEdge(Part p, int a, int b) {
+      int q;
+      if (p.freeHead >= 0) {
+        q = p.freeHead;
+        p.freeHead = next[4 * q];
+        if (p.freeHead < 0) p.freeTail = -1;
+      }
+      else {
+        if (p.bump >= p.end) {
+          throw new VisADError("DelaunayParallel: out of edges");
+        }
+        q = p.bump++;
+      }
+      int e = 4 * q;
+      next[e] = e;
+      next[e + 1] = e + 3;
+      next[e + 2] = e + 2;
+      next[e + 3] = e + 1;
+      org[2 * q] = a;
+      org[2 * q + 1] = b;
+      return e;
+    }
+
+    private void splice(int a, int b) {
+      int alpha = rot(next[a]);
+      int beta = rot(next[b]);
+      int t = next[a];
+      next[a] = next[b];
+      next[b] = t;
+      t = next[alpha];
+      next[alpha] = next[beta];
+      next[beta] = t;
+    }
+
+    private int connect(Part p, int a, int b) {
+      int e = makeEdge(p, dest(a), orig(b));
+      splice(e, lnext(a));
+      splice(sym(e), b);
+      return e;
+    }
+
+    private void deleteEdge(Part p, int e) {
+      splice(e, oprev(e));
+      splice(sym(e), oprev(sym(e)));
+      int q = e >> 2;
+      org[2 * q] = -1;
+      org[2 * q + 1] = -1;
+      next[4 * q] = p.freeHead;
+      if (p.freeHead < 0) p.freeTail = q;
+      p.freeHead = q;
+    }
+
+    /** triangulate points lo .. hi-1 sequentially */
+    Part build(int lo, int hi) {
+      int n = hi - lo;
+      if (n == 2) {
+        Part p = new Part(3 * lo, 3 * hi);
+        int a = makeEdge(p, lo, lo + 1);
+        p.ldo = a;
+        p.rdo = sym(a);
+        return p;
+      }
+      if (n == 3) {
+        Part p = new Part(3 * lo, 3 * hi);
+        int a = makeEdge(p, lo, lo + 1);
+        int b = makeEdge(p, lo + 1, lo + 2);
+        splice(sym(a), b);
+        int o = orient(lo, lo + 1, lo + 2);
+        if (o > 0) {
+          connect(p, b, a);
+          p.ldo = a;
+          p.rdo = sym(b);
+        }
+        else if (o < 0) {
+          int c = connect(p, b, a);
+          p.ldo = sym(c);
+          p.rdo = c;
+        }
+        else {
+          p.ldo = a;
+          p.rdo = sym(b);
+        }
+        return p;
+      }
+      int mid = lo + n / 2;
+      Part left = build(lo, mid);
+      Part right = build(mid, hi);
+      return merge(left, right);
+    }
+
+    /** merge the triangulations of two adjacent ranges of points */
+    Part merge(Part left, Part right) {
+      // pool the free quad-edges of both ranges
+      for (int q=left.bump; q<left.end; q++) {
+        next[4 * q] = left.freeHead;
+        if (left.freeHead < 0) left.freeTail = q;
+        left.freeHead = q;
+      }
+      Part p = new Part(right.bump, right.end);
+      if (left.freeHead >= 0) {
+        next[4 * left.freeTail] = right.freeHead;
+        p.freeHead = left.freeHead;
+        p.freeTail = (right.freeTail >= 0) ? right.freeTail : left.freeTail;
+      }
+      else {
+        p.freeHead = right.freeHead;
+        p.freeTail = right.freeTail;
+      }
+
+      int ldo = left.ldo;
+      int ldi = left.rdo;
+      int rdi = right.ldo;
+      int rdo = right.rdo;
+
+      // find the lower common tangent of the two hulls
+      while (true) {
+        if (orient(orig(rdi), orig(ldi), dest(ldi)) > 0) {
+          ldi = lnext(ldi);
+        }
+        else if (orient(orig(ldi), dest(rdi), orig(rdi)) > 0) {
+          rdi = rprev(rdi);
+        }
+        else {
+          break;
+        }
+      }
+
+      int basel = connect(p, sym(rdi), ldi);
+      if (orig(ldi) == orig(ldo)) ldo = sym(basel);
+      if (orig(rdi) == orig(rdo)) rdo = basel;
+
+      // zip the hulls together from the bottom up
+      while (true) {
+        int lcand = next[sym(basel)];
+        if (valid(lcand, basel)) {
+          while (inCircle(dest(basel), orig(basel), dest(lcand),
+                          dest(next[lcand]))) {
+            int t = next[lcand];
+            deleteEdge(p, lcand);
+            lcand = t;
+          }
+        }
+        int rcand = oprev(basel);
+        if (valid(rcand, basel)) {
+          while (inCircle(dest(basel), orig(basel), dest(rcand),
+                          dest(oprev(rcand)))) {
+            int t = oprev(rcand);
+            deleteEdge(p, rcand);
+            rcand = t;
+          }
+        }
+        boolean lvalid = valid(lcand, basel);
+        boolean rvalid = valid(rcand, basel);
+        if (!lvalid && !rvalid) break;
+        if (!lvalid ||
+            (rvalid && inCircle(dest(lcand), orig(lcand),
+                                orig(rcand), dest(rcand)))) {
+          basel = connect(p, rcand, sym(basel));
+        }
+        else {
+          basel = connect(p, sym(basel), sym(lcand));
+        }
+      }
+      p.ldo = ldo;
+      p.rdo = rdo;
+      return p;
+    }
+
+    /** true if the destination of e is right of basel */
+    private boolean valid(int e, int basel) {
+      return orient(dest(e), dest(basel), orig(basel)) > 0;
+    }
+
+    /** sign of the orientation of points a, b and c: positive if
+        counterclockwise, negative if clockwise, 0 if collinear */
+    int orient(int a, int b, int c) {
+      double detleft = (x[a] - x[c]) * (y[b] - y[c]);
+      double detright = (y[a] - y[c]) * (x[b] - x[c]);
+      double det = detleft - detright;
+      double detsum;
+      if (detleft > 0.0) {
+        if (detright <= 0.0) return signum(det);
+        detsum = detleft + detright;
+      }
+      else if (detleft < 0.0) {
+        if (detright >= 0.0) return signum(det);
+        detsum = -detleft - detright;
+      }
+      else {
+        return signum(det);
+      }
+      double bound = CCW_BOUND * detsum;
+      if (det >= bound || -det >= bound) return signum(det);
+
+      BigDecimal xc = new BigDecimal(x[c]);
+      BigDecimal yc = new BigDecimal(y[c]);
+      BigDecimal l = new BigDecimal(x[a]).subtract(xc).multiply(
+                     new BigDecimal(y[b]).subtract(yc));
+      BigDecimal r = new BigDecimal(y[a]).subtract(yc).multiply(
+                     new BigDecimal(x[b]).subtract(xc));
+      return l.compareTo(r);
+    }
+
+    /** true if point d is inside the circle through the
+        counterclockwise points a, b and c */
+    boolean inCircle(int a, int b, int c, int d) {
+      double adx = x[a] - x[d];
+      double ady = y[a] - y[d];
+      double bdx = x[b] - x[d];
+      double bdy = y[b] - y[d];
+      double cdx = x[c] - x[d];
+      double cdy = y[c] - y[d];
+
+      double bdxcdy = bdx * cdy;
+      double cdxbdy = cdx * bdy;
+      double alift = adx * adx + ady * ady;
+      double cdxady = cdx * ady;
+      double adxcdy = adx * cdy;
+      double blift = bdx * bdx + bdy * bdy;
+      double adxbdy = adx * bdy;
+      double bdxady = bdx * ady;
+      double clift = cdx * cdx + cdy * cdy;
+
+      double det = alift * (bdxcdy - cdxbdy) +
+                   blift * (cdxady - adxcdy) +
+                   clift * (adxbdy - bdxady);
+      double permanent =
+        (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift +
+        (Math.abs(cdxady) + Math.abs(adxcdy)) * blift +
+        (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+      double bound = ICC_BOUND * permanent;
+      if (det > bound) return true;
+      if (-det > bound) return false;
+      // products of differences of floats cannot underflow, so
+      // this means d is one of a, b or c
+      if (permanent == 0.0) return false;
+
+      BigDecimal xd = new BigDecimal(x[d]);
+      BigDecimal yd = new BigDecimal(y[d]);
+      BigDecimal eadx = new BigDecimal(x[a]).subtract(xd);
+      BigDecimal eady = new BigDecimal(y[a]).subtract(yd);
+      BigDecimal ebdx = new BigDecimal(x[b]).subtract(xd);
+      BigDecimal ebdy = new BigDecimal(y[b]).subtract(yd);
+      BigDecimal ecdx = new BigDecimal(x[c]).subtract(xd);
+      BigDecimal ecdy = new BigDecimal(y[c]).subtract(yd);
+      BigDecimal ea = eadx.multiply(eadx).add(eady.multiply(eady));
+      BigDecimal eb = ebdx.multiply(ebdx).add(ebdy.multiply(ebdy));
+      BigDecimal ec = ecdx.multiply(ecdx).add(ecdy.multiply(ecdy));
+      BigDecimal exact =
+        ea.multiply(ebdx.multiply(ecdy).subtract(ecdx.multiply(ebdy))).add(
+        eb.multiply(ecdx.multiply(eady).subtract(eadx.multiply(ecdy)))).add(
+        ec.multiply(eadx.multiply(ebdy).subtract(ebdx.multiply(eady))));
+      return exact.signum() > 0;
+    }
+
+    private static int signum(double d) {
+      return (d > 0.0) ? 1 : ((d < 0.0) ? -1 : 0);
+    }
+
+    /** fill the Tri, Vertices, Walk and Edges of delan from the
+        triangular faces of the mesh; unique maps sorted points to
+        sample indices */
+    void extract(Delaunay delan, int[] unique, int nrs)
+         throws VisADException {
+      int quads = org.length / 2;
+
+      // number the counterclockwise triangular faces, by the
+      // primal directed edges that have them on their left
+      int[] face = new int[org.length];
+      Arrays.fill(face, -1);
+      int[] first = new int[2 * x.length];
+      int ntris = 0;
+      for (int q=0; q<quads; q++) {
+        if (org[2 * q] < 0) continue;
+        for (int e=4*q; e<4*q+4; e+=2) {
+          if (face[e >> 1] >= 0) continue;
+          int e1 = lnext(e);
+          int e2 = lnext(e1);
+          if (lnext(e2) != e || orient(orig(e), orig(e1), orig(e2)) <= 0) {
+            continue;
+          }
+          face[e >> 1] = ntris;
+          face[e1 >> 1] = ntris;
+          face[e2 >> 1] = ntris;
+          first[ntris++] = e;
+        }
+      }
+      if (ntris == 0) {
+        throw new VisADException("DelaunayParallel: samples are collinear");
+      }
+
+      int[][] tri = new int[ntris][3];
+      int[][] walk = new int[ntris][3];
+      int[][] edges = new int[ntris][3];
+      int[] edgeNumbers = new int[quads];
+      Arrays.fill(edgeNumbers, -1);
+      int numEdges = 0;
+      int[] nverts = new int[nrs];
+      for (int t=0; t<ntris; t++) {
+        int e = first[t];
+        for (int j=0; j<3; j++) {
+          int v = unique[orig(e)];
+          tri[t][j] = v;
+          nverts[v]++;
+          walk[t][j] = face[sym(e) >> 1];
+          int q = e >> 2;
+          if (edgeNumbers[q] < 0) edgeNumbers[q] = numEdges++;
+          edges[t][j] = edgeNumbers[q];
+          e = lnext(e);
+        }
+      }
+      int[][] vertices = new int[nrs][];
+      for (int i=0; i<nrs; i++) {
+        vertices[i] = new int[nverts[i]];
+        nverts[i] = 0;
+      }
+      for (int t=0; t<ntris; t++) {
+        for (int j=0; j<3; j++) {
+          int v = tri[t][j];
+          vertices[v][nverts[v]++] = t;
+        }
+      }
+
+      delan.Tri = tri;
+      delan.Walk = walk;
+      delan.Edges = edges;
+      delan.NumEdges = numEdges;
+      delan.Vertices = vertices;
+    }
+  }
+
+}
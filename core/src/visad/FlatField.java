@@ -29,6 +29,7 @@ package visad;
 import java.rmi.RemoteException;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
    FlatField is the VisAD class for finite samplings of functions whose
@@ -109,6 +110,19 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
   private short[][] ShortRange;
   private byte[][] ByteRange;
 
+  // which samples recent changes touched; see getChangedSamples
+  private transient volatile ChangeLog changeLog;
+  private static final AtomicReferenceFieldUpdater<FlatField, ChangeLog>
+    CHANGE_LOG = AtomicReferenceFieldUpdater.newUpdater(FlatField.class,
+                   ChangeLog.class, "changeLog");
+
+  // DeferredFlatFields whose expressions read the values of this
+  private transient volatile DeferredFlatField.Dependents deferredDependents;
+  private static final AtomicReferenceFieldUpdater<FlatField,
+                         DeferredFlatField.Dependents>
+    DEPENDENTS = AtomicReferenceFieldUpdater.newUpdater(FlatField.class,
+                   DeferredFlatField.Dependents.class, "deferredDependents");
+
   private static final int MISSING1 = Byte.MIN_VALUE;      // least byte
   private static final int MISSING2 = Short.MIN_VALUE;     // least short
   private static final int MISSING4 = Integer.MIN_VALUE;   // least int
@@ -710,6 +724,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
         throw new FieldException("setSamples: bad array length");
       }
     }
+    evaluateDependents();
     packValues(range, copy);
     setRangeErrors(errors);
     notifyReferences();
@@ -720,7 +735,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
        so in operations (e.g., unary, binary) that deal with the data we try
        to keep it to be floats if we can (for size efficiency).
      **/
-    private boolean  shouldBeDouble () {
+    boolean  shouldBeDouble () {
       for (int i=0; i<TupleDimension; i++) {
           if (RangeMode[i] == DOUBLE) {
               return true;
@@ -747,11 +762,242 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
         throw new FieldException("setSamples: bad array length");
       }
     }
-    
-    boolean copy = false;
-    int length = range[0].length;
 
-  //--  packValues starts here:
+    evaluateDependents();
+    packValues(start, range);
+
+    setRangeErrors(null);
+    notifyReferences(start, start + range[0].length);
+  }
+
+  public void setSamples(int[] indices, double[][] range)
+         throws VisADException, RemoteException
+  {
+      pr ("setSamples");
+
+
+    int length = indices.length;
+
+    if(range.length != TupleDimension ) {
+      throw new FieldException("FlatField.setSamples: bad tuple length");
+    }
+    if ( length > getLength() ) {
+      throw new FieldException("setSamples: indices array too long");
+    }
+    for (int i=0; i<TupleDimension; i++) {
+      if (range[i].length != length) {
+        throw new FieldException("setSamples: bad data array length");
+      }
+    }
+
+    evaluateDependents();
+    packValues(indices, range);
+
+    setRangeErrors(null);
+    int first = getLength();
+    int last = -1;
+    for (int j=0; j<length; j++) {
+      if (indices[j] < first) first = indices[j];
+      if (indices[j] > last) last = indices[j];
+    }
+    notifyReferences(first, last + 1);
+  }
+
+  /** set the range values of the function including ErrorEstimate-s;
+      the order of range values must be the same as the order of
+      domain indices in the DomainSet */
+  public void setSamples(float[][] range, ErrorEstimate[] errors,
+              boolean copy) throws VisADException, RemoteException {
+    if(range.length != TupleDimension ||
+       (errors != null && errors.length != TupleDimension)) {
+      throw new FieldException("FlatField.setSamples: bad tuple length");
+    }
+
+    for (int i=0; i<TupleDimension; i++) {
+      if (range[i].length != getLength()) {
+        throw new FieldException("setSamples: bad array length");
+      }
+    }
+    evaluateDependents();
+    packValues(range, copy);
+    setRangeErrors(errors);
+    notifyReferences();
+  }
+
+  /** set the values of range component comp, whose range set has
+      between 256 and 65535 samples, in the packed form this FlatField
+      stores them in: values[j] is Short.MIN_VALUE + 1 plus the range set
+      index of sample j, or Short.MIN_VALUE if sample j is missing;
+      copy array if copy flag is true */
+  public void setPackedSamples(int comp, short[] values, boolean copy)
+         throws VisADException, RemoteException {
+    checkPacked(comp, SHORT, values.length);
+    evaluateDependents();
+    packShorts(comp, values, copy);
+    setRangeErrors(null);
+    notifyReferences();
+  }
+
+  /** set the values of range component comp, whose range set has
+      fewer than 256 samples, in the packed form this FlatField stores
+      them in: values[j] is Byte.MIN_VALUE + 1 plus the range set index
+      of sample j, or Byte.MIN_VALUE if sample j is missing;
+      copy array if copy flag is true */
+  public void setPackedSamples(int comp, byte[] values, boolean copy)
+         throws VisADException, RemoteException {
+    checkPacked(comp, BYTE, values.length);
+    evaluateDependents();
+    packBytes(comp, values, copy);
+    setRangeErrors(null);
+    notifyReferences();
+  }
+
+  private void checkPacked(int comp, int mode, int length)
+          throws VisADException {
+    if (comp < 0 || comp >= TupleDimension) {
+      throw new FieldException("FlatField.setPackedSamples: bad range " +
+                               "component " + comp);
+    }
+    if (RangeMode[comp] != mode) {
+      throw new FieldException("FlatField.setPackedSamples: range set " +
+                               "length doesn't match packing");
+    }
+    if (length != getLength()) {
+      throw new FieldException("setPackedSamples: bad array length");
+    }
+  }
+
+  /** store packed values of range component comp */
+  void packShorts(int comp, short[] values, boolean copy)
+       throws VisADException {
+    synchronized (DoubleRange) {
+      if (isMissing()) fillMissing(comp);
+      ShortRange[comp] = copy ? (short[]) values.clone() : values;
+      clearMissing();
+    }
+  }
+
+  /** store packed values of range component comp */
+  void packBytes(int comp, byte[] values, boolean copy)
+       throws VisADException {
+    synchronized (DoubleRange) {
+      if (isMissing()) fillMissing(comp);
+      ByteRange[comp] = copy ? (byte[]) values.clone() : values;
+      clearMissing();
+    }
+  }
+
+  /** give every range component but comp missing values, so that comp
+      may be set while the others stay missing */
+  private void fillMissing(int comp) throws VisADException {
+    int length = getLength();
+    for (int i=0; i<TupleDimension; i++) {
+      if (i == comp) continue;
+      switch (RangeMode[i]) {
+        case DOUBLE:
+          DoubleRange[i] = new double[length];
+          Arrays.fill(DoubleRange[i], Double.NaN);
+          break;
+        case FLOAT:
+          FloatRange[i] = new float[length];
+          Arrays.fill(FloatRange[i], Float.NaN);
+          break;
+        case BYTE:
+          ByteRange[i] = new byte[length];
+          Arrays.fill(ByteRange[i], (byte) MISSING1);
+          break;
+        case SHORT:
+          ShortRange[i] = new short[length];
+          Arrays.fill(ShortRange[i], (short) MISSING2);
+          break;
+        case INT:
+          IntRange[i] = new int[length];
+          Arrays.fill(IntRange[i], MISSING4);
+          break;
+        default:
+          throw new SetException("FlatField.fillMissing: bad RangeMode");
+      }
+    }
+  }
+
+    protected void pr (String message) {
+//              System.err.println ( hashCode () + " " + getClass().getName () + "  " + message);
+    }
+
+  /** pack vals into the sample at index; incs[i] is set to the
+      increase (-1, 0 or 1) in the number of non-missing values of
+      component i */
+  void packValues(int index, double[] vals, int[] incs)
+          throws VisADException {
+    double[][] values;
+    int[] indices;
+    synchronized (DoubleRange) {
+      for (int i=0; i<TupleDimension; i++) {
+        // test for missing
+        incs[i] = (vals[i] != vals[i]) ? 0 : 1;
+        switch (RangeMode[i]) {
+          case DOUBLE:
+            if (DoubleRange[i] == null) {
+              DoubleRange[i] = new double[getLength()];
+              for (int j=0; j<getLength(); j++) DoubleRange[i][j] = Double.NaN;
+            }
+            // test for missing
+            incs[i] -= (DoubleRange[i][index] != DoubleRange[i][index]) ? 0 : 1;
+            DoubleRange[i][index] = vals[i];
+            break;
+          case FLOAT:
+            if (FloatRange[i] == null) {
+              FloatRange[i] = new float[getLength()];
+              for (int j=0; j<getLength(); j++) FloatRange[i][j] = Float.NaN;
+            }
+            // test for missing
+            incs[i] -= (FloatRange[i][index] != FloatRange[i][index]) ? 0 : 1;
+            FloatRange[i][index] = (float) vals[i];
+            break;
+          case BYTE:
+            values = new double[1][1];
+            values[0][0] = vals[i];
+            indices = RangeSet[i].valueToIndex(Set.doubleToFloat(values));
+            if (ByteRange[i] == null) {
+              ByteRange[i] = new byte[getLength()];
+              for (int j=0; j<getLength(); j++) ByteRange[i][j] = (byte) MISSING1;
+            }
+            incs[i] -= (ByteRange[i][index] == (byte) MISSING1) ? 0 : 1;
+            ByteRange[i][index] = (byte) (indices[0] + MISSING1 + 1);
+            break;
+          case SHORT:
+            values = new double[1][1];
+            values[0][0] = vals[i];
+            indices = RangeSet[i].valueToIndex(Set.doubleToFloat(values));
+            if (ShortRange[i] == null) {
+              ShortRange[i] = new short[getLength()];
+              for (int j=0; j<getLength(); j++) ShortRange[i][j] = (short) MISSING2;
+            }
+            incs[i] -= (ShortRange[i][index] == (short) MISSING2) ? 0 : 1;
+            ShortRange[i][index] = (short) (indices[0] + MISSING2 + 1);
+            break;
+          case INT:
+            values = new double[1][1];
+            values[0][0] = vals[i];
+            indices = RangeSet[i].valueToIndex(Set.doubleToFloat(values));
+            if (IntRange[i] == null) {
+              IntRange[i] = new int[getLength()];
+              for (int j=0; j<getLength(); j++) IntRange[i][j] = MISSING4;
+            }
+            incs[i] -= (IntRange[i][index] == (int) MISSING4) ? 0 : 1;
+            IntRange[i][index] = indices[0] + MISSING4 + 1;
+            break;
+          default:
+            throw new SetException("FlatField.setSample: bad RangeMode");
+        }
+      }
+    }
+  }
+
+  /** pack range into the samples start .. start+range[0].length-1;
+      the other samples are unchanged */
+  void packValues(int start, double[][] range) throws VisADException {
+    int length = range[0].length;
 
     // NOTE INVERTED ORDER OF range ARRAY INDICES !!!
     int[] index;
@@ -815,36 +1061,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       }
       clearMissing();
     }
-  //-- End packValues
-
-    setRangeErrors(null);
-    notifyReferences();
   }
 
-  public void setSamples(int[] indices, double[][] range)
-         throws VisADException, RemoteException
-  {
-      pr ("setSamples");
-
-
+  /** pack range[i][j] into sample indices[j]; the other samples
+      are unchanged */
+  void packValues(int[] indices, double[][] range) throws VisADException {
     int length = indices.length;
 
-    if(range.length != TupleDimension ) {
-      throw new FieldException("FlatField.setSamples: bad tuple length");
-    }
-    if ( length > getLength() ) {
-      throw new FieldException("setSamples: indices array too long");
-    }
-    for (int i=0; i<TupleDimension; i++) {
-      if (range[i].length != length) {
-        throw new FieldException("setSamples: bad data array length");
-      }
-    }
-
-    boolean copy = false;
-
-  //--  packValues starts here:
-
     // NOTE INVERTED ORDER OF range ARRAY INDICES !!!
     int[] index;
     synchronized (DoubleRange) {
@@ -911,39 +1134,11 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       }
       clearMissing();
     }
-  //-- End packValues
-
-    setRangeErrors(null);
-    notifyReferences();
-  }
-
-  /** set the range values of the function including ErrorEstimate-s;
-      the order of range values must be the same as the order of
-      domain indices in the DomainSet */
-  public void setSamples(float[][] range, ErrorEstimate[] errors,
-              boolean copy) throws VisADException, RemoteException {
-    if(range.length != TupleDimension ||
-       (errors != null && errors.length != TupleDimension)) {
-      throw new FieldException("FlatField.setSamples: bad tuple length");
-    }
-
-    for (int i=0; i<TupleDimension; i++) {
-      if (range[i].length != getLength()) {
-        throw new FieldException("setSamples: bad array length");
-      }
-    }
-    packValues(range, copy);
-    setRangeErrors(errors);
-    notifyReferences();
   }
 
-    protected void pr (String message) {
-//              System.err.println ( hashCode () + " " + getClass().getName () + "  " + message);
-    }
-
   /** pack an array of doubles into field sample values according to the
       RangeSet-s; copies data */
-  private void packValues(double[][] range, boolean copy)
+  void packValues(double[][] range, boolean copy)
           throws VisADException {
     // NOTE INVERTED ORDER OF range ARRAY INDICES !!!
     int[] index;
@@ -1012,7 +1207,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
    *
    * @throws VisADException if {@link #nullRanges()} fails.
    */
-  private void packValues(float[][] range, boolean copy)
+  void packValues(float[][] range, boolean copy)
           throws VisADException {
 
     // NOTE INVERTED ORDER OF range ARRAY INDICES !!!
@@ -1074,10 +1269,141 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
   }
 
+  /**
+   * Compute range values whose computation has been deferred;
+   * overridden by DeferredFlatField.
+   * @throws VisADException  couldn't compute the values
+   */
+  void evaluateDeferred() throws VisADException {
+  }
+
   public byte[][] grabBytes() {
     return ByteRange;
   }
 
+  /** notify references of a change to any of the range values */
+  public void notifyReferences()
+         throws VisADException, RemoteException {
+    getChangeLog().add(0, -1);
+    super.notifyReferences();
+  }
+
+  /** notify references of a change to range samples first through
+      last - 1 only */
+  private void notifyReferences(int first, int last)
+          throws VisADException, RemoteException {
+    getChangeLog().add(first, last);
+    super.notifyReferences();
+  }
+
+  /** record that the expression of dependent reads the range values
+      of this, so they are computed before those values change */
+  void addDeferredDependent(DeferredFlatField dependent) {
+    DeferredFlatField.Dependents dependents = deferredDependents;
+    if (dependents == null) {
+      DEPENDENTS.compareAndSet(this, null, new DeferredFlatField.Dependents());
+      dependents = deferredDependents;
+    }
+    dependents.add(dependent);
+  }
+
+  /** compute the range values of any DeferredFlatFields whose
+      expressions read the range values of this; subclasses that
+      change their range values other than through the FlatField
+      setSamples, setSample and setPackedSamples methods call this
+      first */
+  protected void evaluateDependents() throws VisADException {
+    DeferredFlatField.Dependents dependents = deferredDependents;
+    if (dependents != null) dependents.evaluate();
+  }
+
+  private ChangeLog getChangeLog() {
+    ChangeLog log = changeLog;
+    if (log != null) return log;
+    CHANGE_LOG.compareAndSet(this, null, new ChangeLog());
+    return changeLog;
+  }
+
+  /** @return count of the changes to the range values of this FlatField
+      so far; pass it to getChangedSamples later to find the samples
+      changed since */
+  public long getChangeTick() {
+    return getChangeLog().getTick();
+  }
+
+  /** return the smallest window of range samples that holds all the
+      samples changed since getChangeTick returned tick, when only
+      samples set through setSample or setSamples(start, ...) or
+      setSamples(indices, ...) changed since then, and not too many of
+      those; return null otherwise, in which case any sample may have
+      changed
+      @param tick value from getChangeTick
+      @return {first, last + 1} of the window, empty if nothing changed */
+  public int[] getChangedSamples(long tick) {
+    return getChangeLog().getChanged(tick);
+  }
+
+  /** the windows of samples changed by the latest changes */
+  private static final class ChangeLog {
+    private static final int SIZE = 16;
+
+    private final int[] first = new int[SIZE];
+    private final int[] last = new int[SIZE];
+    private long tick; // count of changes
+    private long wholeTick; // tick of the last change of all samples
+
+    synchronized void add(int f, int l) {
+      tick++;
+      if (l < 0) {
+        wholeTick = tick;
+      }
+      else {
+        first[(int) (tick % SIZE)] = f;
+        last[(int) (tick % SIZE)] = l;
+      }
+    }
+
+    synchronized long getTick() {
+      return tick;
+    }
+
+    synchronized int[] getChanged(long since) {
+      if (since >= tick) return new int[] {0, 0};
+      if (since < wholeTick || since < tick - SIZE) return null;
+      int f = Integer.MAX_VALUE;
+      int l = Integer.MIN_VALUE;
+      for (long t=since+1; t<=tick; t++) {
+        f = Math.min(f, first[(int) (t % SIZE)]);
+        l = Math.max(l, last[(int) (t % SIZE)]);
+      }
+      return new int[] {f, l};
+    }
+  }
+
+  /** @return number of bytes of the arrays holding the range values,
+      whether or not they have been allocated yet */
+  public long getRangeSize() {
+    long size = 0;
+    for (int i=0; i<TupleDimension; i++) {
+      switch (RangeMode[i]) {
+        case DOUBLE:
+          size += 8;
+          break;
+        case FLOAT:
+        case INT:
+          size += 4;
+          break;
+        case SHORT:
+          size += 2;
+          break;
+        default:
+          size += 1;
+          break;
+      }
+    }
+    return size * getLength();
+  }
+
   /** unpack an array of doubles from field sample values according to the
       RangeSet-s; returns a copy */
   public double[][] unpackValues() throws VisADException {
@@ -1334,6 +1660,103 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     return range;
   }
 
+  /**
+   * Copies the values of range component comp at the samples
+   * start .. start+values.length-1 into values, unpacking only those
+   * samples if the values are held in the arrays of this FlatField.
+   * Subclasses that hold their values elsewhere unpack the whole
+   * component unless they override this.
+   *
+   * @param comp	component index
+   * @param start	index of the first sample
+   * @param values	array for the values
+   * @throws VisADException  bad component or sample range
+   */
+  public void unpackValues(int comp, int start, double[] values)
+         throws VisADException {
+    if (getClass() != FlatField.class) {
+      checkSampleRange(comp, start, values.length);
+      double[] range = getValues(false)[comp];
+      System.arraycopy(range, start, values, 0, values.length);
+      return;
+    }
+    unpackStoredValues(comp, start, values);
+  }
+
+  /**
+   * Copies the values of range component comp at the samples
+   * start .. start+values.length-1 from the arrays of this FlatField into
+   * values; for subclasses that keep their values in those arrays.
+   *
+   * @param comp	component index
+   * @param start	index of the first sample
+   * @param values	array for the values
+   * @throws VisADException  bad component or sample range
+   */
+  protected final void unpackStoredValues(int comp, int start,
+                                          double[] values)
+            throws VisADException {
+    checkSampleRange(comp, start, values.length);
+    int count = values.length;
+    synchronized (DoubleRange) {
+      if (isMissing()) {
+        java.util.Arrays.fill(values, Double.NaN);
+        return;
+      }
+      int[] index = null;
+      switch (RangeMode[comp]) {
+        case DOUBLE:
+          System.arraycopy(DoubleRange[comp], start, values, 0, count);
+          return;
+        case FLOAT:
+          float[] FloatRangeI = FloatRange[comp];
+          for (int j=0; j<count; j++) {
+            values[j] = (double) FloatRangeI[start + j];
+          }
+          return;
+        case BYTE:
+          index = new int[count];
+          byte[] ByteRangeI = ByteRange[comp];
+          for (int j=0; j<count; j++) {
+            index[j] = ((int) ByteRangeI[start + j]) - MISSING1 - 1;
+          }
+          break;
+        case SHORT:
+          index = new int[count];
+          short[] ShortRangeI = ShortRange[comp];
+          for (int j=0; j<count; j++) {
+            index[j] = ((int) ShortRangeI[start + j]) - MISSING2 - 1;
+          }
+          break;
+        case INT:
+          index = new int[count];
+          int[] IntRangeI = IntRange[comp];
+          for (int j=0; j<count; j++) {
+            index[j] = ((int) IntRangeI[start + j]) - MISSING4 - 1;
+          }
+          break;
+        default:
+          throw new SetException("FlatField.unpackValues: bad RangeMode");
+      }
+      float[] range0 = RangeSet[comp].indexToValue(index)[0];
+      for (int j=0; j<count; j++) {
+        values[j] = (double) range0[j];
+      }
+    }
+  }
+
+  private void checkSampleRange(int comp, int start, int count)
+          throws FieldException {
+    if (comp < 0 || comp >= TupleDimension) {
+      throw new FieldException("FlatField.unpackValues: bad range " +
+                               "component " + comp);
+    }
+    if (start < 0 || count < 0 || start + count > getLength()) {
+      throw new FieldException("FlatField.unpackValues: bad sample range " +
+                               start + " + " + count);
+    }
+  }
+
   /**
    * Unpack one range component, makes a copy.
    *
@@ -1667,43 +2090,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
    */
   public Data getSample(int index)
          throws VisADException, RemoteException {
-    int[] inds;
     if (isMissing() || index < 0 || index >= getLength()) {
       return ((FunctionType) Type).getRange().missingData();
     }
+    double[] values = unpackValues(index);
     double[][] range = new double[TupleDimension][1];
-    double[][] range1;
-    synchronized (DoubleRange) {
-      for (int i=0; i<TupleDimension; i++) {
-        switch (RangeMode[i]) {
-          case DOUBLE:
-            range[i][0] = DoubleRange[i][index];
-            break;
-          case FLOAT:
-            range[i][0] = (double) FloatRange[i][index];
-            break;
-          case BYTE:
-            inds = new int[1];
-            inds[0] = ((int) ByteRange[i][index]) - MISSING1 - 1;
-            range1 = Set.floatToDouble(RangeSet[i].indexToValue(inds));
-            range[i] = range1[0];
-            break;
-          case SHORT:
-            inds = new int[1];
-            inds[0] = ((int) ShortRange[i][index]) - MISSING2 - 1;
-            range1 = Set.floatToDouble(RangeSet[i].indexToValue(inds));
-            range[i] = range1[0];
-            break;
-          case INT:
-            inds = new int[1];
-            inds[0] = ((int) IntRange[i][index]) - MISSING4 - 1;
-            range1 = Set.floatToDouble(RangeSet[i].indexToValue(inds));
-            range[i] = range1[0];
-            break;
-          default:
-            throw new SetException("FlatField.getSample: bad RangeMode");
-        }
-      }
+    for (int i=0; i<TupleDimension; i++) {
+      range[i][0] = values[i];
     }
 
     MathType RangeType = ((FunctionType) Type).getRange();
@@ -1789,8 +2182,6 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       pr ("setSample");
 
 
-    double[][] values;
-    int[] indices;
     if (getDomainSet() == null) {
       throw new FieldException("Field.setSample: DomainSet undefined");
     }
@@ -1884,66 +2275,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     // incs is counter for increase / decrease in NumberNotMissing
     int[] incs = new int[TupleDimension];
 
+    evaluateDependents();
     synchronized (DoubleRange) {
-      for (int i=0; i<TupleDimension; i++) {
-        // test for missing
-        incs[i] = (vals[i] != vals[i]) ? 0 : 1;
-        switch (RangeMode[i]) {
-          case DOUBLE:
-            if (DoubleRange[i] == null) {
-              DoubleRange[i] = new double[getLength()];
-              for (int j=0; j<getLength(); j++) DoubleRange[i][j] = Double.NaN;
-            }
-            // test for missing
-            incs[i] -= (DoubleRange[i][index] != DoubleRange[i][index]) ? 0 : 1;
-            DoubleRange[i][index] = vals[i];
-            break;
-          case FLOAT:
-            if (FloatRange[i] == null) {
-              FloatRange[i] = new float[getLength()];
-              for (int j=0; j<getLength(); j++) FloatRange[i][j] = Float.NaN;
-            }
-            // test for missing
-            incs[i] -= (FloatRange[i][index] != FloatRange[i][index]) ? 0 : 1;
-            FloatRange[i][index] = (float) vals[i];
-            break;
-          case BYTE:
-            values = new double[1][1];
-            values[0][0] = vals[i];
-            indices = RangeSet[i].valueToIndex(Set.doubleToFloat(values));
-            if (ByteRange[i] == null) {
-              ByteRange[i] = new byte[getLength()];
-              for (int j=0; j<getLength(); j++) ByteRange[i][j] = (byte) MISSING1;
-            }
-            incs[i] -= (ByteRange[i][index] == (byte) MISSING1) ? 0 : 1;
-            ByteRange[i][index] = (byte) (indices[0] + MISSING1 + 1);
-            break;
-          case SHORT:
-            values = new double[1][1];
-            values[0][0] = vals[i];
-            indices = RangeSet[i].valueToIndex(Set.doubleToFloat(values));
-            if (ShortRange[i] == null) {
-              ShortRange[i] = new short[getLength()];
-              for (int j=0; j<getLength(); j++) ShortRange[i][j] = (short) MISSING2;
-            }
-            incs[i] -= (ShortRange[i][index] == (short) MISSING2) ? 0 : 1;
-            ShortRange[i][index] = (short) (indices[0] + MISSING2 + 1);
-            break;
-          case INT:
-            values = new double[1][1];
-            values[0][0] = vals[i];
-            indices = RangeSet[i].valueToIndex(Set.doubleToFloat(values));
-            if (IntRange[i] == null) {
-              IntRange[i] = new int[getLength()];
-              for (int j=0; j<getLength(); j++) IntRange[i][j] = MISSING4;
-            }
-            incs[i] -= (IntRange[i][index] == (int) MISSING4) ? 0 : 1;
-            IntRange[i][index] = indices[0] + MISSING4 + 1;
-            break;
-          default:
-            throw new SetException("FlatField.setSample: bad RangeMode");
-        }
-      }
+      packValues(index, vals, incs);
       synchronized (RangeErrors) {
         for (int i=0; i<TupleDimension; i++) {
           RangeErrors[i] = new ErrorEstimate(RangeErrors[i],
@@ -1952,7 +2286,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       }
     }
     clearMissing();
-    notifyReferences();
+    notifyReferences(index, index + 1);
   }
 
   /**
@@ -2085,6 +2419,12 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       // resample data if needed
       data = ((FlatField) data).resample(getDomainSet(), sampling_mode, error_mode);
 
+      // defer the computation if possible
+      FlatField deferred =
+        DeferredFlatField.deferBinary(this, (FlatField) data, op, new_type,
+                                      error_mode);
+      if (deferred != null) return deferred;
+
       // get values from two FlatField's
       double[][] thatValuesD = null;
       double[][] thisValuesD = null;
@@ -2662,6 +3002,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
       // use DoubleSet rather than RangeSet for intermediate computation results
       if (isMissing() || data.isMissing()) return new_type.missingData();
 
+      if (data instanceof Real) {
+        // defer the computation if possible
+        FlatField deferred =
+          DeferredFlatField.deferBinary(this, (Real) data, op, new_type,
+                                        error_mode);
+        if (deferred != null) return deferred;
+      }
 
       // get data values and possibly apply coordinate transform
       double[][] vals = new double[TupleDimension][1];
@@ -3176,6 +3523,11 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
             throw new TypeException("unary: new_type may not be null");
         }
 
+        // defer the computation if possible
+        FlatField deferred =
+            DeferredFlatField.deferUnary(this, op, new_type, error_mode);
+        if (deferred != null) return deferred;
+
         Unit[] units_out = new Unit[TupleDimension];
 
         /*
@@ -4494,6 +4846,95 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     return (Function) derivative( null, d_partial_s, derivType_s, error_mode );
   }
 
+  /**
+   * Sets the default number of threads used by resample and resampleDouble.
+   * With more than one thread, the samples of a resampling set are split
+   * into blocks that are resampled concurrently when the domain set of this
+   * FlatField is a LinearSet and no ErrorEstimates are involved; the result
+   * is the same as with one thread.  The initial value is given by the
+   * system property <code>visad.flatfield.resample.parallelism</code>, or
+   * 1 (sequential) if it is not set.
+   * @param parallelism         Number of threads; values less than 2 mean
+   *                            resample sequentially.
+   */
+  public static void setResampleParallelism(int parallelism) {
+    ParallelResample.setParallelism(parallelism);
+  }
+
+  /**
+   * Gets the default number of threads used by resample and resampleDouble.
+   * @return                    The default number of threads.
+   * @see #setResampleParallelism(int)
+   */
+  public static int getResampleParallelism() {
+    return ParallelResample.getParallelism();
+  }
+
+  /**
+   * Resamples the range to domain samples of a given set, using the given
+   * number of threads instead of the default one.
+   * @param set                 The set of points at which to resample this
+   *                            field.
+   * @param sampling_mode       Resampling mode: Data.NEAREST_NEIGHBOR or
+   *                            Data.WEIGHTED_AVERAGE
+   * @param error_mode          Error estimation mode: Data.DEPENDENT,
+   *                            Data.INDEPENDENT, or Data.NO_ERRORS.
+   * @param parallelism         Number of threads; values less than 2 mean
+   *                            resample sequentially.
+   * @return                    Field of resampled data.  NOTE: May
+   *                            return this (i.e., not a copy).
+   * @see #setResampleParallelism(int)
+   */
+  public Field resample(Set set, int sampling_mode, int error_mode,
+                        int parallelism)
+         throws VisADException, RemoteException {
+    Integer old = ParallelResample.beginCall(parallelism);
+    try {
+      return resample(set, sampling_mode, error_mode);
+    }
+    finally {
+      ParallelResample.endCall(old);
+    }
+  }
+
+  /**
+   * Resamples the range to domain samples of a given double set, using the
+   * given number of threads instead of the default one.
+   * @param set                 The set of points at which to resample this
+   *                            field.
+   * @param sampling_mode       Resampling mode: Data.NEAREST_NEIGHBOR or
+   *                            Data.WEIGHTED_AVERAGE
+   * @param error_mode          Error estimation mode: Data.DEPENDENT,
+   *                            Data.INDEPENDENT, or Data.NO_ERRORS.
+   * @param parallelism         Number of threads; values less than 2 mean
+   *                            resample sequentially.
+   * @return                    Field of resampled data.  NOTE: May
+   *                            return this (i.e., not a copy).
+   * @see #setResampleParallelism(int)
+   */
+  public Field resampleDouble(Set set, int sampling_mode, int error_mode,
+                              int parallelism)
+         throws VisADException, RemoteException {
+    Integer old = ParallelResample.beginCall(parallelism);
+    try {
+      return resampleDouble(set, sampling_mode, error_mode);
+    }
+    finally {
+      ParallelResample.endCall(old);
+    }
+  }
+
+  /**
+   * Returns true if resample should unpack all range values with
+   * unpackFloats(false) when it needs many of them.  Otherwise resample
+   * unpacks only the samples it uses, with unpackFloats(int), unless it
+   * estimates sampling errors.  Subclasses whose range values are not
+   * held in arrays may return false.
+   */
+  protected boolean unpacksForResample() {
+    return true;
+  }
+
   /**
    * Resamples the range to domain samples of a given set.  Resampling is either
    * by nearest neighbor or mulit-linear interpolation.  NOTE: This code is very
@@ -4573,6 +5014,15 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     int length = set.getLength();
     int[] wedge = set.getWedge();
 
+    // resample blocks of set concurrently if requested and possible
+    int parallelism = ParallelResample.getCallParallelism();
+    if (ParallelResample.accepts(domainSet, length, parallelism) &&
+        !hasErrorEstimates(set, error_mode) && unpacksForResample() &&
+        ((10 * length > getLength()) || !shouldBeDouble() ||
+         sampling_mode == WEIGHTED_AVERAGE)) {
+      return resampleParallel(set, sampling_mode, new_field, parallelism);
+    }
+
     // get values from wedge and possibly transform coordinates
     float[][] vals = set.indexToValue(wedge);
     // holder for sampling errors of transformed set; these are
@@ -4614,8 +5064,9 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
     // WLH 20 July 2000
     float[][] values = null;
-    if (sampling_errors || (10 * length > getLength()) || 
-        !shouldBeDouble() || sampling_mode == WEIGHTED_AVERAGE) {
+    if (sampling_errors || (unpacksForResample() &&
+        ((10 * length > getLength()) || !shouldBeDouble() ||
+         sampling_mode == WEIGHTED_AVERAGE))) {
       values = unpackFloats(false);
       // values = Set.doubleToFloat(unpackValues());
     }
@@ -4833,56 +5284,9 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     }
 
     if (coord_transform) {
-      range_errors_in = range_errors_out;
-      MathType Range = ((FunctionType) Type).getRange();
-      if (Range instanceof RealVectorType) {
-        new_values = ((RealVectorType) Range).transformVectors(
-                      ((FunctionType) Type).getDomain(),
-                      getDomainCoordinateSystem(), getDomainUnits(), errors_out,
-                      ((SetType) set.getType()).getDomain(),
-                      coord_sys, units, RangeCoordinateSystem,
-                      range_errors_in, range_errors_out,
-                      oldvals, vals, new_values);
-      }
-      else if (Range instanceof TupleType && !(Range instanceof RealTupleType)) {
-        int offset = 0;
-        int m = ((TupleType) Range).getDimension();
-        for (j=0; j<m; j++) {
-          MathType comp_type = ((TupleType) Range).getComponent(j);
-          if (comp_type instanceof RealVectorType) {
-            int mm = ((RealVectorType) comp_type).getDimension();
-            float[][] comp_vals = new float[mm][];
-            for (int jj=0; jj<mm; jj++) {
-              comp_vals[jj] = new_values[offset + jj];
-            }
-            ErrorEstimate[] comp_errors_in = new ErrorEstimate[mm];
-            for (int jj=0; jj<mm; jj++) {
-              comp_errors_in[jj] = range_errors_in[offset + jj];
-            }
-            ErrorEstimate[] comp_errors_out = comp_errors_in;
-            comp_vals = ((RealVectorType) comp_type).transformVectors(
-                        ((FunctionType) Type).getDomain(),
-                        getDomainCoordinateSystem(), getDomainUnits(), errors_out,
-                        ((SetType) set.getType()).getDomain(), coord_sys, units,
-                        RangeCoordinateSystems[j],
-                        comp_errors_in, comp_errors_out,
-                        oldvals, vals, comp_vals);
-            for (int jj=0; jj<mm; jj++) {
-              new_values[offset + jj] = comp_vals[jj];
-            }
-            for (int jj=0; jj<mm; jj++) {
-              range_errors_out[offset + jj] = comp_errors_out[jj];
-            }
-          }
-          if (comp_type instanceof RealType) {
-            offset++;
-          }
-          else {
-            offset += ((RealTupleType) comp_type).getDimension();
-          }
-        }
-      }
-    } // end if (coord_transform)
+      new_values = transformResampledVectors(set, errors_out, range_errors_out,
+                                             oldvals, vals, new_values);
+    }
     new_field.packValues(new_values, false);
     // new_field.DoubleRange = new_values;
     new_field.setRangeErrors(range_errors_out);
@@ -4971,6 +5375,15 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     int length = set.getLength();
     int[] wedge = set.getWedge();
 
+    // resample blocks of set concurrently if requested and possible
+    int parallelism = ParallelResample.getCallParallelism();
+    if (ParallelResample.accepts(domainSet, length, parallelism) &&
+        !hasErrorEstimates(set, error_mode) && unpacksForResample() &&
+        ((10 * length > getLength()) || !shouldBeDouble() ||
+         sampling_mode == WEIGHTED_AVERAGE)) {
+      return resampleDoubleParallel(set, sampling_mode, new_field, parallelism);
+    }
+
     // get values from wedge and possibly transform coordinates
     double[][] vals = set.indexToDouble(wedge);
     // holder for sampling errors of transformed set; these are
@@ -5011,8 +5424,9 @@ if (pr) System.out.println("value = " + new_values[0][0]);
 
     // WLH 20 July 2000
     float[][] values = null;
-    if (sampling_errors || (10 * length > getLength()) || 
-        !shouldBeDouble() || sampling_mode == WEIGHTED_AVERAGE) {
+    if (sampling_errors || (unpacksForResample() &&
+        ((10 * length > getLength()) || !shouldBeDouble() ||
+         sampling_mode == WEIGHTED_AVERAGE))) {
       values = unpackFloats(false);
       // values = Set.doubleToFloat(unpackValues());
     }
@@ -5230,66 +5644,355 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     }
 
     if (coord_transform) {
-      range_errors_in = range_errors_out;
-      MathType Range = ((FunctionType) Type).getRange();
-      if (Range instanceof RealVectorType) {
-        new_values = ((RealVectorType) Range).transformVectors(
+      new_values = transformResampledVectors(set, errors_out, range_errors_out,
+                                             oldvals, vals, new_values);
+    }
+    new_field.packValues(new_values, false);
+    // new_field.DoubleRange = new_values;
+    new_field.setRangeErrors(range_errors_out);
+    new_field.clearMissing();
+    visad.util.Trace.call2("FlatField.resample");
+
+
+    return new_field;
+  }
+
+  /**
+   * return true if resampling onto set with error_mode may have to
+   * propagate ErrorEstimates of set or of the range of this FlatField
+   */
+  private boolean hasErrorEstimates(Set set, int error_mode) {
+    if (error_mode == NO_ERRORS) return false;
+    ErrorEstimate[] errors = set.getSetErrors();
+    if (errors != null) {
+      for (int i=0; i<errors.length; i++) {
+        if (errors[i] != null) return true;
+      }
+    }
+    for (int i=0; i<TupleDimension; i++) {
+      if (RangeErrors[i] != null) return true;
+    }
+    return false;
+  }
+
+  /**
+   * resample blocks of the samples of set concurrently; the coordinates of
+   * all samples are transformed first, then each block locates and
+   * interpolates its own samples exactly as resample does for all of
+   * them, so the result is the same
+   */
+  private Field resampleParallel(final Set set, final int sampling_mode,
+                                 FlatField new_field, int parallelism)
+          throws VisADException, RemoteException {
+    final Set domainSet = getDomainSet();
+    final int dim = domainSet.getDimension();
+    final int length = set.getLength();
+    final int[] wedge = set.getWedge();
+    final CoordinateSystem coord_sys = set.getCoordinateSystem();
+    final Unit[] units = set.getSetUnits();
+    final ErrorEstimate[] errors = new ErrorEstimate[dim];
+    final float[][] values = unpackFloats(false);
+    final float[][] new_values = new float[TupleDimension][length];
+
+    // transform coordinates here: a CoordinateSystem need not be safe
+    // to use from several threads at once
+    final float[][] oldvals = set.indexToValue(wedge);
+    float[][] transformed;
+    try {  // this is only to throw a more meaningful message
+      transformed = CoordinateSystem.transformCoordinates(
                       ((FunctionType) Type).getDomain(),
-                      getDomainCoordinateSystem(), getDomainUnits(), errors_out,
-                      ((SetType) set.getType()).getDomain(),
-                      coord_sys, units, RangeCoordinateSystem,
-                      range_errors_in, range_errors_out,
-                      oldvals, vals, new_values);
-      }
-      else if (Range instanceof TupleType && !(Range instanceof RealTupleType)) {
-        int offset = 0;
-        int m = ((TupleType) Range).getDimension();
-        for (j=0; j<m; j++) {
-          MathType comp_type = ((TupleType) Range).getComponent(j);
-          if (comp_type instanceof RealVectorType) {
-            int mm = ((RealVectorType) comp_type).getDimension();
-            double[][] comp_vals = new double[mm][];
-            for (int jj=0; jj<mm; jj++) {
-              comp_vals[jj] = new_values[offset + jj];
-            }
-            ErrorEstimate[] comp_errors_in = new ErrorEstimate[mm];
-            for (int jj=0; jj<mm; jj++) {
-              comp_errors_in[jj] = range_errors_in[offset + jj];
-            }
-            ErrorEstimate[] comp_errors_out = comp_errors_in;
-            comp_vals = ((RealVectorType) comp_type).transformVectors(
-                        ((FunctionType) Type).getDomain(),
-                        getDomainCoordinateSystem(), getDomainUnits(), errors_out,
-                        ((SetType) set.getType()).getDomain(), coord_sys, units,
-                        RangeCoordinateSystems[j],
-                        comp_errors_in, comp_errors_out,
-                        oldvals, vals, comp_vals);
-            for (int jj=0; jj<mm; jj++) {
-              new_values[offset + jj] = comp_vals[jj];
-            }
-            for (int jj=0; jj<mm; jj++) {
-              range_errors_out[offset + jj] = comp_errors_out[jj];
+                      getDomainCoordinateSystem(),
+                      getDomainUnits(), new ErrorEstimate[dim],
+                      ((SetType) set.getType()).getDomain(), coord_sys,
+                      units, errors, oldvals, false);
+    } catch (UnitException ue) {
+      throw new VisADException("Sampling set is not compatible with domain");
+    }
+    final float[][] vals = transformed;
+
+    visad.util.Trace.call1("FlatField.resample:parallel");
+    ParallelResample.run(length, parallelism, new ParallelResample.Block() {
+      public void resample(int start, int end)
+             throws VisADException, RemoteException {
+        int n = end - start;
+        int[] block_wedge = new int[n];
+        System.arraycopy(wedge, start, block_wedge, 0, n);
+        float[][] block_vals = new float[dim][n];
+        for (int i=0; i<dim; i++) {
+          System.arraycopy(vals[i], start, block_vals[i], 0, n);
+        }
+
+        if (sampling_mode == WEIGHTED_AVERAGE &&
+            domainSet instanceof SimpleSet) {
+          int[][] indices = new int[n][];
+          float[][] coefs = new float[n][];
+          ((SimpleSet) domainSet).valueToInterp(block_vals, indices, coefs);
+          for (int j=0; j<TupleDimension; j++) {
+            float[] valuesJ = values[j];
+            float[] new_valuesJ = new_values[j];
+            for (int i=0; i<n; i++) {
+              int len = indices[i] == null ? 0 : indices[i].length;
+              if (len > 0) {
+                float v = valuesJ[indices[i][0]] * coefs[i][0];
+                for (int k=1; k<len; k++) {
+                  v += valuesJ[indices[i][k]] * coefs[i][k];
+                }
+                new_valuesJ[block_wedge[i]] = v;
+              }
+              else { // values outside grid
+                new_valuesJ[block_wedge[i]] = Float.NaN;
+              }
             }
           }
-          if (comp_type instanceof RealType) {
-            offset++;
-          }
-          else {
-            offset += ((RealTupleType) comp_type).getDimension();
+        }
+        else {
+          int[] indices = domainSet.valueToIndex(block_vals);
+          for (int j=0; j<TupleDimension; j++) {
+            float[] valuesJ = values[j];
+            float[] new_valuesJ = new_values[j];
+            for (int i=0; i<n; i++) {
+              new_valuesJ[block_wedge[i]] =
+                ((indices[i] >= 0) ? valuesJ[indices[i]]: Float.NaN);
+            }
           }
         }
       }
-    } // end if (coord_transform)
-    new_field.packValues(new_values, false);
-    // new_field.DoubleRange = new_values;
+    });
+    visad.util.Trace.call2("FlatField.resample:parallel");
+
+    ErrorEstimate[] range_errors_out = new ErrorEstimate[TupleDimension];
+    float[][] result = new_values;
+    if (vals != oldvals) {
+      result = transformResampledVectors(set, new ErrorEstimate[dim],
+                                         range_errors_out, oldvals, vals,
+                                         new_values);
+    }
+    new_field.packValues(result, false);
     new_field.setRangeErrors(range_errors_out);
     new_field.clearMissing();
     visad.util.Trace.call2("FlatField.resample");
+    return new_field;
+  }
 
+  /**
+   * resample blocks of the samples of set concurrently, for a domain set
+   * that is a GriddedDoubleSet; see resampleParallel
+   */
+  private Field resampleDoubleParallel(final Set set, final int sampling_mode,
+                                       FlatField new_field, int parallelism)
+          throws VisADException, RemoteException {
+    final Set domainSet = getDomainSet();
+    final int dim = domainSet.getDimension();
+    final int length = set.getLength();
+    final int[] wedge = set.getWedge();
+    final CoordinateSystem coord_sys = set.getCoordinateSystem();
+    final Unit[] units = set.getSetUnits();
+    final ErrorEstimate[] errors = new ErrorEstimate[dim];
+    final float[][] values = unpackFloats(false);
+    final double[][] new_values = new double[TupleDimension][length];
+
+    // transform coordinates here: a CoordinateSystem need not be safe
+    // to use from several threads at once
+    final double[][] oldvals = set.indexToDouble(wedge);
+    double[][] transformed;
+    try {  // this is only to throw a more meaningful message
+      transformed = CoordinateSystem.transformCoordinates(
+                      ((FunctionType) Type).getDomain(),
+                      getDomainCoordinateSystem(),
+                      getDomainUnits(), new ErrorEstimate[dim],
+                      ((SetType) set.getType()).getDomain(), coord_sys,
+                      units, errors, oldvals, false);
+    } catch (UnitException ue) {
+      throw new VisADException("Sampling set is not compatible with domain");
+    }
+    final double[][] vals = transformed;
+
+    visad.util.Trace.call1("FlatField.resample:parallel");
+    ParallelResample.run(length, parallelism, new ParallelResample.Block() {
+      public void resample(int start, int end)
+             throws VisADException, RemoteException {
+        int n = end - start;
+        int[] block_wedge = new int[n];
+        System.arraycopy(wedge, start, block_wedge, 0, n);
+        double[][] block_vals = new double[dim][n];
+        for (int i=0; i<dim; i++) {
+          System.arraycopy(vals[i], start, block_vals[i], 0, n);
+        }
+
+        if (sampling_mode == WEIGHTED_AVERAGE) {
+          int[][] indices = new int[n][];
+          double[][] coefs = new double[n][];
+          ((GriddedDoubleSet) domainSet).doubleToInterp(block_vals, indices,
+                                                        coefs);
+          for (int j=0; j<TupleDimension; j++) {
+            float[] valuesJ = values[j];
+            double[] new_valuesJ = new_values[j];
+            for (int i=0; i<n; i++) {
+              int len = indices[i] == null ? 0 : indices[i].length;
+              if (len > 0) {
+                double v = valuesJ[indices[i][0]] * coefs[i][0];
+                for (int k=1; k<len; k++) {
+                  v += valuesJ[indices[i][k]] * coefs[i][k];
+                }
+                new_valuesJ[block_wedge[i]] = v;
+              }
+              else { // values outside grid
+                new_valuesJ[block_wedge[i]] = Float.NaN;
+              }
+            }
+          }
+        }
+        else {
+          int[] indices = domainSet.doubleToIndex(block_vals);
+          for (int j=0; j<TupleDimension; j++) {
+            float[] valuesJ = values[j];
+            double[] new_valuesJ = new_values[j];
+            for (int i=0; i<n; i++) {
+              new_valuesJ[block_wedge[i]] =
+                ((indices[i] >= 0) ? valuesJ[indices[i]]: Float.NaN);
+            }
+          }
+        }
+      }
+    });
+    visad.util.Trace.call2("FlatField.resample:parallel");
 
+    ErrorEstimate[] range_errors_out = new ErrorEstimate[TupleDimension];
+    double[][] result = new_values;
+    if (vals != oldvals) {
+      result = transformResampledVectors(set, new ErrorEstimate[dim],
+                                         range_errors_out, oldvals, vals,
+                                         new_values);
+    }
+    new_field.packValues(result, false);
+    new_field.setRangeErrors(range_errors_out);
+    new_field.clearMissing();
+    visad.util.Trace.call2("FlatField.resample");
     return new_field;
   }
 
+  /**
+   * transform the vector components of resampled range values to the
+   * coordinates of a resampling set; used by resample
+   */
+  private float[][] transformResampledVectors(Set set, ErrorEstimate[] errors_out,
+                      ErrorEstimate[] range_errors, float[][] oldvals,
+                      float[][] vals, float[][] new_values)
+          throws VisADException, RemoteException {
+    CoordinateSystem coord_sys = set.getCoordinateSystem();
+    Unit[] units = set.getSetUnits();
+    MathType Range = ((FunctionType) Type).getRange();
+    if (Range instanceof RealVectorType) {
+      new_values = ((RealVectorType) Range).transformVectors(
+                    ((FunctionType) Type).getDomain(),
+                    getDomainCoordinateSystem(), getDomainUnits(), errors_out,
+                    ((SetType) set.getType()).getDomain(),
+                    coord_sys, units, RangeCoordinateSystem,
+                    range_errors, range_errors,
+                    oldvals, vals, new_values);
+    }
+    else if (Range instanceof TupleType && !(Range instanceof RealTupleType)) {
+      int offset = 0;
+      int m = ((TupleType) Range).getDimension();
+      for (int j=0; j<m; j++) {
+        MathType comp_type = ((TupleType) Range).getComponent(j);
+        if (comp_type instanceof RealVectorType) {
+          int mm = ((RealVectorType) comp_type).getDimension();
+          float[][] comp_vals = new float[mm][];
+          for (int jj=0; jj<mm; jj++) {
+            comp_vals[jj] = new_values[offset + jj];
+          }
+          ErrorEstimate[] comp_errors_in = new ErrorEstimate[mm];
+          for (int jj=0; jj<mm; jj++) {
+            comp_errors_in[jj] = range_errors[offset + jj];
+          }
+          ErrorEstimate[] comp_errors_out = comp_errors_in;
+          comp_vals = ((RealVectorType) comp_type).transformVectors(
+                      ((FunctionType) Type).getDomain(),
+                      getDomainCoordinateSystem(), getDomainUnits(), errors_out,
+                      ((SetType) set.getType()).getDomain(), coord_sys, units,
+                      RangeCoordinateSystems[j],
+                      comp_errors_in, comp_errors_out,
+                      oldvals, vals, comp_vals);
+          for (int jj=0; jj<mm; jj++) {
+            new_values[offset + jj] = comp_vals[jj];
+          }
+          for (int jj=0; jj<mm; jj++) {
+            range_errors[offset + jj] = comp_errors_out[jj];
+          }
+        }
+        if (comp_type instanceof RealType) {
+          offset++;
+        }
+        else {
+          offset += ((RealTupleType) comp_type).getDimension();
+        }
+      }
+    }
+    return new_values;
+  }
+
+  /**
+   * transform the vector components of resampled range values to the
+   * coordinates of a resampling set; used by resampleDouble
+   */
+  private double[][] transformResampledVectors(Set set, ErrorEstimate[] errors_out,
+                      ErrorEstimate[] range_errors, double[][] oldvals,
+                      double[][] vals, double[][] new_values)
+          throws VisADException, RemoteException {
+    CoordinateSystem coord_sys = set.getCoordinateSystem();
+    Unit[] units = set.getSetUnits();
+    MathType Range = ((FunctionType) Type).getRange();
+    if (Range instanceof RealVectorType) {
+      new_values = ((RealVectorType) Range).transformVectors(
+                    ((FunctionType) Type).getDomain(),
+                    getDomainCoordinateSystem(), getDomainUnits(), errors_out,
+                    ((SetType) set.getType()).getDomain(),
+                    coord_sys, units, RangeCoordinateSystem,
+                    range_errors, range_errors,
+                    oldvals, vals, new_values);
+    }
+    else if (Range instanceof TupleType && !(Range instanceof RealTupleType)) {
+      int offset = 0;
+      int m = ((TupleType) Range).getDimension();
+      for (int j=0; j<m; j++) {
+        MathType comp_type = ((TupleType) Range).getComponent(j);
+        if (comp_type instanceof RealVectorType) {
+          int mm = ((RealVectorType) comp_type).getDimension();
+          double[][] comp_vals = new double[mm][];
+          for (int jj=0; jj<mm; jj++) {
+            comp_vals[jj] = new_values[offset + jj];
+          }
+          ErrorEstimate[] comp_errors_in = new ErrorEstimate[mm];
+          for (int jj=0; jj<mm; jj++) {
+            comp_errors_in[jj] = range_errors[offset + jj];
+          }
+          ErrorEstimate[] comp_errors_out = comp_errors_in;
+          comp_vals = ((RealVectorType) comp_type).transformVectors(
+                      ((FunctionType) Type).getDomain(),
+                      getDomainCoordinateSystem(), getDomainUnits(), errors_out,
+                      ((SetType) set.getType()).getDomain(), coord_sys, units,
+                      RangeCoordinateSystems[j],
+                      comp_errors_in, comp_errors_out,
+                      oldvals, vals, comp_vals);
+          for (int jj=0; jj<mm; jj++) {
+            new_values[offset + jj] = comp_vals[jj];
+          }
+          for (int jj=0; jj<mm; jj++) {
+            range_errors[offset + jj] = comp_errors_out[jj];
+          }
+        }
+        if (comp_type instanceof RealType) {
+          offset++;
+        }
+        else {
+          offset += ((RealTupleType) comp_type).getDimension();
+        }
+      }
+    }
+    return new_values;
+  }
+
   /** convert this FlatField to a (non-Flat) FieldImpl */
   public Field convertToField() throws VisADException, RemoteException {
     Field new_field = new FieldImpl((FunctionType) Type, getDomainSet());
@@ -5648,6 +6351,8 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     catch (CloneNotSupportedException ex) {
       throw new Error("Assertion failure");  // can't happen
     }
+    clone.changeLog = null;
+    clone.deferredDependents = null;
 
     synchronized(DoubleRange) {
       if (!MissingFlag) {
@@ -5655,8 +6360,7 @@ if (pr) System.out.println("value = " + new_values[0][0]);
           // DRM 3 Oct 2006 - we need to recreate this otherwise 
           // it's shared and it's mutable!
           clone.DoubleRange = new double[TupleDimension][];
-          double[][] values  = unpackValues(true);
-          clone.packValues(values, false);
+          copyRange(clone);
         }
         catch (VisADException ex) {
           throw new RuntimeException(ex.toString());
@@ -5673,6 +6377,13 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     return clone;
   }
 
+  /** pack a copy of the range values of this into clone, a shallow
+      clone of this */
+  void copyRange(FlatField clone) throws VisADException {
+    double[][] values  = unpackValues(true);
+    clone.packValues(values, false);
+  }
+
   String valuesString() throws VisADException {
     int rowlength;
     StringBuffer s = new StringBuffer("");
@@ -5798,6 +6509,14 @@ if (pr) System.out.println("value = " + new_values[0][0]);
 
     FlatField fld = (FlatField )obj;
 
+    try {
+      evaluateDeferred();
+      fld.evaluateDeferred();
+    }
+    catch (VisADException e) {
+      return false;
+    }
+
     if (RangeMode == null || fld.RangeMode == null) {
       if (RangeMode != null || fld.RangeMode != null) {
         return false;
@@ -2351,6 +2351,85 @@ public class Gridded3DSet extends GriddedSet {
       boolean[] swap, boolean dash, boolean fill, ScalarMap[] smap,
       double[] scale, double label_size, boolean sphericalDisplayCS)
       throws VisADException {
+    return makeIsoLines(intervals, lowlimit, highlimit, base, fieldValues,
+        color_values, swap, dash, fill, smap, scale, label_size,
+        sphericalDisplayCS, null, false);
+  }
+
+  /**
+   * Contour fieldValues tile by tile, as for
+   * {@link #makeIsoLines(float[], float, float, float, float[], byte[][],
+   * boolean[], boolean, boolean, ScalarMap[], double[], double, boolean)},
+   * passing the contour lines, labels and fill of each block of tiles to
+   * sink as soon as they are done, so memory use does not grow with the
+   * size of the grid.  Tiles are contoured in parallel and lines are
+   * joined where they cross tile seams.
+   *
+   * @see TiledContour2D
+   */
+  public void makeIsoLines(float[] intervals, float lowlimit,
+      float highlimit, float base, float[] fieldValues, byte[][] color_values,
+      boolean[] swap, boolean dash, boolean fill, ScalarMap[] smap,
+      double[] scale, double label_size, boolean sphericalDisplayCS,
+      ContourSink sink) throws VisADException {
+    if (sink == null) {
+      throw new SetException("Gridded3DSet.makeIsoLines: sink is null");
+    }
+    makeIsoLines(intervals, lowlimit, highlimit, base, fieldValues,
+        color_values, swap, dash, fill, smap, scale, label_size,
+        sphericalDisplayCS, sink, true);
+  }
+
+  /**
+   * Sets the tile size, in grid boxes, used by makeIsoLines to contour
+   * grids larger than one tile.  Tiles are contoured in parallel and
+   * their contour lines are joined at the tile seams; labels are placed
+   * within each tile.  The initial value is given by the system property
+   * <code>visad.contour.tilesize</code>, or 0 if it is not set.
+   * @param size                Tile size; 0 means contour the whole grid
+   *                            at once.
+   */
+  public static void setContourTileSize(int size) {
+    TiledContour2D.setTileSize(size);
+  }
+
+  /**
+   * Gets the tile size used by makeIsoLines.
+   * @return                    The tile size, or 0 if grids are contoured
+   *                            whole.
+   * @see #setContourTileSize(int)
+   */
+  public static int getContourTileSize() {
+    return TiledContour2D.getTileSize();
+  }
+
+  /**
+   * Sets the number of tiles contoured concurrently by tiled
+   * makeIsoLines.  The initial value is given by the system property
+   * <code>visad.contour.parallelism</code>, or the number of available
+   * processors if it is not set.
+   * @param parallelism         Number of threads; values less than 2 mean
+   *                            contour tiles sequentially.
+   */
+  public static void setContourParallelism(int parallelism) {
+    TiledContour2D.setParallelism(parallelism);
+  }
+
+  /**
+   * Gets the number of tiles contoured concurrently.
+   * @return                    The number of threads.
+   * @see #setContourParallelism(int)
+   */
+  public static int getContourParallelism() {
+    return TiledContour2D.getParallelism();
+  }
+
+  private VisADGeometryArray[][] makeIsoLines(float[] intervals,
+      float lowlimit, float highlimit, float base, float[] fieldValues,
+      byte[][] color_values, boolean[] swap, boolean dash, boolean fill,
+      ScalarMap[] smap, double[] scale, double label_size,
+      boolean sphericalDisplayCS, ContourSink sink, boolean stream)
+      throws VisADException {
 
     
     int ManifoldDimension = getManifoldDimension();
@@ -2381,53 +2460,10 @@ public class Gridded3DSet extends GriddedSet {
     }
     byte[][] interval_colors = new byte[color_length][intervals.length];
 
+    int tile_size = TiledContour2D.getTileSize(nr, nc, stream);
     if (fill) { // - compute normals at grid points
-      float[][] samples = getSamples(false);
-      grd_normals = new float[nc][nr][3];
-      // calculate normals
-      int k3 = 0;
-      int ki, kj;
-      for (int i = 0; i < LengthY; i++) {
-        for (int j = 0; j < LengthX; j++) {
-          float c0 = samples[0][k3];
-          float c1 = samples[1][k3];
-          float c2 = samples[2][k3];
-          float n0 = 0.0f;
-          float n1 = 0.0f;
-          float n2 = 0.0f;
-          float n, m, m0, m1, m2;
-          for (int ip = -1; ip <= 1; ip += 2) {
-            for (int jp = -1; jp <= 1; jp += 2) {
-              int ii = i + ip;
-              int jj = j + jp;
-              if (0 <= ii && ii < LengthY && 0 <= jj && jj < LengthX) {
-                ki = k3 + ip * LengthX;
-                kj = k3 + jp;
-                m0 = (samples[2][kj] - c2) * (samples[1][ki] - c1)
-                    - (samples[1][kj] - c1) * (samples[2][ki] - c2);
-                m1 = (samples[0][kj] - c0) * (samples[2][ki] - c2)
-                    - (samples[2][kj] - c2) * (samples[0][ki] - c0);
-                m2 = (samples[1][kj] - c1) * (samples[0][ki] - c0)
-                    - (samples[0][kj] - c0) * (samples[1][ki] - c1);
-                m = (float) Math.sqrt(m0 * m0 + m1 * m1 + m2 * m2);
-                if (ip == jp) {
-                  n0 += m0 / m;
-                  n1 += m1 / m;
-                  n2 += m2 / m;
-                } else {
-                  n0 -= m0 / m;
-                  n1 -= m1 / m;
-                  n2 -= m2 / m;
-                }
-              }
-            }
-          }
-          n = (float) Math.sqrt(n0 * n0 + n1 * n1 + n2 * n2);
-          grd_normals[i][j][0] = n0 / n;
-          grd_normals[i][j][1] = n1 / n;
-          grd_normals[i][j][2] = n2 / n;
-          k3++;
-        }
+      if (tile_size == 0) {
+        grd_normals = makeGridNormals(0, 0, LengthX, LengthY);
       }
 
       // -- compute color at field contour intervals
@@ -2471,6 +2507,19 @@ public class Gridded3DSet extends GriddedSet {
     int labelFreq = ctrl.getLabelFreq();
     int labelLineSkip = ctrl.getEveryNth();
 
+    if (tile_size > 0) {
+      TiledContour2D.Collector collector = null;
+      if (sink == null) {
+        collector = new TiledContour2D.Collector();
+        sink = collector;
+      }
+      TiledContour2D.contour(this, g, tile_size, intervals, lowlimit,
+          highlimit, base, dash, color_values, swap, fill, interval_colors,
+          scale, scale_ratio, labelFreq, labelLineSkip, label_size,
+          labelAlign, labelColor, labelFont, sphericalDisplayCS, sink);
+      return (collector == null) ? null : collector.getArrays(fill);
+    }
+
     Contour2D.ContourOutput contour = Contour2D.contour(g, nr, nc, intervals,
         lowlimit, highlimit, base, dash, color_values, swap, fill, grd_normals,
         interval_colors, scale, scale_ratio, labelFreq, labelLineSkip,
@@ -2540,6 +2589,63 @@ public class Gridded3DSet extends GriddedSet {
       { basicLines[0], fillLines, labelLines, basicLines[1] };
   }
 
+  /**
+   * Compute the unit normals at the grid points x0 .. x0+nx-1,
+   * y0 .. y0+ny-1 of a set with manifold dimension 2, as used for
+   * filled contours; neighbors outside the block are used, so normals of
+   * adjacent blocks agree where they meet.
+   * @return normals organized float[ny][nx][3]
+   */
+  float[][][] makeGridNormals(int x0, int y0, int nx, int ny)
+         throws VisADException {
+    float[][] samples = getSamples(false);
+    float[][][] grd_normals = new float[ny][nx][3];
+    int ki, kj;
+    for (int i = y0; i < y0 + ny; i++) {
+      for (int j = x0; j < x0 + nx; j++) {
+        int k3 = i * LengthX + j;
+        float c0 = samples[0][k3];
+        float c1 = samples[1][k3];
+        float c2 = samples[2][k3];
+        float n0 = 0.0f;
+        float n1 = 0.0f;
+        float n2 = 0.0f;
+        float n, m, m0, m1, m2;
+        for (int ip = -1; ip <= 1; ip += 2) {
+          for (int jp = -1; jp <= 1; jp += 2) {
+            int ii = i + ip;
+            int jj = j + jp;
+            if (0 <= ii && ii < LengthY && 0 <= jj && jj < LengthX) {
+              ki = k3 + ip * LengthX;
+              kj = k3 + jp;
+              m0 = (samples[2][kj] - c2) * (samples[1][ki] - c1)
+                  - (samples[1][kj] - c1) * (samples[2][ki] - c2);
+              m1 = (samples[0][kj] - c0) * (samples[2][ki] - c2)
+                  - (samples[2][kj] - c2) * (samples[0][ki] - c0);
+              m2 = (samples[1][kj] - c1) * (samples[0][ki] - c0)
+                  - (samples[0][kj] - c0) * (samples[1][ki] - c1);
+              m = (float) Math.sqrt(m0 * m0 + m1 * m1 + m2 * m2);
+              if (ip == jp) {
+                n0 += m0 / m;
+                n1 += m1 / m;
+                n2 += m2 / m;
+              } else {
+                n0 -= m0 / m;
+                n1 -= m1 / m;
+                n2 -= m2 / m;
+              }
+            }
+          }
+        }
+        n = (float) Math.sqrt(n0 * n0 + n1 * n1 + n2 * n2);
+        grd_normals[i - y0][j - x0][0] = n0 / n;
+        grd_normals[i - y0][j - x0][1] = n1 / n;
+        grd_normals[i - y0][j - x0][2] = n2 / n;
+      }
+    }
+    return grd_normals;
+  }
+
   public float[][] getNormals(float[][] grid) throws VisADException {
     int[] Lengths = getLengths();
     int LengthX = Lengths[0];
@@ -2977,15 +3083,59 @@ public class Gridded3DSet extends GriddedSet {
 
   static final int STAB[] = { 0, 9, 25, 50 };
 
+  /**
+   * Sets the slab size, in layers of grid cubes along the third
+   * dimension, used by makeIsoSurface.  Grids with more layers than one
+   * slab are isosurfaced one slab at a time, in parallel, and the slabs
+   * are merged into a single surface with the same vertices and polygons
+   * as the whole grid would give; only the slabs being processed need
+   * scratch storage.  The initial value is given by the system property
+   * <code>visad.isosurface.slabsize</code>, or 0 if it is not set.
+   * @param size                Slab size; 0 means isosurface the whole
+   *                            grid at once.
+   */
+  public static void setIsoSurfaceSlabSize(int size) {
+    ParallelIsoSurface.setSlabSize(size);
+  }
+
+  /**
+   * Gets the slab size used by makeIsoSurface.
+   * @return                    The slab size, or 0 if grids are
+   *                            isosurfaced whole.
+   * @see #setIsoSurfaceSlabSize(int)
+   */
+  public static int getIsoSurfaceSlabSize() {
+    return ParallelIsoSurface.getSlabSize();
+  }
+
+  /**
+   * Sets the number of slabs isosurfaced concurrently by makeIsoSurface.
+   * The initial value is given by the system property
+   * <code>visad.isosurface.parallelism</code>, or the number of available
+   * processors if it is not set.
+   * @param parallelism         Number of threads; values less than 2 mean
+   *                            isosurface slabs sequentially.
+   */
+  public static void setIsoSurfaceParallelism(int parallelism) {
+    ParallelIsoSurface.setParallelism(parallelism);
+  }
+
+  /**
+   * Gets the number of slabs isosurfaced concurrently.
+   * @return                    The number of threads.
+   * @see #setIsoSurfaceParallelism(int)
+   */
+  public static int getIsoSurfaceParallelism() {
+    return ParallelIsoSurface.getParallelism();
+  }
+
   public VisADGeometryArray makeIsoSurface(float isolevel, float[] fieldValues,
       byte[][] color_values, boolean indexed) throws VisADException {
     boolean debug = false;
 
-    int i;
-    int size_stripe;
     int xdim_x_ydim, xdim_x_ydim_x_zdim;
     int num_cubes, nvertex, npolygons;
-    int ix, iy, ii;
+    int ix, iy;
     int nvertex_estimate;
 
     if (ManifoldDimension != 3) {
@@ -3001,6 +3151,20 @@ public class Gridded3DSet extends GriddedSet {
 
     float[] ptGRID = fieldValues;
 
+    int slab_size = ParallelIsoSurface.getSlabSize(zdim);
+    if (slab_size > 0) {
+      ParallelIsoSurface.Surface surface = ParallelIsoSurface.extract(this,
+          isolevel, ptGRID, color_values, xdim, ydim, zdim, slab_size);
+      if (surface == null)
+        return null;
+      if (debug)
+        System.out.println("npolygons= " + surface.npolygons + " nvertex= "
+            + surface.nvertex);
+      return makeIsoSurfaceArray(surface.vertices, surface.colors,
+          surface.nvertex, surface.npolygons, surface.Pol_f_Vert,
+          surface.Vert_f_Pol, indexed);
+    }
+
     xdim_x_ydim = xdim * ydim;
     xdim_x_ydim_x_zdim = xdim_x_ydim * zdim;
     num_cubes = (xdim - 1) * (ydim - 1) * (zdim - 1);
@@ -3081,6 +3245,23 @@ public class Gridded3DSet extends GriddedSet {
     if (debug)
       System.out.println("nvertex= " + nvertex);
 
+    return makeIsoSurfaceArray(fieldVertices, color_levels, nvertex,
+        npolygons, Pol_f_Vert, Vert_f_Pol, indexed);
+  }
+
+  /**
+   * make the geometry of an isosurface from the vertices and polygons
+   * found by isosurf
+   */
+  private VisADGeometryArray makeIsoSurfaceArray(float[][] fieldVertices,
+      byte[][] color_levels, int nvertex, int npolygons, int[] Pol_f_Vert,
+      int[] Vert_f_Pol, boolean indexed) throws VisADException {
+    boolean debug = false;
+
+    int i;
+    int size_stripe;
+    int ii;
+
     float[] NxA = new float[npolygons];
     float[] NxB = new float[npolygons];
     float[] NyA = new float[npolygons];
@@ -3680,6 +3861,26 @@ public class Gridded3DSet extends GriddedSet {
       float[][] VX, float[][] VY, float[][] VZ, byte[][] auxValues,
       byte[][] auxLevels, int[][] Pol_f_Vert, int[] Vert_f_Pol)
       throws VisADException {
+    return isosurf(isovalue, ptFLAG, nvertex_estimate, npolygons, ptGRID,
+        xdim, ydim, zdim, VX, VY, VZ, auxValues, auxLevels, Pol_f_Vert,
+        Vert_f_Pol, getSamples(false), null, null);
+  }
+
+  /**
+   * isosurf for the grid of samples, which may be a slab of this set's
+   * grid; if layer_nvet is not null, layer_nvet[iz] is set to the number
+   * of vertices made before the cubes of layer iz; if vertex_edges is
+   * not null, vertex_edges[0][v] is set to 3 * p + d for the grid edge
+   * that vertex v lies on, where p is the index of the first point of
+   * the edge in ptGRID and d is 0, 1 or 2 for an edge along the second,
+   * first or third dimension of ptGRID (steps of ydim, 1 or xdim * ydim)
+   */
+  int isosurf(float isovalue, int[] ptFLAG, int nvertex_estimate,
+      int npolygons, float[] ptGRID, int xdim, int ydim, int zdim,
+      float[][] VX, float[][] VY, float[][] VZ, byte[][] auxValues,
+      byte[][] auxLevels, int[][] Pol_f_Vert, int[] Vert_f_Pol,
+      float[][] samples, int[] layer_nvet, int[][] vertex_edges)
+      throws VisADException {
 
     int ix, iy, iz, caseA, above, bellow, front, rear, mm, nn;
     int ii, jj, kk, ncube, cpl, pvp, pa, ve;
@@ -3704,8 +3905,6 @@ public class Gridded3DSet extends GriddedSet {
 
     int t;
 
-    float[][] samples = getSamples(false);
-
     int naux = (auxValues != null) ? auxValues.length : 0;
     if (naux > 0) {
       if (auxLevels == null || auxLevels.length != naux) {
@@ -3713,9 +3912,9 @@ public class Gridded3DSet extends GriddedSet {
             + auxLevels.length + " doesn't match expected " + naux);
       }
       for (int i = 0; i < naux; i++) {
-        if (auxValues[i].length != Length) {
+        if (auxValues[i].length != samples[0].length) {
           throw new SetException("Gridded3DSet.isosurf: expected auxValues "
-              + " length#" + i + " to be " + Length + ", not "
+              + " length#" + i + " to be " + samples[0].length + ", not "
               + auxValues[i].length);
         }
       }
@@ -3768,6 +3967,9 @@ public class Gridded3DSet extends GriddedSet {
     nvet = ncube = cpl = pvp = 0;
 
     for (iz = 0; iz < zdim - 1; iz++) {
+      if (layer_nvet != null) {
+        layer_nvet[iz] = nvet;
+      }
 
       for (ix = 0; ix < xdim - 1; ix++) {
 
@@ -3793,6 +3995,11 @@ public class Gridded3DSet extends GriddedSet {
               tt = VZ[0];
               VZ[0] = new float[nvertex_estimate];
               System.arraycopy(tt, 0, VZ[0], 0, tt.length);
+              if (vertex_edges != null) {
+                int[] te = vertex_edges[0];
+                vertex_edges[0] = new int[nvertex_estimate];
+                System.arraycopy(te, 0, vertex_edges[0], 0, te.length);
+              }
               int big_ix = 9 * (nvertex_estimate + 50);
               int[] it = Pol_f_Vert[0];
               Pol_f_Vert[0] = new int[big_ix];
@@ -3885,6 +4092,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * pt;
+                  }
                   calc_edge[1] = nvet;
                   nvet++;
                 }
@@ -3923,6 +4133,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * pt + 1;
+                  }
                   calc_edge[2] = nvet;
                   nvet++;
                 }
@@ -3962,6 +4175,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * pt + 2;
+                  }
                   calc_edge[3] = nvet;
                   nvet++;
                 }
@@ -4003,6 +4219,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * (pt + ydim) + 1;
+                  }
                   calc_edge[4] = nvet;
                   P_array[2 * xx + bellow * yy + iy * xdim + (ix + 1)] = nvet;
                   nvet++;
@@ -4047,6 +4266,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * (pt + ydim) + 2;
+                  }
                   calc_edge[5] = nvet;
                   P_array[2 * xx + 2 * yy + front * zz + iy] = nvet;
                   nvet++;
@@ -4087,6 +4309,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * (pt + 1);
+                  }
                   calc_edge[6] = nvet;
                   P_array[bellow * xx + ix * ydim + (iy + 1)] = nvet;
                   nvet++;
@@ -4127,6 +4352,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * (pt + 1) + 2;
+                  }
                   calc_edge[7] = nvet;
                   P_array[2 * xx + 2 * yy + rear * zz + (iy + 1)] = nvet;
                   nvet++;
@@ -4169,6 +4397,9 @@ public class Gridded3DSet extends GriddedSet {
                    */
                 }
 
+                if (vertex_edges != null) {
+                  vertex_edges[0][nvet] = 3 * (pt + ydim + 1) + 2;
+                }
                 calc_edge[8] = nvet;
                 P_array[2 * xx + 2 * yy + front * zz + (iy + 1)] = nvet;
                 nvet++;
@@ -4213,6 +4444,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * (pt + xdim_x_ydim);
+                  }
                   calc_edge[9] = nvet;
                   P_array[above * xx + ix * ydim + iy] = nvet;
                   nvet++;
@@ -4255,6 +4489,9 @@ public class Gridded3DSet extends GriddedSet {
                      */
                   }
 
+                  if (vertex_edges != null) {
+                    vertex_edges[0][nvet] = 3 * (pt + xdim_x_ydim) + 1;
+                  }
                   calc_edge[10] = nvet;
                   P_array[2 * xx + above * yy + iy * xdim + ix] = nvet;
                   nvet++;
@@ -4297,6 +4534,9 @@ public class Gridded3DSet extends GriddedSet {
                    */
                 }
 
+                if (vertex_edges != null) {
+                  vertex_edges[0][nvet] = 3 * (pt + ydim + xdim_x_ydim) + 1;
+                }
                 calc_edge[11] = nvet;
                 P_array[2 * xx + above * yy + iy * xdim + (ix + 1)] = nvet;
                 nvet++;
@@ -4338,6 +4578,9 @@ public class Gridded3DSet extends GriddedSet {
                    */
                 }
 
+                if (vertex_edges != null) {
+                  vertex_edges[0][nvet] = 3 * (pt + 1 + xdim_x_ydim);
+                }
                 calc_edge[12] = nvet;
                 P_array[above * xx + ix * ydim + (iy + 1)] = nvet;
                 nvet++;
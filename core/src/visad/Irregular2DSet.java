@@ -36,15 +36,11 @@ package visad;
  * <p>When you call an {@link Irregular2DSet} constructor without a {@link
  * Delaunay} argument, the constructor uses the {@link Delaunay#factory(float[][], boolean)}
  * method to implictly compute a Delaunay triangulation. 3000 points is the
- * current break-point from Watson's algorithm to Clarkson's algorithm. So,
- * currently, at 3001 points you start using Clarkson's algorithm, which rounds
- * coordinates to integers.  If your values are small enough that integer
- * rounding will merge some of them to the same value (and hence create
- * colinear or colocated points), there will be trouble. One approach is
- * to scale your coordinates up so integer rounding does not merge values.
- * Another is to ensure that you use Watson's algorithm by using <code>new
- * DelaunayWatson(samples)</code> as the {@link Delaunay} argument of the {@link
- * Irregular2DSet} constructor.</p>
+ * current break-point from Watson's algorithm to the divide-and-conquer
+ * algorithm of {@link DelaunayParallel}, which uses the coordinates as given
+ * and triangulates on all processors.  If Watson's algorithm fails the
+ * factory falls back to Clarkson's algorithm, which rounds coordinates to
+ * integers, so very small values should be scaled up.</p>
  */
 public class Irregular2DSet extends IrregularSet {
 
@@ -242,10 +238,32 @@ public class Irregular2DSet extends IrregularSet {
     int[] tri = new int[length];
     int curtri = 0;
     float[][]mySamples = getMySamples();
+    SimplexIndex index = getSimplexIndex();
+    int[] candidates = (index != null) ? index.getSimplices() : null;
     for (int i=0; i<length; i++) {
       // Return -1 if iteration loop fails
       tri[i] = -1;
       boolean foundit = false;
+      if (index != null) {
+        // test the triangles overlapping the bucket of this point; if
+        // none contains it, start the walk from one of them
+        int cell = index.cellOf(value, i);
+        if (cell >= 0) {
+          int end = index.getEnd(cell);
+          for (int k=index.getStart(cell); k<end; k++) {
+            if (inTriangle(mySamples, candidates[k], value[0][i],
+                           value[1][i])) {
+              tri[i] = curtri = candidates[k];
+              foundit = true;
+              break;
+            }
+          }
+          if (!foundit && index.getStart(cell) < end) {
+            curtri = candidates[index.getStart(cell)];
+          }
+        }
+        if (foundit) continue;
+      }
       if (curtri < 0) curtri = 0;
       for (int itnum=0; (itnum<Delan.Tri.length) && !foundit; itnum++) {
         // define data
@@ -327,6 +345,31 @@ public class Irregular2DSet extends IrregularSet {
     return tri;
   }
 
+  /** return true if (Px, Py) is in triangle t, using the same tests
+      as the walk in valueToTri */
+  private boolean inTriangle(float[][] mySamples, int t, float Px, float Py) {
+    int t0 = Delan.Tri[t][0];
+    int t1 = Delan.Tri[t][1];
+    int t2 = Delan.Tri[t][2];
+    float Ax = mySamples[0][t0];
+    float Ay = mySamples[1][t0];
+    float Bx = mySamples[0][t1];
+    float By = mySamples[1][t1];
+    float Cx = mySamples[0][t2];
+    float Cy = mySamples[1][t2];
+
+    float tval0 = (Bx-Ax)*(Py-Ay) - (By-Ay)*(Px-Ax);
+    float tval1 = (Cx-Bx)*(Py-By) - (Cy-By)*(Px-Bx);
+    float tval2 = (Ax-Cx)*(Py-Cy) - (Ay-Cy)*(Px-Cx);
+    boolean test0 = (tval0 == 0) || ( (tval0 > 0) == (
+                    (Bx-Ax)*(Cy-Ay) - (By-Ay)*(Cx-Ax) > 0) );
+    boolean test1 = (tval1 == 0) || ( (tval1 > 0) == (
+                    (Cx-Bx)*(Ay-By) - (Cy-By)*(Ax-Bx) > 0) );
+    boolean test2 = (tval2 == 0) || ( (tval2 > 0) == (
+                    (Ax-Cx)*(By-Cy) - (Ay-Cy)*(Bx-Cx) > 0) );
+    return test0 && test1 && test2;
+  }
+
   /** convert an array of values in R^DomainDimension to an array of 1-D indices */
   public int[] valueToIndex(float[][] value) throws VisADException {
     if (value.length < DomainDimension) {
@@ -195,6 +195,8 @@ public class Irregular3DSet extends IrregularSet {
 //                    Delan.Tri.length);
 
     float[][]mySamples = getMySamples();
+    SimplexIndex index = getSimplexIndex();
+    int[] candidates = (index != null) ? index.getSimplices() : null;
     for (int i=0; i<length; i++) {
 
       // System.out.println("\nvalue["+i+"] = ("+value[0][i]+", "+value[1][i]+", "+value[2][i]+")");
@@ -202,6 +204,26 @@ public class Irregular3DSet extends IrregularSet {
       // Return -1 if iteration loop fails
       tri[i] = -1;
       boolean foundit = false;
+      if (index != null) {
+        // test the tetrahedra overlapping the bucket of this point; if
+        // none contains it, start the walk from one of them
+        int cell = index.cellOf(value, i);
+        if (cell >= 0) {
+          int end = index.getEnd(cell);
+          for (int k=index.getStart(cell); k<end; k++) {
+            if (inTetrahedron(mySamples, candidates[k], value[0][i],
+                              value[1][i], value[2][i])) {
+              tri[i] = curtri = candidates[k];
+              foundit = true;
+              break;
+            }
+          }
+          if (!foundit && index.getStart(cell) < end) {
+            curtri = candidates[index.getStart(cell)];
+          }
+        }
+        if (foundit) continue;
+      }
       if (curtri < 0) curtri = 0;
       int itnum;
       for (itnum=0; (itnum<Delan.Tri.length) && !foundit; itnum++) {
@@ -386,6 +408,68 @@ public class Irregular3DSet extends IrregularSet {
     return tri;
   }
 
+  /** return true if (Px, Py, Pz) is in tetrahedron t, using the same
+      tests as the walk in valueToTri */
+  private boolean inTetrahedron(float[][] mySamples, int t, float Px,
+                                float Py, float Pz) {
+    int t0 = Delan.Tri[t][0];
+    int t1 = Delan.Tri[t][1];
+    int t2 = Delan.Tri[t][2];
+    int t3 = Delan.Tri[t][3];
+    float Ax = mySamples[0][t0];
+    float Ay = mySamples[1][t0];
+    float Az = mySamples[2][t0];
+    float Bx = mySamples[0][t1];
+    float By = mySamples[1][t1];
+    float Bz = mySamples[2][t1];
+    float Cx = mySamples[0][t2];
+    float Cy = mySamples[1][t2];
+    float Cz = mySamples[2][t2];
+    float Dx = mySamples[0][t3];
+    float Dy = mySamples[1][t3];
+    float Dz = mySamples[2][t3];
+
+    float BAxCB0 = (By-Ay)*(Cz-Bz)-(Bz-Az)*(Cy-By);
+    float BAxCB1 = (Bz-Az)*(Cx-Bx)-(Bx-Ax)*(Cz-Bz);
+    float BAxCB2 = (Bx-Ax)*(Cy-By)-(By-Ay)*(Cx-Bx);
+    float sum_BAxCB = Math.abs(BAxCB0) + Math.abs(BAxCB1) + Math.abs(BAxCB2);
+    float tval1 = BAxCB0*(Px-Ax) + BAxCB1*(Py-Ay) + BAxCB2*(Pz-Az);
+    boolean test1 = ((tval1 == 0.0f) || ( (tval1 > 0) == (
+                    BAxCB0*(Dx-Ax) + BAxCB1*(Dy-Ay) + BAxCB2*(Dz-Az) > 0) ))
+                    && (sum_BAxCB != 0);
+    if (!test1) return false;
+
+    float CBxDC0 = (Cy-By)*(Dz-Cz)-(Cz-Bz)*(Dy-Cy);
+    float CBxDC1 = (Cz-Bz)*(Dx-Cx)-(Cx-Bx)*(Dz-Cz);
+    float CBxDC2 = (Cx-Bx)*(Dy-Cy)-(Cy-By)*(Dx-Cx);
+    float sum_CBxDC = Math.abs(CBxDC0) + Math.abs(CBxDC1) + Math.abs(CBxDC2);
+    float tval2 = CBxDC0*(Px-Bx) + CBxDC1*(Py-By) + CBxDC2*(Pz-Bz);
+    boolean test2 = ((tval2 == 0.0f) || ( (tval2 > 0) == (
+                    CBxDC0*(Ax-Bx) + CBxDC1*(Ay-By) + CBxDC2*(Az-Bz) > 0) ))
+                    && (sum_CBxDC != 0);
+    if (!test2) return false;
+
+    float DCxAD0 = (Dy-Cy)*(Az-Dz)-(Dz-Cz)*(Ay-Dy);
+    float DCxAD1 = (Dz-Cz)*(Ax-Dx)-(Dx-Cx)*(Az-Dz);
+    float DCxAD2 = (Dx-Cx)*(Ay-Dy)-(Dy-Cy)*(Ax-Dx);
+    float sum_DCxAD = Math.abs(DCxAD0) + Math.abs(DCxAD1) + Math.abs(DCxAD2);
+    float tval3 = DCxAD0*(Px-Cx) + DCxAD1*(Py-Cy) + DCxAD2*(Pz-Cz);
+    boolean test3 = ((tval3 == 0.0f) || ( (tval3 > 0) == (
+                    DCxAD0*(Bx-Cx) + DCxAD1*(By-Cy) + DCxAD2*(Bz-Cz) > 0) ))
+                    && (sum_DCxAD != 0);
+    if (!test3) return false;
+
+    float ADxBA0 = (Ay-Dy)*(Bz-Az)-(Az-Dz)*(By-Ay);
+    float ADxBA1 = (Az-Dz)*(Bx-Ax)-(Ax-Dx)*(Bz-Az);
+    float ADxBA2 = (Ax-Dx)*(By-Ay)-(Ay-Dy)*(Bx-Ax);
+    float sum_ADxBA = Math.abs(ADxBA0) + Math.abs(ADxBA1) + Math.abs(ADxBA2);
+    float tval4 = ADxBA0*(Px-Dx) + ADxBA1*(Py-Dy) + ADxBA2*(Pz-Dz);
+    boolean test4 = ((tval4 == 0.0f) || ( (tval4 > 0) == (
+                    ADxBA0*(Cx-Dx) + ADxBA1*(Cy-Dy) + ADxBA2*(Cz-Dz) > 0) ))
+                    && (sum_ADxBA != 0);
+    return test4;
+  }
+
   /** convert an array of values in R^DomainDimension to an array of
       1-D indices */
   public int[] valueToIndex(float[][] value) throws VisADException {
@@ -46,6 +46,12 @@ public class IrregularSet extends SampledSet {
   /** maps sorted samples indices to old samples indices */
   int[] newToOld;
 
+  /** lazily built index over the simplices of Delan */
+  private transient SimplexIndex simplexIndex;
+
+  /** the Delaunay.Tri array SimplexIndex.build last refused to index */
+  private transient int[][] unindexedTri;
+
   /** construct an IrregularSet */
   public IrregularSet(MathType type, float[][] samples)
          throws VisADException {
@@ -106,6 +112,36 @@ public class IrregularSet extends SampledSet {
     }
   }
 
+  /**
+   * return a spatial index over the simplices of Delan, building it on
+   * first use; return null if the index is disabled or Delan is too small
+   * or too full of slivers to benefit from one
+   */
+  SimplexIndex getSimplexIndex() {
+    Delaunay delan = Delan;
+    if (delan == null || !SimplexIndex.isEnabled()) return null;
+    SimplexIndex index = simplexIndex;
+    if (index != null && index.delaunay == delan && index.tri == delan.Tri) {
+      return index;
+    }
+    if (unindexedTri == delan.Tri) return null;
+    synchronized (this) {
+      index = simplexIndex;
+      if (index == null || index.delaunay != delan || index.tri != delan.Tri) {
+        index = SimplexIndex.build(delan, getMySamples(), ManifoldDimension);
+        simplexIndex = index;
+        if (index == null) unindexedTri = delan.Tri;
+      }
+    }
+    return index;
+  }
+
+  protected void setMySamples(float[][] samples) {
+    simplexIndex = null;
+    unindexedTri = null;
+    super.setMySamples(samples);
+  }
+
   /** convert an array of 1-D indices to an array of values in R^DomainDimension */
   public float[][] indexToValue(int[] index) throws VisADException {
     float[][] value = new float[DomainDimension][index.length];
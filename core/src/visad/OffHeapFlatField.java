@@ -0,0 +1,871 @@
+//
+// OffHeapFlatField.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * OffHeapFlatField is a FlatField whose range values are held in direct
+ * {@link ByteBuffer}s, outside the Java heap, instead of the usual
+ * double[][], float[][], int[][], short[][] or byte[][] arrays.  Each
+ * range component is packed exactly as FlatField packs it: as doubles
+ * for a DoubleSet range set, as floats for a FloatSet, and otherwise as
+ * byte, short or int indices into the range Set.<P>
+ *
+ * Methods that return range values as arrays, such as
+ * {@link #getFloats(boolean)} and {@link #unpackFloats(boolean)}, always
+ * return new arrays, which the caller may modify and which are not kept.
+ * {@link #getSample(int)}, {@link #unpackFloats(int, int, float[])} and
+ * resample read only the samples they need.  The results of math
+ * operations on an OffHeapFlatField are ordinary FlatFields.<P>
+ *
+ * Direct buffers are released when the OffHeapFlatField is garbage
+ * collected; the JVM limits their total size with
+ * -XX:MaxDirectMemorySize.<P>
+ */
+public class OffHeapFlatField extends FlatField {
+
+  // -- Constants --
+
+  /** range component packing modes, as in FlatField */
+  private static final int DOUBLE = 1;
+  private static final int FLOAT = 2;
+  private static final int INT = 4;
+  private static final int SHORT = 5;
+  private static final int BYTE = 6;
+
+  private static final int MISSING1 = Byte.MIN_VALUE;
+  private static final int MISSING2 = Short.MIN_VALUE;
+  private static final int MISSING4 = Integer.MIN_VALUE;
+
+  /** samples per buffer are limited to 2^CHUNK_SHIFT, so buffers of
+      doubles stay below the 2 GB limit of a ByteBuffer */
+  private static final int CHUNK_SHIFT = 26;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /** samples converted at a time, to bound temporary arrays */
+  private static final int BLOCK_SIZE = 1 << 16;
+
+
+  // -- Fields --
+
+  /** range sets, one per flat range component */
+  private Set[] rangeSets;
+
+  /** packing mode of each range component */
+  private int[] modes;
+
+  /** views[i][c] is the DoubleBuffer, FloatBuffer, IntBuffer, ShortBuffer
+      or ByteBuffer of chunk c of range component i, or views[i] is null
+      if component i has no values */
+  private transient Buffer[][] views;
+
+  /** lock for views */
+  private transient Object lock = new Object();
+
+
+  // -- Constructors --
+
+  public OffHeapFlatField(FunctionType type) throws VisADException {
+    this(type, type.getDomain().getDefaultSet(), null, null, null, null);
+  }
+
+  public OffHeapFlatField(FunctionType type, Set domain_set)
+                          throws VisADException {
+    this(type, domain_set, null, null, null, null);
+  }
+
+  public OffHeapFlatField(FunctionType type, Set domain_set,
+                          CoordinateSystem range_coord_sys, Set[] range_sets,
+                          Unit[] units) throws VisADException {
+    this(type, domain_set, range_coord_sys, null, range_sets, units);
+  }
+
+  public OffHeapFlatField(FunctionType type, Set domain_set,
+                          CoordinateSystem[] range_coord_syses,
+                          Set[] range_sets, Unit[] units)
+                          throws VisADException {
+    this(type, domain_set, null, range_coord_syses, range_sets, units);
+  }
+
+  public OffHeapFlatField(FunctionType type, Set domain_set,
+                          CoordinateSystem range_coord_sys,
+                          CoordinateSystem[] range_coord_syses,
+                          Set[] range_sets, Unit[] units)
+                          throws VisADException {
+    super(type, domain_set, range_coord_sys, range_coord_syses, range_sets,
+          units);
+    rangeSets = getRangeSets();
+    modes = new int[TupleDimension];
+    for (int i=0; i<TupleDimension; i++) {
+      modes[i] = packingMode(rangeSets[i]);
+    }
+    views = new Buffer[TupleDimension][];
+  }
+
+  /**
+   * Constructs an OffHeapFlatField with the type, domain set, range
+   * sets, units, errors and range values of field.
+   */
+  public OffHeapFlatField(FlatField field)
+         throws VisADException, java.rmi.RemoteException {
+    this((FunctionType) field.getType(), field.getDomainSet(),
+         field.RangeCoordinateSystem, field.RangeCoordinateSystems,
+         field.getRangeSets(), field.RangeUnits);
+    if (!field.isMissing()) {
+      if (field.shouldBeDouble()) {
+        packValues(field.unpackValues(false), false);
+      }
+      else {
+        packValues(field.unpackFloats(false), false);
+      }
+      setRangeErrors(field.getRangeErrors());
+    }
+  }
+
+  private static int packingMode(Set set) throws VisADException {
+    if (set instanceof DoubleSet) return DOUBLE;
+    if (set instanceof FloatSet) return FLOAT;
+    int length = set.getLength();
+    if (length < 256) return BYTE;
+    if (length < 65536) return SHORT;
+    return INT;
+  }
+
+
+  // -- OffHeapFlatField API methods --
+
+  /**
+   * Copies the values of range component comp at the samples
+   * start .. start+values.length-1 into values, without unpacking the
+   * other samples.
+   */
+  public void unpackFloats(int comp, int start, float[] values)
+         throws VisADException {
+    checkRange(comp, start, values.length);
+    synchronized (lock) {
+      if (isMissing() || views[comp] == null) {
+        java.util.Arrays.fill(values, Float.NaN);
+        return;
+      }
+      readFloats(comp, start, values, 0, values.length);
+    }
+  }
+
+  /**
+   * Copies the values of range component comp at the samples
+   * start .. start+values.length-1 into values, without unpacking the
+   * other samples.
+   */
+  public void unpackValues(int comp, int start, double[] values)
+         throws VisADException {
+    checkRange(comp, start, values.length);
+    synchronized (lock) {
+      if (isMissing() || views[comp] == null) {
+        java.util.Arrays.fill(values, Double.NaN);
+        return;
+      }
+      readDoubles(comp, start, values, 0, values.length);
+    }
+  }
+
+  /** @return number of bytes of direct buffers holding range values */
+  public long getBufferSize() {
+    long size = 0;
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        if (views[i] != null) {
+          size += (long) getLength() * elementSize(modes[i]);
+        }
+      }
+    }
+    return size;
+  }
+
+  private void checkRange(int comp, int start, int length)
+          throws VisADException {
+    if (comp < 0 || comp >= TupleDimension) {
+      throw new FieldException("OffHeapFlatField: bad range component " +
+                               comp);
+    }
+    if (start < 0 || length < 0 || start + length > getLength()) {
+      throw new FieldException("OffHeapFlatField: bad sample range " +
+                               start + " + " + length);
+    }
+  }
+
+
+  // -- FlatField methods --
+
+  void packValues(double[][] range, boolean copy) throws VisADException {
+    synchronized (lock) {
+      Buffer[][] new_views = new Buffer[TupleDimension][];
+      int length = getLength();
+      for (int i=0; i<TupleDimension; i++) {
+        new_views[i] = allocate(modes[i], length, false);
+      }
+      Buffer[][] old_views = views;
+      views = new_views;
+      try {
+        for (int i=0; i<TupleDimension; i++) {
+          writeDoubles(i, 0, range[i], 0, length);
+        }
+      }
+      catch (VisADException e) {
+        views = old_views;
+        throw e;
+      }
+      clearMissing();
+    }
+  }
+
+  void packValues(float[][] range, boolean copy) throws VisADException {
+    synchronized (lock) {
+      Buffer[][] new_views = new Buffer[TupleDimension][];
+      int length = getLength();
+      for (int i=0; i<TupleDimension; i++) {
+        new_views[i] = allocate(modes[i], length, false);
+      }
+      Buffer[][] old_views = views;
+      views = new_views;
+      try {
+        for (int i=0; i<TupleDimension; i++) {
+          writeFloats(i, 0, range[i], 0, length);
+        }
+      }
+      catch (VisADException e) {
+        views = old_views;
+        throw e;
+      }
+      clearMissing();
+    }
+  }
+
+  void packValues(int start, double[][] range) throws VisADException {
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        ensureAllocated(i);
+        writeDoubles(i, start, range[i], 0, range[i].length);
+      }
+      clearMissing();
+    }
+  }
+
+  void packValues(int[] indices, double[][] range) throws VisADException {
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        ensureAllocated(i);
+        double[] rangeI = range[i];
+        if (modes[i] == DOUBLE || modes[i] == FLOAT) {
+          for (int j=0; j<indices.length; j++) {
+            putValue(i, indices[j], rangeI[j]);
+          }
+        }
+        else {
+          int[] index = rangeSets[i].valueToIndex(
+                          Set.doubleToFloat(new double[][] {rangeI}));
+          for (int j=0; j<indices.length; j++) {
+            putIndex(i, indices[j], index[j]);
+          }
+        }
+      }
+      clearMissing();
+    }
+  }
+
+  void packValues(int index, double[] vals, int[] incs)
+       throws VisADException {
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        ensureAllocated(i);
+        incs[i] = (vals[i] != vals[i]) ? 0 : 1;
+        if (modes[i] == DOUBLE || modes[i] == FLOAT) {
+          double old = getValue(i, index);
+          incs[i] -= (old != old) ? 0 : 1;
+          putValue(i, index, vals[i]);
+        }
+        else {
+          incs[i] -= (getIndex(i, index) < 0) ? 0 : 1;
+          int[] indices = rangeSets[i].valueToIndex(
+                            new float[][] {{(float) vals[i]}});
+          putIndex(i, index, indices[0]);
+        }
+      }
+    }
+  }
+
+  void packShorts(int comp, short[] values, boolean copy)
+       throws VisADException {
+    synchronized (lock) {
+      if (views[comp] == null) {
+        views[comp] = allocate(modes[comp], getLength(), false);
+      }
+      for (int c=0; c<views[comp].length; c++) {
+        ShortBuffer chunk = (ShortBuffer) duplicate(views[comp][c]);
+        chunk.position(0);
+        chunk.put(values, c << CHUNK_SHIFT, chunk.remaining());
+      }
+      clearMissing();
+    }
+  }
+
+  void packBytes(int comp, byte[] values, boolean copy)
+       throws VisADException {
+    synchronized (lock) {
+      if (views[comp] == null) {
+        views[comp] = allocate(modes[comp], getLength(), false);
+      }
+      for (int c=0; c<views[comp].length; c++) {
+        ByteBuffer chunk = (ByteBuffer) duplicate(views[comp][c]);
+        chunk.position(0);
+        chunk.put(values, c << CHUNK_SHIFT, chunk.remaining());
+      }
+      clearMissing();
+    }
+  }
+
+  void copyRange(FlatField clone) throws VisADException {
+    OffHeapFlatField that = (OffHeapFlatField) clone;
+    synchronized (lock) {
+      Buffer[][] new_views = new Buffer[TupleDimension][];
+      int length = getLength();
+      for (int i=0; i<TupleDimension; i++) {
+        if (views[i] == null) continue;
+        new_views[i] = allocate(modes[i], length, false);
+        for (int c=0; c<views[i].length; c++) {
+          copyChunk(views[i][c], new_views[i][c]);
+        }
+      }
+      that.lock = new Object();
+      that.views = new_views;
+    }
+  }
+
+  protected void nullRanges() throws VisADException {
+    super.nullRanges();
+    // called by the FlatField constructor before lock is set
+    if (lock == null) return;
+    synchronized (lock) {
+      views = new Buffer[TupleDimension][];
+    }
+  }
+
+  protected double[][] unpackValues(boolean copy) throws VisADException {
+    double[][] range = new double[TupleDimension][];
+    for (int i=0; i<TupleDimension; i++) {
+      range[i] = unpackOneRangeComp(i, copy);
+    }
+    return range;
+  }
+
+  protected float[][] unpackFloats(boolean copy) throws VisADException {
+    float[][] range = new float[TupleDimension][];
+    for (int i=0; i<TupleDimension; i++) {
+      range[i] = unpackOneFloatRangeComp(i, copy);
+    }
+    return range;
+  }
+
+  protected double[] unpackOneRangeComp(int comp, boolean copy)
+            throws VisADException {
+    double[] range = new double[getLength()];
+    unpackValues(comp, 0, range);
+    return range;
+  }
+
+  protected float[] unpackOneFloatRangeComp(int comp, boolean copy)
+            throws VisADException {
+    float[] range = new float[getLength()];
+    unpackFloats(comp, 0, range);
+    return range;
+  }
+
+  protected double[] unpackValues(int s_index) throws VisADException {
+    double[] range = new double[TupleDimension];
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        if (isMissing() || views[i] == null) {
+          range[i] = Double.NaN;
+        }
+        else if (modes[i] == DOUBLE || modes[i] == FLOAT) {
+          range[i] = getValue(i, s_index);
+        }
+        else {
+          int[] index = {getIndex(i, s_index)};
+          range[i] = rangeSets[i].indexToValue(index)[0][0];
+        }
+      }
+    }
+    return range;
+  }
+
+  protected float[] unpackFloats(int s_index) throws VisADException {
+    float[] range = new float[TupleDimension];
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        if (isMissing() || views[i] == null) {
+          range[i] = Float.NaN;
+        }
+        else if (modes[i] == DOUBLE || modes[i] == FLOAT) {
+          range[i] = (float) getValue(i, s_index);
+        }
+        else {
+          int[] index = {getIndex(i, s_index)};
+          range[i] = rangeSets[i].indexToValue(index)[0][0];
+        }
+      }
+    }
+    return range;
+  }
+
+  /** resample unpacks only the samples it uses */
+  protected boolean unpacksForResample() {
+    return false;
+  }
+
+  /** range values are not held in byte arrays */
+  public byte[][] grabBytes() {
+    return null;
+  }
+
+  public boolean equals(Object obj) {
+    if (!(obj instanceof OffHeapFlatField) || !super.equals(obj)) {
+      return false;
+    }
+    OffHeapFlatField that = (OffHeapFlatField) obj;
+    if (isMissing() || that.isMissing()) {
+      return isMissing() == that.isMissing();
+    }
+    synchronized (lock) {
+      synchronized (that.lock) {
+        for (int i=0; i<TupleDimension; i++) {
+          if (modes[i] != that.modes[i]) return false;
+          if (views[i] == null || that.views[i] == null) {
+            if (views[i] != that.views[i]) return false;
+            continue;
+          }
+          for (int c=0; c<views[i].length; c++) {
+            if (!duplicate(views[i][c]).equals(duplicate(that.views[i][c]))) {
+              return false;
+            }
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+
+  // -- Helper methods --
+
+  private static int elementSize(int mode) {
+    switch (mode) {
+      case DOUBLE: return 8;
+      case FLOAT:
+      case INT: return 4;
+      case SHORT: return 2;
+      default: return 1;
+    }
+  }
+
+  /** allocate the chunks of a component of length samples, filled with
+      missing values if fill is true */
+  private static Buffer[] allocate(int mode, int length, boolean fill) {
+    int nchunks = Math.max(1, (length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    Buffer[] chunks = new Buffer[nchunks];
+    for (int c=0; c<nchunks; c++) {
+      int n = Math.min(CHUNK_SIZE, length - (c << CHUNK_SHIFT));
+      ByteBuffer bytes = ByteBuffer.allocateDirect(n * elementSize(mode));
+      bytes.order(ByteOrder.nativeOrder());
+      switch (mode) {
+        case DOUBLE:
+          DoubleBuffer d = bytes.asDoubleBuffer();
+          if (fill) for (int j=0; j<n; j++) d.put(j, Double.NaN);
+          chunks[c] = d;
+          break;
+        case FLOAT:
+          FloatBuffer f = bytes.asFloatBuffer();
+          if (fill) for (int j=0; j<n; j++) f.put(j, Float.NaN);
+          chunks[c] = f;
+          break;
+        case INT:
+          IntBuffer i = bytes.asIntBuffer();
+          if (fill) for (int j=0; j<n; j++) i.put(j, MISSING4);
+          chunks[c] = i;
+          break;
+        case SHORT:
+          ShortBuffer s = bytes.asShortBuffer();
+          if (fill) for (int j=0; j<n; j++) s.put(j, (short) MISSING2);
+          chunks[c] = s;
+          break;
+        default:
+          if (fill) for (int j=0; j<n; j++) bytes.put(j, (byte) MISSING1);
+          chunks[c] = bytes;
+          break;
+      }
+    }
+    return chunks;
+  }
+
+  /** make sure component comp has buffers, filled with missing values */
+  private void ensureAllocated(int comp) {
+    if (views[comp] == null) {
+      views[comp] = allocate(modes[comp], getLength(), true);
+    }
+  }
+
+  /** @return duplicate of buffer, so its position may be changed */
+  private static Buffer duplicate(Buffer buffer) {
+    if (buffer instanceof DoubleBuffer) {
+      return ((DoubleBuffer) buffer).duplicate();
+    }
+    if (buffer instanceof FloatBuffer) {
+      return ((FloatBuffer) buffer).duplicate();
+    }
+    if (buffer instanceof IntBuffer) {
+      return ((IntBuffer) buffer).duplicate();
+    }
+    if (buffer instanceof ShortBuffer) {
+      return ((ShortBuffer) buffer).duplicate();
+    }
+    ByteBuffer bytes = ((ByteBuffer) buffer).duplicate();
+    bytes.order(((ByteBuffer) buffer).order());
+    return bytes;
+  }
+
+  private static void copyChunk(Buffer from, Buffer to) {
+    Buffer src = duplicate(from);
+    Buffer dst = duplicate(to);
+    if (src instanceof DoubleBuffer) {
+      ((DoubleBuffer) dst).put((DoubleBuffer) src);
+    }
+    else if (src instanceof FloatBuffer) {
+      ((FloatBuffer) dst).put((FloatBuffer) src);
+    }
+    else if (src instanceof IntBuffer) {
+      ((IntBuffer) dst).put((IntBuffer) src);
+    }
+    else if (src instanceof ShortBuffer) {
+      ((ShortBuffer) dst).put((ShortBuffer) src);
+    }
+    else {
+      ((ByteBuffer) dst).put((ByteBuffer) src);
+    }
+  }
+
+  /** value of sample of a DOUBLE or FLOAT component */
+  private double getValue(int comp, int sample) {
+    Buffer chunk = views[comp][sample >>> CHUNK_SHIFT];
+    int j = sample & CHUNK_MASK;
+    if (modes[comp] == DOUBLE) return ((DoubleBuffer) chunk).get(j);
+    return ((FloatBuffer) chunk).get(j);
+  }
+
+  private void putValue(int comp, int sample, double value) {
+    Buffer chunk = views[comp][sample >>> CHUNK_SHIFT];
+    int j = sample & CHUNK_MASK;
+    if (modes[comp] == DOUBLE) ((DoubleBuffer) chunk).put(j, value);
+    else ((FloatBuffer) chunk).put(j, (float) value);
+  }
+
+  /** range set index of sample of a BYTE, SHORT or INT component;
+      -1 if missing */
+  private int getIndex(int comp, int sample) {
+    Buffer chunk = views[comp][sample >>> CHUNK_SHIFT];
+    int j = sample & CHUNK_MASK;
+    switch (modes[comp]) {
+      case INT: return ((IntBuffer) chunk).get(j) - MISSING4 - 1;
+      case SHORT: return ((ShortBuffer) chunk).get(j) - MISSING2 - 1;
+      default: return ((ByteBuffer) chunk).get(j) - MISSING1 - 1;
+    }
+  }
+
+  private void putIndex(int comp, int sample, int index) {
+    Buffer chunk = views[comp][sample >>> CHUNK_SHIFT];
+    int j = sample & CHUNK_MASK;
+    switch (modes[comp]) {
+      case INT:
+        ((IntBuffer) chunk).put(j, index + MISSING4 + 1);
+        break;
+      case SHORT:
+        ((ShortBuffer) chunk).put(j, (short) (index + MISSING2 + 1));
+        break;
+      default:
+        ((ByteBuffer) chunk).put(j, (byte) (index + MISSING1 + 1));
+        break;
+    }
+  }
+
+  /** number of samples from sample to the end of its block and chunk */
+  private static int blockLength(int sample, int remaining) {
+    int n = Math.min(remaining, BLOCK_SIZE);
+    return Math.min(n, CHUNK_SIZE - (sample & CHUNK_MASK));
+  }
+
+  private void readIndices(int comp, int sample, int[] index, int n) {
+    Buffer chunk = duplicate(views[comp][sample >>> CHUNK_SHIFT]);
+    chunk.position(sample & CHUNK_MASK);
+    switch (modes[comp]) {
+      case INT:
+        ((IntBuffer) chunk).get(index, 0, n);
+        for (int j=0; j<n; j++) index[j] -= MISSING4 + 1;
+        break;
+      case SHORT:
+        ShortBuffer s = (ShortBuffer) chunk;
+        for (int j=0; j<n; j++) index[j] = s.get() - MISSING2 - 1;
+        break;
+      default:
+        ByteBuffer b = (ByteBuffer) chunk;
+        for (int j=0; j<n; j++) index[j] = b.get() - MISSING1 - 1;
+        break;
+    }
+  }
+
+  private void writeIndices(int comp, int sample, int[] index, int n) {
+    Buffer chunk = duplicate(views[comp][sample >>> CHUNK_SHIFT]);
+    chunk.position(sample & CHUNK_MASK);
+    switch (modes[comp]) {
+      case INT:
+        IntBuffer i = (IntBuffer) chunk;
+        for (int j=0; j<n; j++) i.put(index[j] + MISSING4 + 1);
+        break;
+      case SHORT:
+        ShortBuffer s = (ShortBuffer) chunk;
+        for (int j=0; j<n; j++) s.put((short) (index[j] + MISSING2 + 1));
+        break;
+      default:
+        ByteBuffer b = (ByteBuffer) chunk;
+        for (int j=0; j<n; j++) b.put((byte) (index[j] + MISSING1 + 1));
+        break;
+    }
+  }
+
+  /** read samples start .. start+length-1 of comp into values[off..] */
+  private void readFloats(int comp, int start, float[] values, int off,
+                          int length) throws VisADException {
+    int mode = modes[comp];
+    int[] index = (mode == DOUBLE || mode == FLOAT) ? null :
+                  new int[Math.min(length, BLOCK_SIZE)];
+    int done = 0;
+    while (done < length) {
+      int sample = start + done;
+      int n = blockLength(sample, length - done);
+      Buffer chunk = duplicate(views[comp][sample >>> CHUNK_SHIFT]);
+      chunk.position(sample & CHUNK_MASK);
+      if (mode == FLOAT) {
+        ((FloatBuffer) chunk).get(values, off + done, n);
+      }
+      else if (mode == DOUBLE) {
+        DoubleBuffer d = (DoubleBuffer) chunk;
+        for (int j=0; j<n; j++) values[off + done + j] = (float) d.get();
+      }
+      else {
+        if (n < index.length) index = new int[n];
+        readIndices(comp, sample, index, n);
+        float[] block = rangeSets[comp].indexToValue(index)[0];
+        System.arraycopy(block, 0, values, off + done, n);
+      }
+      done += n;
+    }
+  }
+
+  /** read samples start .. start+length-1 of comp into values[off..] */
+  private void readDoubles(int comp, int start, double[] values, int off,
+                           int length) throws VisADException {
+    int mode = modes[comp];
+    int[] index = (mode == DOUBLE || mode == FLOAT) ? null :
+                  new int[Math.min(length, BLOCK_SIZE)];
+    int done = 0;
+    while (done < length) {
+      int sample = start + done;
+      int n = blockLength(sample, length - done);
+      Buffer chunk = duplicate(views[comp][sample >>> CHUNK_SHIFT]);
+      chunk.position(sample & CHUNK_MASK);
+      if (mode == DOUBLE) {
+        ((DoubleBuffer) chunk).get(values, off + done, n);
+      }
+      else if (mode == FLOAT) {
+        FloatBuffer f = (FloatBuffer) chunk;
+        for (int j=0; j<n; j++) values[off + done + j] = f.get();
+      }
+      else {
+        if (n < index.length) index = new int[n];
+        readIndices(comp, sample, index, n);
+        float[] block = rangeSets[comp].indexToValue(index)[0];
+        for (int j=0; j<n; j++) values[off + done + j] = block[j];
+      }
+      done += n;
+    }
+  }
+
+  /** write values[off..off+length-1] to samples start.. of comp */
+  private void writeFloats(int comp, int start, float[] values, int off,
+                           int length) throws VisADException {
+    int mode = modes[comp];
+    float[][] block = null;
+    int done = 0;
+    while (done < length) {
+      int sample = start + done;
+      int n = blockLength(sample, length - done);
+      Buffer chunk = duplicate(views[comp][sample >>> CHUNK_SHIFT]);
+      chunk.position(sample & CHUNK_MASK);
+      if (mode == FLOAT) {
+        ((FloatBuffer) chunk).put(values, off + done, n);
+      }
+      else if (mode == DOUBLE) {
+        DoubleBuffer d = (DoubleBuffer) chunk;
+        for (int j=0; j<n; j++) d.put(values[off + done + j]);
+      }
+      else {
+        if (block == null || block[0].length != n) block = new float[1][n];
+        System.arraycopy(values, off + done, block[0], 0, n);
+        writeIndices(comp, sample, rangeSets[comp].valueToIndex(block), n);
+      }
+      done += n;
+    }
+  }
+
+  /** write values[off..off+length-1] to samples start.. of comp */
+  private void writeDoubles(int comp, int start, double[] values, int off,
+                            int length) throws VisADException {
+    int mode = modes[comp];
+    float[][] block = null;
+    int done = 0;
+    while (done < length) {
+      int sample = start + done;
+      int n = blockLength(sample, length - done);
+      Buffer chunk = duplicate(views[comp][sample >>> CHUNK_SHIFT]);
+      chunk.position(sample & CHUNK_MASK);
+      if (mode == DOUBLE) {
+        ((DoubleBuffer) chunk).put(values, off + done, n);
+      }
+      else if (mode == FLOAT) {
+        FloatBuffer f = (FloatBuffer) chunk;
+        for (int j=0; j<n; j++) f.put((float) values[off + done + j]);
+      }
+      else {
+        if (block == null || block[0].length != n) block = new float[1][n];
+        float[] block0 = block[0];
+        for (int j=0; j<n; j++) block0[j] = (float) values[off + done + j];
+        writeIndices(comp, sample, rangeSets[comp].valueToIndex(block), n);
+      }
+      done += n;
+    }
+  }
+
+
+  // -- Serialization --
+
+  /** write the packed range values after the default fields */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    synchronized (lock) {
+      for (int i=0; i<TupleDimension; i++) {
+        out.writeBoolean(views[i] != null);
+        if (views[i] == null) continue;
+        for (int c=0; c<views[i].length; c++) {
+          Buffer chunk = duplicate(views[i][c]);
+          chunk.clear();
+          while (chunk.hasRemaining()) {
+            int n = Math.min(BLOCK_SIZE, chunk.remaining());
+            ByteBuffer bytes = ByteBuffer.allocate(n * elementSize(modes[i]));
+            transfer(chunk, bytes, n, true);
+            out.write(bytes.array());
+          }
+        }
+      }
+    }
+  }
+
+  private void readObject(ObjectInputStream in)
+          throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    lock = new Object();
+    views = new Buffer[TupleDimension][];
+    for (int i=0; i<TupleDimension; i++) {
+      if (!in.readBoolean()) continue;
+      views[i] = allocate(modes[i], getLength(), false);
+      for (int c=0; c<views[i].length; c++) {
+        Buffer chunk = duplicate(views[i][c]);
+        chunk.clear();
+        while (chunk.hasRemaining()) {
+          int n = Math.min(BLOCK_SIZE, chunk.remaining());
+          byte[] array = new byte[n * elementSize(modes[i])];
+          in.readFully(array);
+          transfer(chunk, ByteBuffer.wrap(array), n, false);
+        }
+      }
+    }
+  }
+
+  /** move n elements between chunk and the big-endian bytes, in the
+      direction given by toBytes */
+  private static void transfer(Buffer chunk, ByteBuffer bytes, int n,
+                               boolean toBytes) {
+    chunk.limit(chunk.position() + n);
+    if (chunk instanceof DoubleBuffer) {
+      DoubleBuffer d = bytes.asDoubleBuffer();
+      if (toBytes) d.put((DoubleBuffer) chunk);
+      else ((DoubleBuffer) chunk).put(d);
+    }
+    else if (chunk instanceof FloatBuffer) {
+      FloatBuffer f = bytes.asFloatBuffer();
+      if (toBytes) f.put((FloatBuffer) chunk);
+      else ((FloatBuffer) chunk).put(f);
+    }
+    else if (chunk instanceof IntBuffer) {
+      IntBuffer i = bytes.asIntBuffer();
+      if (toBytes) i.put((IntBuffer) chunk);
+      else ((IntBuffer) chunk).put(i);
+    }
+    else if (chunk instanceof ShortBuffer) {
+      ShortBuffer s = bytes.asShortBuffer();
+      if (toBytes) s.put((ShortBuffer) chunk);
+      else ((ShortBuffer) chunk).put(s);
+    }
+    else {
+      if (toBytes) bytes.put((ByteBuffer) chunk);
+      else ((ByteBuffer) chunk).put(bytes);
+    }
+    chunk.limit(chunk.capacity());
+  }
+}
@@ -0,0 +1,373 @@
+//
+// ParallelIsoSurface.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelIsoSurface isosurfaces the grid of a {@link Gridded3DSet} in
+ * slabs of cube layers along its third dimension, for
+ * {@link Gridded3DSet#makeIsoSurface(float, float[], byte[][], boolean)}.
+ * <P>
+ *
+ * Each slab computes the flags of its cubes from its own layers of
+ * field values plus one layer on either side, which is all the special
+ * cases of {@link Gridded3DSet#flags} look at, and then runs
+ * {@link Gridded3DSet#isosurf} on its layers.  Slabs run concurrently on
+ * a fork-join pool and only the slabs being run hold scratch arrays.<P>
+ *
+ * Adjacent slabs both make the vertices on the grid plane they share;
+ * the copies made by the upper slab are dropped when the slabs are
+ * merged, matched to the lower slab's by the grid edge they lie on.
+ * The merged vertices and polygons are numbered as the whole grid would
+ * number them, so the surface has the same topology as the sequential
+ * one.
+ */
+final class ParallelIsoSurface {
+
+  /** slab size in cube layers of Gridded3DSet.makeIsoSurface; 0 means
+      isosurface the whole grid at once */
+  private static volatile int slabSize =
+    Integer.getInteger("visad.isosurface.slabsize", 0).intValue();
+
+  /** number of slabs isosurfaced concurrently */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.isosurface.parallelism",
+                       Runtime.getRuntime().availableProcessors()).intValue();
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  /** vertices and polygons of an isosurface, as made by isosurf */
+  static final class Surface {
+    int nvertex;
+    int npolygons;
+    float[][] vertices;
+    byte[][] colors;
+    int[] Pol_f_Vert;
+    int[] Vert_f_Pol;
+  }
+
+  private ParallelIsoSurface() {}
+
+  static void setSlabSize(int size) {
+    slabSize = Math.max(0, size);
+  }
+
+  static int getSlabSize() {
+    return slabSize;
+  }
+
+  static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * return the slab size for isosurfacing a grid with zdim layers of
+   * points, or 0 if it should be isosurfaced whole
+   */
+  static int getSlabSize(int zdim) {
+    int size = slabSize;
+    if (size <= 0 || zdim - 1 <= size) return 0;
+    return size;
+  }
+
+  /**
+   * isosurface the values ptGRID of the grid of set in slabs of size
+   * cube layers; the other arguments are those of makeIsoSurface, with
+   * the dimensions swapped as isosurf expects
+   * @return the merged surface, or null if it is empty
+   */
+  static Surface extract(Gridded3DSet set, float isolevel, float[] ptGRID,
+                         byte[][] color_values, int xdim, int ydim,
+                         int zdim, int size) throws VisADException {
+    float[][] samples = set.getSamples(false);
+    int nlayers = zdim - 1;
+    final List<Slab> slabs = new ArrayList<Slab>();
+    for (int z0=0; z0<nlayers; z0+=size) {
+      slabs.add(new Slab(set, isolevel, ptGRID, samples, color_values,
+                         xdim, ydim, zdim, z0, Math.min(nlayers, z0 + size)));
+    }
+
+    int level = parallelism;
+    if (level > 1 && slabs.size() > 1) {
+      ForkJoinPool pool = getPool(level);
+      pool.invoke(new RecursiveAction() {
+        protected void compute() {
+          ForkJoinTask.invokeAll(slabs);
+        }
+      });
+    }
+    else {
+      for (Slab slab : slabs) slab.compute();
+    }
+    int npolygons = 0;
+    for (Slab slab : slabs) {
+      if (slab.exception != null) throw slab.exception;
+      npolygons += slab.npolygons;
+    }
+    if (npolygons == 0) return null;
+    return merge(slabs, npolygons, color_values);
+  }
+
+  /**
+   * join the vertices and polygons of slabs, numbering them in slab
+   * order and replacing the vertices an upper slab made on the edges of
+   * the bottom plane of its first layer by the vertices the slab below
+   * made on the same edges
+   */
+  private static Surface merge(List<Slab> slabs, int npolygons,
+                               byte[][] color_values) {
+    int nslabs = slabs.size();
+    int[][] maps = new int[nslabs][];
+    int[] bases = new int[nslabs];
+    int nvertex = 0;
+    int[] below = null;
+    for (int k=0; k<nslabs; k++) {
+      Slab slab = slabs.get(k);
+      int plane = slab.xdim * slab.ydim;
+      int[] map = new int[slab.nvertex];
+      if (k > 0) {
+        // merged vertices of the slab below on the edges of its top
+        // plane, at 2 * point + direction within the plane
+        Slab prev = slabs.get(k - 1);
+        int[] prev_map = maps[k - 1];
+        int top = prev.nlayers * plane;
+        if (below == null) below = new int[2 * plane];
+        Arrays.fill(below, -1);
+        for (int v=prev.layer_nvet[prev.nlayers - 1]; v<prev.nvertex; v++) {
+          int edge = prev.vertex_edges[v];
+          int p = edge / 3 - top;
+          if (edge % 3 != 2 && p >= 0) {
+            below[2 * p + edge % 3] = prev_map[v];
+          }
+        }
+      }
+      bases[k] = nvertex;
+      int first = (slab.nlayers > 1) ? slab.layer_nvet[1] : slab.nvertex;
+      for (int v=0; v<slab.nvertex; v++) {
+        int shared = -1;
+        if (k > 0 && v < first) {
+          int edge = slab.vertex_edges[v];
+          int p = edge / 3;
+          if (edge % 3 != 2 && p < plane) shared = below[2 * p + edge % 3];
+        }
+        map[v] = (shared >= 0) ? shared : nvertex++;
+      }
+      maps[k] = map;
+    }
+    if (nvertex == 0) return null;
+
+    Surface surface = new Surface();
+    surface.nvertex = nvertex;
+    surface.npolygons = npolygons;
+    surface.vertices = new float[3][nvertex];
+    int ncolors = (color_values != null) ? color_values.length : 0;
+    if (ncolors > 0) surface.colors = new byte[ncolors][nvertex];
+    int[] Pol_f_Vert = new int[9 * nvertex];
+    Arrays.fill(Pol_f_Vert, Gridded3DSet.BIG_NEG);
+    for (int jj=8; jj<Pol_f_Vert.length; jj+=9) Pol_f_Vert[jj] = 0;
+    int[] Vert_f_Pol = new int[7 * npolygons];
+
+    int pol_base = 0;
+    for (int k=0; k<nslabs; k++) {
+      Slab slab = slabs.get(k);
+      int[] map = maps[k];
+      for (int v=0; v<slab.nvertex; v++) {
+        int g = map[v];
+        if (g >= bases[k]) {
+          surface.vertices[0][g] = slab.VX[v];
+          surface.vertices[1][g] = slab.VY[v];
+          surface.vertices[2][g] = slab.VZ[v];
+          for (int c=0; c<ncolors; c++) {
+            surface.colors[c][g] = slab.colors[c][v];
+          }
+        }
+        int count = slab.Pol_f_Vert[v * 9 + 8];
+        for (int c=0; c<count; c++) {
+          int n = Pol_f_Vert[g * 9 + 8];
+          if (n < 8) {
+            Pol_f_Vert[g * 9 + n] = slab.Pol_f_Vert[v * 9 + c] + pol_base;
+            Pol_f_Vert[g * 9 + 8] = n + 1;
+          }
+        }
+      }
+      for (int p=0; p<slab.npolygons; p++) {
+        int src = 7 * p;
+        int dst = 7 * (pol_base + p);
+        int count = slab.Vert_f_Pol[src + 6];
+        for (int j=0; j<6; j++) {
+          int ve = slab.Vert_f_Pol[src + j];
+          Vert_f_Pol[dst + j] = (j < count) ? map[ve] : ve;
+        }
+        Vert_f_Pol[dst + 6] = count;
+      }
+      pol_base += slab.npolygons;
+    }
+    surface.Pol_f_Vert = Pol_f_Vert;
+    surface.Vert_f_Pol = Vert_f_Pol;
+    return surface;
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+  /** the cube layers z0 .. z1-1 of a grid */
+  private static final class Slab extends RecursiveAction {
+    private final Gridded3DSet set;
+    private final float isolevel;
+    private final float[] ptGRID;
+    private final float[][] samples;
+    private final byte[][] color_values;
+    private final int xdim;
+    private final int ydim;
+    private final int zdim;
+    private final int z0;
+    private final int z1;
+
+    final int nlayers;
+    int npolygons;
+    int nvertex;
+    float[] VX;
+    float[] VY;
+    float[] VZ;
+    byte[][] colors;
+    int[] Pol_f_Vert;
+    int[] Vert_f_Pol;
+    int[] layer_nvet;
+    int[] vertex_edges;
+    VisADException exception;
+
+    Slab(Gridded3DSet set, float isolevel, float[] ptGRID,
+         float[][] samples, byte[][] color_values, int xdim, int ydim,
+         int zdim, int z0, int z1) {
+      this.set = set;
+      this.isolevel = isolevel;
+      this.ptGRID = ptGRID;
+      this.samples = samples;
+      this.color_values = color_values;
+      this.xdim = xdim;
+      this.ydim = ydim;
+      this.zdim = zdim;
+      this.z0 = z0;
+      this.z1 = z1;
+      nlayers = z1 - z0;
+    }
+
+    protected void compute() {
+      try {
+        isosurface();
+      }
+      catch (VisADException e) {
+        exception = e;
+      }
+    }
+
+    private void isosurface() throws VisADException {
+      int xdim_x_ydim = xdim * ydim;
+      int num_cubes_xy = (xdim - 1) * (ydim - 1);
+
+      // flags of the slab's cubes and of one cube layer on either side
+      int lo = (z0 > 0) ? 1 : 0;
+      int hi = (z1 < zdim - 1) ? 1 : 0;
+      int nz = nlayers + 1 + lo + hi;
+      int num_cubes = (nz - 1) * num_cubes_xy;
+      float[] grid = Arrays.copyOfRange(ptGRID, (z0 - lo) * xdim_x_ydim,
+                                        (z1 + hi + 1) * xdim_x_ydim);
+      int[] flags = new int[num_cubes];
+      Gridded3DSet.flags(isolevel, flags, new int[nz * xdim_x_ydim],
+                         new int[num_cubes + 1], grid, xdim, ydim, nz);
+      int[] ptFLAG = Arrays.copyOfRange(flags, lo * num_cubes_xy,
+                                        (lo + nlayers) * num_cubes_xy);
+      flags = null;
+      for (int ii=0; ii<ptFLAG.length; ii++) {
+        int flag = ptFLAG[ii];
+        if (flag != 0 && flag != 0xFF && flag < Gridded3DSet.MAX_FLAG_NUM) {
+          npolygons += Gridded3DSet.pol_edges[flag][1];
+        }
+      }
+
+      // the slab's points only
+      int start = z0 * xdim_x_ydim;
+      int end = (z1 + 1) * xdim_x_ydim;
+      grid = Arrays.copyOfRange(ptGRID, start, end);
+      float[][] slab_samples = new float[3][];
+      for (int i=0; i<3; i++) {
+        slab_samples[i] = Arrays.copyOfRange(samples[i], start, end);
+      }
+      byte[][] aux_values = null;
+      byte[][] aux_levels = null;
+      if (color_values != null) {
+        aux_values = new byte[color_values.length][];
+        for (int i=0; i<color_values.length; i++) {
+          aux_values[i] = Arrays.copyOfRange(color_values[i], start, end);
+        }
+        aux_levels = new byte[color_values.length][];
+      }
+
+      int nvertex_estimate = 4 * npolygons + 100;
+      float[][] vx = new float[1][nvertex_estimate];
+      float[][] vy = new float[1][nvertex_estimate];
+      float[][] vz = new float[1][nvertex_estimate];
+      int[][] edges = new int[1][nvertex_estimate];
+      int[][] pol_f_vert = new int[][] {new int[9 * (nvertex_estimate + 50)]};
+      Vert_f_Pol = new int[7 * npolygons];
+      layer_nvet = new int[nlayers];
+      nvertex = set.isosurf(isolevel, ptFLAG, nvertex_estimate, npolygons,
+                            grid, xdim, ydim, nlayers + 1, vx, vy, vz,
+                            aux_values, aux_levels, pol_f_vert, Vert_f_Pol,
+                            slab_samples, layer_nvet, edges);
+      VX = vx[0];
+      VY = vy[0];
+      VZ = vz[0];
+      colors = aux_levels;
+      Pol_f_Vert = pol_f_vert[0];
+      vertex_edges = edges[0];
+    }
+  }
+}
@@ -0,0 +1,178 @@
+//
+// ParallelResample.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelResample splits the samples of a resampling set into blocks
+ * and resamples the blocks concurrently on a fork-join pool.  It is used
+ * by {@link FlatField#resample(Set, int, int)} and
+ * {@link FlatField#resampleDouble(Set, int, int)}.<P>
+ *
+ * Blocks only run in parallel when every sample is located independently
+ * of the others, so the result is identical to resampling sequentially.
+ */
+final class ParallelResample {
+
+  /** default parallelism level; 1 means resample sequentially */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.flatfield.resample.parallelism", 1).intValue();
+
+  /** smallest number of samples in a block */
+  private static final int minBlockSize =
+    Integer.getInteger("visad.flatfield.resample.blocksize", 16384).intValue();
+
+  /** parallelism level of the current thread's resample call, if any */
+  private static final ThreadLocal<Integer> callParallelism =
+    new ThreadLocal<Integer>();
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  /** resampling of the samples start .. end-1 of a set */
+  interface Block {
+    void resample(int start, int end) throws VisADException, RemoteException;
+  }
+
+  private ParallelResample() {}
+
+  static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * return the parallelism level for a resample call in the current
+   * thread: the level passed to the enclosing per-call resample method,
+   * or the default level otherwise
+   */
+  static int getCallParallelism() {
+    Integer level = callParallelism.get();
+    return (level != null) ? level.intValue() : parallelism;
+  }
+
+  /**
+   * set the parallelism level of resample calls in the current thread
+   * @return the previous per-call level, to be restored by endCall
+   */
+  static Integer beginCall(int level) {
+    Integer old = callParallelism.get();
+    callParallelism.set(Integer.valueOf(Math.max(1, level)));
+    return old;
+  }
+
+  /** restore the per-call level returned by beginCall */
+  static void endCall(Integer old) {
+    if (old == null) callParallelism.remove();
+    else callParallelism.set(old);
+  }
+
+  /**
+   * return true if resampling a field with domain set domainSet onto
+   * length samples should be done in parallel: the level is above 1,
+   * there are at least two blocks of samples, and domainSet locates
+   * every sample independently of the others
+   */
+  static boolean accepts(Set domainSet, int length, int level) {
+    return level > 1 && length >= 2 * minBlockSize &&
+           domainSet instanceof LinearSet;
+  }
+
+  /**
+   * run block on the samples 0 .. length-1, in blocks of at least
+   * minBlockSize samples, at the given parallelism level; exceptions
+   * thrown by any block are rethrown here
+   */
+  static void run(int length, int level, Block block)
+         throws VisADException, RemoteException {
+    int nblocks = Math.max(1, Math.min(4 * level, length / minBlockSize));
+    int size = (length + nblocks - 1) / nblocks;
+    final List<BlockTask> tasks = new ArrayList<BlockTask>(nblocks);
+    for (int start=0; start<length; start+=size) {
+      tasks.add(new BlockTask(block, start, Math.min(length, start + size)));
+    }
+    ForkJoinPool pool = getPool(level);
+    pool.invoke(new RecursiveAction() {
+      protected void compute() {
+        ForkJoinTask.invokeAll(tasks);
+      }
+    });
+    for (BlockTask task : tasks) {
+      if (task.visadException != null) throw task.visadException;
+      if (task.remoteException != null) throw task.remoteException;
+    }
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+  private static class BlockTask extends RecursiveAction {
+    private final Block block;
+    private final int start;
+    private final int end;
+    VisADException visadException;
+    RemoteException remoteException;
+
+    BlockTask(Block block, int start, int end) {
+      this.block = block;
+      this.start = start;
+      this.end = end;
+    }
+
+    protected void compute() {
+      try {
+        block.resample(start, end);
+      }
+      catch (VisADException e) {
+        visadException = e;
+      }
+      catch (RemoteException e) {
+        remoteException = e;
+      }
+    }
+  }
+}
@@ -0,0 +1,290 @@
+//
+// SimplexIndex.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad;
+
+/**
+ * SimplexIndex is a uniform grid of buckets over the triangles (2-D) or
+ * tetrahedra (3-D) of a {@link Delaunay} triangulation, used by
+ * {@link Irregular2DSet} and {@link Irregular3DSet} to locate the simplex
+ * containing a point without walking the triangulation.<P>
+ *
+ * Each bucket lists, in increasing order, every simplex whose bounding
+ * box overlaps it, so the simplex containing a point is always among the
+ * candidates of the bucket holding that point.  For points that are not
+ * found among the candidates (outside the convex hull, or on a degenerate
+ * triangulation) the first candidate is a good start for the usual walk.<P>
+ *
+ * No index is built when the simplices' bounding boxes would cover more
+ * than {@link #MAX_ENTRIES_PER_SIMPLEX} cells per simplex on average, as
+ * long slivers along a hull edge or a track of points do.<P>
+ *
+ * An index is immutable once built and is only valid for the Delaunay
+ * and samples it was built from.
+ */
+final class SimplexIndex {
+
+  /** whether Irregular sets build and use a SimplexIndex */
+  private static boolean enabled =
+    Boolean.parseBoolean(System.getProperty("visad.irregularset.spatialindex",
+                                            "true"));
+
+  /** triangulations with fewer simplices than this are walked */
+  static final int MIN_SIMPLICES = 64;
+
+  /** average number of simplices per bucket the grid aims for */
+  private static final int SIMPLICES_PER_CELL = 2;
+
+  /** largest average number of buckets per simplex worth indexing */
+  static final int MAX_ENTRIES_PER_SIMPLEX = 8;
+
+  /** the triangulation this index was built from */
+  final Delaunay delaunay;
+
+  /** the Delaunay.Tri array this index was built from */
+  final int[][] tri;
+
+  private final int dimension;
+  private final float[] low;
+  private final float[] scale;
+  private final int[] ncells;
+
+  /** start[c] .. start[c+1]-1 are the entries of cell c in simplices */
+  private final int[] start;
+  private final int[] simplices;
+
+  private SimplexIndex(Delaunay delan, int dimension, float[] low,
+                       float[] scale, int[] ncells, int[] start,
+                       int[] simplices) {
+    this.delaunay = delan;
+    this.tri = delan.Tri;
+    this.dimension = dimension;
+    this.low = low;
+    this.scale = scale;
+    this.ncells = ncells;
+    this.start = start;
+    this.simplices = simplices;
+  }
+
+  /** enable or disable the use of spatial indices by Irregular sets */
+  static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /** return true if Irregular sets build and use spatial indices */
+  static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * build an index over the simplices of delan
+   * @param delan triangulation of samples
+   * @param samples float[dimension][number_of_samples]
+   * @param dimension 2 for triangles, 3 for tetrahedra
+   * @return the index, or null if delan is too small, has no extent or
+   *         has too many simplices spanning many cells
+   */
+  static SimplexIndex build(Delaunay delan, float[][] samples,
+                            int dimension) {
+    if (delan == null || samples == null) return null;
+    int[][] tri = delan.Tri;
+    if (tri == null || tri.length < MIN_SIMPLICES) return null;
+    int nsimplex = tri.length;
+    int nverts = dimension + 1;
+
+    // extent of the triangulated samples
+    float[] low = new float[dimension];
+    float[] hi = new float[dimension];
+    for (int d=0; d<dimension; d++) {
+      low[d] = Float.POSITIVE_INFINITY;
+      hi[d] = Float.NEGATIVE_INFINITY;
+    }
+    for (int t=0; t<nsimplex; t++) {
+      for (int v=0; v<nverts; v++) {
+        int k = tri[t][v];
+        for (int d=0; d<dimension; d++) {
+          float s = samples[d][k];
+          if (s < low[d]) low[d] = s;
+          if (s > hi[d]) hi[d] = s;
+        }
+      }
+    }
+    double volume = 1.0;
+    int ndims = 0;
+    for (int d=0; d<dimension; d++) {
+      if (!(hi[d] >= low[d])) return null;
+      if (Float.isInfinite(low[d]) || Float.isInfinite(hi[d])) return null;
+      if (hi[d] > low[d]) {
+        volume *= (hi[d] - low[d]);
+        ndims++;
+      }
+    }
+    if (ndims == 0) return null;
+
+    // cells per dimension, proportional to extent, about
+    // SIMPLICES_PER_CELL simplices per cell
+    double target = Math.max(1.0, nsimplex / (double) SIMPLICES_PER_CELL);
+    double side = Math.pow(volume / target, 1.0 / ndims);
+    int[] ncells = new int[dimension];
+    float[] scale = new float[dimension];
+    long total = 1;
+    for (int d=0; d<dimension; d++) {
+      float extent = hi[d] - low[d];
+      int n = 1;
+      if (extent > 0 && side > 0) {
+        n = (int) Math.min(Math.ceil(extent / side), 4096);
+        if (n < 1) n = 1;
+      }
+      ncells[d] = n;
+      scale[d] = (extent > 0) ? n / extent : 0.0f;
+      total *= n;
+    }
+    if (total > Integer.MAX_VALUE / 2) return null;
+    int ncell = (int) total;
+
+    // total entries, before visiting any cells
+    int[] lo = new int[dimension];
+    int[] up = new int[dimension];
+    long entries = 0;
+    for (int t=0; t<nsimplex; t++) {
+      if (!cellRange(tri[t], samples, low, scale, ncells, lo, up)) continue;
+      long span = 1;
+      for (int d=0; d<dimension; d++) span *= up[d] - lo[d] + 1;
+      entries += span;
+    }
+    if (entries > (long) MAX_ENTRIES_PER_SIMPLEX * nsimplex ||
+        entries > Integer.MAX_VALUE - 8) {
+      return null;
+    }
+
+    // two passes: count entries per cell, then fill
+    int[] start = new int[ncell + 1];
+    for (int t=0; t<nsimplex; t++) {
+      if (!cellRange(tri[t], samples, low, scale, ncells, lo, up)) continue;
+      forEachCell(lo, up, ncells, start, null, 0, true);
+    }
+    int sum = 0;
+    for (int c=0; c<ncell; c++) {
+      int count = start[c];
+      start[c] = sum;
+      sum += count;
+    }
+    start[ncell] = sum;
+    int[] simplices = new int[sum];
+    int[] fill = new int[ncell];
+    System.arraycopy(start, 0, fill, 0, ncell);
+    for (int t=0; t<nsimplex; t++) {
+      if (!cellRange(tri[t], samples, low, scale, ncells, lo, up)) continue;
+      forEachCell(lo, up, ncells, fill, simplices, t, false);
+    }
+
+    return new SimplexIndex(delan, dimension, low, scale, ncells, start,
+                            simplices);
+  }
+
+  /** compute the range of cells covered by the bounding box of simplex;
+      return false if any of its vertices is missing */
+  private static boolean cellRange(int[] simplex, float[][] samples,
+                                   float[] low, float[] scale, int[] ncells,
+                                   int[] lo, int[] up) {
+    int dimension = low.length;
+    for (int d=0; d<dimension; d++) {
+      float min = Float.POSITIVE_INFINITY;
+      float max = Float.NEGATIVE_INFINITY;
+      for (int v=0; v<simplex.length; v++) {
+        float s = samples[d][simplex[v]];
+        if (s != s) return false;
+        if (s < min) min = s;
+        if (s > max) max = s;
+      }
+      lo[d] = clamp((int) Math.floor((min - low[d]) * scale[d]), ncells[d]);
+      up[d] = clamp((int) Math.floor((max - low[d]) * scale[d]), ncells[d]);
+    }
+    return true;
+  }
+
+  /** for each cell in lo..up either count it (counts[cell]++) or add
+      simplex t to it (simplices[fill[cell]++] = t) */
+  private static void forEachCell(int[] lo, int[] up, int[] ncells,
+                                  int[] fill, int[] simplices, int t,
+                                  boolean count) {
+    if (lo.length == 2) {
+      for (int j=lo[1]; j<=up[1]; j++) {
+        int row = j * ncells[0];
+        for (int i=lo[0]; i<=up[0]; i++) {
+          if (count) fill[row + i]++;
+          else simplices[fill[row + i]++] = t;
+        }
+      }
+    }
+    else {
+      for (int k=lo[2]; k<=up[2]; k++) {
+        for (int j=lo[1]; j<=up[1]; j++) {
+          int row = (k * ncells[1] + j) * ncells[0];
+          for (int i=lo[0]; i<=up[0]; i++) {
+            if (count) fill[row + i]++;
+            else simplices[fill[row + i]++] = t;
+          }
+        }
+      }
+    }
+  }
+
+  private static int clamp(int i, int n) {
+    return (i < 0) ? 0 : ((i >= n) ? n - 1 : i);
+  }
+
+  /**
+   * return the cell containing the i-th point of value, clamped to the
+   * grid so points outside the triangulation map to a cell at its edge;
+   * return -1 if the point has a missing coordinate
+   */
+  int cellOf(float[][] value, int i) {
+    int cell = 0;
+    for (int d=dimension-1; d>=0; d--) {
+      float v = value[d][i];
+      if (v != v) return -1;
+      int c = clamp((int) Math.floor((v - low[d]) * scale[d]), ncells[d]);
+      cell = cell * ncells[d] + c;
+    }
+    return cell;
+  }
+
+  /** index in getSimplices() of the first candidate of cell */
+  int getStart(int cell) {
+    return start[cell];
+  }
+
+  /** index in getSimplices() just past the last candidate of cell */
+  int getEnd(int cell) {
+    return start[cell + 1];
+  }
+
+  /** candidate simplices of all cells, see getStart and getEnd */
+  int[] getSimplices() {
+    return simplices;
+  }
+}
@@ -0,0 +1,689 @@
+//
+// TiledContour2D.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * TiledContour2D contours a grid of a {@link Gridded3DSet} in square
+ * tiles with {@link Contour2D}, for
+ * {@link Gridded3DSet#makeIsoLines(float[], float, float, float, float[],
+ * byte[][], boolean[], boolean, boolean, ScalarMap[], double[], double,
+ * boolean, ContourSink)}.<P>
+ *
+ * Adjacent tiles share the grid points along their seam.  The tiles of
+ * a row (a band) are contoured concurrently on a fork-join pool; then
+ * their contour lines are joined with each other and with the lines of
+ * the previous band where their ends meet on a seam, and the geometry
+ * that cannot change any more is passed to a {@link ContourSink}.  Only
+ * one band of tiles and the lines crossing its lower seam are held in
+ * memory at a time.<P>
+ *
+ * Labels are placed and fill is computed within each tile.
+ */
+final class TiledContour2D {
+
+  /** tile size of streaming contours if no tile size is set */
+  static final int DEFAULT_TILE_SIZE = 256;
+
+  /** tile size in grid boxes of Gridded3DSet.makeIsoLines; 0 means
+      contour the whole grid at once */
+  private static volatile int tileSize =
+    Integer.getInteger("visad.contour.tilesize", 0).intValue();
+
+  /** number of tiles contoured concurrently */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.contour.parallelism",
+                       Runtime.getRuntime().availableProcessors()).intValue();
+
+  /** line ends closer than this fraction of the grid spacing are joined */
+  private static final float SEAM_TOLERANCE = 1.0e-3f;
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  private TiledContour2D() {}
+
+  static void setTileSize(int size) {
+    tileSize = Math.max(0, size);
+  }
+
+  static int getTileSize() {
+    return tileSize;
+  }
+
+  static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * return the tile size for contouring an nr x nc grid, or 0 if it
+   * should be contoured whole: when not streaming, tiles are only used
+   * if a tile size is set and the grid is larger than one tile
+   */
+  static int getTileSize(int nr, int nc, boolean stream) {
+    int size = tileSize;
+    if (size <= 0) {
+      if (!stream) return 0;
+      size = DEFAULT_TILE_SIZE;
+    }
+    size = Math.max(2, size);
+    if (!stream && nr <= size + 1 && nc <= size + 1) return 0;
+    return size;
+  }
+
+  /**
+   * contour the values g of the grid of set in tiles of tile x tile grid
+   * boxes, passing the results to sink; the other arguments are those
+   * of {@link Contour2D#contour(float[], int, int, float[], float, float,
+   * float, boolean, byte[][], boolean[], boolean, float[][][], byte[][],
+   * double[], double, int, int, double, boolean, byte[], Object,
+   * boolean, Gridded3DSet)}
+   */
+  static void contour(Gridded3DSet set, float[] g, int tile,
+                      float[] values, float lowlimit, float highlimit,
+                      float base, boolean dash, byte[][] auxValues,
+                      boolean[] swap, boolean fill, byte[][] interval_colors,
+                      double[] scale, double scale_ratio, int label_freq,
+                      int label_line_skip, double label_size,
+                      boolean labelAlign, byte[] labelColor, Object labelFont,
+                      boolean sphericalDisplayCS, ContourSink sink)
+         throws VisADException {
+    Job job = new Job();
+    job.set = set;
+    job.g = g;
+    job.values = values;
+    job.lowlimit = lowlimit;
+    job.highlimit = highlimit;
+    job.base = base;
+    job.dash = dash;
+    job.auxValues = auxValues;
+    job.swap = swap;
+    job.fill = fill;
+    job.interval_colors = interval_colors;
+    job.scale = scale;
+    job.scale_ratio = scale_ratio;
+    job.label_freq = label_freq;
+    job.label_line_skip = label_line_skip;
+    job.label_size = label_size;
+    job.labelAlign = labelAlign;
+    job.labelColor = labelColor;
+    job.labelFont = labelFont;
+    job.sphericalDisplayCS = sphericalDisplayCS;
+
+    int[] lengths = set.getLengths();
+    int nr = lengths[0];
+    int nc = lengths[1];
+    float tolerance = seamTolerance(set.getSamples(false), nr, nc);
+    Stitcher lines = new Stitcher(tolerance, false);
+    Stitcher styled = new Stitcher(tolerance, true);
+    int level = parallelism;
+
+    int band = 0;
+    for (int y0=0; y0<nc-1; y0+=tile, band++) {
+      int ny = Math.min(tile + 1, nc - y0);
+      final List<TileTask> tasks = new ArrayList<TileTask>();
+      for (int x0=0; x0<nr-1; x0+=tile) {
+        tasks.add(new TileTask(job, x0, y0, Math.min(tile + 1, nr - x0), ny));
+      }
+      if (level > 1 && tasks.size() > 1) {
+        getPool(level).invoke(new RecursiveAction() {
+          protected void compute() {
+            ForkJoinTask.invokeAll(tasks);
+          }
+        });
+      }
+      else {
+        for (TileTask task : tasks) task.compute();
+      }
+
+      for (TileTask task : tasks) {
+        if (task.exception != null) throw task.exception;
+        Tile result = task.result;
+        if (result == null) continue;
+        if (result.fill != null) sink.addFill(result.fill);
+        for (ContourLabelGeometry label : result.labels) {
+          sink.addLabel(label);
+        }
+        for (VisADLineStripArray array : result.labelLines) {
+          sink.addLabelLines(array, false);
+        }
+        for (VisADLineStripArray array : result.styledLabelLines) {
+          sink.addLabelLines(array, true);
+        }
+        lines.add(result.lines, band);
+        styled.add(result.styledLines, band);
+      }
+      lines.endBand(band, sink);
+      styled.endBand(band, sink);
+    }
+    lines.finish(sink);
+    styled.finish(sink);
+  }
+
+  /**
+   * return the distance within which line ends on a seam are joined: a
+   * small fraction of the smallest spacing between grid points found in
+   * a sample of the grid, or 0 if there is none
+   */
+  private static float seamTolerance(float[][] samples, int nr, int nc) {
+    float min = Float.POSITIVE_INFINITY;
+    int step_x = Math.max(1, (nr - 1) / 8);
+    int step_y = Math.max(1, (nc - 1) / 8);
+    for (int j=0; j<nc-1; j+=step_y) {
+      for (int i=0; i<nr-1; i+=step_x) {
+        int k = j * nr + i;
+        float dx = distance(samples, k, k + 1);
+        float dy = distance(samples, k, k + nr);
+        if (dx > 0 && dx < min) min = dx;
+        if (dy > 0 && dy < min) min = dy;
+      }
+    }
+    return (min < Float.POSITIVE_INFINITY) ? SEAM_TOLERANCE * min : 0.0f;
+  }
+
+  private static float distance(float[][] samples, int a, int b) {
+    float d0 = samples[0][a] - samples[0][b];
+    float d1 = samples[1][a] - samples[1][b];
+    float d2 = samples[2][a] - samples[2][b];
+    return (float) Math.sqrt(d0 * d0 + d1 * d1 + d2 * d2);
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+
+  /** the arguments of one tiled contour */
+  private static final class Job {
+    Gridded3DSet set;
+    float[] g;
+    float[] values;
+    float lowlimit;
+    float highlimit;
+    float base;
+    boolean dash;
+    byte[][] auxValues;
+    boolean[] swap;
+    boolean fill;
+    byte[][] interval_colors;
+    double[] scale;
+    double scale_ratio;
+    int label_freq;
+    int label_line_skip;
+    double label_size;
+    boolean labelAlign;
+    byte[] labelColor;
+    Object labelFont;
+    boolean sphericalDisplayCS;
+
+    /** contour the nx x ny grid points starting at x0, y0 */
+    Tile contour(int x0, int y0, int nx, int ny) throws VisADException {
+      int nr = set.getLengths()[0];
+      float[][] samples = set.getSamples(false);
+      int naux = (auxValues != null) ? auxValues.length : 0;
+      float[] tile_g = new float[nx * ny];
+      float[][] tile_samples = new float[3][nx * ny];
+      byte[][] tile_aux = (auxValues != null) ? new byte[naux][nx * ny] : null;
+      for (int j=0; j<ny; j++) {
+        int src = (y0 + j) * nr + x0;
+        int dst = j * nx;
+        System.arraycopy(g, src, tile_g, dst, nx);
+        for (int d=0; d<3; d++) {
+          System.arraycopy(samples[d], src, tile_samples[d], dst, nx);
+        }
+        for (int a=0; a<naux; a++) {
+          System.arraycopy(auxValues[a], src, tile_aux[a], dst, nx);
+        }
+      }
+      TileSet tile_set = new TileSet(set, tile_samples, nx, ny, x0, y0);
+      float[][][] grd_normals =
+        fill ? set.makeGridNormals(x0, y0, nx, ny) : null;
+
+      Contour2D.ContourOutput output = Contour2D.contour(tile_g, nx, ny,
+          values, lowlimit, highlimit, base, dash, tile_aux, swap, fill,
+          grd_normals, interval_colors, scale, scale_ratio, label_freq,
+          label_line_skip, label_size, labelAlign, labelColor, labelFont,
+          sphericalDisplayCS, tile_set, true);
+      if (output == null) return null;
+
+      Tile tile = new Tile();
+      tile.labels = output.stripSet.labels;
+      if (fill) {
+        // as in Gridded3DSet.makeIsoLines, only fill and labels
+        tile.fill = output.triStripBldr.compile(tile_set);
+      }
+      else {
+        tile.lines = output.stripSet.cntrLines;
+        tile.styledLines = output.stripSet.cntrLinesStyled;
+        tile.labelLines = output.stripSet.fillLines;
+        tile.styledLabelLines = output.stripSet.fillLinesStyled;
+      }
+      return tile;
+    }
+  }
+
+  /** the geometry of one tile */
+  private static final class Tile {
+    VisADTriangleStripArray fill;
+    List<ContourLabelGeometry> labels;
+    List<VisADLineStripArray> lines = new ArrayList<VisADLineStripArray>();
+    List<VisADLineStripArray> styledLines =
+      new ArrayList<VisADLineStripArray>();
+    List<VisADLineStripArray> labelLines =
+      new ArrayList<VisADLineStripArray>();
+    List<VisADLineStripArray> styledLabelLines =
+      new ArrayList<VisADLineStripArray>();
+  }
+
+  private static final class TileTask extends RecursiveAction {
+    private final Job job;
+    private final int x0, y0, nx, ny;
+    Tile result;
+    VisADException exception;
+
+    TileTask(Job job, int x0, int y0, int nx, int ny) {
+      this.job = job;
+      this.x0 = x0;
+      this.y0 = y0;
+      this.nx = nx;
+      this.ny = ny;
+    }
+
+    protected void compute() {
+      try {
+        result = job.contour(x0, y0, nx, ny);
+      }
+      catch (VisADException e) {
+        exception = e;
+      }
+    }
+  }
+
+  /**
+   * the samples of one tile of a Gridded3DSet; normals, used to orient
+   * labels, are those of the whole set
+   */
+  private static final class TileSet extends Gridded3DSet {
+    private final Gridded3DSet parent;
+    private final int x0, y0;
+
+    TileSet(Gridded3DSet parent, float[][] samples, int nx, int ny,
+            int x0, int y0) throws VisADException {
+      super(parent.getType(), samples, nx, ny, null, null, null, false);
+      this.parent = parent;
+      this.x0 = x0;
+      this.y0 = y0;
+    }
+
+    public float[][] getNormals(float[][] grid) throws VisADException {
+      float[][] parent_grid = new float[2][grid[0].length];
+      for (int i=0; i<grid[0].length; i++) {
+        parent_grid[0][i] = grid[0][i] + x0;
+        parent_grid[1][i] = grid[1][i] + y0;
+      }
+      return parent.getNormals(parent_grid);
+    }
+  }
+
+
+  /** a line strip while it is being joined */
+  private static final class Strip {
+    float[] coordinates;
+    byte[] colors;
+    int count;
+    /** last band containing a part of this strip */
+    int band;
+    boolean closed;
+    boolean joined;
+
+    float coordinate(int end, int d) {
+      return coordinates[(end == 0) ? d : 3 * (count - 1) + d];
+    }
+  }
+
+  /** an end of a Strip, in the index of a Stitcher */
+  private static final class End {
+    final Strip strip;
+    final int end;
+
+    End(Strip strip, int end) {
+      this.strip = strip;
+      this.end = end;
+    }
+  }
+
+  /** joins the line strips of one style across tile seams */
+  private static final class Stitcher {
+    private final float tolerance;
+    private final boolean styled;
+    private List<Strip> strips = new ArrayList<Strip>();
+    private HashMap<Long, List<End>> index;
+
+    Stitcher(float tolerance, boolean styled) {
+      this.tolerance = tolerance;
+      this.styled = styled;
+    }
+
+    /** add the strips of arrays, from band */
+    void add(List<VisADLineStripArray> arrays, int band) {
+      for (VisADLineStripArray array : arrays) {
+        int[] counts = array.stripVertexCounts;
+        int color_dim = (array.colors == null) ? 0 :
+                        array.colors.length / array.vertexCount;
+        int first = 0;
+        for (int i=0; i<counts.length; i++) {
+          int n = counts[i];
+          if (n < 2) {
+            first += n;
+            continue;
+          }
+          Strip strip = new Strip();
+          strip.count = n;
+          strip.band = band;
+          strip.coordinates = new float[3 * n];
+          System.arraycopy(array.coordinates, 3 * first, strip.coordinates,
+                           0, 3 * n);
+          if (color_dim > 0) {
+            strip.colors = new byte[color_dim * n];
+            System.arraycopy(array.colors, color_dim * first, strip.colors,
+                             0, color_dim * n);
+          }
+          strip.closed = n > 2 && near(strip, 0, strip, 1);
+          strips.add(strip);
+          first += n;
+        }
+      }
+    }
+
+    /** join strips after band and pass on those no later band can
+        extend */
+    void endBand(int band, ContourSink sink) throws VisADException {
+      if (tolerance > 0) join();
+      List<Strip> done = new ArrayList<Strip>();
+      List<Strip> open = new ArrayList<Strip>();
+      for (Strip strip : strips) {
+        if (strip.joined) continue;
+        if (strip.closed || strip.band < band) done.add(strip);
+        else open.add(strip);
+      }
+      strips = open;
+      emit(done, sink);
+    }
+
+    void finish(ContourSink sink) throws VisADException {
+      emit(strips, sink);
+      strips = new ArrayList<Strip>();
+    }
+
+    private void join() {
+      index = new HashMap<Long, List<End>>();
+      for (Strip strip : strips) {
+        if (strip.closed) continue;
+        put(strip, 0);
+        put(strip, 1);
+      }
+      for (Strip strip : strips) {
+        boolean extended = true;
+        while (extended && !strip.joined && !strip.closed) {
+          extended = false;
+          for (int end=0; end<2 && !strip.closed; end++) {
+            End match = find(strip, end);
+            if (match == null) continue;
+            if (match.strip == strip) {
+              strip.closed = true;
+            }
+            else {
+              append(strip, end, match.strip, match.end);
+              put(strip, end);
+              extended = true;
+            }
+          }
+        }
+      }
+      index = null;
+    }
+
+    private long key(long qx, long qy, long qz) {
+      return (qx * 73856093L) ^ (qy * 19349663L) ^ (qz * 83492791L);
+    }
+
+    private void put(Strip strip, int end) {
+      float x = strip.coordinate(end, 0);
+      float y = strip.coordinate(end, 1);
+      float z = strip.coordinate(end, 2);
+      if (x != x || y != y || z != z) return;
+      Long key = Long.valueOf(key((long) Math.floor(x / tolerance),
+                                  (long) Math.floor(y / tolerance),
+                                  (long) Math.floor(z / tolerance)));
+      List<End> ends = index.get(key);
+      if (ends == null) {
+        ends = new ArrayList<End>(2);
+        index.put(key, ends);
+      }
+      ends.add(new End(strip, end));
+    }
+
+    /** return another strip end near the end of strip, or null */
+    private End find(Strip strip, int end) {
+      float x = strip.coordinate(end, 0);
+      float y = strip.coordinate(end, 1);
+      float z = strip.coordinate(end, 2);
+      if (x != x || y != y || z != z) return null;
+      long qx = (long) Math.floor(x / tolerance);
+      long qy = (long) Math.floor(y / tolerance);
+      long qz = (long) Math.floor(z / tolerance);
+      for (int i=-1; i<=1; i++) {
+        for (int j=-1; j<=1; j++) {
+          for (int k=-1; k<=1; k++) {
+            List<End> ends = index.get(Long.valueOf(key(qx + i, qy + j, qz + k)));
+            if (ends == null) continue;
+            for (End e : ends) {
+              Strip other = e.strip;
+              if (other.joined || other.closed) continue;
+              if (other == strip && e.end == end) continue;
+              if ((other.colors == null) != (strip.colors == null)) continue;
+              if (other == strip && strip.count <= 2) continue;
+              if (near(strip, end, other, e.end)) return e;
+            }
+          }
+        }
+      }
+      return null;
+    }
+
+    private boolean near(Strip a, int a_end, Strip b, int b_end) {
+      for (int d=0; d<3; d++) {
+        float diff = a.coordinate(a_end, d) - b.coordinate(b_end, d);
+        if (!(Math.abs(diff) <= tolerance)) return false;
+      }
+      return true;
+    }
+
+    /** join other to the end of strip where they meet, dropping the
+        shared vertex of other */
+    private void append(Strip strip, int end, Strip other, int other_end) {
+      // orient other so its shared vertex is next to strip
+      boolean reverse = (end == 1) ? (other_end == 1) : (other_end == 0);
+      int n = strip.count + other.count - 1;
+      int color_dim = (strip.colors == null) ? 0 :
+                      strip.colors.length / strip.count;
+      float[] coordinates = new float[3 * n];
+      byte[] colors = (color_dim > 0) ? new byte[color_dim * n] : null;
+      int strip_start = (end == 1) ? 0 : other.count - 1;
+      System.arraycopy(strip.coordinates, 0, coordinates, 3 * strip_start,
+                       3 * strip.count);
+      if (colors != null) {
+        System.arraycopy(strip.colors, 0, colors, color_dim * strip_start,
+                         color_dim * strip.count);
+      }
+      // vertices of other, without the shared one, in their new order
+      int other_start = (end == 1) ? strip.count : 0;
+      for (int i=0; i<other.count-1; i++) {
+        int v = (end == 1) ? i + 1 : i;
+        int src = reverse ? other.count - 1 - v : v;
+        int dst = other_start + i;
+        System.arraycopy(other.coordinates, 3 * src, coordinates, 3 * dst, 3);
+        if (colors != null) {
+          System.arraycopy(other.colors, color_dim * src, colors,
+                           color_dim * dst, color_dim);
+        }
+      }
+      strip.coordinates = coordinates;
+      strip.colors = colors;
+      strip.count = n;
+      strip.band = Math.max(strip.band, other.band);
+      other.joined = true;
+    }
+
+    /** pass strips to sink as one VisADLineStripArray */
+    private void emit(List<Strip> done, ContourSink sink)
+            throws VisADException {
+      if (done.isEmpty()) return;
+      int n = 0;
+      int ncolors = 0;
+      for (Strip strip : done) {
+        n += strip.count;
+        if (strip.colors != null) ncolors += strip.colors.length;
+      }
+      VisADLineStripArray array = new VisADLineStripArray();
+      array.vertexCount = n;
+      array.stripVertexCounts = new int[done.size()];
+      array.coordinates = new float[3 * n];
+      if (ncolors > 0) array.colors = new byte[ncolors];
+      int v = 0;
+      int c = 0;
+      for (int i=0; i<done.size(); i++) {
+        Strip strip = done.get(i);
+        array.stripVertexCounts[i] = strip.count;
+        System.arraycopy(strip.coordinates, 0, array.coordinates, 3 * v,
+                         3 * strip.count);
+        v += strip.count;
+        if (strip.colors != null && array.colors != null) {
+          System.arraycopy(strip.colors, 0, array.colors, c,
+                           strip.colors.length);
+          c += strip.colors.length;
+        }
+      }
+      sink.addLines(array, styled);
+    }
+  }
+
+
+  /**
+   * ContourSink that keeps everything, for the result of
+   * Gridded3DSet.makeIsoLines
+   */
+  static final class Collector implements ContourSink {
+    private final List<VisADLineStripArray> lines =
+      new ArrayList<VisADLineStripArray>();
+    private final List<VisADLineStripArray> styledLines =
+      new ArrayList<VisADLineStripArray>();
+    private final List<VisADLineStripArray> labelLines =
+      new ArrayList<VisADLineStripArray>();
+    private final List<VisADLineStripArray> styledLabelLines =
+      new ArrayList<VisADLineStripArray>();
+    private final List<ContourLabelGeometry> labels =
+      new ArrayList<ContourLabelGeometry>();
+    private final List<VisADTriangleStripArray> fills =
+      new ArrayList<VisADTriangleStripArray>();
+
+    public void addLines(VisADLineStripArray array, boolean styled) {
+      if (styled) styledLines.add(array);
+      else lines.add(array);
+    }
+
+    public void addLabelLines(VisADLineStripArray array, boolean styled) {
+      if (styled) styledLabelLines.add(array);
+      else labelLines.add(array);
+    }
+
+    public void addLabel(ContourLabelGeometry label) {
+      labels.add(label);
+    }
+
+    public void addFill(VisADTriangleStripArray fill) {
+      fills.add(fill);
+    }
+
+    /**
+     * return the collected geometry organized as the result of
+     * Gridded3DSet.makeIsoLines, or null if there is none
+     */
+    VisADGeometryArray[][] getArrays(boolean fill) throws VisADException {
+      if (lines.isEmpty() && styledLines.isEmpty() && labels.isEmpty() &&
+          fills.isEmpty()) {
+        return null;
+      }
+      VisADGeometryArray[] labelArrays = labels.isEmpty() ? null :
+        labels.toArray(new VisADGeometryArray[labels.size()]);
+      if (fill) {
+        return new VisADGeometryArray[][] {
+          fills.toArray(new VisADGeometryArray[fills.size()]), null,
+          labelArrays, null
+        };
+      }
+      VisADLineStripArray[] fillLines = new VisADLineStripArray[2];
+      fillLines[0] = merge(labelLines);
+      fillLines[1] = merge(styledLabelLines);
+      VisADGeometryArray[] basic = lines.isEmpty() ? null :
+        lines.toArray(new VisADGeometryArray[lines.size()]);
+      VisADGeometryArray[] basicStyled = styledLines.isEmpty() ? null :
+        styledLines.toArray(new VisADGeometryArray[styledLines.size()]);
+      return new VisADGeometryArray[][] {
+        basic, fillLines, labelArrays, basicStyled
+      };
+    }
+
+    private static VisADLineStripArray merge(List<VisADLineStripArray> arrays)
+            throws VisADException {
+      if (arrays.isEmpty()) return null;
+      return VisADLineStripArray.merge(
+               arrays.toArray(new VisADLineStripArray[arrays.size()]));
+    }
+  }
+}
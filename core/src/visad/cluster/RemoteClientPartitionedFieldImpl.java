@@ -28,12 +28,26 @@ package visad.cluster;
 
 import visad.*;
 
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.rmi.*;
 
 /**
    RemoteClientPartitionedFieldImpl is the class for cluster client
    VisAD Field data objects.<P>
+
+   resample, evaluate, computeRanges, getValues, getFloats, extract
+   and derivative are done by scatter-gather: the operation is sent
+   to each RemoteNodePartitionedField concurrently, run node-local,
+   and the node results are merged on the client.  Note that
+   interpolation and derivatives are node-local, so values in the
+   seams between node domain Sets may be missing or one-sided.<P>
 */
 public class RemoteClientPartitionedFieldImpl extends RemoteClientDataImpl
        implements RemoteClientField {
@@ -42,6 +56,20 @@ public class RemoteClientPartitionedFieldImpl extends RemoteClientDataImpl
   private Set set = null;
   private int length;
 
+  /** for each node, indices into set of the node's domain samples;
+      computed on first use */
+  private int[][] nodeIndices = null;
+
+  /** threads for concurrent calls to nodes */
+  private static ExecutorService executor =
+    Executors.newCachedThreadPool(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "RemoteClientPartitionedField");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+
   /**
      must call setupClusterData after constructor to finish the
      "construction"
@@ -143,9 +171,15 @@ public class RemoteClientPartitionedFieldImpl extends RemoteClientDataImpl
     throw new ClusterException("no setSample() method");
   }
 
-  public Field extract(int component)
+  public Field extract(final int component)
          throws VisADException, RemoteException {
-    throw new ClusterException("no extract() method");
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.extract(component);
+      }
+    }, null);
+    return (Field) gather(set, null, parts, getNodeIndices());
   }
 
   public Field domainMultiply()
@@ -165,22 +199,78 @@ public class RemoteClientPartitionedFieldImpl extends RemoteClientDataImpl
 
   public double[][] getValues()
          throws VisADException, RemoteException {
-    throw new ClusterException("no getValues() method");
+    return getValues(true);
   }
 
+  /** gather range values of all nodes into the order of the domain
+      Set; samples not on any node are NaN; copy is ignored */
   public double[][] getValues(boolean copy)
          throws VisADException, RemoteException {
-    throw new ClusterException("no getValues() method");
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.getValues(false);
+      }
+    }, null);
+    int[][] indices = getNodeIndices();
+    double[][] values = null;
+    for (int k=0; k<parts.length; k++) {
+      double[][] part = (double[][]) parts[k];
+      if (part == null) return null;
+      if (values == null) {
+        values = new double[part.length][length];
+        for (int i=0; i<values.length; i++) {
+          Arrays.fill(values[i], Double.NaN);
+        }
+      }
+      int[] index = indices[k];
+      for (int i=0; i<values.length; i++) {
+        double[] v = values[i];
+        double[] p = part[i];
+        for (int j=0; j<index.length; j++) {
+          if (index[j] >= 0) v[index[j]] = p[j];
+        }
+      }
+    }
+    return values;
   }
 
   public float[][] getFloats()
          throws VisADException, RemoteException {
-    throw new ClusterException("no getFloats() method");
+    return getFloats(true);
   }
 
+  /** gather range values of all nodes into the order of the domain
+      Set; samples not on any node are NaN; copy is ignored */
   public float[][] getFloats(boolean copy)
          throws VisADException, RemoteException {
-    throw new ClusterException("no getFloats() method");
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.getFloats(false);
+      }
+    }, null);
+    int[][] indices = getNodeIndices();
+    float[][] values = null;
+    for (int k=0; k<parts.length; k++) {
+      float[][] part = (float[][]) parts[k];
+      if (part == null) return null;
+      if (values == null) {
+        values = new float[part.length][length];
+        for (int i=0; i<values.length; i++) {
+          Arrays.fill(values[i], Float.NaN);
+        }
+      }
+      int[] index = indices[k];
+      for (int i=0; i<values.length; i++) {
+        float[] v = values[i];
+        float[] p = part[i];
+        for (int j=0; j<index.length; j++) {
+          if (index[j] >= 0) v[index[j]] = p[j];
+        }
+      }
+    }
+    return values;
   }
 
   public String[][] getStringValues()
@@ -222,75 +312,203 @@ public class RemoteClientPartitionedFieldImpl extends RemoteClientDataImpl
 
   public Data evaluate(Real domain)
          throws VisADException, RemoteException {
-    throw new ClusterException("no evaluate() method");
+    return evaluate(domain, Data.WEIGHTED_AVERAGE, Data.NO_ERRORS);
   }
 
   public Data evaluate(Real domain, int sampling_mode, int error_mode)
               throws VisADException, RemoteException {
-    throw new ClusterException("no evaluate() method");
+    if (domain == null) return type.getRange().missingData();
+    CoordinateSystem coord = getDomainCoordinateSystem();
+    RealTuple domainPoint = (coord == null) ?
+      new RealTuple(new Real[] {domain}) :
+      new RealTuple(new RealTupleType((RealType) domain.getType(), coord, null),
+                    new Real[] {domain}, (CoordinateSystem) null);
+    return evaluate(domainPoint, sampling_mode, error_mode);
   }
 
   public Data evaluate(RealTuple domain)
          throws VisADException, RemoteException {
-    throw new ClusterException("no evaluate() method");
+    return evaluate(domain, Data.WEIGHTED_AVERAGE, Data.NO_ERRORS);
   }
 
+  /** evaluate on the node whose partition contains domain */
   public Data evaluate(RealTuple domain, int sampling_mode, int error_mode)
               throws VisADException, RemoteException {
-    throw new ClusterException("no evaluate() method");
+    if (domain == null) return type.getRange().missingData();
+    RemoteNodePartitionedField node = getNode(domain);
+    if (node == null) return type.getRange().missingData();
+    return node.evaluate(domain, sampling_mode, error_mode);
   }
 
   public Field resample(Set set) throws VisADException, RemoteException {
-    throw new ClusterException("no resample() method");
+    return resample(set, Data.WEIGHTED_AVERAGE, Data.NO_ERRORS);
   }
 
-  public Field resample(Set set, int sampling_mode, int error_mode)
+  /** split the samples of set by partition, resample each node at
+      its share of the samples, and gather the results into a local
+      Field; samples outside the partition are missing */
+  public Field resample(Set set, final int sampling_mode,
+                        final int error_mode)
          throws VisADException, RemoteException {
-    throw new ClusterException("no resample() method");
+    Set ps = getPartitionSet();
+    if (ps == null || getTable() == null) {
+      throw new ClusterException("setup not done");
+    }
+    int n = ps.getLength();
+    int len = set.getLength();
+    float[][] samples = set.getSamples(false);
+    int dim = samples.length;
+    RealTupleType domain_type = ((SetType) set.getType()).getDomain();
+    CoordinateSystem coord = set.getCoordinateSystem();
+    Unit[] units = set.getSetUnits();
+
+    // assign each sample of set to a node
+    int[] owners;
+    if (n == 1) {
+      owners = new int[len];
+    }
+    else {
+      double[][] vals = CoordinateSystem.transformCoordinates(
+                     ((SetType) ps.getType()).getDomain(),
+                     ps.getCoordinateSystem(), ps.getSetUnits(), null,
+                     domain_type, coord, units, null,
+                     Set.floatToDouble(samples));
+      owners = ps.doubleToIndex(vals);
+    }
+    int[] counts = new int[n];
+    for (int i=0; i<len; i++) {
+      if (owners[i] >= 0) counts[owners[i]]++;
+    }
+    final int[][] indices = new int[n][];
+    final Set[] subsets = new Set[n];
+    boolean[] skip = new boolean[n];
+    for (int k=0; k<n; k++) {
+      indices[k] = new int[counts[k]];
+      skip[k] = (counts[k] == 0);
+      counts[k] = 0;
+    }
+    for (int i=0; i<len; i++) {
+      int k = owners[i];
+      if (k >= 0) indices[k][counts[k]++] = i;
+    }
+    for (int k=0; k<n; k++) {
+      if (skip[k]) continue;
+      int[] index = indices[k];
+      float[][] sub = new float[dim][index.length];
+      for (int i=0; i<dim; i++) {
+        float[] s = samples[i];
+        float[] t = sub[i];
+        for (int j=0; j<index.length; j++) t[j] = s[index[j]];
+      }
+      // Irregular1DSet does not require sorted samples
+      subsets[k] = (dim == 1) ?
+        new Irregular1DSet(domain_type, sub, coord, units, null, false) :
+        GriddedSet.create(domain_type, sub, new int[] {index.length},
+                          coord, units, null, false, false);
+    }
+
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.resample(subsets[k], sampling_mode, error_mode);
+      }
+    }, skip);
+    return (Field) gather(set, type, parts, indices);
   }
 
   public Data derivative( RealTuple location, RealType[] d_partial_s,
-                          MathType[] derivType_s, int error_mode )
-         throws VisADException, RemoteException {
-    throw new ClusterException("no derivative() method");
+                          final MathType[] derivType_s, final int error_mode )
+         throws VisADException, RemoteException {
+    if (location != null) {
+      RemoteNodePartitionedField node = getNode(location);
+      if (node == null) {
+        throw new ClusterException("location outside partition");
+      }
+      return node.derivative(location, d_partial_s, derivType_s, error_mode);
+    }
+    final RealType[] partials = d_partial_s;
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.derivative(null, partials, derivType_s, error_mode);
+      }
+    }, null);
+    return gather(set, null, parts, getNodeIndices());
   }
 
   public Data derivative( int error_mode )
          throws VisADException, RemoteException {
-    throw new ClusterException("no derivative() method");
+    return derivative(null, null, null, error_mode);
   }
 
   public Data derivative( MathType[] derivType_s, int error_mode )
          throws VisADException, RemoteException {
-    throw new ClusterException("no derivative() method");
+    return derivative(null, null, derivType_s, error_mode);
   }
 
   public Function derivative( RealType d_partial, int error_mode )
          throws VisADException, RemoteException {
-    throw new ClusterException("no derivative() method");
+    return (Function) derivative(null, new RealType[] {d_partial}, null,
+                                 error_mode);
   }
 
   public Function derivative( RealType d_partial, MathType derivType, int error_mode )
          throws VisADException, RemoteException {
-    throw new ClusterException("no derivative() method");
+    return (Function) derivative(null, new RealType[] {d_partial},
+                                 new MathType[] {derivType}, error_mode);
   }
 
 
 
 
+  /** compute ranges on all nodes and merge them into shadow */
   public DataShadow computeRanges(ShadowType type, DataShadow shadow)
          throws VisADException, RemoteException {
-    throw new ClusterException("no computeRanges() method");
-  }
-
-  public DataShadow computeRanges(ShadowType type, int n)
-         throws VisADException, RemoteException {
-    throw new ClusterException("no computeRanges() method");
+    DataShadow merged =
+      computeRanges(type, type.getDisplay().getScalarCount());
+    shadow.merge(merged);
+    return shadow;
   }
 
-  public double[][] computeRanges(RealType[] reals)
+  /** compute ranges on all nodes and merge them */
+  public DataShadow computeRanges(final ShadowType type, final int n)
          throws VisADException, RemoteException {
-    throw new ClusterException("no computeRanges(RealType[]) method");
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.computeRanges(type, n);
+      }
+    }, null);
+    DataShadow shadow = (DataShadow) parts[0];
+    for (int k=1; k<parts.length; k++) {
+      shadow.merge((DataShadow) parts[k]);
+    }
+    return shadow;
+  }
+
+  /** compute ranges on all nodes and take the overall low and high */
+  public double[][] computeRanges(final RealType[] reals)
+         throws VisADException, RemoteException {
+    if (reals == null || reals.length == 0) return null;
+    Object[] parts = scatter(new NodeTask() {
+      Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException {
+        return node.computeRanges(reals);
+      }
+    }, null);
+    double[][] ranges = new double[reals.length][];
+    for (int i=0; i<reals.length; i++) {
+      double low = Double.NaN;
+      double high = Double.NaN;
+      for (int k=0; k<parts.length; k++) {
+        double[] range = ((double[][]) parts[k])[i];
+        if (range == null) continue;
+        if (range[0] == range[0] && !(range[0] >= low)) low = range[0];
+        if (range[1] == range[1] && !(range[1] <= high)) high = range[1];
+      }
+      ranges[i] = new double[] {low, high};
+    }
+    return ranges;
   }
 
   public Data adjustSamplingError(Data error, int error_mode)
@@ -307,5 +525,169 @@ public class RemoteClientPartitionedFieldImpl extends RemoteClientDataImpl
     return pre + "RemoteClientPartitionedFieldImpl";
   }
 
+  /** operation run on one node by scatter() */
+  private abstract static class NodeTask {
+    abstract Object apply(int k, RemoteNodePartitionedField node)
+             throws VisADException, RemoteException;
+  }
+
+  /** return the RemoteNodePartitionedFields, indexed by partition */
+  private RemoteNodePartitionedField[] getNodes()
+          throws VisADException {
+    Set ps = getPartitionSet();
+    RemoteClusterData[] table = getTable();
+    if (ps == null || table == null) {
+      throw new ClusterException("setup not done");
+    }
+    int n = ps.getLength();
+    RemoteNodePartitionedField[] nodes = new RemoteNodePartitionedField[n];
+    for (int k=0; k<n; k++) {
+      if (!(table[k] instanceof RemoteNodePartitionedField)) {
+        throw new ClusterException("table entry " + k + " is not a " +
+                                   "RemoteNodePartitionedField");
+      }
+      nodes[k] = (RemoteNodePartitionedField) table[k];
+    }
+    return nodes;
+  }
+
+  /** return the node whose partition contains domain, or null */
+  private RemoteNodePartitionedField getNode(RealTuple domain)
+          throws VisADException, RemoteException {
+    RemoteClusterData data = getClusterData(domain);
+    if (data == null) return null;
+    if (!(data instanceof RemoteNodePartitionedField)) {
+      throw new ClusterException("domain not partitioned");
+    }
+    return (RemoteNodePartitionedField) data;
+  }
+
+  /** run task on every node k with skip[k] false, concurrently, and
+      return the results indexed by node */
+  private Object[] scatter(final NodeTask task, boolean[] skip)
+          throws VisADException, RemoteException {
+    final RemoteNodePartitionedField[] nodes = getNodes();
+    int n = nodes.length;
+    Object[] results = new Object[n];
+    Future[] futures = new Future[n];
+    for (int k=0; k<n; k++) {
+      if (skip != null && skip[k]) continue;
+      final int kk = k;
+      futures[k] = executor.submit(new Callable<Object>() {
+        public Object call() throws Exception {
+          return task.apply(kk, nodes[kk]);
+        }
+      });
+    }
+    for (int k=0; k<n; k++) {
+      if (futures[k] == null) continue;
+      try {
+        results[k] = futures[k].get();
+      }
+      catch (InterruptedException e) {
+        throw new ClusterException("interrupted waiting for node " + k);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof VisADException) throw (VisADException) cause;
+        if (cause instanceof RemoteException) throw (RemoteException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new ClusterException("node " + k + ": " + cause);
+      }
+    }
+    return results;
+  }
+
+  /** for each node, indices into set of the samples of the node's
+      domain Set (-1 for samples not in set) */
+  private synchronized int[][] getNodeIndices()
+          throws VisADException, RemoteException {
+    if (nodeIndices == null) {
+      Object[] parts = scatter(new NodeTask() {
+        Object apply(int k, RemoteNodePartitionedField node)
+               throws VisADException, RemoteException {
+          return node.getDomainSet();
+        }
+      }, null);
+      int[][] indices = new int[parts.length][];
+      for (int k=0; k<parts.length; k++) {
+        indices[k] = set.valueToIndex(((Set) parts[k]).getSamples(false));
+      }
+      nodeIndices = indices;
+    }
+    return nodeIndices;
+  }
+
+  /** assemble per-node results into one Data over domain, where
+      sample j of parts[k] goes to sample indices[k][j] of domain;
+      parts are Fields, or Tuples of Fields (as from derivative());
+      null parts (nodes not involved) are skipped and samples not
+      covered by any part are missing; ftype is used if all parts
+      are null */
+  private static Data gather(Set domain, FunctionType ftype,
+                             Object[] parts, int[][] indices)
+          throws VisADException, RemoteException {
+    Data first = null;
+    for (int k=0; k<parts.length; k++) {
+      if (parts[k] != null) {
+        first = (Data) parts[k];
+        break;
+      }
+    }
+    if (first instanceof Tuple) {
+      int dim = ((Tuple) first).getDimension();
+      Data[] components = new Data[dim];
+      for (int i=0; i<dim; i++) {
+        Object[] sub = new Object[parts.length];
+        for (int k=0; k<parts.length; k++) {
+          if (parts[k] != null) sub[k] = ((Tuple) parts[k]).getComponent(i);
+        }
+        components[i] = gather(domain, null, sub, indices);
+      }
+      return new Tuple(components, false);
+    }
+    if (first != null) ftype = (FunctionType) first.getType();
+    int len = domain.getLength();
+    if (ftype.getFlat()) {
+      FlatField field = new FlatField(ftype, domain);
+      double[][] values = null;
+      for (int k=0; k<parts.length; k++) {
+        if (parts[k] == null) continue;
+        double[][] part = ((Field) parts[k]).getValues(false);
+        if (values == null) {
+          values = new double[part.length][len];
+          for (int i=0; i<values.length; i++) {
+            Arrays.fill(values[i], Double.NaN);
+          }
+        }
+        int[] index = indices[k];
+        for (int i=0; i<values.length; i++) {
+          double[] v = values[i];
+          double[] p = part[i];
+          for (int j=0; j<index.length; j++) {
+            if (index[j] >= 0) v[index[j]] = p[j];
+          }
+        }
+      }
+      if (values != null) field.setSamples(values, false);
+      return field;
+    }
+    else {
+      FieldImpl field = new FieldImpl(ftype, domain);
+      for (int k=0; k<parts.length; k++) {
+        if (parts[k] == null) continue;
+        Field part = (Field) parts[k];
+        int[] index = indices[k];
+        for (int j=0; j<index.length; j++) {
+          if (index[j] >= 0) {
+            field.setSample(index[j], part.getSample(j), false);
+          }
+        }
+      }
+      return field;
+    }
+  }
+
 }
 
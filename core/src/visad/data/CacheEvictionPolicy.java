@@ -0,0 +1,77 @@
+//
+// CacheEvictionPolicy
+//
+
+/*
+ * VisAD system for interactive analysis and visualization of numerical
+ * data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+ * Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+ * Tommy Jasmin, Jeff McWhirter.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, write to the Free
+ * Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+ * MA 02111-1307, USA
+ */
+
+
+package visad.data;
+
+
+/**
+ * Decides which entry {@link DataCacheManager} moves out of memory next.
+ * A policy only sees cache ids and sizes; the cache manager serializes
+ * all calls, so implementations need not be thread safe.  Each operation
+ * should take constant time.
+ */
+public interface CacheEvictionPolicy {
+
+  /**
+   * An entry of the given size has been loaded into memory.  If the entry
+   * is already known, e.g. because its data was replaced, its size is
+   * updated and the call counts as an access; what the policy has learned
+   * about the entry, such as its use count, is kept.
+   *
+   * @param cacheId the cache id
+   * @param size size of the entry in bytes
+   */
+  public void add(Object cacheId, long size);
+
+  /**
+   * The entry has been accessed
+   *
+   * @param cacheId the cache id
+   */
+  public void touch(Object cacheId);
+
+  /**
+   * The entry has been removed from memory by other means than evict()
+   *
+   * @param cacheId the cache id
+   */
+  public void remove(Object cacheId);
+
+  /**
+   * Choose the next entry to move out of memory and forget it
+   *
+   * @return the cache id of the entry, or null if there are none
+   */
+  public Object evict();
+
+  /**
+   * Get the number of entries known to this policy
+   *
+   * @return number of entries
+   */
+  public int size();
+}
@@ -28,6 +28,12 @@ package visad.data;
 
 import visad.*;
 
+/**
+ * Choose the slot of the old fixed size FileFlatField cache to reuse.
+ * FileFlatField now keeps its adapted FlatFields in the byte-bounded
+ * {@link FileFlatFieldCache} and no longer calls {@link #allocate}; the
+ * class remains for the FileFlatField constructor.
+ */
 public class CacheStrategy
 {
 
@@ -29,6 +29,8 @@ package visad.data;
 
 import visad.*;
 import visad.util.DataUtility;
+import java.io.File;
+import java.io.IOException;
 import java.rmi.RemoteException;
 
 
@@ -412,7 +414,9 @@ public class CachedFlatField extends FlatField {
 
 
     /**
-     * Used to provide a hook to derived classes to dynamically read in the data
+     * Used to provide a hook to derived classes to dynamically read in the data.
+     * Derived classes that keep their values in a {@link MappedArrayFile} can
+     * implement this with {@link #readMappedData(File)}.
      *
      * @return data
      */
@@ -421,6 +425,35 @@ public class CachedFlatField extends FlatField {
         return null;
     }
 
+
+    /**
+     * Read values written with {@link #writeMappedData(File, float[][])}.
+     * Each range component is copied with bulk reads.
+     *
+     * @param file the file
+     *
+     * @return the values
+     *
+     * @throws IOException if the file could not be read
+     */
+    protected float[][] readMappedData(File file) throws IOException {
+        return MappedArrayFile.readFloats(file);
+    }
+
+
+    /**
+     * Write values in the format read by {@link #readMappedData(File)}
+     *
+     * @param file the file
+     * @param values the values
+     *
+     * @throws IOException on badness
+     */
+    protected void writeMappedData(File file, float[][] values)
+            throws IOException {
+        MappedArrayFile.write(file, values);
+    }
+
     /**
      * Debug statment
      *
@@ -618,6 +651,29 @@ public class CachedFlatField extends FlatField {
     }
 
 
+    /**
+     * Copy some of the values of a range component
+     *
+     * @param comp the range component
+     * @param start index of the first sample
+     * @param values array for the values
+     *
+     * @throws VisADException  Problem in VisAD land
+     */
+    public void unpackValues(int comp, int start, double[] values)
+            throws VisADException {
+        float[][] floats = getMyValues();
+        if (floats == null) {
+            super.unpackValues(comp, start, values);
+            return;
+        }
+        float[] floats_c = floats[comp];
+        for (int j = 0; j < values.length; j++) {
+            values[j] = floats_c[start + j];
+        }
+    }
+
+
     /**
      * Unpack floats
      *
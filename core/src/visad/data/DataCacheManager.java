@@ -33,12 +33,16 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.List;
-
-import java.awt.*;
-import javax.swing.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -69,13 +73,30 @@ import javax.swing.*;
       DataCacheManager.getCacheManager().getDoubleArray2D(cacheId); 
 </pre>
 
-* The cachemanager will keep the data arrays in memory until the total size is greater than getMaxSize(). Then it will serialize the data arrays in a least recently used manner until the totalSize less than the max size.
+* The cachemanager keeps the data arrays in memory, counting their sizes in
+* bytes, until the total size is greater than getMaxBytes(). It then moves
+* arrays out of memory, in the order chosen by a {@link CacheEvictionPolicy},
+* until the total is back under the limit; an array moved out is read back
+* from its cache file when it is next accessed.
+* <p>
+* Lookups of in-memory data do not take any global lock. Arrays chosen for
+* eviction are written to the cache directory by a background thread; arrays
+* added with <code>removeIfNeeded</code> are dropped from the cache instead,
+* before any other array is written out. An array whose cache file can't be
+* written stays in memory and may be chosen again. Hits, misses, spills and
+* reloads are counted, see {@link #getStats()}. The policy is chosen with
+* {@link #setEvictionPolicy(CacheEvictionPolicy)} or the system property
+* <code>visad.data.cachemanager.policy</code> (<code>lru</code>, the default,
+* <code>lfu</code> or <code>size</code>).
  */
 
 public class DataCacheManager  implements Runnable {
 
 
- private double memoryPercentage = 0.25;    
+ private volatile double memoryPercentage = 0.25;    
+
+  /** explicit maximum number of bytes in memory, or -1 to use memoryPercentage */
+  private volatile long maxBytes = -1;
 
   /** the singleton */
   private static DataCacheManager cacheManager;
@@ -85,23 +106,39 @@ public class DataCacheManager  implements Runnable {
   private File cacheDir;
 
   /** for unique ids */
-  private int idCnt = 0;
+  private AtomicInteger idCnt = new AtomicInteger(0);
 
   /** for unique ids */
   private long baseTime;
 
 
   /** The cache */
-  private Hashtable<Object, CacheInfo> cache = new Hashtable<Object,
-                                                 CacheInfo>();
+  private ConcurrentHashMap<Object, CacheInfo> cache =
+    new ConcurrentHashMap<Object, CacheInfo>();
+
+  /** guards the eviction policies */
+  private ReentrantLock policyLock = new ReentrantLock();
 
-  /** a mutex */
-  private Object MUTEX = new Object();
+  /** eviction policy for the in-memory entries that get written to disk */
+  private CacheEvictionPolicy policy;
+
+  /** eviction policy for the in-memory entries that get dropped */
+  private CacheEvictionPolicy volatilePolicy;
 
   /** Total number of bytes in memory */
-  private int totalSize = 0;
+  private AtomicLong totalSize = new AtomicLong(0);
+
+  /** bytes of the entries waiting to be written to disk */
+  private AtomicLong pendingSpillSize = new AtomicLong(0);
+
+  /** writes evicted entries to disk */
+  private ExecutorService spillExecutor;
 
-  private boolean running = false;
+  /** statistics */
+  private AtomicLong hitCount = new AtomicLong(0);
+  private AtomicLong missCount = new AtomicLong(0);
+  private AtomicLong spillCount = new AtomicLong(0);
+  private AtomicLong reloadCount = new AtomicLong(0);
 
 
 
@@ -110,13 +147,17 @@ public class DataCacheManager  implements Runnable {
    */
   private DataCacheManager() {
     baseTime = System.currentTimeMillis();
-    try {
-        //Start  the cache monitor in a thread
-        Thread t = new Thread(this);
-        t.start();
-    } catch(Exception exc) {
-        throw new RuntimeException(exc);
-    }
+    policy = createPolicy(System.getProperty("visad.data.cachemanager.policy",
+                                             "lru"));
+    volatilePolicy = new LRUEvictionPolicy();
+    spillExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "DataCacheManager spill");
+            t.setDaemon(true);
+            return t;
+          }
+        });
   }
 
 
@@ -125,7 +166,7 @@ public class DataCacheManager  implements Runnable {
    *
    * @return the cache manager
    */
-  public static DataCacheManager getCacheManager() {
+  public static synchronized DataCacheManager getCacheManager() {
     if (cacheManager == null) {
       cacheManager = new DataCacheManager();
     }
@@ -133,21 +174,63 @@ public class DataCacheManager  implements Runnable {
   }
 
 
+  /**
+   * Create one of the standard eviction policies
+   *
+   * @param name <code>lru</code>, <code>lfu</code> or <code>size</code>
+   *
+   * @return the policy
+   */
+  public static CacheEvictionPolicy createPolicy(String name) {
+    if ("lfu".equalsIgnoreCase(name)) {
+      return new LFUEvictionPolicy();
+    }
+    if ("size".equalsIgnoreCase(name)) {
+      return new SizeAwareEvictionPolicy();
+    }
+    return new LRUEvictionPolicy();
+  }
 
 
-    public void run() {
-        if(running) return;
-        running= true;
-        try {
-            while(true) {
-                Thread.currentThread().sleep(5000);
-                checkCache();
-            }
-        } catch(Exception exc) {
-            System.err.println ("Error in DataCacheManager:");
-            exc.printStackTrace();
+  /**
+   * Replace the eviction policy. The entries currently in memory are
+   * handed to the new policy in least recently used order.
+   *
+   * @param newPolicy the new policy
+   */
+  public void setEvictionPolicy(CacheEvictionPolicy newPolicy) {
+    policyLock.lock();
+    try {
+      List<CacheInfo> infos = getCacheInfos();
+      for (CacheInfo info : infos) {
+        if (!info.removeIfNeeded && info.data != null) {
+          newPolicy.add(info.getId(), info.getSize());
         }
-        running =false;
+      }
+      policy = newPolicy;
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+
+  /**
+   * Get the eviction policy
+   *
+   * @return the policy
+   */
+  public CacheEvictionPolicy getEvictionPolicy() {
+    return policy;
+  }
+
+
+    /**
+     * The cache used to be checked by a polling thread that ran this
+     * method. Entries are now evicted as soon as the cache is full, so this
+     * only checks the cache once.
+     */
+    public void run() {
+        checkCache();
     }
 
 
@@ -179,7 +262,7 @@ public class DataCacheManager  implements Runnable {
    * @return unique id
    */
   public Object getId() {
-    return "data_" + baseTime + "_" + (idCnt++);
+    return "data_" + baseTime + "_" + idCnt.getAndIncrement();
   }
 
 
@@ -192,14 +275,13 @@ public class DataCacheManager  implements Runnable {
    * @return the unique id
    */
     private Object addToCache(String what, Object data, int type, boolean removeIfNeeded) {
-    synchronized (MUTEX) {
-        CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
+      CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
       if(what!=null) info.what = what;
       cache.put(info.getId(), info);
-      totalSize += info.getSize();
+      totalSize.addAndGet(info.getSize());
+      addResident(info);
       checkCache();
       return info.getId();
-    }
   }
 
 
@@ -213,32 +295,29 @@ public class DataCacheManager  implements Runnable {
    * @param data  the new data
    */
   public void updateData(Object cacheId, Object data) {
-    synchronized (MUTEX) {
-        //      if(cacheId == null)
-        //          return addToCache(data, findType(data));
-        CacheInfo info = cache.get(cacheId);
-//      if(info==null) {
-//        return addToCache(data);
-//      }
-
-      int oldSize = info.data != null
-                    ? info.getSize()
-                    : 0;
-      info.setData(data);
-      int newSize = info.getSize();
-      totalSize -= oldSize;
-      totalSize += newSize;
+      CacheInfo info = cache.get(cacheId);
+      if (info == null) {
+        return;
+      }
+      synchronized (info) {
+        if (info.removed) {
+          return;
+        }
+        long oldSize = info.data != null
+                      ? info.getSize()
+                      : 0;
+        info.setData(data);
+        totalSize.addAndGet(info.getSize() - oldSize);
+      }
+      addResident(info);
       checkCache();
-    }
   }
 
     public boolean inMemory(Object cacheId) {
-        synchronized (MUTEX) {
         CacheInfo info =  cache.get(cacheId);
         if(info == null)return false;
         info.dataAccessed();
         return (info.data!=null);
-        }
     }
 
 
@@ -251,34 +330,47 @@ public class DataCacheManager  implements Runnable {
    * @return 
    */
   private Object getData(Object cacheId) {
-    CacheInfo info = null;
-    Object data = null;
-    synchronized (MUTEX) {
-      info = cache.get(cacheId);
-      if (info == null) return null;
+    CacheInfo info = cache.get(cacheId);
+    if (info == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    info.dataAccessed();
+    Object data = info.data;
+    if (data != null) {
+      hitCount.incrementAndGet();
+      touch(info);
+      return data;
+    }
+    synchronized (info) {
       data = info.data;
-      info.dataAccessed();
-      if (data != null) return data;
-      try {
+      if (data == null) {
+        if (info.removed) {
+          missCount.incrementAndGet();
+          return null;
+        }
+        missCount.incrementAndGet();
+        try {
           long t1 = System.currentTimeMillis();
-        FileInputStream fis = new FileInputStream(info.cacheFile);
-        BufferedInputStream bis = new BufferedInputStream(fis,100000);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        info.setDataFromCache(data = ois.readObject());
-        long t2 = System.currentTimeMillis();
-        System.err.println("Read " + info.getSize() +" bytes from file in " + (t2-t1) +" ms");
-        totalSize += info.getSize();
-        ois.close();
-        bis.close();
-        fis.close();
-        checkCache();
+          data = readCacheFile(info);
+          long t2 = System.currentTimeMillis();
+          System.err.println("Read " + info.getSize() +" bytes from file in " + (t2-t1) +" ms");
+        }
+        catch (Exception exc) {
+          throw new RuntimeException(exc);
+        }
+        info.setDataFromCache(data);
+        totalSize.addAndGet(info.getSize());
+        reloadCount.incrementAndGet();
         info.cacheMissed();
-        return data;
       }
-      catch (Exception exc) {
-        throw new RuntimeException(exc);
+      else {
+        hitCount.incrementAndGet();
       }
     }
+    addResident(info);
+    checkCache();
+    return data;
   }
 
     public  File getCacheFile() {
@@ -286,7 +378,66 @@ public class DataCacheManager  implements Runnable {
     }
 
 
+  /**
+   * Read the data of an entry from its cache file, see {@link MappedArrayFile}
+   *
+   * @param info the cacheinfo
+   *
+   * @return the data
+   */
+  private Object readCacheFile(CacheInfo info) throws Exception {
+    return MappedArrayFile.read(info.cacheFile);
+  }
+
 
+  /**
+   * Write the data of an entry to its cache file, see {@link MappedArrayFile}
+   *
+   * @param info the cacheinfo
+   */
+  private void writeCacheFile(CacheInfo info) throws IOException {
+    MappedArrayFile.write(info.cacheFile, info.data);
+  }
+
+
+
+  /**
+   * Tell the eviction policy that the entry is in memory
+   *
+   * @param info the cacheinfo
+   */
+  private void addResident(CacheInfo info) {
+    policyLock.lock();
+    try {
+      CacheEvictionPolicy p = info.removeIfNeeded ? volatilePolicy : policy;
+      if (info.data != null && !info.removed) {
+        // an entry the policy knows keeps its history, e.g. its LFU count
+        p.add(info.getId(), info.getSize());
+      }
+      else {
+        p.remove(info.getId());
+      }
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+
+  /**
+   * Tell the eviction policy that the entry was accessed. This is skipped
+   * if another thread holds the policy lock, so cache hits never wait.
+   *
+   * @param info the cacheinfo
+   */
+  private void touch(CacheInfo info) {
+    if (policyLock.tryLock()) {
+      try {
+        (info.removeIfNeeded ? volatilePolicy : policy).touch(info.getId());
+      } finally {
+        policyLock.unlock();
+      }
+    }
+  }
 
 
 
@@ -296,9 +447,8 @@ public class DataCacheManager  implements Runnable {
    * @param cacheId  the cache id 
    */
   public void removeFromCache(Object cacheId) {
-    synchronized (MUTEX) {
-        removeFromCache(cache.get(cacheId));
-    }
+      if (cacheId == null) return;
+      removeFromCache(cache.get(cacheId));
   }
 
 
@@ -306,24 +456,29 @@ public class DataCacheManager  implements Runnable {
         if (info == null) {
             return;
         }
-        synchronized (MUTEX) {
+        synchronized (info) {
             if (info.data != null) {
                 info.data = null;
-                totalSize -= info.getSize();
+                totalSize.addAndGet(-info.getSize());
             }
+            info.removed = true;
             cache.remove(info.id);
             info.remove();
         }
+        policyLock.lock();
+        try {
+          (info.removeIfNeeded ? volatilePolicy : policy).remove(info.getId());
+        } finally {
+          policyLock.unlock();
+        }
     }
 
 
     public void flushAllCachedData() {
-      synchronized (MUTEX) {
           for (CacheInfo info : getCacheInfos()) {
               flushCachedData(info);
           }
           Runtime.getRuntime().gc();
-      }
     }
 
 
@@ -334,35 +489,37 @@ public class DataCacheManager  implements Runnable {
    * @param info  the cacheinfo
    */
   private void flushCachedData(CacheInfo info) {
-    try {
-      if (info.removeIfNeeded) {
-          removeFromCache(info);
-          return;
-      }
-
-
-      if (info.data == null) {
+    if (info.removeIfNeeded) {
+        removeFromCache(info);
         return;
-      }
-
+    }
 
+    try {
+      synchronized (info) {
+        if (info.data == null || info.removed) {
+          return;
+        }
 
-      if (!info.cacheFileGood) {
-        FileOutputStream fos = new FileOutputStream(info.cacheFile);
-        BufferedOutputStream bos = new BufferedOutputStream(fos,100000);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(info.data);
-        oos.close();
-        bos.close();
-        fos.close();
+        if (!info.cacheFileGood) {
+          writeCacheFile(info);
+          info.cacheFileGood = true;
+        }
+        info.data = null;
+        totalSize.addAndGet(-info.getSize());
+        spillCount.incrementAndGet();
       }
-      info.data = null;
-      totalSize -= info.getSize();
     }
     catch (Exception exc) {
+      // the data is still in memory, so it must stay evictable
+      addResident(info);
       throw new RuntimeException(exc);
     }
-
+    policyLock.lock();
+    try {
+      if (info.data == null) policy.remove(info.getId());
+    } finally {
+      policyLock.unlock();
+    }
   }
 
 
@@ -372,54 +529,161 @@ public class DataCacheManager  implements Runnable {
    * @return  Sorted list of cacheinfos
    */
   private List<CacheInfo> getCacheInfos() {
-    synchronized (MUTEX) {
-      List<CacheInfo> infos = new ArrayList<CacheInfo>();
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
-        infos.add(info);
-      }
+      List<CacheInfo> infos = new ArrayList<CacheInfo>(cache.values());
       Collections.sort(infos);
       return infos;
-    }
   }
 
 
 
   public  void setMemoryPercent(double percentage) {
       memoryPercentage = percentage;
+      maxBytes = -1;
       checkCache();
   }
 
+  /**
+   * Set the maximum number of bytes to keep in memory. This overrides the
+   * memory percentage until setMemoryPercent is called.
+   *
+   * @param bytes maximum number of bytes
+   */
+  public void setMaxBytes(long bytes) {
+      maxBytes = bytes;
+      checkCache();
+  }
+
+  /**
+   * Get the maximum number of bytes to keep in memory
+   *
+   * @return maximum number of bytes
+   */
+  public long getMaxBytes() {
+      if (maxBytes >= 0) return maxBytes;
+      return (long)(memoryPercentage*Runtime.getRuntime().maxMemory());
+  }
+
+  /**
+   * Get the maximum number of bytes to keep in memory, at most
+   * Integer.MAX_VALUE
+   *
+   * @return maximum number of bytes
+   */
   public int getMaxSize() {
-      return (int)(memoryPercentage*Runtime.getRuntime().maxMemory());
+      return (int) Math.min(Integer.MAX_VALUE, getMaxBytes());
+  }
+
+  /**
+   * Get the number of bytes currently in memory
+   *
+   * @return number of bytes
+   */
+  public long getTotalSize() {
+      return totalSize.get();
   }
 
   /**
-   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold
+   * Get the number of lookups that found their data in memory
+   *
+   * @return hit count
+   */
+  public long getHitCount() {
+      return hitCount.get();
+  }
+
+  /**
+   * Get the number of lookups that did not find their data in memory
+   *
+   * @return miss count
+   */
+  public long getMissCount() {
+      return missCount.get();
+  }
+
+  /**
+   * Get the number of entries moved out of memory
+   *
+   * @return spill count
+   */
+  public long getSpillCount() {
+      return spillCount.get();
+  }
+
+  /**
+   * Get the number of entries read back from the cache directory
+   *
+   * @return reload count
+   */
+  public long getReloadCount() {
+      return reloadCount.get();
+  }
+
+  /**
+   * Reset the hit, miss, spill and reload counts
+   */
+  public void resetStats() {
+      hitCount.set(0);
+      missCount.set(0);
+      spillCount.set(0);
+      reloadCount.set(0);
+  }
+
+  /**
+   *  Check if we are above the max size. If so then choose entries to move
+   *  out of memory until we are below the threshold. Entries added with
+   *  removeIfNeeded are dropped right away, the others are written to
+   *  disk in the background.
    */
     public  void checkCache() {
-        if (totalSize < getMaxSize()) {
+        long max = getMaxBytes();
+        if (totalSize.get() - pendingSpillSize.get() <= max) {
             return;
         }
-        synchronized (MUTEX) {
+        List<CacheInfo> dropped = new ArrayList<CacheInfo>();
+        List<CacheInfo> spilled = new ArrayList<CacheInfo>();
+        policyLock.lock();
+        try {
+            long size = totalSize.get() - pendingSpillSize.get();
             //First do the volatile ones
-            for (CacheInfo info : getCacheInfos()) {
-                if(info.removeIfNeeded) {
-                    flushCachedData(info);
-                    if (totalSize <= getMaxSize()) {
-                        break;
-                    }
-                }
+            while (size > max) {
+                Object id = volatilePolicy.evict();
+                if (id == null) break;
+                CacheInfo info = cache.get(id);
+                if (info == null || info.data == null) continue;
+                dropped.add(info);
+                size -= info.getSize();
             }
+            while (size > max) {
+                Object id = policy.evict();
+                if (id == null) break;
+                CacheInfo info = cache.get(id);
+                if (info == null || info.data == null) continue;
+                spilled.add(info);
+                size -= info.getSize();
+            }
+        } finally {
+            policyLock.unlock();
+        }
 
-            if (totalSize <= getMaxSize()) {
-                for (CacheInfo info : getCacheInfos()) {
-                    flushCachedData(info);
-                    if (totalSize <= getMaxSize()) {
-                        break;
+        for (CacheInfo info : dropped) {
+            removeFromCache(info);
+            spillCount.incrementAndGet();
+        }
+        for (final CacheInfo info : spilled) {
+            final long size = info.getSize();
+            pendingSpillSize.addAndGet(size);
+            spillExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        flushCachedData(info);
+                    } catch (Exception exc) {
+                        System.err.println ("Error in DataCacheManager:");
+                        exc.printStackTrace();
+                    } finally {
+                        pendingSpillSize.addAndGet(-size);
                     }
                 }
-            }
+            });
         }
     }
 
@@ -436,12 +700,14 @@ public class DataCacheManager  implements Runnable {
 
 
   public String getStats() {
-    synchronized (MUTEX) {
         StringBuffer sb = new StringBuffer();
-        int mb =(int)( getMaxSize()/(double)1000000.0);
-        int total =(int)( totalSize/(double)1000000.0);
+        int mb =(int)( getMaxBytes()/(double)1000000.0);
+        int total =(int)( totalSize.get()/(double)1000000.0);
         sb.append("Cache total size:" + total +" MB   max size:" + mb +" MB  (" + (100*memoryPercentage)+"% of max memory)");
         sb.append("\n");
+        sb.append("hits:" + hitCount.get() + "  misses:" + missCount.get() +
+                  "  spills:" + spillCount.get() + "  reloads:" + reloadCount.get());
+        sb.append("\n");
         List<CacheInfo> infos= getCacheInfos();
         if(infos.size()==0) {
             sb.append("nothing in cache");
@@ -453,24 +719,11 @@ public class DataCacheManager  implements Runnable {
             for (CacheInfo info : infos) {
                 sb.append("   #" + (++cnt) +" ");
                 sb.append(info.toString());
-                /*
-                          "   #" + (++cnt) +" cache entry:" + info.getSize() + "   " + (info.data != null) +
-                                   "   " + info.dataAccessedCnt + "   " + info.cacheMissedCnt + "   " +
-                                   new Date(info.lastTime));
-                */
                 sb.append("\n");
-
-                /*
-                sb.append("what:" + info.what);
-                sb.append("\n");
-                sb.append(info.where.substring(300));
-                sb.append("\n");
-                */
             }
 
       }
         return sb.toString();
-    }
   }
 
 
@@ -481,23 +734,19 @@ public class DataCacheManager  implements Runnable {
    * @param where 
    */
   private void checkStats(String where) {
-    synchronized (MUTEX) {
-      int tmp = 0;
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
+      long tmp = 0;
+      for (CacheInfo info : cache.values()) {
         if (info.data != null) tmp += info.getSize();
       }
 
-      if (tmp != totalSize) {
+      if (tmp != totalSize.get()) {
         System.err.println(
-          "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize);
-        for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-          CacheInfo info = cache.get(keys.nextElement());
+          "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize.get());
+        for (CacheInfo info : cache.values()) {
           System.err.println(
             "   cache entry:" + info.getSize() + " " + (info.data != null));
         }
       }
-    }
   }
 
 
@@ -517,16 +766,16 @@ public class DataCacheManager  implements Runnable {
     private int type;
 
     /**  */
-    private int size;
+    private long size;
 
     /**  */
     private Object id;
 
     /**  */
-    private long lastTime;
+    private volatile long lastTime;
 
     /**  */
-    private Object data;
+    private volatile Object data;
 
     /**  */
     private File cacheFile;
@@ -535,7 +784,7 @@ public class DataCacheManager  implements Runnable {
     private boolean cacheFileGood = false;
 
     /**           */
-    private int dataAccessedCnt = 0;
+    private volatile int dataAccessedCnt = 0;
 
     /**           */
     private int cacheMissedCnt = 0;
@@ -546,6 +795,9 @@ public class DataCacheManager  implements Runnable {
 
     private boolean removeIfNeeded = false;
 
+    /** true once the entry has been removed from the cache */
+    private volatile boolean removed = false;
+
 
     /**
      * 
@@ -591,9 +843,9 @@ public class DataCacheManager  implements Runnable {
      */
     private void setData(Object data) {
       lastTime = System.currentTimeMillis();
-      this.data = data;
-      cacheFileGood = false;
       size = getArraySize(type, data);
+      cacheFileGood = false;
+      this.data = data;
     }
 
     /**
@@ -649,7 +901,7 @@ public class DataCacheManager  implements Runnable {
      *
      * @return 
      */
-    public int getSize() {
+    public long getSize() {
       return size;
     }
 
@@ -1451,110 +1703,110 @@ private static final int TYPE_BYTE3D = 14;
 
 
 /** Get the size of the array **/
-private static int getArraySize(int type, Object values) {
+private static long getArraySize(int type, Object values) {
 
    if (type == TYPE_DOUBLE1D) {
         double[] data= (double[]) values;
         
-        return 8*data.length;
+        return 8L*data.length;
 
    }
 
    if (type == TYPE_FLOAT1D) {
         float[] data= (float[]) values;
         
-        return 4*data.length;
+        return 4L*data.length;
 
    }
 
    if (type == TYPE_INT1D) {
         int[] data= (int[]) values;
         
-        return 4*data.length;
+        return 4L*data.length;
 
    }
 
    if (type == TYPE_SHORT1D) {
         short[] data= (short[]) values;
         
-        return 2*data.length;
+        return 2L*data.length;
 
    }
 
    if (type == TYPE_BYTE1D) {
         byte[] data= (byte[]) values;
         
-        return 1*data.length;
+        return 1L*data.length;
 
    }
 
    if (type == TYPE_DOUBLE2D) {
         double[][] data= (double[][]) values;
         if (data[0]==null) return 0;
-        return 8*data.length * data[0].length;
+        return 8L*data.length * data[0].length;
 
    }
 
    if (type == TYPE_FLOAT2D) {
         float[][] data= (float[][]) values;
         if (data[0]==null) return 0;
-        return 4*data.length * data[0].length;
+        return 4L*data.length * data[0].length;
 
    }
 
    if (type == TYPE_INT2D) {
         int[][] data= (int[][]) values;
         if (data[0]==null) return 0;
-        return 4*data.length * data[0].length;
+        return 4L*data.length * data[0].length;
 
    }
 
    if (type == TYPE_SHORT2D) {
         short[][] data= (short[][]) values;
         if (data[0]==null) return 0;
-        return 2*data.length * data[0].length;
+        return 2L*data.length * data[0].length;
 
    }
 
    if (type == TYPE_BYTE2D) {
         byte[][] data= (byte[][]) values;
         if (data[0]==null) return 0;
-        return 1*data.length * data[0].length;
+        return 1L*data.length * data[0].length;
 
    }
 
    if (type == TYPE_DOUBLE3D) {
         double[][][] data= (double[][][]) values;
         if (data[0]==null) return 0; if(data[0][0]==null) return 0;
-        return 8*data.length * data[0].length*data[0][0].length;
+        return 8L*data.length * data[0].length*data[0][0].length;
 
    }
 
    if (type == TYPE_FLOAT3D) {
         float[][][] data= (float[][][]) values;
         if (data[0]==null) return 0; if(data[0][0]==null) return 0;
-        return 4*data.length * data[0].length*data[0][0].length;
+        return 4L*data.length * data[0].length*data[0][0].length;
 
    }
 
    if (type == TYPE_INT3D) {
         int[][][] data= (int[][][]) values;
         if (data[0]==null) return 0; if(data[0][0]==null) return 0;
-        return 4*data.length * data[0].length*data[0][0].length;
+        return 4L*data.length * data[0].length*data[0][0].length;
 
    }
 
    if (type == TYPE_SHORT3D) {
         short[][][] data= (short[][][]) values;
         if (data[0]==null) return 0; if(data[0][0]==null) return 0;
-        return 2*data.length * data[0].length*data[0][0].length;
+        return 2L*data.length * data[0].length*data[0][0].length;
 
    }
 
    if (type == TYPE_BYTE3D) {
         byte[][][] data= (byte[][][]) values;
         if (data[0]==null) return 0; if(data[0][0]==null) return 0;
-        return 1*data.length * data[0].length*data[0][0].length;
+        return 1L*data.length * data[0].length*data[0][0].length;
 
    }
 
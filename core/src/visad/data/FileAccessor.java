@@ -54,5 +54,20 @@ public abstract class FileAccessor
 
     public abstract FlatField getFlatField() throws VisADException, RemoteException;
 
+
+    /**
+     * Indicates whether {@link #writeFlatField} stores values in the file.
+     * The cache of {@link FileFlatField}s keeps changed FlatFields in memory
+     * unless it does.
+     *
+     * @return			<code>true</code> if and only if
+     *				writeFlatField writes the values; this
+     *				implementation returns <code>false</code>
+     */
+    public boolean		canWriteFlatField()
+    {
+	return false;
+    }
+
     public abstract FunctionType getFunctionType() throws VisADException;
 }
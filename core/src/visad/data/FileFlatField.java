@@ -37,42 +37,14 @@ public class FileFlatField extends FlatField {
   // any of its methods - it must re-implement all of them
   // through the adapted FlatField
 
-  // number of FlatFields in cache
+  // the entry of the FileFlatFieldCache holding the adapted FlatField,
+  // if there is one; it may since have been evicted
 
-       private static final int MAX_FILE_FLAT_FIELDS = 10;
+       transient volatile FileFlatFieldCache.Entry cacheEntry;
 
-  // array of cached FlatFields
+  // serializes reading the adapted FlatField into the cache
 
-       private static transient FlatField[] adaptedFlatFields =
-       new FlatField[MAX_FILE_FLAT_FIELDS];
-
-  // true if cache entry differs from file contents
-
-       private static transient boolean adaptedFlatFieldDirty[] =
-       new boolean[MAX_FILE_FLAT_FIELDS];
-
-  // the FileFlatField that owns this cache entry
-
-       private static transient FileFlatField[] adaptedFlatFieldOwner =
-       new FileFlatField[MAX_FILE_FLAT_FIELDS];
-
-  // adaptedFlatFieldSizes and adaptedFlatFieldTimes
-  // may be useful for cache allocation algorithms
-  // approximate sizes of FlatFields in cache
-
-       private static transient long[] adaptedFlatFieldSizes =
-       new long[MAX_FILE_FLAT_FIELDS];
-
-  // times of most recent accesses to FlatFields in cache
-
-       private static transient long[] adaptedFlatFieldTimes =
-       new long[MAX_FILE_FLAT_FIELDS];
-
-  // index of cache entry owned by this FileFlatField;
-  // but only if
-  // this == adaptedFlatFieldOwner[adaptedFlatFieldIndex]
-
-       private transient int adaptedFlatFieldIndex;
+       final transient Object cacheLock = new Object();
 
 
   // this is the FileAccessor for reading and writing values from
@@ -80,32 +52,9 @@ public class FileFlatField extends FlatField {
 
        transient FileAccessor fileAccessor;
 
-  // this implements a strategy for cache replacement;
-  // this separates the cahce strategy algorithm from the logic
-  // of FileFlatField
-
-       private transient CacheStrategy cacheStrategy;
-
-  static
-  {
-    // initialize cache of FlatFields
-    if (adaptedFlatFieldOwner != null && adaptedFlatFields != null &&
-        adaptedFlatFieldSizes != null && adaptedFlatFieldTimes != null &&
-        adaptedFlatFieldDirty != null) {
-      for (int i=0; i<MAX_FILE_FLAT_FIELDS; i++) {
-        // mark Owners for all cache entries to indicate not
-        // belonging to any FileFlatField
-        adaptedFlatFieldOwner[i] = null;
-        adaptedFlatFields[i] = null;
-        adaptedFlatFieldSizes[i] = 0;
-        adaptedFlatFieldTimes[i] = System.currentTimeMillis();
-        adaptedFlatFieldDirty[i] = false;
-      }
-    }
-  }
-
-  // all methods lock on adaptedFlatFields cache
-  // to ensure thread safe access
+  // the adapted FlatFields of all FileFlatFields share the cache
+  // returned by FileFlatFieldCache.getCache(), which replaces the
+  // CacheStrategy; the strategy argument of the constructor is ignored
 
   public FileFlatField( FileAccessor accessor, CacheStrategy strategy )
     throws VisADException
@@ -114,11 +63,6 @@ public class FileFlatField extends FlatField {
            getNullDomainSet(accessor.getFunctionType().getDomain()) );
 
     fileAccessor = accessor;
-    cacheStrategy = strategy;
-
-    // '0' is in legal range of adaptedFlatFieldIndex,
-    // but not owned by this
-    adaptedFlatFieldIndex = 0;
   }
 
   private static Set getNullDomainSet(RealTupleType type)
@@ -138,94 +82,23 @@ public class FileFlatField extends FlatField {
 
   private FlatField getAdaptedFlatField()
   {
-    // if owner array is null,
-    //  assume this object got serialized & unserialized
-    if (adaptedFlatFieldOwner == null) {
-      return null;
-    }
-
-    synchronized (adaptedFlatFields) {
-      for ( int ii = 0; ii < MAX_FILE_FLAT_FIELDS; ii++ )
-      {
-        if (this == adaptedFlatFieldOwner[ii]) {
-
-          // mark time of most recent access
-
-          adaptedFlatFieldTimes[ii] = System.currentTimeMillis();
-
-          return adaptedFlatFields[ii];
-        }
-      }
-
-      // this FileFlatField does not own a cache entry, so invoke
-      // CahceStrategy.allocate to allocate one, possibly by taking
-      // one, possibly by taking one from another FileFlatField;
-      // this will be an area for lots of thought and experimentation;
-
-      adaptedFlatFieldIndex =
-        cacheStrategy.allocate(adaptedFlatFields, adaptedFlatFieldDirty,
-                               adaptedFlatFieldSizes, adaptedFlatFieldTimes);
-
-      // flush cache entry, if dirty
-
-      if (adaptedFlatFieldDirty[adaptedFlatFieldIndex])
-      {
-        try
-        {
-          adaptedFlatFieldOwner[adaptedFlatFieldIndex].flushCache();
-        }
-        catch ( VisADException e )
-        {
-          System.out.println( e.getMessage() );
-        }
-      }
-
-      // create a new entry in adaptedFlatFields at adaptedFlatFieldIndex
-      // and read data values from fileAccessor at fileLocation
-      try
-      {
-        adaptedFlatFields[adaptedFlatFieldIndex] = fileAccessor.getFlatField();
-      }
-      catch ( VisADException e1 )
-      {
-        System.out.println( e1.getMessage() );
-      }
-      catch ( RemoteException e2 )
-      {
-        System.out.println( e2.getMessage() );
-      }
-
-      // mark cache entry as belonging to this FileFlatField
-
-      adaptedFlatFieldOwner[adaptedFlatFieldIndex] = this;
-
-      // get size of adapted FlatField
-      // (by calling a method that currently does not exist)
-
-      /*adaptedFlatFields[adaptedFlatFieldIndex].getSize(); */
-
-      adaptedFlatFieldTimes[adaptedFlatFieldIndex] =
-        System.currentTimeMillis();
-
-      return adaptedFlatFields[adaptedFlatFieldIndex];
-    }
+    return FileFlatFieldCache.getCache().get(this);
   }
 
-  private void flushCache()
+  /**
+   * Writes the adapted FlatField back through the FileAccessor now if it
+   * has been changed, rather than when it is evicted from the cache.
+   *
+   * @throws VisADException     if this FileFlatField has no FileAccessor.
+   */
+  public void flushCache()
       throws VisADException
   {
-    if (adaptedFlatFields == null) {
+    if (fileAccessor == null) {
       throw new VisADException("Cannot access serialized FileFlatField");
     }
 
-    // make sure this owns cache entry
-    if (this == adaptedFlatFieldOwner[adaptedFlatFieldIndex]) {
-      // unpackValues is currently private, would need default protection
-      // for access from FileFlatField
-   /* fileAccessor.writeFlatField(
-        adaptedFlatFields[adaptedFlatFieldIndex].unpackValues(),
-        templateFlatField, fileLocation); */
-    }
+    FileFlatFieldCache.getCache().flush(this);
   }
 
   // must implement all the methods of Data, Function and Field
@@ -349,6 +222,17 @@ public class FileFlatField extends FlatField {
     return fld.getValues(index);
   }
 
+  public void unpackValues(int comp, int start, double[] values)
+         throws VisADException
+  {
+    FlatField fld = getAdaptedFlatField();
+    if (fld == null) {
+      throw new VisADException("Cannot get cached FlatField");
+    }
+
+    fld.unpackValues(comp, start, values);
+  }
+
   public float[][] getFloats(boolean copy)
          throws VisADException
   {
@@ -371,59 +255,46 @@ public class FileFlatField extends FlatField {
   }
 
   // setSample is typical of methods that involve changing the
-  // contents of this Field
+  // contents of this Field; the cache entry is marked as differing
+  // from the file, and can't be written back or evicted meanwhile
   public void setSample(int index, Data range)
          throws VisADException, RemoteException {
-    if (adaptedFlatFields == null) {
-      throw new VisADException("Cannot access serialized FileFlatField");
+    evaluateDependents();
+    FileFlatFieldCache.Entry entry =
+      FileFlatFieldCache.getCache().beginUpdate(this);
+    try {
+      entry.getField().setSample(index, range);
     }
-
-    synchronized (adaptedFlatFields) {
-      FlatField fld = getAdaptedFlatField();
-      if (fld == null) {
-        throw new VisADException("Cannot get cached FlatField");
-      }
-
-      adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
-      fld.setSample(index, range);
+    finally {
+      entry.endUpdate();
     }
   }
 
   public void setSample( RealTuple domain, Data range )
          throws VisADException, RemoteException
   {
-    if (adaptedFlatFields == null) {
-      throw new VisADException("Cannot access serialized FileFlatField");
+    evaluateDependents();
+    FileFlatFieldCache.Entry entry =
+      FileFlatFieldCache.getCache().beginUpdate(this);
+    try {
+      entry.getField().setSample( domain, range );
     }
-
-    synchronized (adaptedFlatFields)
-    {
-      FlatField fld = getAdaptedFlatField();
-      if (fld == null) {
-        throw new VisADException("Cannot get cached FlatField");
-      }
-
-      adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
-      fld.setSample( domain, range );
+    finally {
+      entry.endUpdate();
     }
   }
 
   public void setSample( int index, Data range, boolean copy )
          throws VisADException, RemoteException
   {
-    if (adaptedFlatFields == null) {
-      throw new VisADException("Cannot access serialized FileFlatField");
+    evaluateDependents();
+    FileFlatFieldCache.Entry entry =
+      FileFlatFieldCache.getCache().beginUpdate(this);
+    try {
+      entry.getField().setSample( index, range, copy );
     }
-
-    synchronized (adaptedFlatFields)
-    {
-      FlatField fld = getAdaptedFlatField();
-      if (fld == null) {
-        throw new VisADException("Cannot get cached FlatField");
-      }
-
-      adaptedFlatFieldDirty[adaptedFlatFieldIndex] = true;
-      fld.setSample( index, range, copy );
+    finally {
+      entry.endUpdate();
     }
   }
 
@@ -557,6 +428,16 @@ public class FileFlatField extends FlatField {
     return fld.adjustSamplingError( error, error_mode );
   }
 
+  public long getRangeSize()
+  {
+    FlatField fld = getAdaptedFlatField();
+    if (fld == null) {
+      return 0;
+    }
+
+    return fld.getRangeSize();
+  }
+
   public boolean isFlatField()
   {
      return true;
@@ -0,0 +1,596 @@
+// FileFlatFieldCache.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data;
+
+import java.rmi.RemoteException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import visad.*;
+
+/**
+ * The cache of the FlatFields adapted by {@link FileFlatField}s, shared by
+ * all of them.  You access it via the singleton:<pre>
+     FileFlatFieldCache.getCache()
+</pre>
+ * The cache holds adapted FlatFields until their total size, as given by
+ * {@link FlatField#getRangeSize()}, is greater than {@link #getMaxBytes()};
+ * it then evicts entries chosen by a {@link CacheEvictionPolicy}.  Clean
+ * entries are dropped; entries changed through a FileFlatField are written
+ * back through {@link FileAccessor#writeFlatField} by a background thread,
+ * and stay readable until that is done.  Changed entries whose
+ * FileAccessor can't write them back (see
+ * {@link FileAccessor#canWriteFlatField()}) are left to their
+ * FileFlatFields when evicted: the cache no longer counts or references
+ * them, and the changed FlatField lives as long as its FileFlatField.
+ * <p>
+ * A lookup of a cached FlatField takes no lock at all, and updating the
+ * policy on a hit is skipped if another thread is using it.  The limit is
+ * set with {@link #setMaxBytes(long)} or the system property
+ * <code>visad.data.fileflatfield.maxbytes</code> (default: a quarter of
+ * the maximum heap size), and the policy with
+ * {@link #setEvictionPolicy(CacheEvictionPolicy)} or the system property
+ * <code>visad.data.fileflatfield.policy</code> (<code>lru</code>, the
+ * default, <code>lfu</code> or <code>size</code>).
+ */
+public class FileFlatFieldCache {
+
+  /** the singleton */
+  private static FileFlatFieldCache cache;
+
+  /** maximum number of bytes in memory */
+  private volatile long maxBytes;
+
+  /** guards the eviction policy */
+  private ReentrantLock policyLock = new ReentrantLock();
+
+  /** chooses the entries to evict */
+  private CacheEvictionPolicy policy;
+
+  /** total number of bytes of the cached FlatFields */
+  private AtomicLong totalSize = new AtomicLong(0);
+
+  /** bytes of the entries waiting to be written back */
+  private AtomicLong pendingWriteSize = new AtomicLong(0);
+
+  /** the entries whose FlatFields differ from their files and can be
+      written back */
+  private Set<Entry> dirtyEntries =
+    Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+
+  /** writes evicted entries back to their files */
+  private ExecutorService writeExecutor;
+
+  /** statistics */
+  private AtomicLong hitCount = new AtomicLong(0);
+  private AtomicLong missCount = new AtomicLong(0);
+  private AtomicLong evictionCount = new AtomicLong(0);
+  private AtomicLong writeBackCount = new AtomicLong(0);
+
+
+  /**
+   * ctor
+   */
+  private FileFlatFieldCache() {
+    maxBytes = Long.getLong("visad.data.fileflatfield.maxbytes",
+                            Runtime.getRuntime().maxMemory() / 4).longValue();
+    policy = DataCacheManager.createPolicy(
+        System.getProperty("visad.data.fileflatfield.policy", "lru"));
+    writeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "FileFlatFieldCache write-back");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+  }
+
+
+  /**
+   * The singleton access
+   *
+   * @return the cache
+   */
+  public static synchronized FileFlatFieldCache getCache() {
+    if (cache == null) {
+      cache = new FileFlatFieldCache();
+    }
+    return cache;
+  }
+
+
+  /**
+   * Get the FlatField adapted by a FileFlatField, reading it through the
+   * FileFlatField's FileAccessor if it isn't cached.
+   *
+   * @param owner the FileFlatField
+   *
+   * @return the adapted FlatField, or null if it couldn't be read
+   */
+  FlatField get(FileFlatField owner) {
+    Entry entry = owner.cacheEntry;
+    if (entry != null) {
+      FlatField field = entry.field;
+      if (field != null) {
+        hitCount.incrementAndGet();
+        touch(entry);
+        return field;
+      }
+    }
+    while (true) {
+      entry = load(owner);
+      if (entry == null) {
+        return null;
+      }
+      FlatField field = entry.field;
+      if (field != null) {
+        return field;
+      }
+      // evicted in the meantime
+    }
+  }
+
+
+  /**
+   * Get the cache entry of a FileFlatField so that its FlatField may be
+   * changed, and mark the entry as differing from the file.  The entry
+   * can't be written back or evicted until {@link Entry#endUpdate()} is
+   * called.
+   *
+   * @param owner the FileFlatField
+   *
+   * @return the entry, with a non-null field
+   *
+   * @throws VisADException if the FlatField couldn't be read
+   */
+  Entry beginUpdate(FileFlatField owner) throws VisADException {
+    while (true) {
+      Entry entry = owner.cacheEntry;
+      if (entry == null || entry.field == null) {
+        entry = load(owner);
+        if (entry == null) {
+          throw new VisADException("Cannot get cached FlatField");
+        }
+      }
+      else {
+        hitCount.incrementAndGet();
+        touch(entry);
+      }
+      entry.lock.readLock().lock();
+      if (entry.field != null) {
+        if (!entry.dirty) {
+          entry.dirty = true;
+          if (entry.accessor.canWriteFlatField()) {
+            dirtyEntries.add(entry);
+          }
+        }
+        return entry;
+      }
+      // evicted in the meantime
+      entry.lock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Read the FlatField of a FileFlatField into the cache, unless another
+   * thread has just done so, and evict entries if the cache is full.
+   *
+   * @param owner the FileFlatField
+   *
+   * @return the entry, or null if the FlatField couldn't be read
+   */
+  private Entry load(FileFlatField owner) {
+    Entry entry;
+    synchronized (owner.cacheLock) {
+      entry = owner.cacheEntry;
+      if (entry != null && entry.field != null) {
+        hitCount.incrementAndGet();
+        return entry;
+      }
+      missCount.incrementAndGet();
+
+      FlatField field = null;
+      try {
+        field = owner.fileAccessor.getFlatField();
+      }
+      catch (VisADException e) {
+        System.out.println(e.getMessage());
+      }
+      catch (RemoteException e) {
+        System.out.println(e.getMessage());
+      }
+      if (field == null) {
+        return null;
+      }
+
+      entry = new Entry(owner.fileAccessor, field);
+      totalSize.addAndGet(entry.size);
+      policyLock.lock();
+      try {
+        policy.add(entry, entry.size);
+      } finally {
+        policyLock.unlock();
+      }
+      owner.cacheEntry = entry;
+    }
+    checkCache();
+    return entry;
+  }
+
+
+  /**
+   * Tell the eviction policy that the entry was accessed. This is skipped
+   * if another thread holds the policy lock, so cache hits never wait.
+   *
+   * @param entry the entry
+   */
+  private void touch(Entry entry) {
+    if (policyLock.tryLock()) {
+      try {
+        policy.touch(entry);
+      } finally {
+        policyLock.unlock();
+      }
+    }
+  }
+
+
+  /**
+   * Evict entries while the cache is above its limit.  The last entry is
+   * never evicted, so a FlatField larger than the limit can still be used.
+   * Clean entries are dropped right away, dirty ones are written back in
+   * the background, or left to their FileFlatFields if they can't be
+   * written back.
+   */
+  public void checkCache() {
+    long max = maxBytes;
+    if (totalSize.get() - pendingWriteSize.get() <= max) {
+      return;
+    }
+    List<Entry> victims = new ArrayList<Entry>();
+    policyLock.lock();
+    try {
+      long size = totalSize.get() - pendingWriteSize.get();
+      while (size > max && policy.size() > 1) {
+        Entry entry = (Entry) policy.evict();
+        if (entry == null) break;
+        victims.add(entry);
+        size -= entry.size;
+      }
+    } finally {
+      policyLock.unlock();
+    }
+
+    for (final Entry entry : victims) {
+      entry.lock.writeLock().lock();
+      try {
+        if (!entry.dirty) {
+          evictionCount.incrementAndGet();
+          drop(entry);
+          continue;
+        }
+        if (!entry.accessor.canWriteFlatField()) {
+          // the FileFlatField's reference to the entry keeps it
+          evictionCount.incrementAndGet();
+          totalSize.addAndGet(-entry.size);
+          continue;
+        }
+      } finally {
+        entry.lock.writeLock().unlock();
+      }
+      evictionCount.incrementAndGet();
+      pendingWriteSize.addAndGet(entry.size);
+      writeExecutor.execute(new Runnable() {
+        public void run() {
+          try {
+            writeBack(entry, true);
+          } finally {
+            pendingWriteSize.addAndGet(-entry.size);
+          }
+        }
+      });
+    }
+  }
+
+
+  /**
+   * Write an entry back to its file.  If it is changed again meanwhile it
+   * stays in the cache, and is put back under the control of the policy
+   * if it was being evicted.
+   *
+   * @param entry the entry
+   * @param evict true if the entry is being evicted
+   */
+  private void writeBack(Entry entry, boolean evict) {
+    if (!entry.accessor.canWriteFlatField()) {
+      return;
+    }
+    double[][] values = null;
+    FlatField field = null;
+    entry.lock.writeLock().lock();
+    try {
+      field = entry.field;
+      if (field == null || !entry.dirty) {
+        if (evict) drop(entry);
+        return;
+      }
+      entry.dirty = false;
+      dirtyEntries.remove(entry);
+      if (!field.isMissing()) {
+        values = field.unpackValues();
+      }
+    }
+    catch (VisADException e) {
+      entry.dirty = true;
+      dirtyEntries.add(entry);
+      System.out.println(e.getMessage());
+    }
+    finally {
+      entry.lock.writeLock().unlock();
+    }
+
+    if (values != null) {
+      try {
+        entry.accessor.writeFlatField(values, field, null);
+        writeBackCount.incrementAndGet();
+      }
+      catch (RuntimeException e) {
+        System.out.println("FileFlatFieldCache: write-back failed: " + e);
+      }
+      catch (VisADError e) {
+        System.out.println("FileFlatFieldCache: write-back failed: " + e);
+      }
+    }
+
+    if (!evict) return;
+    entry.lock.writeLock().lock();
+    try {
+      if (!entry.dirty) {
+        drop(entry);
+        return;
+      }
+    } finally {
+      entry.lock.writeLock().unlock();
+    }
+    policyLock.lock();
+    try {
+      policy.add(entry, entry.size);
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+
+  /**
+   * Release the FlatField of an entry; the write lock of the entry must
+   * be held.
+   *
+   * @param entry the entry
+   */
+  private void drop(Entry entry) {
+    if (entry.field != null) {
+      entry.field = null;
+      totalSize.addAndGet(-entry.size);
+    }
+  }
+
+
+  /**
+   * Write the FlatField of a FileFlatField back to its file if it differs
+   * from it, waiting until that is done.  The FlatField stays in the cache.
+   * Nothing is done if the FileAccessor can't write FlatFields.
+   *
+   * @param owner the FileFlatField
+   */
+  void flush(FileFlatField owner) {
+    Entry entry = owner.cacheEntry;
+    if (entry != null && entry.dirty) {
+      writeBack(entry, false);
+    }
+  }
+
+
+  /**
+   * Write all the cached FlatFields that differ from their files back,
+   * waiting until that is done.  The FlatFields stay in the cache.  Those
+   * whose FileAccessors can't write FlatFields are skipped.
+   */
+  public void flush() {
+    for (Entry entry : new ArrayList<Entry>(dirtyEntries)) {
+      writeBack(entry, false);
+    }
+  }
+
+
+  /**
+   * Replace the eviction policy. The cached entries are handed to the new
+   * policy in the order the old one would have evicted them.
+   *
+   * @param newPolicy the new policy
+   */
+  public void setEvictionPolicy(CacheEvictionPolicy newPolicy) {
+    policyLock.lock();
+    try {
+      Entry entry;
+      while ((entry = (Entry) policy.evict()) != null) {
+        newPolicy.add(entry, entry.size);
+      }
+      policy = newPolicy;
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * Get the eviction policy
+   *
+   * @return the policy
+   */
+  public CacheEvictionPolicy getEvictionPolicy() {
+    return policy;
+  }
+
+  /**
+   * Set the maximum number of bytes of FlatFields to keep in memory
+   *
+   * @param bytes maximum number of bytes
+   */
+  public void setMaxBytes(long bytes) {
+    maxBytes = bytes;
+    checkCache();
+  }
+
+  /**
+   * Get the maximum number of bytes of FlatFields to keep in memory
+   *
+   * @return maximum number of bytes
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Get the number of bytes of the cached FlatFields
+   *
+   * @return number of bytes
+   */
+  public long getTotalSize() {
+    return totalSize.get();
+  }
+
+  /**
+   * Get the number of lookups that found their FlatField in the cache
+   *
+   * @return hit count
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Get the number of lookups that had to read their FlatField
+   *
+   * @return miss count
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Get the number of entries evicted
+   *
+   * @return eviction count
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Get the number of FlatFields written back to their files by
+   * FileAccessors that can write them
+   *
+   * @return write-back count
+   */
+  public long getWriteBackCount() {
+    return writeBackCount.get();
+  }
+
+  /**
+   * Reset the hit, miss, eviction and write-back counts
+   */
+  public void resetStats() {
+    hitCount.set(0);
+    missCount.set(0);
+    evictionCount.set(0);
+    writeBackCount.set(0);
+  }
+
+  public String getStats() {
+    return "FileFlatField cache total size:" + totalSize.get() / 1000000 +
+           " MB   max size:" + maxBytes / 1000000 + " MB\n" +
+           "hits:" + hitCount.get() + "  misses:" + missCount.get() +
+           "  evictions:" + evictionCount.get() +
+           "  write-backs:" + writeBackCount.get();
+  }
+
+
+  /**
+   * A cached FlatField.  The read lock is held by the threads changing
+   * the FlatField, the write lock while the entry is written back or
+   * dropped.
+   */
+  static final class Entry {
+
+    /** reads and writes the FlatField */
+    private final FileAccessor accessor;
+
+    /** approximate size of the FlatField in bytes */
+    private final long size;
+
+    /** the FlatField, or null once evicted */
+    private volatile FlatField field;
+
+    /** true if the FlatField differs from the file contents */
+    private volatile boolean dirty = false;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Entry(FileAccessor accessor, FlatField field) {
+      this.accessor = accessor;
+      this.field = field;
+      size = field.getRangeSize();
+    }
+
+    /**
+     * @return the FlatField; not null between
+     *   {@link FileFlatFieldCache#beginUpdate} and {@link #endUpdate()}
+     */
+    FlatField getField() {
+      return field;
+    }
+
+    /**
+     * Allow the entry to be written back or evicted again
+     */
+    void endUpdate() {
+      lock.readLock().unlock();
+    }
+  }
+}
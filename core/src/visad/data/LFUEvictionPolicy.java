@@ -0,0 +1,118 @@
+//
+// LFUEvictionPolicy
+//
+
+/*
+ * VisAD system for interactive analysis and visualization of numerical
+ * data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+ * Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+ * Tommy Jasmin, Jeff McWhirter.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, write to the Free
+ * Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+ * MA 02111-1307, USA
+ */
+
+
+package visad.data;
+
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+
+/**
+ * Evicts the least frequently used entry first, and among entries used
+ * equally often the one that reached that count first.  Entries are kept
+ * in a list of frequency buckets, so every operation is constant time.
+ */
+public class LFUEvictionPolicy implements CacheEvictionPolicy {
+
+  /** A set of entries that have been used count times */
+  private static class Bucket {
+    long count;
+    LinkedHashSet<Object> ids = new LinkedHashSet<Object>();
+    Bucket prev;
+    Bucket next;
+
+    Bucket(long count) {
+      this.count = count;
+    }
+  }
+
+  /** bucket of least frequently used entries */
+  private Bucket head;
+
+  /** the bucket of each entry */
+  private HashMap<Object, Bucket> buckets = new HashMap<Object, Bucket>();
+
+  public void add(Object cacheId, long size) {
+    if (buckets.containsKey(cacheId)) {
+      touch(cacheId);
+      return;
+    }
+    if (head == null || head.count != 1) {
+      Bucket b = new Bucket(1);
+      b.next = head;
+      if (head != null) head.prev = b;
+      head = b;
+    }
+    head.ids.add(cacheId);
+    buckets.put(cacheId, head);
+  }
+
+  public void touch(Object cacheId) {
+    Bucket b = buckets.get(cacheId);
+    if (b == null) return;
+    Bucket next = b.next;
+    if (next == null || next.count != b.count + 1) {
+      next = new Bucket(b.count + 1);
+      next.prev = b;
+      next.next = b.next;
+      if (b.next != null) b.next.prev = next;
+      b.next = next;
+    }
+    next.ids.add(cacheId);
+    buckets.put(cacheId, next);
+    removeFrom(b, cacheId);
+  }
+
+  public void remove(Object cacheId) {
+    Bucket b = buckets.remove(cacheId);
+    if (b != null) removeFrom(b, cacheId);
+  }
+
+  public Object evict() {
+    if (head == null) return null;
+    Iterator<Object> it = head.ids.iterator();
+    Object cacheId = it.next();
+    buckets.remove(cacheId);
+    removeFrom(head, cacheId);
+    return cacheId;
+  }
+
+  public int size() {
+    return buckets.size();
+  }
+
+  /** remove cacheId from bucket b, and b from the list if it is empty */
+  private void removeFrom(Bucket b, Object cacheId) {
+    b.ids.remove(cacheId);
+    if (!b.ids.isEmpty()) return;
+    if (b.prev != null) b.prev.next = b.next;
+    else head = b.next;
+    if (b.next != null) b.next.prev = b.prev;
+  }
+}
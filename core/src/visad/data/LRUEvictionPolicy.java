@@ -0,0 +1,67 @@
+//
+// LRUEvictionPolicy
+//
+
+/*
+ * VisAD system for interactive analysis and visualization of numerical
+ * data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+ * Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+ * Tommy Jasmin, Jeff McWhirter.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, write to the Free
+ * Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+ * MA 02111-1307, USA
+ */
+
+
+package visad.data;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+/**
+ * Evicts the least recently used entry first.
+ */
+public class LRUEvictionPolicy implements CacheEvictionPolicy {
+
+  /** entries in access order, least recently used first */
+  private LinkedHashMap<Object, Long> entries =
+    new LinkedHashMap<Object, Long>(16, 0.75f, true);
+
+  public void add(Object cacheId, long size) {
+    entries.put(cacheId, Long.valueOf(size));
+  }
+
+  public void touch(Object cacheId) {
+    entries.get(cacheId);
+  }
+
+  public void remove(Object cacheId) {
+    entries.remove(cacheId);
+  }
+
+  public Object evict() {
+    Iterator<Object> it = entries.keySet().iterator();
+    if (!it.hasNext()) return null;
+    Object cacheId = it.next();
+    it.remove();
+    return cacheId;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+}
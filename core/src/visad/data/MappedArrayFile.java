@@ -0,0 +1,412 @@
+//
+// MappedArrayFile
+//
+
+/*
+ * VisAD system for interactive analysis and visualization of numerical
+ * data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+ * Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+ * Tommy Jasmin, Jeff McWhirter.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, write to the Free
+ * Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+ * MA 02111-1307, USA
+ */
+
+
+package visad.data;
+
+
+import java.io.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Reads and writes primitive arrays as raw binary files that can be
+ * memory mapped.  This is the format {@link DataCacheManager} uses for the
+ * arrays it moves out of memory, and {@link CachedFlatField} subclasses
+ * can use it to read their data (see {@link CachedFlatField#readData()}).
+ * <p>
+ * A file starts with a small header:<pre>
+ *   int   magic ("VDAF")
+ *   byte  version
+ *   byte  byte order of the values (0 = big endian, 1 = little endian)
+ *   byte  element type (double, float, int, short or byte)
+ *   byte  rank (1, 2 or 3)
+ *   int   number of rows
+ *   shape: the length of every row, -1 for a null row
+ * </pre>
+ * followed, at the next multiple of 8 bytes, by the values of all rows
+ * in order.  Ragged and null rows are allowed.
+ * <p>
+ * Values are written in native byte order.  Reads copy the rows through a
+ * direct buffer, so no mapping outlives them and the file can be rewritten
+ * or deleted at once.
+ */
+public class MappedArrayFile {
+
+  /** "VDAF" */
+  private static final int MAGIC = 0x56444146;
+
+  private static final int VERSION = 1;
+
+  /** element types */
+  private static final int DOUBLE = 0;
+  private static final int FLOAT = 1;
+  private static final int INT = 2;
+  private static final int SHORT = 3;
+  private static final int BYTE = 4;
+
+  private static final int[] ELEMENT_SIZE = { 8, 4, 4, 2, 1 };
+
+  /** size of the buffer used for reading and writing */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private MappedArrayFile() {}
+
+
+  /**
+   * Is the file in this format
+   *
+   * @param file the file
+   *
+   * @return true if the file starts with the header of this format
+   */
+  public static boolean isMappedArrayFile(File file) {
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        return in.readInt() == MAGIC;
+      } finally {
+        in.close();
+      }
+    } catch (IOException exc) {
+      return false;
+    }
+  }
+
+
+  /**
+   * Write a 1D, 2D or 3D double, float, int, short or byte array
+   *
+   * @param file the file to write
+   * @param array the array
+   *
+   * @throws IOException on badness
+   */
+  public static void write(File file, Object array) throws IOException {
+    int type = elementType(array);
+    int rank = rank(array);
+    if (type < 0 || rank < 1 || rank > 3) {
+      throw new IllegalArgumentException("Cannot write " + array);
+    }
+    List<Object> rows = new ArrayList<Object>();
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(header);
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeByte(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1);
+    out.writeByte(type);
+    out.writeByte(rank);
+    if (rank == 1) {
+      out.writeInt(1);
+      out.writeInt(rowLength(array));
+      rows.add(array);
+    }
+    else if (rank == 2) {
+      Object[] a = (Object[]) array;
+      out.writeInt(a.length);
+      for (int i = 0; i < a.length; i++) {
+        out.writeInt(rowLength(a[i]));
+        rows.add(a[i]);
+      }
+    }
+    else {
+      Object[] a = (Object[]) array;
+      int n = 0;
+      for (int i = 0; i < a.length; i++) {
+        if (a[i] != null) n += ((Object[]) a[i]).length;
+      }
+      out.writeInt(n);
+      out.writeInt(a.length);
+      for (int i = 0; i < a.length; i++) {
+        out.writeInt(a[i] == null ? -1 : ((Object[]) a[i]).length);
+      }
+      for (int i = 0; i < a.length; i++) {
+        if (a[i] == null) continue;
+        Object[] b = (Object[]) a[i];
+        for (int j = 0; j < b.length; j++) {
+          out.writeInt(rowLength(b[j]));
+          rows.add(b[j]);
+        }
+      }
+    }
+    while (out.size() % 8 != 0) out.writeByte(0);
+    out.flush();
+
+    FileOutputStream fos = new FileOutputStream(file);
+    FileChannel channel = fos.getChannel();
+    try {
+      ByteBuffer buf = ByteBuffer.wrap(header.toByteArray());
+      while (buf.hasRemaining()) channel.write(buf);
+      ByteBuffer chunk = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      chunk.order(ByteOrder.nativeOrder());
+      int perChunk = BUFFER_SIZE / ELEMENT_SIZE[type];
+      for (Object row : rows) {
+        int length = rowLength(row);
+        for (int off = 0; off < length; off += perChunk) {
+          int n = Math.min(perChunk, length - off);
+          chunk.clear();
+          put(chunk, type, row, off, n);
+          chunk.position(0);
+          chunk.limit(n * ELEMENT_SIZE[type]);
+          while (chunk.hasRemaining()) channel.write(chunk);
+        }
+      }
+    } finally {
+      channel.close();
+      fos.close();
+    }
+  }
+
+
+  /**
+   * Read an array written by write(File, Object)
+   *
+   * @param file the file
+   *
+   * @return the array
+   *
+   * @throws IOException on badness
+   */
+  public static Object read(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    FileChannel channel = raf.getChannel();
+    try {
+      Header h = readHeader(channel);
+      Object result;
+      Object[] rows = new Object[h.lengths.length];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = h.lengths[i] < 0 ? null : newRow(h.type, h.lengths[i]);
+      }
+      if (h.rank == 1) {
+        result = rows[0];
+      }
+      else if (h.rank == 2) {
+        result = newArray(h.type, 2, rows.length);
+        System.arraycopy(rows, 0, (Object[]) result, 0, rows.length);
+      }
+      else {
+        Object[] a = (Object[]) newArray(h.type, 3, h.outer.length);
+        int k = 0;
+        for (int i = 0; i < a.length; i++) {
+          if (h.outer[i] < 0) continue;
+          Object[] b = (Object[]) newArray(h.type, 2, h.outer[i]);
+          System.arraycopy(rows, k, b, 0, b.length);
+          k += b.length;
+          a[i] = b;
+        }
+        result = a;
+      }
+
+      long position = h.dataOffset;
+      int size = ELEMENT_SIZE[h.type];
+      ByteBuffer chunk = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      chunk.order(h.order);
+      int perChunk = BUFFER_SIZE / size;
+      for (int i = 0; i < rows.length; i++) {
+        if (rows[i] == null) continue;
+        int length = h.lengths[i];
+        for (int off = 0; off < length; off += perChunk) {
+          int n = Math.min(perChunk, length - off);
+          chunk.clear();
+          chunk.limit(n * size);
+          while (chunk.hasRemaining()) {
+            if (channel.read(chunk, position + chunk.position()) < 0) {
+              throw new EOFException("Truncated mapped array file: " + file);
+            }
+          }
+          chunk.flip();
+          get(chunk, h.type, rows[i], off, n);
+          position += (long) n * size;
+        }
+      }
+      return result;
+    } finally {
+      channel.close();
+      raf.close();
+    }
+  }
+
+
+  /**
+   * Read a float[][] written by write(File, Object)
+   *
+   * @param file the file
+   *
+   * @return the values
+   *
+   * @throws IOException on badness, or if the file does not hold a float[][]
+   */
+  public static float[][] readFloats(File file) throws IOException {
+    Object data = read(file);
+    if (!(data instanceof float[][])) {
+      throw new IOException("Not a float[][]: " + file);
+    }
+    return (float[][]) data;
+  }
+
+
+  /** The parsed header of a file */
+  private static class Header {
+    int type;
+    int rank;
+    ByteOrder order;
+    /** lengths of the rows in the order they are stored */
+    int[] lengths;
+    /** for rank 3, the number of rows of each 2D slab */
+    int[] outer;
+    long dataOffset;
+  }
+
+
+  private static Header readHeader(FileChannel channel) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        java.nio.channels.Channels.newInputStream(channel.position(0))));
+    Header h = new Header();
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a mapped array file");
+    }
+    int version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unknown mapped array file version " + version);
+    }
+    h.order = in.readByte() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    h.type = in.readByte();
+    h.rank = in.readByte();
+    if (h.type < DOUBLE || h.type > BYTE || h.rank < 1 || h.rank > 3) {
+      throw new IOException("Bad mapped array file header");
+    }
+    int nrows = in.readInt();
+    long offset = 12;
+    if (h.rank == 3) {
+      h.outer = new int[in.readInt()];
+      offset += 4;
+      for (int i = 0; i < h.outer.length; i++) {
+        h.outer[i] = in.readInt();
+      }
+      offset += 4L * h.outer.length;
+    }
+    h.lengths = new int[nrows];
+    for (int i = 0; i < nrows; i++) {
+      h.lengths[i] = in.readInt();
+    }
+    offset += 4L * nrows;
+    h.dataOffset = (offset + 7) / 8 * 8;
+    return h;
+  }
+
+
+  private static int elementType(Object array) {
+    Class c = array.getClass();
+    while (c.isArray() && c.getComponentType().isArray()) {
+      c = c.getComponentType();
+    }
+    Class e = c.getComponentType();
+    if (e == double.class) return DOUBLE;
+    if (e == float.class) return FLOAT;
+    if (e == int.class) return INT;
+    if (e == short.class) return SHORT;
+    if (e == byte.class) return BYTE;
+    return -1;
+  }
+
+
+  private static int rank(Object array) {
+    int rank = 0;
+    Class c = array.getClass();
+    while (c.isArray()) {
+      rank++;
+      c = c.getComponentType();
+    }
+    return rank;
+  }
+
+
+  private static int rowLength(Object row) {
+    if (row == null) return -1;
+    return java.lang.reflect.Array.getLength(row);
+  }
+
+
+  private static Object newRow(int type, int length) {
+    switch (type) {
+      case DOUBLE: return new double[length];
+      case FLOAT:  return new float[length];
+      case INT:    return new int[length];
+      case SHORT:  return new short[length];
+      default:     return new byte[length];
+    }
+  }
+
+
+  private static Object newArray(int type, int rank, int length) {
+    if (rank == 2) {
+      switch (type) {
+        case DOUBLE: return new double[length][];
+        case FLOAT:  return new float[length][];
+        case INT:    return new int[length][];
+        case SHORT:  return new short[length][];
+        default:     return new byte[length][];
+      }
+    }
+    switch (type) {
+      case DOUBLE: return new double[length][][];
+      case FLOAT:  return new float[length][][];
+      case INT:    return new int[length][][];
+      case SHORT:  return new short[length][][];
+      default:     return new byte[length][][];
+    }
+  }
+
+
+  /** bulk put n values of row, starting at off, into buf */
+  private static void put(ByteBuffer buf, int type, Object row, int off, int n) {
+    switch (type) {
+      case DOUBLE: buf.asDoubleBuffer().put((double[]) row, off, n); break;
+      case FLOAT:  buf.asFloatBuffer().put((float[]) row, off, n); break;
+      case INT:    buf.asIntBuffer().put((int[]) row, off, n); break;
+      case SHORT:  buf.asShortBuffer().put((short[]) row, off, n); break;
+      default:     buf.put((byte[]) row, off, n); break;
+    }
+  }
+
+
+  /** bulk get n values from buf into row, starting at off */
+  private static void get(ByteBuffer buf, int type, Object row, int off, int n) {
+    switch (type) {
+      case DOUBLE: buf.asDoubleBuffer().get((double[]) row, off, n); break;
+      case FLOAT:  buf.asFloatBuffer().get((float[]) row, off, n); break;
+      case INT:    buf.asIntBuffer().get((int[]) row, off, n); break;
+      case SHORT:  buf.asShortBuffer().get((short[]) row, off, n); break;
+      default:     buf.get((byte[]) row, off, n); break;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+//
+// SizeAwareEvictionPolicy
+//
+
+/*
+ * VisAD system for interactive analysis and visualization of numerical
+ * data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+ * Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+ * Tommy Jasmin, Jeff McWhirter.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, write to the Free
+ * Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+ * MA 02111-1307, USA
+ */
+
+
+package visad.data;
+
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+
+/**
+ * Evicts large entries first: entries are grouped in classes of sizes
+ * between successive powers of two, and the least recently used entry of
+ * the largest non-empty class is evicted.  This frees the memory limit
+ * with the fewest spills, at the cost of re-reading large arrays more
+ * often.  Every operation takes constant time.
+ */
+public class SizeAwareEvictionPolicy implements CacheEvictionPolicy {
+
+  /** entries of each size class, least recently used first */
+  private LinkedHashSet<Object>[] classes;
+
+  /** the size class of each entry */
+  private HashMap<Object, Integer> sizeClass = new HashMap<Object, Integer>();
+
+  /** largest size class that may have entries */
+  private int top = -1;
+
+  @SuppressWarnings("unchecked")
+  public SizeAwareEvictionPolicy() {
+    classes = new LinkedHashSet[64];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = new LinkedHashSet<Object>();
+    }
+  }
+
+  public void add(Object cacheId, long size) {
+    remove(cacheId);
+    int c = 63 - Long.numberOfLeadingZeros(Math.max(1, size));
+    classes[c].add(cacheId);
+    sizeClass.put(cacheId, Integer.valueOf(c));
+    if (c > top) top = c;
+  }
+
+  public void touch(Object cacheId) {
+    Integer c = sizeClass.get(cacheId);
+    if (c == null) return;
+    LinkedHashSet<Object> ids = classes[c.intValue()];
+    ids.remove(cacheId);
+    ids.add(cacheId);
+  }
+
+  public void remove(Object cacheId) {
+    Integer c = sizeClass.remove(cacheId);
+    if (c != null) classes[c.intValue()].remove(cacheId);
+  }
+
+  public Object evict() {
+    while (top >= 0 && classes[top].isEmpty()) top--;
+    if (top < 0) return null;
+    Iterator<Object> it = classes[top].iterator();
+    Object cacheId = it.next();
+    it.remove();
+    sizeClass.remove(cacheId);
+    return cacheId;
+  }
+
+  public int size() {
+    return sizeClass.size();
+  }
+}
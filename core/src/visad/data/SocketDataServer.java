@@ -28,17 +28,53 @@ package visad.data;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import visad.*;
+import visad.data.visad.BinaryWriter;
 
 /**
  * A class for exporting data to a socket stream. Whenever the given
  * DataReference's data changes, it is sent across the socket to any clients
  * that are listening.
+ * <P>
+ * Each change is encoded once, in the VisAD binary form written by
+ * {@link BinaryWriter}, and the same bytes are queued for every client.
+ * One thread serves all the clients through a {@link Selector}, so a slow
+ * client doesn't hold up the others: when more than
+ * {@link #getMaxQueuedFrames()} frames are waiting for a client, those it
+ * hasn't started to receive are replaced by a single frame holding the
+ * current data.  If the data is the same FlatField as last time and only
+ * samples set through <code>setSample</code> or
+ * <code>setSamples(start, ...)</code> have changed, only those samples are
+ * sent (see {@link #setSendChangedSamples(boolean)}).
+ * <P>
+ * The stream is a sequence of frames.  Each is an <code>int</code> length
+ * followed by that many bytes: a type byte, then for {@link #FRAME_DATA}
+ * the binary form of the data, and for {@link #FRAME_SAMPLES} the
+ * <code>int</code> index of the first changed sample, the <code>int</code>
+ * number of samples, the <code>int</code> number of range components, and
+ * the sample values as <code>double</code>s, component by component.
+ * {@link SocketDataSource} reads this stream.
  */
 public class SocketDataServer {
 
+  /**
+   * Type of a frame holding the whole data.
+   */
+  public static final byte FRAME_DATA = 1;
+
+  /**
+   * Type of a frame holding changed samples of the FlatField last sent.
+   */
+  public static final byte FRAME_SAMPLES = 2;
+
   /**
    * The main socket for this SocketDataServer.
    */
@@ -49,11 +85,6 @@ public class SocketDataServer {
    */
   protected Vector sockets = new Vector();
 
-  /**
-   * List of output streams for client sockets.
-   */
-  protected Vector outs = new Vector();
-
   /**
    * The socket's port.
    */
@@ -67,36 +98,136 @@ public class SocketDataServer {
   /**
    * Whether the server is still active.
    */
-  protected boolean alive = true;
+  protected volatile boolean alive = true;
+
+  /**
+   * Channel of the main socket.
+   */
+  private ServerSocketChannel serverChannel;
+
+  /**
+   * Selector serving the main socket and the clients.
+   */
+  private Selector selector;
+
+  /**
+   * Clients currently connected.
+   */
+  private CopyOnWriteArrayList<Client> clients =
+    new CopyOnWriteArrayList<Client>();
+
+  /**
+   * Clients with newly queued frames, to be watched for writing.
+   */
+  private ConcurrentLinkedQueue<Client> ready =
+    new ConcurrentLinkedQueue<Client>();
+
+  /**
+   * Number of frames queued for a client before its queue is coalesced.
+   */
+  private volatile int maxQueuedFrames = 8;
+
+  /**
+   * Whether to send only the changed samples of a FlatField.
+   */
+  private volatile boolean sendChangedSamples = true;
+
+  /**
+   * The data last sent and, if it is a FlatField, the change tick of the
+   * samples sent; changed samples are found relative to these.
+   */
+  private Data lastData;
+  private long lastTick;
+
+  /**
+   * The tick of the DataReference when data was last sent; a change of
+   * the data in place shows only here.
+   */
+  private long lastRefTick;
+
+  /**
+   * A frame holding the data last sent, made at a change tick no earlier
+   * than lastTick, or null.
+   */
+  private ByteBuffer lastFrame;
+  private long lastFrameTick;
 
   /**
-   * Code for monitoring incoming clients.
+   * Number of times a client's queue was coalesced.
    */
-  private Runnable connect = new Runnable() {
+  private volatile long coalesceCount = 0;
+
+  /**
+   * A client's channel and the frames waiting to be written to it.
+   */
+  private static class Client {
+    final SocketChannel channel;
+    final ArrayDeque<ByteBuffer> queue = new ArrayDeque<ByteBuffer>();
+    SelectionKey key;
+
+    Client(SocketChannel channel) {
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Code for serving the clients.
+   */
+  private Runnable serve = new Runnable() {
     public void run() {
+      ByteBuffer scratch = ByteBuffer.allocate(4096);
       while (alive) {
         try {
-          // wait for a new socket to connect
-          Socket s = socket.accept();
-          if (!alive) break;
-          synchronized (sockets) {
-            if (s != null) {
-              // add client to the list
-              sockets.add(s);
-
-              // add client's input and output streams to the list
-              ObjectOutputStream out =
-                new ObjectOutputStream(s.getOutputStream());
-              outs.add(out);
-
-              // send the current data to the client
-              Data data = SocketDataServer.this.ref.getData();
-              out.writeObject(data);
+          selector.select();
+        }
+        catch (IOException exc) {
+          break;
+        }
+        if (!alive) break;
+
+        // watch clients with new frames for writing
+        Client client;
+        while ((client = ready.poll()) != null) {
+          if (client.key.isValid()) {
+            client.key.interestOps(SelectionKey.OP_READ |
+                                   SelectionKey.OP_WRITE);
+          }
+        }
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) continue;
+          try {
+            if (key.isAcceptable()) {
+              accept();
+            }
+            else {
+              client = (Client) key.attachment();
+              if (key.isReadable()) {
+                // clients have nothing to say; watch for them closing
+                scratch.clear();
+                if (client.channel.read(scratch) < 0) {
+                  killClient(client);
+                  continue;
+                }
+              }
+              if (key.isValid() && key.isWritable()) write(key);
+            }
+          }
+          catch (IOException exc) {
+            // something wrong with this socket; kill it
+            if (key.attachment() instanceof Client) {
+              killClient((Client) key.attachment());
             }
           }
         }
-        catch (IOException exc) { }
       }
+      try {
+        selector.close();
+      }
+      catch (IOException exc) { }
     }
   };
 
@@ -107,23 +238,7 @@ public class SocketDataServer {
     public synchronized void doAction()
       throws VisADException, RemoteException
     {
-      // send new data to each client using its socket
-      synchronized (sockets) {
-        Data data = SocketDataServer.this.ref.getData();
-        int i = 0;
-        while (i < sockets.size()) {
-          Socket s = (Socket) sockets.elementAt(i);
-          ObjectOutputStream out = (ObjectOutputStream) outs.elementAt(i);
-          try {
-            out.writeObject(data);
-            i++;
-          }
-          catch (IOException exc) {
-            // something wrong with this socket; kill it
-            killSocket(i);
-          }
-        }
-      }
+      update();
     }
   };
 
@@ -137,38 +252,253 @@ public class SocketDataServer {
     this.ref = ref;
 
     // create a server socket at the given port
-    socket = new ServerSocket(port);
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    socket = serverChannel.socket();
+    socket.bind(new InetSocketAddress(port));
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
 
-    // monitor incoming client socket connections
-    Thread connectThread = new Thread(connect);
-    connectThread.start();
+    // serve incoming client socket connections
+    Thread serveThread = new Thread(serve, "SocketDataServer " + port);
+    serveThread.start();
 
     // monitor data changes
     commCell.addReference(ref);
   }
 
   /**
-   * Shut down the given socket, and removes it from the socket vector.
+   * Set the number of frames that may wait for a client before those it
+   * hasn't started to receive are replaced by one with the current data.
+   */
+  public void setMaxQueuedFrames(int frames) {
+    maxQueuedFrames = Math.max(frames, 1);
+  }
+
+  /**
+   * Return the number of frames that may wait for a client.
    */
-  private void killSocket(int i) {
-    ObjectOutputStream out = (ObjectOutputStream) outs.elementAt(i);
-    Socket s = (Socket) sockets.elementAt(i);
+  public int getMaxQueuedFrames() {
+    return maxQueuedFrames;
+  }
 
-    // shut down socket output stream
+  /**
+   * Set whether to send only the changed samples of a FlatField when they
+   * are known; the default is true.
+   */
+  public void setSendChangedSamples(boolean send) {
+    sendChangedSamples = send;
+  }
+
+  /**
+   * Return whether only the changed samples of a FlatField are sent.
+   */
+  public boolean isSendChangedSamples() {
+    return sendChangedSamples;
+  }
+
+  /**
+   * Return the number of times frames for a lagging client were replaced
+   * by one with the current data.
+   */
+  public long getCoalesceCount() {
+    return coalesceCount;
+  }
+
+  /**
+   * Encode the current data once and queue it for every client.
+   */
+  private synchronized void update()
+    throws VisADException, RemoteException
+  {
+    long refTick = ref.getTick();
+    Data data = ref.getData();
+    if (data == null) return;
+
+    ByteBuffer frame = null;
+    if (sendChangedSamples && data == lastData && data instanceof FlatField &&
+        !data.isMissing())
+    {
+      FlatField field = (FlatField) data;
+      long tick = field.getChangeTick();
+      int[] changed = field.getChangedSamples(lastTick);
+      if (changed != null) {
+        if (changed[1] <= changed[0]) {
+          // nothing new, unless changed in place and set again
+          if (refTick == lastRefTick) return;
+        }
+        else if (changed[1] - changed[0] <= field.getLength() / 2) {
+          frame = encodeSamples(field, changed[0], changed[1]);
+          lastTick = tick;
+          lastRefTick = refTick;
+          if (lastFrameTick < tick) lastFrame = null;
+        }
+      }
+    }
+    if (frame == null) {
+      long tick = getChangeTick(data);
+      frame = encodeData(data);
+      lastData = data;
+      lastTick = tick;
+      lastRefTick = refTick;
+      lastFrame = frame;
+      lastFrameTick = tick;
+    }
+
+    for (Client client : clients) {
+      synchronized (client.queue) {
+        if (client.queue.size() < maxQueuedFrames) {
+          client.queue.add(frame.duplicate());
+        }
+        else {
+          // keep the frame being written; replace the rest by the data
+          ByteBuffer head = client.queue.peekFirst();
+          client.queue.clear();
+          if (head.position() > 0) client.queue.add(head);
+          client.queue.add(getDataFrame().duplicate());
+          coalesceCount++;
+        }
+      }
+      ready.add(client);
+    }
+    if (!clients.isEmpty()) selector.wakeup();
+  }
+
+  /**
+   * Return the frame holding the current data, encoding it if needed.
+   */
+  private synchronized ByteBuffer getDataFrame()
+    throws VisADException, RemoteException
+  {
+    if (lastFrame != null) return lastFrame;
+    Data data = ref.getData();
+    if (data == null) return null;
+    long tick = getChangeTick(data);
+    ByteBuffer frame = encodeData(data);
+    if (data == lastData) {
+      // good for later clients too
+      lastFrame = frame;
+      lastFrameTick = tick;
+    }
+    return frame;
+  }
+
+  /**
+   * Return the change tick of data that is a FlatField.
+   */
+  private static long getChangeTick(Data data) {
+    return (data instanceof FlatField) ?
+      ((FlatField) data).getChangeTick() : 0;
+  }
+
+  /**
+   * Encode data in a {@link #FRAME_DATA} frame.
+   */
+  private static ByteBuffer encodeData(Data data)
+    throws VisADException, RemoteException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
     try {
-      out.close();
+      bytes.write(new byte[5]);
+      BinaryWriter writer = new BinaryWriter(bytes);
+      writer.setIndexed(false);
+      writer.save(data.local());
+      writer.close();
     }
-    catch (IOException exc) { }
+    catch (IOException exc) {
+      throw new VisADException("SocketDataServer: " + exc.getMessage());
+    }
+    ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+    frame.putInt(0, frame.capacity() - 4);
+    frame.put(4, FRAME_DATA);
+    return frame;
+  }
+
+  /**
+   * Encode samples first through last - 1 of a FlatField in a
+   * {@link #FRAME_SAMPLES} frame.
+   */
+  private static ByteBuffer encodeSamples(FlatField field, int first,
+    int last) throws VisADException
+  {
+    int dim = field.getRangeDimension();
+    int count = last - first;
+    double[] values = new double[count];
+    ByteBuffer frame = ByteBuffer.allocate(17 + 8 * count * dim);
+    frame.putInt(frame.capacity() - 4);
+    frame.put(FRAME_SAMPLES);
+    frame.putInt(first);
+    frame.putInt(count);
+    frame.putInt(dim);
+    for (int i=0; i<dim; i++) {
+      // only the changed samples are unpacked
+      field.unpackValues(i, first, values);
+      frame.asDoubleBuffer().put(values);
+      frame.position(frame.position() + 8 * count);
+    }
+    frame.flip();
+    return frame;
+  }
+
+  /**
+   * Accept a new client and queue the current data for it.
+   */
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) return;
+    channel.configureBlocking(false);
+    Client client = new Client(channel);
+    client.key = channel.register(selector, SelectionKey.OP_READ, client);
+    sockets.add(channel.socket());
+
+    // send the current data to the client, ahead of any later update
+    synchronized (this) {
+      clients.add(client);
+      try {
+        ByteBuffer frame = getDataFrame();
+        if (frame != null) {
+          synchronized (client.queue) {
+            client.queue.add(frame.duplicate());
+          }
+          client.key.interestOps(SelectionKey.OP_READ |
+                                 SelectionKey.OP_WRITE);
+        }
+      }
+      catch (VisADException exc) { }
+    }
+  }
+
+  /**
+   * Write as many of the frames queued for a client as it will take.
+   */
+  private void write(SelectionKey key) throws IOException {
+    Client client = (Client) key.attachment();
+    synchronized (client.queue) {
+      while (!client.queue.isEmpty()) {
+        ByteBuffer frame = client.queue.peekFirst();
+        client.channel.write(frame);
+        if (frame.hasRemaining()) return;
+        client.queue.removeFirst();
+      }
+      key.interestOps(SelectionKey.OP_READ);
+    }
+  }
+
+  /**
+   * Shut down the given client socket, and remove it from the socket vector.
+   */
+  private void killClient(Client client) {
+    clients.remove(client);
+    client.key.cancel();
 
     // shut down socket itself
     try {
-      s.close();
+      client.channel.close();
     }
     catch (IOException exc) { }
 
-    // remove socket from socket vectors
-    sockets.remove(i);
-    outs.remove(i);
+    // remove socket from socket vector
+    sockets.remove(client.channel.socket());
   }
 
   /** destroys this server and kills all associated threads */
@@ -177,16 +507,14 @@ public class SocketDataServer {
     alive = false;
 
     // shut down all client sockets
-    synchronized (sockets) {
-      while (sockets.size() > 0) killSocket(0);
-    }
+    for (Client client : clients) killClient(client);
 
-    // shut down server socket
+    // shut down server socket; the serving thread closes the selector
     try {
-      socket.close();
+      serverChannel.close();
     }
     catch (IOException exc) { }
+    selector.wakeup();
   }
 
 }
-
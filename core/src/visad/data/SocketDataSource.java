@@ -28,13 +28,17 @@ package visad.data;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.rmi.RemoteException;
 import visad.*;
+import visad.data.visad.BinaryReader;
 
 /**
  * A class for linking a socket stream to a DataReference. Whenever the source
  * data changes, the source presumably sends the change through the linked
- * socket, and the DataReference is set to point at the new data.
+ * socket, and the DataReference is set to point at the new data.  The stream
+ * is read as written by {@link SocketDataServer}; changed samples of a
+ * FlatField are set in the FlatField the DataReference already points at.
  */
 public class SocketDataSource extends LinkedDataSource {
 
@@ -51,41 +55,29 @@ public class SocketDataSource extends LinkedDataSource {
   /**
    * The input stream for the socket connection.
    */
-  protected ObjectInputStream in;
+  protected DataInputStream in;
+
+  /**
+   * The data last received.
+   */
+  private Data data;
 
   /**
    * Code for monitoring socket for incoming source data changes.
    */
   protected Runnable comm = new Runnable() {
     public void run() {
-      Object o;
-
-      // read objects until stream closes
+      // read frames until stream closes
       while (true) {
-        o = null;
         try {
-          o = in.readObject();
-        }
-        catch (ClassNotFoundException exc) {
-          if (DEBUG) exc.printStackTrace();
+          readFrame();
         }
         catch (IOException exc) {
           if (DEBUG) exc.printStackTrace();
+          break;
         }
-        if (o == null) break;
-
-        // process object
-        if (o instanceof DataImpl) {
-          // object is updated data
-          try {
-            dataChanged((Data) o);
-          }
-          catch (VisADException exc) {
-            if (DEBUG) exc.printStackTrace();
-          }
-          catch (RemoteException exc) {
-            if (DEBUG) exc.printStackTrace();
-          }
+        catch (VisADException exc) {
+          if (DEBUG) exc.printStackTrace();
         }
       }
 
@@ -120,6 +112,38 @@ public class SocketDataSource extends LinkedDataSource {
     }
   };
 
+  /**
+   * Read one frame from the socket and update the data from it.
+   */
+  private void readFrame() throws IOException, VisADException {
+    int length = in.readInt();
+    byte type = in.readByte();
+    byte[] bytes = new byte[length - 1];
+    in.readFully(bytes);
+
+    if (type == SocketDataServer.FRAME_DATA) {
+      // object is updated data
+      BinaryReader reader =
+        new BinaryReader(new ByteArrayInputStream(bytes));
+      data = reader.getData();
+      reader.close();
+      if (data != null) dataChanged(data);
+    }
+    else if (type == SocketDataServer.FRAME_SAMPLES) {
+      // object is updated samples of the last FlatField
+      if (!(data instanceof FlatField)) return;
+      ByteBuffer buf = ByteBuffer.wrap(bytes);
+      int start = buf.getInt();
+      int count = buf.getInt();
+      double[][] values = new double[buf.getInt()][count];
+      for (int i=0; i<values.length; i++) {
+        buf.asDoubleBuffer().get(values[i]);
+        buf.position(buf.position() + 8 * count);
+      }
+      ((FlatField) data).setSamples(start, values);
+    }
+  }
+
   /**
    * Construct a SocketDataSource with the given name.
    */
@@ -151,7 +175,8 @@ public class SocketDataSource extends LinkedDataSource {
     // open the socket
     socket = new Socket(host, port);
     out = new ObjectOutputStream(socket.getOutputStream());
-    in = new ObjectInputStream(socket.getInputStream());
+    in = new DataInputStream(
+      new BufferedInputStream(socket.getInputStream()));
 
     // set up socket input thread
     Thread t = new Thread(comm);
@@ -27,6 +27,7 @@ package visad.data.mcidas;
 import edu.wisc.ssec.mcidas.AREAnav;
 import edu.wisc.ssec.mcidas.AreaFile;
 import edu.wisc.ssec.mcidas.McIDASException;
+import edu.wisc.ssec.mcidas.ParallelNav;
 import edu.wisc.ssec.mcidas.AreaFileException;
 
 import java.awt.geom.Rectangle2D;
@@ -310,7 +311,7 @@ public class AREACoordinateSystem
     double[][] newval = makeSpline(tuples, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 1 " + tuples[0].length + " " + newval[0].length);
-      double[][] newtrans = anav.toLatLon(newval);
+      double[][] newtrans = ParallelNav.toLatLon(anav, newval);
 
       int len = tuples[0].length;
       double[][] misstrans = new double[2][len];
@@ -318,7 +319,7 @@ public class AREACoordinateSystem
       double[][] val = applySpline(tuples, mins, maxs, nums, newtrans,
                                    misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        double[][] newmiss = anav.toLatLon(misstrans);
+        double[][] newmiss = ParallelNav.toLatLon(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -327,7 +328,7 @@ public class AREACoordinateSystem
       return val;
     }
     else {
-      return anav.toLatLon(tuples);
+      return ParallelNav.toLatLon(anav, tuples);
     }
   }
 
@@ -353,7 +354,7 @@ public class AREACoordinateSystem
     double[][] newval = makeSpline(tuples, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 2 " + tuples[0].length + " " + newval[0].length);
-      double[][] newtrans = anav.toLinEle(newval);
+      double[][] newtrans = ParallelNav.toLinEle(anav, newval);
 
       int len = tuples[0].length;
       double[][] misstrans = new double[2][len];
@@ -361,7 +362,7 @@ public class AREACoordinateSystem
       double[][] val = applySpline(tuples, mins, maxs, nums, newtrans,
                                    misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        double[][] newmiss = anav.toLinEle(misstrans);
+        double[][] newmiss = ParallelNav.toLinEle(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -370,7 +371,7 @@ public class AREACoordinateSystem
       return val;
     }
     else {
-      return anav.toLinEle(tuples);
+      return ParallelNav.toLinEle(anav, tuples);
     }
 
   }
@@ -400,7 +401,7 @@ public class AREACoordinateSystem
     float[][] newval = makeSpline(val, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 3");
-      float[][] newtrans = anav.toLatLon(newval);
+      float[][] newtrans = ParallelNav.toLatLon(anav, newval);
 
       int len = tuples[0].length;
       float[][] misstrans = new float[2][len];
@@ -408,7 +409,7 @@ public class AREACoordinateSystem
       val = applySpline(val, mins, maxs, nums, newtrans,
                         misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        float[][] newmiss = anav.toLatLon(misstrans);
+        float[][] newmiss = ParallelNav.toLatLon(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -416,7 +417,7 @@ public class AREACoordinateSystem
       }
     }
     else {
-      val = anav.toLatLon(val);
+      val = ParallelNav.toLatLon(anav, val);
     }
     //return Set.doubleToFloat(val);
     return val;
@@ -448,7 +449,7 @@ public class AREACoordinateSystem
     float[][] newval = makeSpline(val, mins, maxs, nums);
     if (newval != null) {
 // System.out.println("new 4");
-      float[][] newtrans = anav.toLinEle(newval);
+      float[][] newtrans = ParallelNav.toLinEle(anav, newval);
 
       int len = tuples[0].length;
       float[][] misstrans = new float[2][len];
@@ -456,7 +457,7 @@ public class AREACoordinateSystem
       val = applySpline(val, mins, maxs, nums, newtrans,
                         misstrans, miss_to_trans);
       if (miss_to_trans[0] != null) {
-        float[][] newmiss = anav.toLinEle(misstrans);
+        float[][] newmiss = ParallelNav.toLinEle(anav, misstrans);
         for (int i=0; i<miss_to_trans[0].length; i++) {
           val[0][miss_to_trans[0][i]] = newmiss[0][i];
           val[1][miss_to_trans[0][i]] = newmiss[1][i];
@@ -464,7 +465,7 @@ public class AREACoordinateSystem
       }
     }
     else {
-      val = anav.toLinEle(val);
+      val = ParallelNav.toLinEle(anav, val);
     }
     //return Set.doubleToFloat(val);
     return val;
@@ -16,6 +16,10 @@ import visad.*;
 /**
  * Provides support for creating VisAD Data objects from VirtualData objects.
  *
+ * <p>By default, the values of byte and short netCDF variables are put
+ * into FlatFields in their packed form, without first being converted to
+ * doubles; see {@link #setKeepPacked(boolean)}.</p>
+ *
  * @author Steven R. Emmerson
  */
 public class
@@ -23,6 +27,12 @@ DataFactory
 {
     private static DataFactory  instance;
 
+    /**
+     * Whether or not packed values are put into FlatFields as such.
+     */
+    private static volatile boolean     keepPacked =
+        !"false".equals(System.getProperty("visad.data.netcdf.packed"));
+
     static
     {
         instance = new DataFactory();
@@ -44,6 +54,33 @@ DataFactory
     }
 
 
+    /**
+     * Sets whether or not the values of byte and short netCDF variables are
+     * put into FlatFields in their packed form.  If not, they are first
+     * converted to doubles.  The default is the value of the
+     * <code>visad.data.netcdf.packed</code> system property, or
+     * <code>true</code>.
+     *
+     * @param packed            Whether or not to keep values packed.
+     */
+    public static void setKeepPacked(boolean packed)
+    {
+        keepPacked = packed;
+    }
+
+
+    /**
+     * Indicates whether or not the values of byte and short netCDF
+     * variables are put into FlatFields in their packed form.
+     *
+     * @return                  Whether or not values are kept packed.
+     */
+    public static boolean isKeepPacked()
+    {
+        return keepPacked;
+    }
+
+
     /**
      * Creates a VisAD Data object from a netCDF indicial context and a 
      * VirtualData object.
@@ -134,12 +171,38 @@ DataFactory
                 rangeSets,
                 rangeUnits);
 
-        double[][]      values = new double[componentCount][];
+        boolean         packed = keepPacked;
 
-        for (int i = 0; i < componentCount; ++i)
-            values[i] = ((VirtualScalar)rangeTuple.get(i)).getDoubles(context);
+        for (int i = 0; packed && i < componentCount; ++i)
+            packed = ((VirtualScalar)rangeTuple.get(i)).isPacked();
+
+        if (packed)
+        {
+            /*
+             * The values stay packed: they're unpacked by the FlatField when
+             * they're requested.
+             */
+            for (int i = 0; i < componentCount; ++i)
+            {
+                Object  values =
+                    ((VirtualScalar)rangeTuple.get(i)).getPacked(context);
 
-        field.setSamples(values, /*copy=*/false);
+                if (values instanceof short[])
+                    field.setPackedSamples(i, (short[])values, /*copy=*/false);
+                else
+                    field.setPackedSamples(i, (byte[])values, /*copy=*/false);
+            }
+        }
+        else
+        {
+            double[][]  values = new double[componentCount][];
+
+            for (int i = 0; i < componentCount; ++i)
+                values[i] =
+                    ((VirtualScalar)rangeTuple.get(i)).getDoubles(context);
+
+            field.setSamples(values, /*copy=*/false);
+        }
 
         return field;
     }
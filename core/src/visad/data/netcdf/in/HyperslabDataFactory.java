@@ -0,0 +1,72 @@
+/*
+ * Copyright 2000, University Corporation for Atmospheric Research
+ * All Rights Reserved.
+ * See file LICENSE for copying and redistribution conditions.
+ */
+
+package visad.data.netcdf.in;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import visad.*;
+
+
+/**
+ * Provides support for creating VisAD Data objects from VirtualData objects
+ * in which FlatFields are, wherever possible, {@link HyperslabFlatField}s
+ * that read their values from the netCDF dataset as needed.
+ */
+public class
+HyperslabDataFactory
+    extends     DataFactory
+{
+    private static HyperslabDataFactory instance;
+
+    static
+    {
+        instance = new HyperslabDataFactory();
+    }
+
+
+    /**
+     * Constructs from nothing.  Protected to ensure use of
+     * <code>instance()</code> method.
+     */
+    protected HyperslabDataFactory()
+    {}
+
+
+    /**
+     * Returns an instance of this class.
+     *
+     * @return                  An instance of this class.
+     */
+    public static DataFactory instance()
+    {
+        return instance;
+    }
+
+
+    /**
+     * Creates a VisAD FlatField object from a netCDF indicial context and a 
+     * VirtualFlatField.  The returned FlatField is a {@link
+     * HyperslabFlatField} if the virtual FlatField is accepted by {@link
+     * HyperslabFlatField#accepts(Context, VirtualFlatField)}; otherwise, its
+     * values are read into memory.
+     *
+     * @param context           The netCDF indicial context.
+     * @param virtualField      The virtual data.
+     * @return                  The VisAD FlatField corresponding to the input.
+     * @throws VisADException   VisAD failure.
+     * @throws RemoteException  Java RMI failure.
+     * @throws IOException      I/O failure.
+     */
+    public FlatField newData(Context context, VirtualFlatField virtualField)
+        throws VisADException, RemoteException, IOException
+    {
+        return
+            HyperslabFlatField.accepts(context, virtualField)
+                ? new HyperslabFlatField(context, virtualField)
+                : super.newData(context, virtualField);
+    }
+}
@@ -0,0 +1,984 @@
+/*
+ * Copyright 1998, University Corporation for Atmospheric Research
+ * All Rights Reserved.
+ * See file LICENSE for copying and redistribution conditions.
+ */
+
+package visad.data.netcdf.in;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import visad.*;
+
+
+/**
+ * <p>A FlatField whose range values stay in the netCDF dataset until they're
+ * needed.  Values are read with hyperslab (origin and shape) reads of the
+ * netCDF variables: individual samples -- including those used by {@link
+ * #resample(Set, int, int)} -- come from rectangular tiles of the grid, and
+ * the most recently used tiles of all such fields are kept in a cache of
+ * bounded size (see {@link #setCacheSize(long)}).  Coarse or windowed views
+ * of a large grid are obtained with {@link #subset(int[], int[], int[])},
+ * which reads only the rows of the grid that it needs.  Requests for all of
+ * the values (e.g. {@link #getValues()}) read the whole variables.</p>
+ *
+ * <p>The first modification of the range values reads all of the values into
+ * memory, after which this field behaves like an ordinary FlatField.</p>
+ *
+ * <p>Instances are created by {@link HyperslabDataFactory}.</p>
+ */
+public class
+HyperslabFlatField
+    extends     FlatField
+{
+    /**
+     * The extent of a tile in each of the two innermost dimensions.
+     */
+    private static final int    TILE_LENGTH = 256;
+
+    /**
+     * The extent of a tile of a 1-D grid.
+     */
+    private static final int    TILE_LENGTH_1D = 65536;
+
+    /**
+     * The maximum number of bytes of cached tiles.
+     */
+    private static volatile long        cacheSize =
+        Long.getLong("visad.data.netcdf.tilecache", 64L << 20).longValue();
+
+    /**
+     * The cached tiles, least recently used first.  Each component of a tile
+     * is a <code>float[]</code> if the component has a FloatSet range set
+     * and its values are all floats, and a <code>double[]</code> otherwise,
+     * so that samples have the same values as those of {@link #getValues()}.
+     */
+    private static final LinkedHashMap<TileKey, Object[]>       tiles =
+        new LinkedHashMap<TileKey, Object[]>(16, 0.75f, true);
+
+    /**
+     * The number of bytes of cached tiles.
+     */
+    private static long         cachedBytes = 0;
+
+    /**
+     * The netCDF indicial context of the values.
+     */
+    private final Context       context;
+
+    /**
+     * The range components.
+     */
+    private final VirtualReal[] reals;
+
+    /**
+     * The lengths of the domain grid, innermost (VisAD) dimension first.
+     */
+    private final int[]         lengths;
+
+    /**
+     * The lengths of a tile, innermost dimension first.
+     */
+    private final int[]         tileLengths;
+
+    /**
+     * The identity of the values in the tile cache; shared by clones.
+     */
+    private final Object        source;
+
+    /**
+     * Whether or not the values have been read into memory.
+     */
+    private volatile boolean    materialized = false;
+
+    /**
+     * Lock for materializing the values.
+     */
+    private final Object        lock = new Object();
+
+
+    /**
+     * Constructs from a netCDF indicial context and a virtual FlatField that
+     * is accepted by {@link #accepts(Context, VirtualFlatField)}.
+     *
+     * @param context           The netCDF indicial context.
+     * @param virtualField      The virtual FlatField.
+     * @throws VisADException   if the virtual FlatField isn't accepted or a
+     *                          VisAD object couldn't be created.
+     */
+    public
+    HyperslabFlatField(Context context, VirtualFlatField virtualField)
+        throws VisADException
+    {
+        super(virtualField.getFunctionType(), virtualField.getDomainSet(),
+            (CoordinateSystem)null, getRangeSets(virtualField),
+            getRangeUnits(virtualField));
+
+        if (!accepts(context, virtualField))
+            throw new FieldException(
+                "HyperslabFlatField: domain doesn't match variables");
+
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+
+        this.context = (Context)context.clone();
+        source = new Object();
+        reals = new VirtualReal[rangeTuple.size()];
+        for (int i = 0; i < reals.length; ++i)
+            reals[i] = (VirtualReal)rangeTuple.get(i);
+        lengths = ((GriddedSet)getDomainSet()).getLengths();
+        tileLengths = new int[lengths.length];
+        for (int i = 0; i < lengths.length; ++i)
+            tileLengths[i] =
+                lengths.length == 1
+                    ? Math.min(lengths[i], TILE_LENGTH_1D)
+                    : i < 2
+                        ? Math.min(lengths[i], TILE_LENGTH)
+                        : 1;
+        clearMissing();
+    }
+
+
+    /**
+     * Indicates if the values of a virtual FlatField can be read as
+     * hyperslabs: the domain must be a GriddedSet whose lengths are those of
+     * the dimensions of every range variable that follow the context.
+     *
+     * @param context           The netCDF indicial context.
+     * @param virtualField      The virtual FlatField.
+     * @return                  <code>true</code> if and only if a
+     *                          HyperslabFlatField can be constructed.
+     */
+    public static boolean
+    accepts(Context context, VirtualFlatField virtualField)
+    {
+        SampledSet      domainSet = virtualField.getDomainSet();
+
+        if (!(domainSet instanceof GriddedSet))
+            return false;
+
+        int[]           domainLengths = ((GriddedSet)domainSet).getLengths();
+        int             contextRank = context.getContext().length;
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+
+        for (int i = 0; i < rangeTuple.size(); ++i)
+        {
+            if (!(rangeTuple.get(i) instanceof VirtualReal))
+                return false;
+
+            int[]       varLengths =
+                ((VirtualReal)rangeTuple.get(i)).getVariable().getLengths();
+
+            if (varLengths.length != contextRank + domainLengths.length)
+                return false;
+
+            for (int j = 0; j < domainLengths.length; ++j)
+                if (varLengths[varLengths.length - 1 - j] != domainLengths[j])
+                    return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Sets the maximum number of bytes of tiles cached for all
+     * HyperslabFlatFields.  The default is the value of the
+     * <code>visad.data.netcdf.tilecache</code> system property, or 64 MB.
+     *
+     * @param size              The maximum number of bytes.
+     */
+    public static void
+    setCacheSize(long size)
+    {
+        cacheSize = Math.max(0, size);
+        synchronized (tiles)
+        {
+            evict();
+        }
+    }
+
+
+    /**
+     * Returns the maximum number of bytes of cached tiles.
+     *
+     * @return                  The maximum number of bytes.
+     */
+    public static long
+    getCacheSize()
+    {
+        return cacheSize;
+    }
+
+
+    /**
+     * Returns a FlatField of a strided window of the grid of this field.  Only
+     * the rows of the grid that contain samples of the window are read.
+     * Range components whose values aren't all representable by their range
+     * sets get DoubleSet range sets, so that the window has the values of
+     * {@link #getValues()}.
+     *
+     * @param first             The grid index of the first sample of the
+     *                          window in each dimension, innermost first.
+     * @param count             The number of samples of the window in each
+     *                          dimension.
+     * @param stride            The grid index increment between samples of
+     *                          the window in each dimension.
+     * @return                  The FlatField of the window, whose domain
+     *                          set consists of the corresponding samples of
+     *                          the domain set of this field.
+     * @throws VisADException   if the window isn't within the grid or a
+     *                          VisAD object couldn't be created.
+     * @throws RemoteException  Java RMI failure.
+     * @throws IOException      I/O failure.
+     */
+    public FlatField
+    subset(int[] first, int[] count, int[] stride)
+        throws VisADException, RemoteException, IOException
+    {
+        int     rank = lengths.length;
+
+        if (first.length != rank || count.length != rank ||
+            stride.length != rank)
+        {
+            throw new FieldException("HyperslabFlatField.subset: " +
+                "window rank doesn't match grid");
+        }
+        for (int i = 0; i < rank; ++i)
+        {
+            if (first[i] < 0 || count[i] < 1 || stride[i] < 1 ||
+                first[i] + (long)(count[i] - 1) * stride[i] >= lengths[i])
+            {
+                throw new FieldException("HyperslabFlatField.subset: " +
+                    "window isn't within grid");
+            }
+        }
+
+        GriddedSet      domain = subsetDomain(first, count, stride);
+        Set[]           rangeSets = getRangeSets();
+
+        if (materialized)
+        {
+            FlatField   field = new FlatField((FunctionType)getType(), domain,
+                (CoordinateSystem)null, rangeSets, RangeUnits);
+            double[][]  values = getValues(false);
+            int[]       indexes = subsetIndexes(first, count, stride);
+            double[][]  range = new double[TupleDimension][indexes.length];
+
+            for (int i = 0; i < TupleDimension; ++i)
+                for (int j = 0; j < indexes.length; ++j)
+                    range[i][j] = values[i][indexes[j]];
+            field.setSamples(range, false);
+            return field;
+        }
+
+        /*
+         * Read rows of the innermost dimension, skipping rows between the
+         * strides of the outer dimensions.  If the outer dimensions aren't
+         * strided, then the window is read at once.
+         */
+        boolean         strided = false;
+
+        for (int i = 1; i < rank; ++i)
+            strided |= stride[i] != 1;
+
+        int             span = (count[0] - 1) * stride[0] + 1;
+        int[]           rowOrigin = (int[])first.clone();
+        int[]           rowShape = new int[rank];
+        int             rowCount = 1;
+        int             rowLength = 1;
+
+        rowShape[0] = span;
+        for (int i = 1; i < rank; ++i)
+        {
+            rowShape[i] = strided ? 1 : count[i];
+            rowCount *= strided ? count[i] : 1;
+            rowLength *= rowShape[i];
+        }
+
+        int             length = domain.getLength();
+        double[][]      range = new double[TupleDimension][length];
+        int[]           row = new int[rank];
+        int             n = 0;
+
+        for (int r = 0; r < rowCount; ++r)
+        {
+            for (int i = 1; i < rank; ++i)
+                rowOrigin[i] = first[i] + row[i] * stride[i];
+
+            Object[]    values = read(rowOrigin, rowShape);
+
+            for (int i = 0; i < TupleDimension; ++i)
+            {
+                double[]        to = range[i];
+
+                if (values[i] instanceof double[])
+                {
+                    double[]    from = (double[])values[i];
+
+                    /*
+                     * Keep values that a packed or float range set would
+                     * change, as getValues() does.
+                     */
+                    if (!(rangeSets[i] instanceof DoubleSet))
+                        rangeSets[i] = new DoubleSet(
+                            rangeSets[i].getType(), (CoordinateSystem)null,
+                            new Unit[] {RangeUnits[i]});
+
+                    for (int k = 0; k < rowLength; ++k)
+                        for (int j = 0; j < count[0]; ++j)
+                            to[n + k * count[0] + j] =
+                                from[k * span + j * stride[0]];
+                }
+                else
+                {
+                    float[]     from = (float[])values[i];
+
+                    for (int k = 0; k < rowLength; ++k)
+                        for (int j = 0; j < count[0]; ++j)
+                            to[n + k * count[0] + j] =
+                                from[k * span + j * stride[0]];
+                }
+            }
+            n += rowLength * count[0];
+
+            for (int i = 1; i < rank && ++row[i] == count[i]; ++i)
+                row[i] = 0;
+        }
+
+        FlatField       field = new FlatField((FunctionType)getType(), domain,
+            (CoordinateSystem)null, rangeSets, RangeUnits);
+
+        field.setSamples(range, false);
+
+        return field;
+    }
+
+
+    /**
+     * Returns the domain set of a strided window of the grid.
+     */
+    private GriddedSet
+    subsetDomain(int[] first, int[] count, int[] stride)
+        throws VisADException
+    {
+        GriddedSet      domainSet = (GriddedSet)getDomainSet();
+        int             rank = lengths.length;
+
+        if (domainSet instanceof LinearSet)
+        {
+            double[]    firsts = new double[rank];
+            double[]    lasts = new double[rank];
+
+            for (int i = 0; i < rank; ++i)
+            {
+                Linear1DSet     set =
+                    ((LinearSet)domainSet).getLinear1DComponent(i);
+                double          step = set.getStep();
+
+                firsts[i] = set.getFirst() + first[i] * step;
+                lasts[i] = firsts[i] + (count[i] - 1) * stride[i] * step;
+            }
+
+            return (GriddedSet)LinearNDSet.create(domainSet.getType(),
+                firsts, lasts, count, domainSet.getCoordinateSystem(),
+                domainSet.getSetUnits(), domainSet.getSetErrors());
+        }
+
+        float[][]       samples = domainSet.getSamples(false);
+        int[]           indexes = subsetIndexes(first, count, stride);
+        float[][]       subSamples =
+            new float[samples.length][indexes.length];
+
+        for (int i = 0; i < samples.length; ++i)
+            for (int j = 0; j < indexes.length; ++j)
+                subSamples[i][j] = samples[i][indexes[j]];
+
+        return GriddedSet.create(domainSet.getType(), subSamples, count,
+            domainSet.getCoordinateSystem(), domainSet.getSetUnits(),
+            domainSet.getSetErrors(), false);
+    }
+
+
+    /**
+     * Returns the sample indexes of a strided window of the grid.
+     */
+    private int[]
+    subsetIndexes(int[] first, int[] count, int[] stride)
+    {
+        int     rank = lengths.length;
+        int     length = 1;
+
+        for (int i = 0; i < rank; ++i)
+            length *= count[i];
+
+        int[]   indexes = new int[length];
+        int[]   position = new int[rank];
+
+        for (int j = 0; j < length; ++j)
+        {
+            int index = 0;
+
+            for (int i = rank - 1; i >= 0; --i)
+                index = index * lengths[i] + first[i] + position[i] * stride[i];
+            indexes[j] = index;
+
+            for (int i = 0; i < rank && ++position[i] == count[i]; ++i)
+                position[i] = 0;
+        }
+
+        return indexes;
+    }
+
+
+    /**
+     * Reads a hyperslab of the values.
+     *
+     * @param origin            The origin of the hyperslab, innermost
+     *                          dimension first.
+     * @param shape             The shape of the hyperslab, innermost
+     *                          dimension first.
+     * @return                  The values of the hyperslab, innermost
+     *                          dimension varying fastest: a
+     *                          <code>float[]</code> for a component with a
+     *                          FloatSet range set whose values are all
+     *                          floats and a <code>double[]</code> otherwise.
+     */
+    private Object[]
+    read(int[] origin, int[] shape)
+        throws VisADException
+    {
+        int     rank = origin.length;
+        int[]   ioOrigin = new int[rank];
+        int[]   ioShape = new int[rank];
+
+        for (int i = 0; i < rank; ++i)
+        {
+            ioOrigin[rank - 1 - i] = origin[i];
+            ioShape[rank - 1 - i] = shape[i];
+        }
+
+        Set[]           rangeSets = getRangeSets();
+        Object[]        values = new Object[TupleDimension];
+
+        try
+        {
+            for (int i = 0; i < TupleDimension; ++i)
+            {
+                double[]        doubles =
+                    reals[i].getDoubles(context, ioOrigin, ioShape);
+
+                values[i] = doubles;
+
+                if (rangeSets[i] instanceof FloatSet)
+                {
+                    float[]     floats = new float[doubles.length];
+                    int         j = 0;
+
+                    /*
+                     * E.g. the values of an int variable needn't be floats.
+                     */
+                    for (; j < doubles.length; ++j)
+                    {
+                        floats[j] = (float)doubles[j];
+                        if (floats[j] != doubles[j] &&
+                            !Double.isNaN(doubles[j]))
+                        {
+                            break;
+                        }
+                    }
+                    if (j == doubles.length)
+                        values[i] = floats;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new VisADException(
+                "HyperslabFlatField: couldn't read netCDF variable: " +
+                e.getMessage());
+        }
+
+        return values;
+    }
+
+
+    /**
+     * Reads all of the values of a range component.
+     */
+    private double[]
+    readComponent(int comp)
+        throws VisADException
+    {
+        try
+        {
+            return reals[comp].getDoubles(context);
+        }
+        catch (IOException e)
+        {
+            throw new VisADException(
+                "HyperslabFlatField: couldn't read netCDF variable: " +
+                e.getMessage());
+        }
+    }
+
+
+    /**
+     * Returns the number of bytes of a tile.
+     */
+    private static long
+    sizeOf(Object[] tile)
+    {
+        long    size = 0;
+
+        for (int i = 0; i < tile.length; ++i)
+            size += tile[i] instanceof double[]
+                ? 8L * ((double[])tile[i]).length
+                : 4L * ((float[])tile[i]).length;
+
+        return size;
+    }
+
+
+    /**
+     * Returns the range values of a sample from the tile containing it.
+     */
+    private double[]
+    readSample(int index)
+        throws VisADException
+    {
+        int     rank = lengths.length;
+        int     tile = 0;
+        int     offset = 0;
+        int[]   tileOrigin = new int[rank];
+        int[]   tileShape = new int[rank];
+        int[]   position = new int[rank];
+
+        for (int i = 0, rest = index; i < rank; ++i)
+        {
+            position[i] = rest % lengths[i];
+            rest /= lengths[i];
+        }
+
+        for (int i = rank - 1; i >= 0; --i)
+        {
+            int t = position[i] / tileLengths[i];
+
+            tile = tile * ((lengths[i] + tileLengths[i] - 1) / tileLengths[i])
+                + t;
+            tileOrigin[i] = t * tileLengths[i];
+            tileShape[i] = Math.min(tileLengths[i], lengths[i] - tileOrigin[i]);
+            offset = offset * tileShape[i] + position[i] - tileOrigin[i];
+        }
+
+        TileKey         key = new TileKey(source, tile);
+        Object[]        values;
+
+        synchronized (tiles)
+        {
+            values = tiles.get(key);
+        }
+
+        if (values == null)
+        {
+            values = read(tileOrigin, tileShape);
+
+            synchronized (tiles)
+            {
+                if (tiles.put(key, values) == null)
+                    cachedBytes += sizeOf(values);
+                evict();
+            }
+        }
+
+        double[]        range = new double[TupleDimension];
+
+        for (int i = 0; i < TupleDimension; ++i)
+            range[i] = values[i] instanceof double[]
+                ? ((double[])values[i])[offset]
+                : ((float[])values[i])[offset];
+
+        return range;
+    }
+
+
+    /**
+     * Removes the least recently used tiles until the cache isn't too big.
+     * The caller must hold the lock of the cache.
+     */
+    private static void
+    evict()
+    {
+        Iterator<Map.Entry<TileKey, Object[]>>  iter =
+            tiles.entrySet().iterator();
+
+        while (cachedBytes > cacheSize && iter.hasNext())
+        {
+            cachedBytes -= sizeOf(iter.next().getValue());
+            iter.remove();
+        }
+    }
+
+
+    /**
+     * Reads all of the values into memory, if they haven't been already.
+     */
+    private void
+    materialize()
+        throws VisADException, RemoteException
+    {
+        synchronized (lock)
+        {
+            if (!materialized)
+            {
+                double[][]      values = unpackValues(false);
+
+                materialized = true;
+                super.setSamples(values, getRangeErrors(), false);
+            }
+        }
+    }
+
+
+    protected double[][]
+    unpackValues(boolean copy)
+        throws VisADException
+    {
+        if (materialized)
+            return super.unpackValues(copy);
+
+        double[][]      range = new double[TupleDimension][];
+
+        for (int i = 0; i < TupleDimension; ++i)
+            range[i] = readComponent(i);
+
+        return range;
+    }
+
+
+    protected float[][]
+    unpackFloats(boolean copy)
+        throws VisADException
+    {
+        if (materialized)
+            return super.unpackFloats(copy);
+
+        float[][]       range = new float[TupleDimension][];
+
+        for (int i = 0; i < TupleDimension; ++i)
+            range[i] = unpackOneFloatRangeComp(i, copy);
+
+        return range;
+    }
+
+
+    protected double[]
+    unpackOneRangeComp(int comp, boolean copy)
+        throws VisADException
+    {
+        if (materialized)
+            return super.unpackOneRangeComp(comp, copy);
+
+        return readComponent(comp);
+    }
+
+
+    protected float[]
+    unpackOneFloatRangeComp(int comp, boolean copy)
+        throws VisADException
+    {
+        if (materialized)
+            return super.unpackOneFloatRangeComp(comp, copy);
+
+        double[]        values = readComponent(comp);
+        float[]         range = new float[values.length];
+
+        for (int j = 0; j < values.length; ++j)
+            range[j] = (float)values[j];
+
+        return range;
+    }
+
+
+    public void
+    unpackValues(int comp, int start, double[] values)
+        throws VisADException
+    {
+        if (materialized)
+            unpackStoredValues(comp, start, values);
+        else
+            System.arraycopy(readComponent(comp), start, values, 0,
+                values.length);
+    }
+
+
+    protected double[]
+    unpackValues(int s_index)
+        throws VisADException
+    {
+        if (materialized)
+            return super.unpackValues(s_index);
+
+        return readSample(s_index);
+    }
+
+
+    protected float[]
+    unpackFloats(int s_index)
+        throws VisADException
+    {
+        if (materialized)
+            return super.unpackFloats(s_index);
+
+        double[]        values = readSample(s_index);
+        float[]         range = new float[TupleDimension];
+
+        for (int i = 0; i < TupleDimension; ++i)
+            range[i] = (float)values[i];
+
+        return range;
+    }
+
+
+    /**
+     * Returns <code>false</code> until the values are in memory, so that
+     * resampling reads only the tiles that contain the samples it uses.
+     */
+    protected boolean
+    unpacksForResample()
+    {
+        return materialized;
+    }
+
+
+    public byte[][]
+    grabBytes()
+    {
+        return materialized ? super.grabBytes() : null;
+    }
+
+
+    public void
+    setSample(int index, Data range)
+        throws VisADException, RemoteException
+    {
+        materialize();
+        super.setSample(index, range);
+    }
+
+
+    public void
+    setSamples(int start, double[][] range)
+        throws VisADException, RemoteException
+    {
+        materialize();
+        super.setSamples(start, range);
+    }
+
+
+    public void
+    setSamples(int[] indices, double[][] range)
+        throws VisADException, RemoteException
+    {
+        materialize();
+        super.setSamples(indices, range);
+    }
+
+
+    public void
+    setSamples(double[][] range, ErrorEstimate[] errors, boolean copy)
+        throws VisADException, RemoteException
+    {
+        synchronized (lock)
+        {
+            materialized = true;
+            super.setSamples(range, errors, copy);
+        }
+    }
+
+
+    public void
+    setSamples(float[][] range, ErrorEstimate[] errors, boolean copy)
+        throws VisADException, RemoteException
+    {
+        synchronized (lock)
+        {
+            materialized = true;
+            super.setSamples(range, errors, copy);
+        }
+    }
+
+
+    public void
+    setPackedSamples(int comp, short[] values, boolean copy)
+        throws VisADException, RemoteException
+    {
+        materialize();
+        super.setPackedSamples(comp, values, copy);
+    }
+
+
+    public void
+    setPackedSamples(int comp, byte[] values, boolean copy)
+        throws VisADException, RemoteException
+    {
+        materialize();
+        super.setPackedSamples(comp, values, copy);
+    }
+
+
+    /**
+     * Clones this instance.  Until the values are read into memory, the clone
+     * shares the netCDF dataset and the cached tiles of this instance.
+     *
+     * @return                  A clone of this instance.
+     */
+    public Object
+    clone()
+    {
+        if (materialized)
+            return super.clone();
+
+        try
+        {
+            HyperslabFlatField  clone =
+                new HyperslabFlatField(context, (FunctionType)getType(),
+                    this);
+            clone.setRangeErrors(getRangeErrors());
+            return clone;
+        }
+        catch (VisADException e)
+        {
+            throw new RuntimeException(e.toString());
+        }
+    }
+
+
+    /**
+     * Constructs a clone of a HyperslabFlatField whose values aren't in
+     * memory.
+     */
+    private
+    HyperslabFlatField(Context context, FunctionType type,
+        HyperslabFlatField that)
+        throws VisADException
+    {
+        super(type, that.getDomainSet(), that.RangeCoordinateSystem,
+            that.RangeCoordinateSystems, that.getRangeSets(), that.RangeUnits);
+        this.context = context;
+        reals = that.reals;
+        lengths = that.lengths;
+        tileLengths = that.tileLengths;
+        source = that.source;
+        clearMissing();
+    }
+
+
+    public boolean
+    equals(Object obj)
+    {
+        if (!(obj instanceof FlatField))
+            return false;
+
+        if (obj instanceof HyperslabFlatField)
+        {
+            HyperslabFlatField  that = (HyperslabFlatField)obj;
+
+            if (source == that.source && !materialized && !that.materialized)
+                return super.equals(obj);
+
+            try
+            {
+                that.materialize();
+            }
+            catch (Exception e)
+            {
+                return false;
+            }
+        }
+
+        try
+        {
+            materialize();
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+
+        return super.equals(obj);
+    }
+
+
+    public int
+    hashCode()
+    {
+        return super.hashCode();
+    }
+
+
+    /**
+     * The key of a cached tile.
+     */
+    private static final class
+    TileKey
+    {
+        private final Object    source;
+        private final int       tile;
+
+        TileKey(Object source, int tile)
+        {
+            this.source = source;
+            this.tile = tile;
+        }
+
+        public boolean
+        equals(Object obj)
+        {
+            if (!(obj instanceof TileKey))
+                return false;
+            TileKey     that = (TileKey)obj;
+            return source == that.source && tile == that.tile;
+        }
+
+        public int
+        hashCode()
+        {
+            return System.identityHashCode(source) * 31 + tile;
+        }
+    }
+
+
+    /**
+     * Returns the range sets of a virtual FlatField.
+     */
+    private static Set[]
+    getRangeSets(VirtualFlatField virtualField)
+    {
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+        Set[]           rangeSets = new Set[rangeTuple.size()];
+
+        for (int i = 0; i < rangeSets.length; ++i)
+            rangeSets[i] = ((VirtualScalar)rangeTuple.get(i)).getRangeSet();
+
+        return rangeSets;
+    }
+
+
+    /**
+     * Returns the range units of a virtual FlatField.
+     */
+    private static Unit[]
+    getRangeUnits(VirtualFlatField virtualField)
+    {
+        VirtualTuple    rangeTuple = virtualField.getRangeTuple();
+        Unit[]          rangeUnits = new Unit[rangeTuple.size()];
+
+        for (int i = 0; i < rangeUnits.length; ++i)
+            rangeUnits[i] = ((VirtualScalar)rangeTuple.get(i)).getUnit();
+
+        return rangeUnits;
+    }
+}
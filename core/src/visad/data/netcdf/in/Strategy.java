@@ -39,6 +39,12 @@ public abstract class Strategy
      */
     public static final Strategy IN_MEMORY;
 
+    /**
+     * An import strategy that only tries the {@link HyperslabStrategy}
+     * strategy.
+     */
+    public static final Strategy HYPERSLAB_FLAT_FIELDS;
+
     /**
      * The default import strategy.  The details of this strategy are 
      * unspecified and subject to change.  Currently, it is identical to the
@@ -65,6 +71,7 @@ public abstract class Strategy
                 FileStrategy.instance(),
                 MERGED_FILE_FLAT_FIELDS,
             });
+        HYPERSLAB_FLAT_FIELDS = HyperslabStrategy.instance();
         DEFAULT = MERGED_FILE_FLAT_FIELDS;
     }
 
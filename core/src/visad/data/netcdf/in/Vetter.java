@@ -25,6 +25,11 @@ import visad.data.in.ValueVetter;
 final class
 Vetter
 {
+    /**
+     * The number of packed values vetted at a time.
+     */
+    private static final int	BLOCK_SIZE = 4096;
+
     /**
      * The object that vets the raw data.
      */
@@ -60,6 +65,16 @@ Vetter
      */
     private double		fill;
 
+    /**
+     * The scale factor for unpacking.
+     */
+    private double		scale = 1;
+
+    /**
+     * The offset for unpacking.
+     */
+    private double		offset = 0;
+
 
     /**
      * Constructs from nothing.  Protected to ensure use by subclasses
@@ -167,10 +182,10 @@ Vetter
 	 */
 	{
 	    attr = var.getAttribute("scale_factor");
-	    double	scale =
+	    scale =
 		attr == null ? 1 : attr.getNumericValue().doubleValue();
 	    attr = var.getAttribute("add_offset");
-	    double	offset =
+	    offset =
 		attr == null ? 0 : attr.getNumericValue().doubleValue();
 	    if (scale == scale && scale != 1 && offset == offset && offset != 0)
 	    {
@@ -243,6 +258,24 @@ Vetter
     }
 
 
+    /**
+     * Returns the unpacked value of a netCDF value, ignoring whether or not
+     * it's valid.
+     *
+     * @param value	The netCDF value.
+     * @return		The unpacked value.
+     */
+    double
+    unpack(double value)
+    {
+	if (scale == scale && scale != 1)
+	    value *= scale;
+	if (offset == offset && offset != 0)
+	    value += offset;
+	return value;
+    }
+
+
     /**
      * Vets the given float values.
      *
@@ -269,4 +302,60 @@ Vetter
     {
 	ranger.process(unpacker.process(vetter.process(values)));
     }
+
+
+    /**
+     * Vets the given packed short values.
+     *
+     * @param values	The netCDF values to be vetted.
+     * @param missing	The value for invalid values.
+     * @postcondition	All values in <code>values</code> that {@link
+     *			#vet(double[])} would replace with NaN's have been
+     *			replaced with <code>missing</code>.
+     */
+    public void
+    vet(short[] values, short missing)
+    {
+	double[]	block = new double[Math.min(values.length, BLOCK_SIZE)];
+	for (int start = 0; start < values.length; start += block.length)
+	{
+	    int		n = Math.min(block.length, values.length - start);
+	    if (n < block.length)
+		block = new double[n];
+	    for (int i = 0; i < n; ++i)
+		block[i] = values[start + i];
+	    vet(block);
+	    for (int i = 0; i < n; ++i)
+		if (block[i] != block[i])
+		    values[start + i] = missing;
+	}
+    }
+
+
+    /**
+     * Vets the given packed byte values.
+     *
+     * @param values	The netCDF values to be vetted.
+     * @param missing	The value for invalid values.
+     * @postcondition	All values in <code>values</code> that {@link
+     *			#vet(double[])} would replace with NaN's have been
+     *			replaced with <code>missing</code>.
+     */
+    public void
+    vet(byte[] values, byte missing)
+    {
+	double[]	block = new double[Math.min(values.length, BLOCK_SIZE)];
+	for (int start = 0; start < values.length; start += block.length)
+	{
+	    int		n = Math.min(block.length, values.length - start);
+	    if (n < block.length)
+		block = new double[n];
+	    for (int i = 0; i < n; ++i)
+		block[i] = values[start + i];
+	    vet(block);
+	    for (int i = 0; i < n; ++i)
+		if (block[i] != block[i])
+		    values[start + i] = missing;
+	}
+    }
 }
@@ -630,16 +630,25 @@ public abstract class View
         else
         {
             RealType    type = getRealType(var);
+            /*
+             * The sets of integer variables are of the unpacked values,
+             * with one point per packed value, so that the set index of a
+             * value is its packed value less the smallest packed value.
+             */
             if (cl.equals(byte.class))
             {
+                Vetter  vetter = getVetter(var);
                 set = new Linear1DSet(type,
-                                      Byte.MIN_VALUE+1, Byte.MAX_VALUE,
+                                      vetter.unpack(Byte.MIN_VALUE+1),
+                                      vetter.unpack(Byte.MAX_VALUE),
                                       Byte.MAX_VALUE - Byte.MIN_VALUE);
             }
             else if (cl.equals(short.class))
             {
+                Vetter  vetter = getVetter(var);
                 set = new Linear1DSet(type,
-                                      Short.MIN_VALUE+1, Short.MAX_VALUE,
+                                      vetter.unpack(Short.MIN_VALUE+1),
+                                      vetter.unpack(Short.MAX_VALUE),
                                       Short.MAX_VALUE - Short.MIN_VALUE);
             }
             else if (cl.equals(int.class))
@@ -659,8 +668,10 @@ public abstract class View
                 long    maxValid = (long)vetter.maxValid();
                 long    length  = maxValid - minValid + 1;
                 set = length <= Integer.MAX_VALUE
-                            ? (SimpleSet)(new Linear1DSet(type, minValid,
-                                            maxValid, (int)length))
+                            ? (SimpleSet)(new Linear1DSet(type,
+                                            vetter.unpack(minValid),
+                                            vetter.unpack(maxValid),
+                                            (int)length))
                             : (SimpleSet)(new FloatSet(type,
                                             (CoordinateSystem)null,
                                             new Unit[] {
@@ -136,6 +136,37 @@ VirtualReal
     public double[]
     getDoubles(Context context)
         throws IOException, VisADException
+    {
+        int[]   ioOrigin = new int[lengths.length];
+        int[]   ioShape = new int[lengths.length];
+        double[]        values =
+            new double[getShape(context, ioOrigin, ioShape)];
+
+        toArray(getVariable(), values, ioOrigin, ioShape);
+
+        vetter.vet(values);
+
+        return values;
+    }
+
+
+    /**
+     * Gets the double values of a hyperslab of this virtual, data object at
+     * a given context.
+     *
+     * @param context           The context.
+     * @param origin            The origin of the hyperslab in the dimensions
+     *                          of the netCDF variable that follow the
+     *                          context.
+     * @param shape             The shape of the hyperslab in the same
+     *                          dimensions.
+     * @return                  The double values of the hyperslab.
+     * throws VisADException    Couldn't create necessary VisAD object.
+     * throws IOException       I/O failure.
+     */
+    public double[]
+    getDoubles(Context context, int[] origin, int[] shape)
+        throws IOException, VisADException
     {
         int     rank = lengths.length;
         int[]   ioOrigin = new int[rank];
@@ -147,14 +178,13 @@ VirtualReal
         for (int i = 0; i < ioContext.length; ++i)
             ioShape[i] = 1;
 
+        System.arraycopy(origin, 0, ioOrigin, ioContext.length, origin.length);
+        System.arraycopy(shape, 0, ioShape, ioContext.length, shape.length);
+
         int     total = 1;
 
-        for (int i = ioContext.length; i < rank; ++i)
-        {
-            ioOrigin[i] = 0;
-            ioShape[i] = lengths[i];
-            total *= lengths[i];
-        }
+        for (int i = 0; i < shape.length; ++i)
+            total *= shape[i];
 
         double[]        values = new double[total];
 
@@ -166,6 +196,126 @@ VirtualReal
     }
 
 
+    /**
+     * Indicates if the values of this scalar can be obtained in packed
+     * form.  This is so for a byte or short netCDF variable whose range
+     * set has one point per packed value, starting at the smallest packed
+     * value plus one.
+     *
+     * @return                  <code>true</code> if and only if the values
+     *                          can be obtained in packed form.
+     */
+    public boolean
+    isPacked()
+    {
+        Class   cl = getVariable().getComponentType();
+        int     min;
+        int     max;
+
+        if (cl.equals(short.class))
+        {
+            min = Short.MIN_VALUE;
+            max = Short.MAX_VALUE;
+        }
+        else if (cl.equals(byte.class))
+        {
+            min = Byte.MIN_VALUE;
+            max = Byte.MAX_VALUE;
+        }
+        else
+        {
+            return false;
+        }
+
+        if (lengths.length == 0 || !(rangeSet instanceof Linear1DSet))
+            return false;
+
+        Linear1DSet     set = (Linear1DSet)rangeSet;
+
+        try
+        {
+            return set.getLength() == max - min &&
+                   set.getFirst() == vetter.unpack(min + 1) &&
+                   set.getLast() == vetter.unpack(max);
+        }
+        catch (VisADException e)
+        {
+            return false;
+        }
+    }
+
+
+    /**
+     * Gets the values corresponding to this virtual, data object at a
+     * given context in packed form.  Because of the range set that
+     * {@link #isPacked()} requires, the packed form of a valid value is
+     * the netCDF value itself; invalid values become the smallest value of
+     * the type.
+     *
+     * @return                  The packed values of this virtual, data
+     *                          object: a <code>short[]</code> or a
+     *                          <code>byte[]</code>.
+     * @throws VisADException   Couldn't create necessary VisAD object.
+     * @throws IOException      I/O failure.
+     */
+    public Object
+    getPacked(Context context)
+        throws IOException, VisADException
+    {
+        int[]   ioOrigin = new int[lengths.length];
+        int[]   ioShape = new int[lengths.length];
+        int     total = getShape(context, ioOrigin, ioShape);
+        Class   cl = getVariable().getComponentType();
+
+        if (cl.equals(short.class))
+        {
+            short[]     values = new short[total];
+            getVariable().toArray(values, ioOrigin, ioShape);
+            vetter.vet(values, Short.MIN_VALUE);
+            return values;
+        }
+        else
+        {
+            byte[]      values = new byte[total];
+            getVariable().toArray(values, ioOrigin, ioShape);
+            vetter.vet(values, Byte.MIN_VALUE);
+            return values;
+        }
+    }
+
+
+    /**
+     * Sets the I/O origin and shape of the values at a given context.
+     *
+     * @param context           The context.
+     * @param ioOrigin          The I/O origin (output).
+     * @param ioShape           The I/O shape (output).
+     * @return                  The number of values.
+     */
+    private int
+    getShape(Context context, int[] ioOrigin, int[] ioShape)
+    {
+        int     rank = lengths.length;
+        int[]   ioContext = context.getContext();
+
+        System.arraycopy(ioContext, 0, ioOrigin, 0, ioContext.length);
+
+        for (int i = 0; i < ioContext.length; ++i)
+            ioShape[i] = 1;
+
+        int     total = 1;
+
+        for (int i = ioContext.length; i < rank; ++i)
+        {
+            ioOrigin[i] = 0;
+            ioShape[i] = lengths[i];
+            total *= lengths[i];
+        }
+
+        return total;
+    }
+
+
     /**
      * Determines if this is a VirtualReal or not.
      *
@@ -207,6 +207,38 @@ VirtualScalar
         throw new RuntimeException();
     }
 
+    /**
+     * Indicates if the values of this scalar can be obtained in packed
+     * form by {@link #getPacked(Context)}.
+     *
+     * @return                  <code>true</code> if and only if the values
+     *                          can be obtained in packed form.
+     */
+    public boolean
+    isPacked()
+    {
+        return false;
+    }
+
+    /**
+     * Gets the values corresponding to this virtual, data object at a
+     * given context in the packed form of {@link
+     * visad.FlatField#setPackedSamples(int, short[], boolean)}.
+     *
+     * @return                  The packed values of this virtual, data
+     *                          object: a <code>short[]</code> or a
+     *                          <code>byte[]</code>.
+     * @throws VisADException   Couldn't create necessary VisAD object.
+     * @throws IOException      I/O failure.
+     * @throws RuntimeException  if class doesn't support this.
+     */
+    public Object
+    getPacked(Context context)
+        throws IOException, VisADException
+    {
+        throw new RuntimeException();
+    }
+
     /**
      * Gets data values of a netCDF variable and performs type conversion.
      *
@@ -0,0 +1,327 @@
+//
+// ByteLineReader.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * ByteLineReader splits an InputStream or a ByteBuffer (such as a
+ * mapped region of a file) into lines without decoding them, for
+ * TextAdapter's columnar reader.  Lines end at "\n", "\r"
+ * or "\r\n", as for BufferedReader.readLine().  The current line is
+ * buf[start] .. buf[end-1], and is only valid until the next call
+ * of next().<p>
+ *
+ * Lines are only split correctly for charsets in which the ASCII
+ * characters are single bytes that never occur inside other
+ * characters; see {@link #getCharset()}.
+ */
+final class ByteLineReader {
+
+  private final InputStream in;
+  private final ByteBuffer src;
+  private final Charset charset;
+
+  /** the buffer, and the current line within it */
+  byte[] buf;
+  int start, end;
+
+  /** unread bytes are buf[pos] .. buf[limit-1] */
+  private int pos, limit;
+
+  /** number of bytes moved out of the start of buf */
+  private long discarded = 0;
+  private boolean eof = false;
+
+  /** the last line ended with '\r', so skip a following '\n' */
+  private boolean skipLF = false;
+
+  ByteLineReader(InputStream in, Charset charset) {
+    this.in = in;
+    this.src = null;
+    this.charset = charset;
+    buf = new byte[65536];
+  }
+
+  ByteLineReader(ByteBuffer src, Charset charset) {
+    this.in = null;
+    this.src = src;
+    this.charset = charset;
+    buf = new byte[65536];
+  }
+
+  /**
+   * @return the default charset if lines of it can be split as bytes,
+   *         otherwise null
+   */
+  static Charset getCharset() {
+    Charset charset = Charset.defaultCharset();
+    if (!charset.name().equals("UTF-8") &&
+        charset.newEncoder().maxBytesPerChar() != 1.0f) {
+      return null;
+    }
+    byte[] ascii = new byte[128];
+    for (int i=0; i<ascii.length; i++) ascii[i] = (byte) i;
+    try {
+      if (!Arrays.equals(ascii, new String(ascii, "US-ASCII").getBytes(charset))) {
+        return null;
+      }
+    }
+    catch (IOException e) {
+      return null;
+    }
+    return charset;
+  }
+
+  /**
+   * advance to the next line
+   * @return false at the end of the input
+   */
+  boolean next() throws IOException {
+    if (skipLF) {
+      if (pos == limit) fill();
+      skipLF = false;
+      if (pos < limit && buf[pos] == '\n') pos++;
+    }
+    int scan = pos;
+    while (true) {
+      for (; scan<limit; scan++) {
+        byte b = buf[scan];
+        if (b == '\n' || b == '\r') {
+          start = pos;
+          end = scan;
+          pos = scan + 1;
+          skipLF = (b == '\r');
+          return true;
+        }
+      }
+      int n = scan - pos;
+      if (!fill()) {
+        if (n == 0) return false;
+        start = pos;
+        end = pos + n;
+        pos = end;
+        return true;
+      }
+      scan = pos + n;
+    }
+  }
+
+  /**
+   * @return the number of bytes of the input before the next line
+   */
+  long getPosition() {
+    return discarded + pos;
+  }
+
+  /** move unread bytes to the start of buf and read more after them */
+  private boolean fill() throws IOException {
+    if (eof) return false;
+    int n = limit - pos;
+    if (pos > 0) {
+      System.arraycopy(buf, pos, buf, 0, n);
+      discarded += pos;
+      pos = 0;
+      limit = n;
+    }
+    if (limit == buf.length) buf = Arrays.copyOf(buf, 2 * buf.length);
+    int count;
+    if (src != null) {
+      count = Math.min(src.remaining(), buf.length - limit);
+      if (count == 0) count = -1;
+      else src.get(buf, limit, count);
+    }
+    else {
+      do {
+        count = in.read(buf, limit, buf.length - limit);
+      } while (count == 0);
+    }
+    if (count < 0) {
+      eof = true;
+      return false;
+    }
+    limit += count;
+    return true;
+  }
+
+  /**
+   * @return the current line as a String
+   */
+  String getLine() {
+    return new String(buf, start, end - start, charset);
+  }
+
+  /**
+   * @return true if the current line is text, as for
+   *         TextAdapter.isText()
+   */
+  boolean isText() {
+    for (int i=start; i<end; i++) {
+      int b = buf[i];
+      if (b < 0) return TextAdapter.isText(getLine());
+      if ((b < ' ' && b != '\t' && b != 0x0B && b != '\f' &&
+           (b < 0x1C || b > 0x1F)) || b == 0x7F) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the current line is a comment, as for
+   *         TextAdapter.isComment()
+   */
+  boolean isComment() {
+    if (start == end) return true;
+    byte b = buf[start];
+    return b == '#' || b == '!' || b == '%';
+  }
+
+  /** remove leading and trailing blanks and control characters from
+      the current line, as String.trim() */
+  void trim() {
+    while (start < end && buf[start] >= 0 && buf[start] <= ' ') start++;
+    while (end > start && buf[end - 1] >= 0 && buf[end - 1] <= ' ') end--;
+  }
+
+  /**
+   * @return the index in buf of the first b in the current line,
+   *         or -1
+   */
+  int indexOf(byte b) {
+    for (int i=start; i<end; i++) {
+      if (buf[i] == b) return i;
+    }
+    return -1;
+  }
+
+  void close() throws IOException {
+    if (in != null) in.close();
+  }
+
+  /** exact powers of ten */
+  private static final double[] POWERS = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Parse a plain decimal number, [+-]digits[.digits][(e|E)[+-]digits],
+   * from b[s] .. b[e-1].  The result equals Double.parseDouble() of
+   * the same characters: numbers with more than 18 significant digits
+   * or a large exponent are passed to Double.parseDouble().
+   * @return the number, or NaN if the bytes are not a plain decimal
+   *         number
+   */
+  static double parseDouble(byte[] b, int s, int e) {
+    int i = s;
+    boolean negative = false;
+    if (i < e && (b[i] == '-' || b[i] == '+')) {
+      negative = (b[i] == '-');
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean any = false;
+    for (; i<e; i++) {
+      int d = b[i] - '0';
+      if (d < 0 || d > 9) break;
+      any = true;
+      if (digits > 0 || d != 0) {
+        if (++digits > 18) return slowParse(b, s, e);
+        mantissa = 10 * mantissa + d;
+      }
+    }
+    if (i < e && b[i] == '.') {
+      for (i++; i<e; i++) {
+        int d = b[i] - '0';
+        if (d < 0 || d > 9) break;
+        any = true;
+        scale--;
+        if (digits > 0 || d != 0) {
+          if (++digits > 18) return slowParse(b, s, e);
+          mantissa = 10 * mantissa + d;
+        }
+      }
+    }
+    if (!any) return Double.NaN;
+    if (i < e && (b[i] == 'e' || b[i] == 'E')) {
+      i++;
+      boolean negexp = false;
+      if (i < e && (b[i] == '-' || b[i] == '+')) {
+        negexp = (b[i] == '-');
+        i++;
+      }
+      if (i == e) return Double.NaN;
+      int exp = 0;
+      for (; i<e; i++) {
+        int d = b[i] - '0';
+        if (d < 0 || d > 9) return Double.NaN;
+        if (exp > 100000) return slowParse(b, s, e);
+        exp = 10 * exp + d;
+      }
+      scale += negexp ? -exp : exp;
+    }
+    if (i != e) return Double.NaN;
+
+    double value;
+    if (mantissa == 0) {
+      value = 0.0;
+    }
+    else if (scale == 0) {
+      value = mantissa;
+    }
+    // both the mantissa and the power of ten are exact doubles, so
+    // one multiply or divide is correctly rounded
+    else if (mantissa < (1L << 53) && scale > 0 && scale <= 22) {
+      value = mantissa * POWERS[scale];
+    }
+    else if (mantissa < (1L << 53) && scale < 0 && scale >= -22) {
+      value = mantissa / POWERS[-scale];
+    }
+    else {
+      return slowParse(b, s, e);
+    }
+    return negative ? -value : value;
+  }
+
+  private static double slowParse(byte[] b, int s, int e) {
+    char[] c = new char[e - s];
+    for (int i=0; i<c.length; i++) c[i] = (char) (b[s + i] & 0xff);
+    try {
+      return Double.parseDouble(new String(c));
+    }
+    catch (NumberFormatException ex) {
+      return Double.NaN;
+    }
+  }
+}
@@ -28,8 +28,14 @@ package visad.data.text;
 
 import java.io.IOException;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import visad.Set;
 
 import java.net.URL;
@@ -91,6 +97,29 @@ public class TextAdapter {
   private static final String BLANK = " ";
   private static final String BLANK_DELIM = "\\s+";
 
+  /** characters that cannot be a columnar reader delimiter, since
+      the delimiter is a regular expression */
+  private static final String REGEX_CHARS = "\\^$.|?*+()[]{}";
+
+  /** read numeric point data into primitive columns, rather than
+      through Strings and Tuples */
+  private static volatile boolean columnar =
+    Boolean.valueOf(System.getProperty("visad.data.text.columnar",
+                                       "true")).booleanValue();
+
+  /** number of threads reading the columns of a file */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.data.text.parallelism",
+                       Runtime.getRuntime().availableProcessors()).intValue();
+
+  /** smallest number of bytes read by one thread */
+  private static volatile int chunkSize =
+    Integer.getInteger("visad.data.text.chunksize", 16 << 20).intValue();
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
 
 
   private FlatField ff = null;
@@ -108,6 +137,9 @@ public class TextAdapter {
   Set[] rangeSets;
   double[] domainErrorEstimates;
   Unit[] domainUnits;
+  int[] domainPointer;
+  double[][] domainRanges;
+  boolean[] gotDomainRanges;
 
 
   int[][] hdrColumns;
@@ -125,6 +157,17 @@ public class TextAdapter {
      and do not try to create the field */
   private StreamProcessor streamProcessor;
 
+  /** if batchSize is positive, rows are read batchSize at a time and
+      passed to batchProcessor, or returned by nextField() if there is
+      no batchProcessor */
+  private BatchProcessor batchProcessor;
+  private int batchSize = 0;
+
+  /** state kept between batches */
+  private ByteLineReader batchLines;
+  private ColumnReader batchColumns;
+  private MathType batchType;
+
   /** Create a VisAD FlatField from a local Text (comma-, tab- or 
     * blank-separated values) ASCII file
     * @param filename name of local file.
@@ -286,6 +329,102 @@ public class TextAdapter {
 
 
 
+  /**
+   * Set whether numeric data are read with the columnar reader, which
+   * scans bytes and parses numbers without making Strings or Tuples.
+   * It is used for files whose range is all numeric (no Text) and not
+   * a raster, when no StreamProcessor is given, and gives the same
+   * Field as the line by line reader.  The default is the
+   * <code>visad.data.text.columnar</code> system property, or true.
+   * @param on true to use the columnar reader where possible
+   */
+  public static void setColumnar(boolean on) {
+    columnar = on;
+  }
+
+  /**
+   * @return true if the columnar reader is used where possible
+   */
+  public static boolean isColumnar() {
+    return columnar;
+  }
+
+  /**
+   * Set the number of threads the columnar reader uses for a file.
+   * The data lines of a file (read from a file name or a
+   * FileInputStream) of at least two chunks are split at line
+   * boundaries into chunks, which are mapped into memory and read
+   * into columns on their own threads, then joined in order.  Files
+   * with name=value lines among the data are read sequentially.
+   * The default is the <code>visad.data.text.parallelism</code>
+   * system property, or the number of processors.
+   * @param level number of threads; 1 (or less) reads sequentially
+   */
+  public static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  /**
+   * @return the number of threads the columnar reader uses for a file
+   */
+  public static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Set the smallest number of bytes of a file read by one thread.
+   * The default is the <code>visad.data.text.chunksize</code> system
+   * property, or 16 MB.
+   * @param size bytes per chunk
+   */
+  public static void setChunkSize(int size) {
+    chunkSize = Math.max(1, size);
+  }
+
+  /**
+   * @return the smallest number of bytes of a file read by one thread
+   */
+  public static int getChunkSize() {
+    return chunkSize;
+  }
+
+  /** Read numeric data from a (comma-, tab- or blank-separated values)
+    * ASCII stream in batches of rows, so that an unbounded stream can
+    * be read in bounded memory.  If batchProcessor is not null, the
+    * whole stream is read by this constructor and each batch is passed
+    * to it; otherwise the constructor only reads the header lines, and
+    * each call of {@link #nextField()} reads the next batch.  The range
+    * must be numeric and not a raster.
+    * @param inputStream The input stream to read from
+    * @param delimiter the delimiter
+    * @param map the VisAD "MathType" as a string defining the FlatField
+    * @param params the list of parameters used to define what columns
+    *  of the text file correspond to what MathType parameters.
+    * @param properties properties
+    * @param skipPatternString if non-null then skip any line that matches this pattern
+    * @param batchProcessor processor of each batch, or null
+    * @param batchSize maximum number of rows in a batch
+    * @exception IOException if there was a problem reading the file.
+    * @exception VisADException if an unexpected problem occurs.
+    */
+  public TextAdapter(InputStream inputStream, String delimiter, String map,
+                     String params, Hashtable properties,
+                     String skipPatternString, BatchProcessor batchProcessor,
+                     int batchSize)
+                         throws IOException, VisADException {
+    if (batchSize < 1) {
+      throw new VisADException("TextAdapter: batchSize must be positive");
+    }
+    this.batchProcessor = batchProcessor;
+    this.batchSize = batchSize;
+    DELIM = delimiter;
+    this.properties = properties;
+    if(skipPatternString!=null && skipPatternString.length()>0) {
+        skipPattern = Pattern.compile(skipPatternString);
+    }
+    readit(inputStream, map, params);
+  }
+
   public static  String getDelimiter(String filename) {
     if(filename == null) return null;
     filename = filename.trim().toLowerCase();
@@ -331,14 +470,32 @@ public class TextAdapter {
 
     if (debug) System.out.println("####   Text Adapter v2.x running");
 
-    BufferedReader bis = new BufferedReader(new InputStreamReader(is));
+    BufferedReader bis = null;
+    ByteLineReader lines = null;
+    java.nio.charset.Charset charset =
+      (columnar || batchSize > 0) ? ByteLineReader.getCharset() : null;
+    if (batchSize > 0 && charset == null) {
+      throw new VisADException("TextAdapter: cannot read batches of " +
+                               java.nio.charset.Charset.defaultCharset());
+    }
+    FileChannel channel = null;
+    long streamStart = 0;
+    if (charset != null) {
+      lines = new ByteLineReader(is, charset);
+      if (is instanceof FileInputStream) {
+        channel = ((FileInputStream) is).getChannel();
+        streamStart = channel.position();
+      }
+    } else {
+      bis = new BufferedReader(new InputStreamReader(is));
+    }
 
     // mapping defines how the names are mapped
     // for example:   (x,y) => (one, two, three)
 
     String maps = null;
     if (map == null) {
-      maps = readLine(bis);
+      maps = nextLine(bis, lines);
       if(maps != null) {
           maps = maps.trim();
       }
@@ -365,7 +522,7 @@ public class TextAdapter {
 
     String hdr = null;
     if (params == null) {
-      hdr = readLine(bis);
+      hdr = nextLine(bis, lines);
     } else {
       hdr = params;
     }
@@ -763,9 +920,9 @@ public class TextAdapter {
 // and if none of the domain components appear in the list, then
 // they are computed as name(0:N-1)
 
-    int[] domainPointer = new int[numDom];
-    double[][] domainRanges = new double[3][numDom]; // min, max, numb
-    boolean[] gotDomainRanges = new boolean[numDom];
+    domainPointer = new int[numDom];
+    domainRanges = new double[3][numDom]; // min, max, numb
+    gotDomainRanges = new boolean[numDom];
     domainErrorEstimates = new double[numDom];
     domainUnits = new Unit[numDom];
     rangeErrorEstimates = new double[numRng];
@@ -932,31 +1089,42 @@ public class TextAdapter {
 
     Real[] prototypeReals = new Real[nhdr];
     TupleType tupleType = null;
-    int index;
     int lineCnt = 0;
-    while (true) {
-      String line = readLine(bis);
+
+    // batches are read into the same columns each time
+    if (batchSize > 0) {
+      if (!canReadColumns(dataDelim, isRaster, rangeType, nhdr, numRng)) {
+        throw new VisADException("TextAdapter: only numeric data that are " +
+                                 "not rasters can be read in batches");
+      }
+      batchColumns = new ColumnReader(dataDelim, nhdr, numDom, numRng,
+                                      charset, false, batchSize);
+      batchLines = lines;
+      batchType = mt;
+      if (batchProcessor != null) {
+        while (readBatch()) {
+          batchProcessor.processBatch(batchColumns.domain, batchColumns.range,
+                                      batchColumns.count);
+        }
+      }
+      return;
+    }
+
+    // numeric data go straight into columns
+    ColumnReader columns = null;
+    if (lines != null && canReadColumns(dataDelim, isRaster, rangeType, nhdr, numRng)) {
+      columns = readColumns(lines, channel, streamStart, dataDelim, nhdr,
+                            numDom, numRng, charset);
+    }
+
+    // otherwise read line by line
+    while (columns == null) {
+      String line = nextLine(bis, lines);
       if (debug) System.out.println("read:"+line);
       if (line == null) break;
       if(skipPattern!=null && skipPattern.matcher(line).find()) continue;
-      if((index=line.indexOf("="))>=0) {  // fixed value
-        String name  = line.substring(0,index).trim();
-        String value  = line.substring(index+1).trim();
-        boolean foundIt = false;
-        for(int paramIdx=0;paramIdx<infos.length;paramIdx++) {
-            if(infos[paramIdx].isParam(name)) {
-                if(infos[paramIdx].fixedValue==null) {
-                    numHdrValues++;
-                }
-                infos[paramIdx].fixedValue = value;
-                foundIt = true;
-                break;
-            }
-        }
-        if(!foundIt) {
-           throw new VisADException(
-                    "TextAdapter: Cannot find field with name:" +name +" from line:" + line);
-        }
+      if(line.indexOf("=")>=0) {  // fixed value
+        if (setFixedValue(line)) numHdrValues++;
         continue;
       }
 
@@ -1198,10 +1366,11 @@ public class TextAdapter {
 
 
     if (streamProcessor!=null) {
-	bis.close();
+        close(bis, lines);
         return;
     }
-    int numSamples = rangeValues.size(); // # lines of data
+    int numSamples = (columns != null) ? columns.count
+                                       : rangeValues.size(); // # lines of data
 
     if (numSamples == 0) {
         throw new VisADException("No data available to read");
@@ -1219,6 +1388,71 @@ public class TextAdapter {
     }
 // ***********************************************************
 
+    double[][] domainColumns;
+    if (columns != null) {
+      domainColumns = columns.getDomain();
+    } else {
+      domainColumns = new double[numDom][numSamples];
+      for (int i=0; i<numSamples; i++) {
+        double[] d = (double[]) domainValues.get(i);
+        for (int k=0; k<numDom; k++) domainColumns[k][i] = d[k];
+      }
+    }
+
+    double[][]a;
+    Tuple[] at = new Tuple[numSamples];
+    
+    // if this is a raster then the samples are in a slightly
+    // difielderent form ...
+
+    if (columns != null) {
+      a = columns.getRange();
+    } else if (isRaster) {
+      a = new double[numRng][numSamples * numElements];
+      int samPointer = 0;
+      for (int i=0; i<numSamples; i++) {
+        double[] rs = (double[])(rangeValues.get(i));
+        for (int j=0; j<numElements; j++) {
+          a[0][samPointer] = rs[j];
+          samPointer ++;
+        }
+      }
+    } else {
+      a = new double[numRng][numSamples * numElements];
+      for (int i=0; i<numSamples; i++) {
+        double[] rs = (double[])(rangeValues.get(i));
+        for (int j=0; j<numRng; j++) {
+          a[j][i] = rs[j];
+        }
+        if (!tupleValues.isEmpty()) {
+          at[i] = (Tuple) tupleValues.get(i); 
+        }
+      }
+    }
+
+    field = makeField(mt, numSamples, numElements, domainColumns, a, at);
+
+    close(bis, lines);
+
+  }
+
+  /**
+   * Make the Field of the samples read.
+   * @param mt the FunctionType of the Field
+   * @param numSamples number of lines of data
+   * @param numElements number of range values per line of a raster,
+   *        otherwise 1
+   * @param domainColumns domain values of each line, by component
+   * @param a range values, by component
+   * @param at range Tuples of each line, if the range is not all
+   *        numeric
+   */
+  private Field makeField(MathType mt, int numSamples, int numElements,
+                          double[][] domainColumns, double[][] a, Tuple[] at)
+          throws VisADException, RemoteException {
+    RealTupleType domType = ((FunctionType) mt).getDomain();
+    int numDom = domType.getDimension();
+    int numRng = rangeSets.length;
 
     // make Linear1DSets for each possible domain component
 
@@ -1263,7 +1497,7 @@ public class TextAdapter {
     if (numDom == 1) {  // for 1-D domains
 
       if (lset[0] == null) {
-        domain = createAppropriate1DDomain(domType, numSamples, domainValues);
+        domain = createAppropriate1DDomain(domType, numSamples, domainColumns[0]);
 
       } else {
         domain = lset[0];
@@ -1279,7 +1513,7 @@ public class TextAdapter {
 
         for (int k = 0; k < numDom; k++) {
           if (lset[k] == null) {
-            samples[k] = (getDomSamples(k, numSamples, domainValues))[0];
+            samples[k] = (getDomSamples(k, numSamples, domainColumns))[0];
           } else {
             samples[k] = (lset[k].getSamples())[0];
           }
@@ -1299,7 +1533,7 @@ public class TextAdapter {
 
         for (int k = 0; k < numDom; k++) {
           if (lset[k] == null) {
-            samples[k] = (getDomSamples(k, numSamples, domainValues))[0];
+            samples[k] = (getDomSamples(k, numSamples, domainColumns))[0];
           } else {
             samples[k] = (lset[k].getSamples())[0];
           }
@@ -1326,7 +1560,7 @@ public class TextAdapter {
 
         for (int k=0; k<numDom; k++) {
           if (lset[k] == null) {
-            samples[k] = (getDomSamples(k, numSamples, domainValues))[0];
+            samples[k] = (getDomSamples(k, numSamples, domainColumns))[0];
           } else {
             samples[k] = (lset[k].getSamples())[0];
           }
@@ -1338,6 +1572,8 @@ public class TextAdapter {
 
 
 
+    FlatField ff = null;
+    Field field = null;
     try {
       ff = new FlatField((FunctionType) mt, domain, 
                                 null, null, rangeSets, rangeUnits);
@@ -1363,35 +1599,6 @@ public class TextAdapter {
     }
 //*************************************************
 
-    double[][]a = new double[numRng][numSamples * numElements];
-    Tuple[] at = new Tuple[numSamples];
-    
-    // if this is a raster then the samples are in a slightly
-    // difielderent form ...
-
-    if (isRaster) {
-      int samPointer = 0;
-      for (int i=0; i<numSamples; i++) {
-        double[] rs = (double[])(rangeValues.get(i));
-        for (int j=0; j<numElements; j++) {
-          a[0][samPointer] = rs[j];
-          samPointer ++;
-        }
-      }
-    } else {
-      for (int i=0; i<numSamples; i++) {
-        double[] rs = (double[])(rangeValues.get(i));
-        for (int j=0; j<numRng; j++) {
-          a[j][i] = rs[j];
-        }
-        if (!tupleValues.isEmpty()) {
-          at[i] = (Tuple) tupleValues.get(i); 
-        }
-      }
-    }
-
-
-
 // set samples
     if (debug) System.out.println("about to field.setSamples");
     try {
@@ -1429,8 +1636,218 @@ public class TextAdapter {
       System.out.println("field = "+field);
     }
 
-    bis.close();
+    return field;
+  }
+
+  /** read the next line that is not a comment from bis, or from
+      lines if it is not null */
+  private String nextLine(BufferedReader bis, ByteLineReader lines)
+          throws IOException {
+    if (lines == null) return readLine(bis);
+    while (lines.next()) {
+      String line = lines.getLine();
+      if (!isText(line)) return null;
+      if (isComment(line)) continue;
+      return line.trim();
+    }
+    return null;
+  }
+
+  private void close(BufferedReader bis, ByteLineReader lines)
+          throws IOException {
+    if (lines != null) lines.close();
+    else bis.close();
+  }
+
+  /**
+   * Set a fixed value from a line of the form name=value.
+   * @return true if the parameter did not have a fixed value before
+   */
+  private boolean setFixedValue(String line) throws VisADException {
+    int index = line.indexOf("=");
+    String name  = line.substring(0,index).trim();
+    String value  = line.substring(index+1).trim();
+    for(int paramIdx=0;paramIdx<infos.length;paramIdx++) {
+        if(infos[paramIdx].isParam(name)) {
+            boolean isNew = (infos[paramIdx].fixedValue==null);
+            infos[paramIdx].fixedValue = value;
+            return isNew;
+        }
+    }
+    throw new VisADException(
+             "TextAdapter: Cannot find field with name:" +name +" from line:" + line);
+  }
+
+  /**
+   * Read the data lines into columns, in chunks on several threads if
+   * the data come from a large enough file.
+   * @param lines reader positioned at the first line of data
+   * @param channel the file being read, or null
+   * @param streamStart position in channel where lines started
+   */
+  private ColumnReader readColumns(ByteLineReader lines, FileChannel channel,
+                                   long streamStart, String dataDelim,
+                                   int nhdr, int numDom, int numRng,
+                                   java.nio.charset.Charset charset)
+          throws IOException, VisADException {
+    ColumnReader first = new ColumnReader(dataDelim, nhdr, numDom, numRng,
+                                          charset, false, 1024);
+    int level = parallelism;
+    if (channel == null || level <= 1) {
+      first.read(lines, -1);
+      return first;
+    }
+
+    // the first line of data sets the delimiter, and everything after
+    // it is read in chunks
+    if (!first.read(lines, 1)) return first;
+    long start = streamStart + lines.getPosition();
+    long end = channel.size();
+    int size = chunkSize;
+    if (end - start < 2 * (long) size) {
+      first.read(lines, -1);
+      return first;
+    }
+    int nchunks = (int) Math.max(Math.min(4 * level, (end - start) / size),
+                                 (end - start) / (1 << 30) + 1);
+    long[] bounds = new long[nchunks + 1];
+    bounds[0] = start;
+    for (int i=1; i<nchunks; i++) {
+      long b = start + (end - start) * i / nchunks;
+      bounds[i] = findLineStart(channel, Math.max(b, bounds[i - 1]), end);
+    }
+    bounds[nchunks] = end;
+
+    final List<Chunk> tasks = new ArrayList<Chunk>(nchunks);
+    for (int i=0; i<nchunks; i++) {
+      if (bounds[i + 1] > bounds[i]) {
+        tasks.add(new Chunk(channel, bounds[i], bounds[i + 1],
+                            new ColumnReader(first.delim, nhdr, numDom,
+                                             numRng, charset, true, 1024)));
+      }
+    }
+    getPool(level).invoke(new RecursiveAction() {
+      protected void compute() {
+        ForkJoinTask.invokeAll(tasks);
+      }
+    });
+
+    List<ColumnReader> parts = new ArrayList<ColumnReader>();
+    for (Chunk task : tasks) {
+      if (task.exception != null) {
+        if (task.exception instanceof VisADException) {
+          throw (VisADException) task.exception;
+        }
+        if (task.exception instanceof IOException) {
+          throw (IOException) task.exception;
+        }
+        throw (RuntimeException) task.exception;
+      }
+      if (task.columns.sawFixedValue) {
+        // a name=value line changes the values of the lines after
+        // it, so read everything after the first line in order
+        first.read(lines, -1);
+        return first;
+      }
+      parts.add(task.columns);
+      if (task.columns.stopped) break;
+    }
+    first.append(parts);
+    return first;
+  }
+
+  /**
+   * @return the position just after the first line end at or after
+   *         pos - 1, or end if there is none
+   */
+  private static long findLineStart(FileChannel channel, long pos, long end)
+          throws IOException {
+    if (pos <= 0) return 0;
+    java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(65536);
+    long p = pos - 1;
+    while (p < end) {
+      buf.clear();
+      int n = channel.read(buf, p);
+      if (n <= 0) break;
+      for (int i=0; i<n; i++) {
+        byte b = buf.get(i);
+        if (b == '\n' || b == '\r') return p + i + 1;
+      }
+      p += n;
+    }
+    return end;
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+  /** reading of the lines in channel from start to end-1 into columns */
+  private class Chunk extends RecursiveAction {
+    private final FileChannel channel;
+    private final long start, end;
+    final ColumnReader columns;
+    Exception exception = null;
+
+    Chunk(FileChannel channel, long start, long end, ColumnReader columns) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.columns = columns;
+    }
 
+    protected void compute() {
+      try {
+        java.nio.ByteBuffer buf =
+          channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        columns.read(new ByteLineReader(buf, columns.charset), -1);
+      }
+      catch (IOException e) {
+        exception = e;
+      }
+      catch (VisADException e) {
+        exception = e;
+      }
+      catch (RuntimeException e) {
+        exception = e;
+      }
+    }
+  }
+
+  /**
+   * The columnar reader handles numeric ranges that are not rasters,
+   * with a delimiter that is blanks or a single plain character, and
+   * every range component read from some column.
+   */
+  private boolean canReadColumns(String dataDelim, boolean isRaster,
+                                 TupleType rangeType, int nhdr, int numRng)
+          throws VisADException {
+    if (streamProcessor != null || onlyReadOneLine || isRaster) return false;
+    if (dataDelim != null && !dataDelim.equals(BLANK_DELIM) &&
+        (dataDelim.length() != 1 || dataDelim.charAt(0) >= 128 ||
+         REGEX_CHARS.indexOf(dataDelim.charAt(0)) >= 0)) {
+      return false;
+    }
+    boolean[] gotRange = new boolean[numRng];
+    for (int i=0; i<nhdr; i++) {
+      if (values_to_index[0][i] == -1 && values_to_index[1][i] != -1) {
+        gotRange[values_to_index[1][i]] = true;
+      }
+    }
+    for (int k=0; k<numRng; k++) {
+      if (!gotRange[k] || !(rangeType.getComponent(k) instanceof RealType)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   // munges a pseudo MathType string into something legal
@@ -1476,7 +1893,7 @@ public class TextAdapter {
     return t;
   }
 
-  private static final boolean isText(String s)
+  static final boolean isText(String s)
   {
     final int len = (s == null ? -1 : s.length());
 
@@ -1530,7 +1947,11 @@ public class TextAdapter {
           sdf.applyPattern(format);
           formats.put(key,sdf);
       }
-      Date d = sdf.parse(string);
+      // the cached formats may be used by several threads
+      Date d;
+      synchronized (sdf) {
+        d = sdf.parse(string);
+      }
       dt = new DateTime(d);
       //       dt = visad.DateTime.createDateTime(string, format, TimeZone.getTimeZone(tz));
     } catch (VisADException e) {}
@@ -1612,11 +2033,10 @@ public class TextAdapter {
   }
 
   // get the samples from the ArrayList.
-  float[][] getDomSamples(int comp, int numDomValues, ArrayList domValues) {
+  float[][] getDomSamples(int comp, int numDomValues, double[][] domValues) {
     float [][] a = new float[1][numDomValues];
     for (int i=0; i<numDomValues; i++) {
-      double[] d = (double[])(domValues.get(i));
-      a[0][i] = (float)d[comp];
+      a[0][i] = (float)domValues[comp][i];
     }
     return a;
   }
@@ -1629,12 +2049,52 @@ public class TextAdapter {
     return field;
   }
 
+  /**
+   * Read the next batch of rows, for a TextAdapter made with a
+   * batchSize and no BatchProcessor.  Each batch is made into a Field
+   * as if its rows were a file of their own.  The input is closed
+   * after the last batch.
+   * @return a FlatField of up to batchSize rows, or null at the end
+   *         of the input
+   * @exception IOException if there was a problem reading the input.
+   * @exception VisADException if an unexpected problem occurs.
+   */
+  public Field nextField() throws IOException, VisADException {
+    if (batchProcessor != null || !readBatch()) return null;
+    int count = batchColumns.count;
+    return makeField(batchType, count, 1, batchColumns.getDomain(),
+                     batchColumns.getRange(), new Tuple[count]);
+  }
+
+  /**
+   * Close the input of a TextAdapter made with a batchSize, before
+   * all of its batches have been read.
+   * @exception IOException if there was a problem closing the input.
+   */
+  public void close() throws IOException {
+    if (batchLines != null) {
+      batchLines.close();
+      batchLines = null;
+    }
+  }
+
+  /**
+   * Read up to batchSize rows into batchColumns.
+   * @return false if there were no more rows
+   */
+  private boolean readBatch() throws IOException, VisADException {
+    if (batchLines == null) return false;
+    batchColumns.count = 0;
+    if (!batchColumns.read(batchLines, batchSize)) close();
+    return batchColumns.count > 0;
+  }
+
   /**
    * Returns an appropriate 1D domain.
    *
    * @param type the math-type of the domain
    * @param numSamples the number of samples in the domain
-   * @param domValues domain values are extracted from this array list.
+   * @param domValues the domain values.
    *
    * @return a Linear1DSet if the domain samples form an arithmetic
    *   progression, a Gridded1DDoubleSet if the domain samples are ordered
@@ -1643,7 +2103,7 @@ public class TextAdapter {
    * @throws VisADException there was a problem creating the domain set.
    */
   private Set createAppropriate1DDomain(MathType type, int numSamples,
-                                       ArrayList domValues)
+                                       double[] domValues)
                                          throws VisADException {
 
     if (0 == numSamples) {
@@ -1651,12 +2111,7 @@ public class TextAdapter {
       return null;
     }
 
-    // Extract the first element from each element of the array list.
-    double[][] values = new double[1][numSamples];
-    for (int i=0; i<numSamples; ++i) {
-      double[] d = (double []) domValues.get(i);
-      values[0][i] = d[0];
-    }
+    double[][] values = new double[][] {domValues};
 
     // This implementation for testing that the values are ordered
     // is based on visad.Gridded1DDoubleSet.java
@@ -1699,6 +2154,294 @@ public class TextAdapter {
   }
 
 
+    /**
+     * ColumnReader reads lines of numbers into one growable column per
+     * domain and range component, scanning bytes and parsing numbers
+     * without making Strings.  Cells are interpreted exactly as the
+     * line by line reader does: the same tokens, fixed values, colspans,
+     * missing values, scales and offsets.  Cells that are not plain
+     * decimal numbers (dates, lat/lons, and so on) go through getVal().
+     */
+    private class ColumnReader {
+        private final int nhdr;
+        private final java.nio.charset.Charset charset;
+
+        /** true if this reads a chunk of a file on its own thread, so
+            must not change the shared header information */
+        private final boolean isChunk;
+
+        /** a chunk stopped at a name=value line */
+        boolean sawFixedValue = false;
+
+        /** reading stopped at a line that is not text */
+        boolean stopped = false;
+
+        private String delim;
+        private boolean blank;
+        private byte delimByte;
+
+        /** columns, each holding count values */
+        double[][] domain, range;
+        int count = 0;
+
+        /** token bounds of the current line */
+        private int[] starts = new int[16], ends = new int[16];
+
+        /** missing strings as bytes, by infos index */
+        private final byte[][] missingBytes;
+
+        /** the last fixed value seen of each column, and its value */
+        private final String[] lastFixed;
+        private final double[] lastFixedValue;
+
+        ColumnReader(String delim, int nhdr, int numDom, int numRng,
+                     java.nio.charset.Charset charset, boolean isChunk,
+                     int capacity) {
+            this.nhdr = nhdr;
+            this.charset = charset;
+            this.isChunk = isChunk;
+            if (delim != null) setDelimiter(delim);
+            domain = new double[numDom][capacity];
+            range = new double[numRng][capacity];
+            missingBytes = new byte[infos.length][];
+            for (int i=0; i<infos.length; i++) {
+                if (infos[i].missingString != null) {
+                    missingBytes[i] = infos[i].missingString.getBytes(charset);
+                }
+            }
+            lastFixed = new String[nhdr];
+            lastFixedValue = new double[nhdr];
+        }
+
+        private void setDelimiter(String delim) {
+            this.delim = delim;
+            blank = delim.equals(BLANK) || delim.equals(BLANK_DELIM);
+            delimByte = (byte) delim.charAt(0);
+        }
+
+        /**
+         * read lines until the end, or until max lines of data have
+         * been added if max is positive
+         * @return false if the end of the data was reached
+         */
+        boolean read(ByteLineReader lines, int max)
+                throws IOException, VisADException {
+            int added = 0;
+            while (lines.next()) {
+                if (!lines.isText()) {
+                    stopped = true;
+                    return false;
+                }
+                if (lines.isComment()) continue;
+                lines.trim();
+                if (skipPattern != null &&
+                    skipPattern.matcher(lines.getLine()).find()) continue;
+                if (lines.indexOf((byte) '=') >= 0) {
+                    if (isChunk) {
+                        sawFixedValue = true;
+                        return false;
+                    }
+                    setFixedValue(lines.getLine());
+                    continue;
+                }
+                if (addLine(lines.buf, lines.start, lines.end)) added++;
+                if (added == max) return true;
+            }
+            return false;
+        }
+
+        /**
+         * add the values of one trimmed line of data
+         * @return false if the line has no values
+         */
+        boolean addLine(byte[] b, int s, int e) throws VisADException {
+            if (delim == null) {
+                String line = new String(b, s, e - s, charset);
+                String dataDelim = null;
+                if (line.indexOf(BLANK) != -1) dataDelim = BLANK_DELIM;
+                if (line.indexOf(COMMA) != -1) dataDelim = COMMA;
+                if (line.indexOf(SEMICOLON) != -1) dataDelim = SEMICOLON;
+                if (line.indexOf(TAB) != -1) dataDelim = TAB;
+                if (dataDelim == null) {
+                    throw new VisADException(
+                        "TextAdapter: Cannot find the delimiter in line:" + line);
+                }
+                setDelimiter(dataDelim);
+            }
+            int n = blank ? splitBlanks(b, s, e) : split(b, s, e);
+            if (n < 1) return false;
+
+            if (count == range[0].length) {
+                int size = 2 * count;
+                for (int k=0; k<domain.length; k++) {
+                    domain[k] = Arrays.copyOf(domain[k], size);
+                }
+                for (int k=0; k<range.length; k++) {
+                    range[k] = Arrays.copyOf(range[k], size);
+                }
+            }
+
+            int tokenIdx = 0;
+            for (int i=0; i<nhdr; i++) {
+                int dIndex = values_to_index[0][i];
+                int rIndex = values_to_index[1][i];
+                boolean used = (dIndex != -1 || rIndex != -1);
+                double value = Double.NaN;
+                String fixed = infos[i].fixedValue;
+                if (fixed != null) {
+                    if (used) {
+                        if (fixed != lastFixed[i]) {
+                            lastFixedValue[i] = getVal(fixed, i);
+                            lastFixed[i] = fixed;
+                        }
+                        value = lastFixedValue[i];
+                    }
+                } else if (tokenIdx < n) {
+                    int ts = starts[tokenIdx];
+                    int te = ends[tokenIdx];
+                    tokenIdx++;
+                    while (ts < te && b[ts] >= 0 && b[ts] <= ' ') ts++;
+                    while (te > ts && b[te - 1] >= 0 && b[te - 1] <= ' ') te--;
+                    if (infos[i].colspan > 1) {
+                        String sa = new String(b, ts, te - ts, charset);
+                        for (int more=infos[i].colspan-1; more>0; more--) {
+                            if (tokenIdx >= n) {
+                                throw new ArrayIndexOutOfBoundsException(tokenIdx);
+                            }
+                            sa = sa + " " + new String(b, starts[tokenIdx],
+                                ends[tokenIdx] - starts[tokenIdx], charset).trim();
+                            tokenIdx++;
+                        }
+                        if (used) value = getVal(sa, i);
+                    } else if (used) {
+                        value = getCellValue(b, ts, te, i);
+                    }
+                }
+                if (dIndex != -1) {
+                    domain[dIndex][count] = value;
+                } else if (rIndex != -1) {
+                    range[rIndex][count] = value;
+                }
+            }
+            count++;
+            return true;
+        }
+
+        /** value of the cell b[s] .. b[e-1] of column i, as getVal() */
+        private double getCellValue(byte[] b, int s, int e, int i) {
+            int k = values_to_index[2][i];
+            if (k < 0 || s == e) return Double.NaN;
+            HeaderInfo info = infos[k];
+            byte[] missing = missingBytes[k];
+            if (missing != null && missing.length == e - s) {
+                int j = 0;
+                while (j < missing.length && missing[j] == b[s + j]) j++;
+                if (j == missing.length) return Double.NaN;
+            }
+            if (info.formatString == null) {
+                double v = ByteLineReader.parseDouble(b, s, e);
+                if (v == v) {
+                    if (v == info.missingValue) return Double.NaN;
+                    return v * info.scale + info.offset;
+                }
+            }
+            return TextAdapter.this.getVal(new String(b, s, e - s, charset), i);
+        }
+
+        /** split as String.split() of a single character */
+        private int split(byte[] b, int s, int e) {
+            int n = 0;
+            int ts = s;
+            for (int i=s; i<e; i++) {
+                if (b[i] == delimByte) {
+                    addToken(n++, ts, i);
+                    ts = i + 1;
+                }
+            }
+            if (n == 0) {
+                addToken(n++, s, e);
+                return n;
+            }
+            addToken(n++, ts, e);
+            // String.split() drops trailing empty tokens
+            while (n > 0 && starts[n - 1] == ends[n - 1]) n--;
+            return n;
+        }
+
+        /** split a trimmed line at runs of white space */
+        private int splitBlanks(byte[] b, int s, int e) {
+            if (s == e) {
+                addToken(0, s, e);
+                return 1;
+            }
+            int n = 0;
+            int i = s;
+            while (i < e) {
+                int ts = i;
+                while (i < e && !isSpace(b[i])) i++;
+                addToken(n++, ts, i);
+                while (i < e && isSpace(b[i])) i++;
+            }
+            return n;
+        }
+
+        private boolean isSpace(byte c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == 0x0B ||
+                   c == '\f' || c == '\r';
+        }
+
+        private void addToken(int n, int s, int e) {
+            if (n == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * n);
+                ends = Arrays.copyOf(ends, 2 * n);
+            }
+            starts[n] = s;
+            ends[n] = e;
+        }
+
+        /** @return a copy of the domain values */
+        double[][] getDomain() {
+            double[][] values = new double[domain.length][];
+            for (int k=0; k<domain.length; k++) {
+                values[k] = Arrays.copyOf(domain[k], count);
+            }
+            return values;
+        }
+
+        /** @return a copy of the range values */
+        double[][] getRange() {
+            double[][] values = new double[range.length][];
+            for (int k=0; k<range.length; k++) {
+                values[k] = Arrays.copyOf(range[k], count);
+            }
+            return values;
+        }
+
+        /** append the columns of parts after these columns */
+        void append(List<ColumnReader> parts) {
+            int total = count;
+            for (ColumnReader part : parts) total += part.count;
+            for (int k=0; k<domain.length; k++) {
+                domain[k] = Arrays.copyOf(domain[k], total);
+            }
+            for (int k=0; k<range.length; k++) {
+                range[k] = Arrays.copyOf(range[k], total);
+            }
+            for (ColumnReader part : parts) {
+                for (int k=0; k<domain.length; k++) {
+                    System.arraycopy(part.domain[k], 0, domain[k], count,
+                                     part.count);
+                }
+                for (int k=0; k<range.length; k++) {
+                    System.arraycopy(part.range[k], 0, range[k], count,
+                                     part.count);
+                }
+                count += part.count;
+            }
+        }
+    }
+
+
     private static class HeaderInfo {
         String  name;
         Unit    unit;
@@ -1840,6 +2583,22 @@ public class TextAdapter {
         public void processValues(Data[] tuple) throws VisADException ;
     }
 
+    /** used to process the rows of numeric data a batch at a time */
+    public interface BatchProcessor {
+        /**
+         * Process a batch of rows.  The arrays are reused for the next
+         * batch, so are only valid during this call, and may be longer
+         * than count.
+         * @param domain values of each domain component read from the
+         *        input, by component and row; other components are 0
+         * @param range values of each range component, by component
+         *        and row
+         * @param count number of rows in this batch
+         */
+        public void processBatch(double[][] domain, double[][] range,
+                                 int count) throws VisADException;
+    }
+
 
 
 
@@ -0,0 +1,236 @@
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data.visad;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * Move whole arrays of numbers to and from VisAD binary files.
+ * <br><br>
+ * Arrays are transferred through a byte buffer in big-endian order,
+ * the same layout <tt>DataInput</tt> and <tt>DataOutput</tt> use for
+ * single values, so files are unchanged.  When a <tt>FileChannel</tt>
+ * is available the buffer is read or written with the channel, and
+ * large arrays are read by mapping their part of the file.
+ */
+public final class BinaryArrayIO
+{
+  /** size of the transfer buffer */
+  private static final int BUFFER_BYTES = 256 * 1024;
+
+  /** arrays at least this big are read from a mapped file region */
+  private static final long MAP_BYTES = 1024 * 1024;
+
+  /** largest file region mapped at one time */
+  private static final int MAP_WINDOW = 1 << 30;
+
+  private BinaryArrayIO() { }
+
+  /**
+   * Fill part of an array with floats read from a file.
+   *
+   * @param in File to read.
+   * @param channel Channel positioned at the same place as <tt>in</tt>,
+   *                or <tt>null</tt> to read through <tt>in</tt>.
+   * @param array Array to fill.
+   * @param off Index of the first value to read.
+   * @param len Number of values to read.
+   *
+   * @exception IOException If the values could not be read.
+   */
+  public static void read(DataInput in, FileChannel channel, float[] array,
+                          int off, int len)
+    throws IOException
+  {
+    readValues(in, channel, array, off, len, 4);
+  }
+
+  /**
+   * Fill part of an array with doubles read from a file.
+   *
+   * @see #read(DataInput, FileChannel, float[], int, int)
+   */
+  public static void read(DataInput in, FileChannel channel, double[] array,
+                          int off, int len)
+    throws IOException
+  {
+    readValues(in, channel, array, off, len, 8);
+  }
+
+  /**
+   * Fill part of an array with ints read from a file.
+   *
+   * @see #read(DataInput, FileChannel, float[], int, int)
+   */
+  public static void read(DataInput in, FileChannel channel, int[] array,
+                          int off, int len)
+    throws IOException
+  {
+    readValues(in, channel, array, off, len, 4);
+  }
+
+  /**
+   * Write part of an array of floats to a file.
+   *
+   * @param out File to write.
+   * @param channel Channel positioned at the end of everything written
+   *                to <tt>out</tt>, or <tt>null</tt> to write through
+   *                <tt>out</tt>.
+   * @param array Values to write.
+   * @param off Index of the first value to write.
+   * @param len Number of values to write.
+   *
+   * @exception IOException If the values could not be written.
+   */
+  public static void write(DataOutput out, FileChannel channel,
+                           float[] array, int off, int len)
+    throws IOException
+  {
+    writeValues(out, channel, array, off, len, 4);
+  }
+
+  /**
+   * Write part of an array of doubles to a file.
+   *
+   * @see #write(DataOutput, FileChannel, float[], int, int)
+   */
+  public static void write(DataOutput out, FileChannel channel,
+                           double[] array, int off, int len)
+    throws IOException
+  {
+    writeValues(out, channel, array, off, len, 8);
+  }
+
+  /**
+   * Write part of an array of ints to a file.
+   *
+   * @see #write(DataOutput, FileChannel, float[], int, int)
+   */
+  public static void write(DataOutput out, FileChannel channel, int[] array,
+                           int off, int len)
+    throws IOException
+  {
+    writeValues(out, channel, array, off, len, 4);
+  }
+
+  private static void readValues(DataInput in, FileChannel channel,
+                                 Object array, int off, int len, int size)
+    throws IOException
+  {
+    final long bytes = (long )len * size;
+    if (channel != null && bytes >= MAP_BYTES) {
+      long pos = channel.position();
+      if (pos + bytes > channel.size()) {
+        throw new EOFException();
+      }
+
+      final int window = MAP_WINDOW / size;
+      while (len > 0) {
+        final int n = Math.min(len, window);
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                                     (long )n * size);
+        getValues(buf, array, off, n);
+        pos += (long )n * size;
+        off += n;
+        len -= n;
+      }
+      channel.position(pos);
+      return;
+    }
+
+    final int chunk = (int )Math.min(len, BUFFER_BYTES / size);
+    ByteBuffer buf = ByteBuffer.allocate(Math.max(1, chunk) * size);
+    while (len > 0) {
+      final int n = Math.min(len, chunk);
+      buf.clear();
+      buf.limit(n * size);
+      if (channel != null) {
+        while (buf.hasRemaining()) {
+          if (channel.read(buf) < 0) {
+            throw new EOFException();
+          }
+        }
+      } else {
+        in.readFully(buf.array(), 0, n * size);
+      }
+      buf.rewind();
+      getValues(buf, array, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  private static void writeValues(DataOutput out, FileChannel channel,
+                                  Object array, int off, int len, int size)
+    throws IOException
+  {
+    final int chunk = (int )Math.min(len, BUFFER_BYTES / size);
+    ByteBuffer buf = ByteBuffer.allocate(Math.max(1, chunk) * size);
+    while (len > 0) {
+      final int n = Math.min(len, chunk);
+      buf.clear();
+      putValues(buf, array, off, n);
+      buf.limit(n * size);
+      if (channel != null) {
+        while (buf.hasRemaining()) {
+          channel.write(buf);
+        }
+      } else {
+        out.write(buf.array(), 0, n * size);
+      }
+      off += n;
+      len -= n;
+    }
+  }
+
+  private static void getValues(ByteBuffer buf, Object array, int off,
+                                int len)
+  {
+    if (array instanceof float[]) {
+      buf.asFloatBuffer().get((float[] )array, off, len);
+    } else if (array instanceof double[]) {
+      buf.asDoubleBuffer().get((double[] )array, off, len);
+    } else {
+      buf.asIntBuffer().get((int[] )array, off, len);
+    }
+  }
+
+  private static void putValues(ByteBuffer buf, Object array, int off,
+                                int len)
+  {
+    if (array instanceof float[]) {
+      buf.asFloatBuffer().put((float[] )array, off, len);
+    } else if (array instanceof double[]) {
+      buf.asDoubleBuffer().put((double[] )array, off, len);
+    } else {
+      buf.asIntBuffer().put((int[] )array, off, len);
+    }
+  }
+}
@@ -32,6 +32,8 @@ package visad.data.visad;
  * to mark the file as a VisAD binary file.<br>
  * <tt>OBJ_</tt> constants indicate the type of the next
  * object in the file.<br>
+ * <tt>INDEX_MAGIC_STR</tt> marks the end of a file which
+ * ends with an <tt>OBJ_INDEX</tt> index.<br>
  * <tt>FLD_</tt> constants indicate the type of the next
  * field for the current object in the file.<br>
  * <tt>MATH_</tt> constants indicate the type of <tt>FLD_MATH</tt>
@@ -51,6 +53,9 @@ public interface BinaryFile
   byte OBJ_MATH = 5;
   byte OBJ_MATH_SERIAL = 6;
   byte OBJ_UNIT = 7;
+  byte OBJ_INDEX = 8;
+
+  String INDEX_MAGIC_STR = "VisADIdx";
 
   byte FLD_FIRSTS = 1;
   byte FLD_LASTS = 2;
@@ -0,0 +1,271 @@
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data.visad;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Index of the top-level {@link visad.Data Data} objects saved in a
+ * VisAD binary file.
+ * <br><br>
+ * Each call to {@link BinaryWriter#save(visad.DataImpl, boolean)}
+ * writes a block of definitions (units, error estimates, coordinate
+ * systems and math types not saved before) followed by the data
+ * object.  The index records, for each saved object, where its
+ * definition block and its data start and end, and the range of
+ * object IDs defined by the block.  It is written after the last
+ * object, followed by its offset and the <tt>INDEX_MAGIC_STR</tt>
+ * characters, so a reader can find it from the end of the file.
+ */
+public class BinaryIndex
+  implements BinaryFile
+{
+  /** object types whose IDs are recorded, in the order they're stored */
+  private static final byte[] OBJ_TYPES = {
+    OBJ_UNIT, OBJ_ERROR, OBJ_COORDSYS, OBJ_MATH
+  };
+
+  /** length of the trailer holding the index offset and magic chars */
+  static final int TRAILER_LENGTH = 8 + INDEX_MAGIC_STR.length();
+
+  private int count;
+  private long[] defStart, dataStart, dataEnd;
+
+  /** IDs [firstID[i][k], lastID[i][k]) of object type OBJ_TYPES[k]
+      were defined before the data of object i, and IDs
+      [lastID[i][k], endID[i][k]) within its data */
+  private int[][] firstID, lastID, endID;
+
+  /**
+   * Create an empty index.
+   */
+  public BinaryIndex()
+  {
+    count = 0;
+    defStart = new long[8];
+    dataStart = new long[8];
+    dataEnd = new long[8];
+    firstID = new int[8][];
+    lastID = new int[8][];
+    endID = new int[8][];
+  }
+
+  /**
+   * Record a saved object.
+   *
+   * @param defPtr Offset of the object's definition block.
+   * @param dataPtr Offset of the object's data.
+   * @param endPtr Offset just past the object's data.
+   * @param startIDs Next ID of each object type before the definitions.
+   * @param defIDs Next ID of each object type after the definitions.
+   * @param endIDs Next ID of each object type after the data.
+   */
+  void add(long defPtr, long dataPtr, long endPtr, int[] startIDs,
+           int[] defIDs, int[] endIDs)
+  {
+    if (count == defStart.length) {
+      final int newLen = count * 2;
+      defStart = copyOf(defStart, newLen);
+      dataStart = copyOf(dataStart, newLen);
+      dataEnd = copyOf(dataEnd, newLen);
+      firstID = copyOf(firstID, newLen);
+      lastID = copyOf(lastID, newLen);
+      endID = copyOf(endID, newLen);
+    }
+
+    defStart[count] = defPtr;
+    dataStart[count] = dataPtr;
+    dataEnd[count] = endPtr;
+    firstID[count] = startIDs;
+    lastID[count] = defIDs;
+    endID[count] = endIDs;
+    count++;
+  }
+
+  private static long[] copyOf(long[] array, int len)
+  {
+    long[] newArray = new long[len];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+  private static int[][] copyOf(int[][] array, int len)
+  {
+    int[][] newArray = new int[len][];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+  /**
+   * Return the number of the object type in the per-object ID lists.
+   */
+  static final int typeNumber(byte objType)
+  {
+    for (int k = 0; k < OBJ_TYPES.length; k++) {
+      if (OBJ_TYPES[k] == objType) {
+        return k;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Return the number of object types whose IDs are recorded.
+   */
+  static final int numTypes() { return OBJ_TYPES.length; }
+
+  /**
+   * Return the number of indexed <tt>Data</tt> objects.
+   */
+  public int getDataCount() { return count; }
+
+  /**
+   * Return the file offset of the definitions written
+   * before the specified object.
+   */
+  public long getDefinitionOffset(int n) { return defStart[n]; }
+
+  /**
+   * Return the file offset of the specified object.
+   */
+  public long getDataOffset(int n) { return dataStart[n]; }
+
+  /**
+   * Return the file offset just past the specified object.
+   */
+  public long getDataEnd(int n) { return dataEnd[n]; }
+
+  /**
+   * Return <tt>true</tt> if units, coordinate systems, error estimates or
+   * math types were defined within the data of the specified object,
+   * rather than in the definitions before it.
+   */
+  public boolean definesObjects(int n)
+  {
+    for (int k = 0; k < OBJ_TYPES.length; k++) {
+      if (endID[n][k] != lastID[n][k]) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Return the file offset of the block which defines an object.
+   *
+   * @param objType <tt>OBJ_UNIT</tt>, <tt>OBJ_ERROR</tt>,
+   *                <tt>OBJ_COORDSYS</tt> or <tt>OBJ_MATH</tt>.
+   * @param id Object ID.
+   *
+   * @return The offset of the definition block, or of the data of the
+   *         object within which it is defined, or <tt>-1</tt>
+   *         if the object is not defined in the file.
+   */
+  public long getObjectOffset(byte objType, int id)
+  {
+    final int k = typeNumber(objType);
+    if (k < 0) {
+      return -1;
+    }
+
+    for (int i = 0; i < count; i++) {
+      if (id >= firstID[i][k] && id < lastID[i][k]) {
+        return defStart[i];
+      }
+      if (id >= lastID[i][k] && id < endID[i][k]) {
+        return dataStart[i];
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Read an index written by {@link #write(DataOutput)}.
+   *
+   * @exception IOException If the index is corrupted.
+   */
+  static BinaryIndex read(DataInput file)
+    throws IOException
+  {
+    final int len = file.readInt();
+    if (len < 0) {
+      throw new IOException("Corrupted file (bad index length " + len + ")");
+    }
+
+    BinaryIndex index = new BinaryIndex();
+    for (int i = 0; i < len; i++) {
+      final long defPtr = file.readLong();
+      final long dataPtr = file.readLong();
+      final long endPtr = file.readLong();
+
+      final int numTypes = file.readByte();
+      int[] startIDs = new int[OBJ_TYPES.length];
+      int[] defIDs = new int[OBJ_TYPES.length];
+      int[] endIDs = new int[OBJ_TYPES.length];
+      for (int k = 0; k < numTypes; k++) {
+        final int n = typeNumber(file.readByte());
+        final int start = file.readInt();
+        final int def = file.readInt();
+        final int end = file.readInt();
+        if (n >= 0) {
+          startIDs[n] = start;
+          defIDs[n] = def;
+          endIDs[n] = end;
+        }
+      }
+
+      index.add(defPtr, dataPtr, endPtr, startIDs, defIDs, endIDs);
+    }
+
+    return index;
+  }
+
+  /**
+   * Write the index.
+   *
+   * @exception IOException If the index could not be written.
+   */
+  void write(DataOutput file)
+    throws IOException
+  {
+    file.writeInt(count);
+    for (int i = 0; i < count; i++) {
+      file.writeLong(defStart[i]);
+      file.writeLong(dataStart[i]);
+      file.writeLong(dataEnd[i]);
+
+      file.writeByte(OBJ_TYPES.length);
+      for (int k = 0; k < OBJ_TYPES.length; k++) {
+        file.writeByte(OBJ_TYPES[k]);
+        file.writeInt(firstID[i][k]);
+        file.writeInt(lastID[i][k]);
+        file.writeInt(endID[i][k]);
+      }
+    }
+  }
+}
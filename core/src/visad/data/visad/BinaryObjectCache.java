@@ -22,15 +22,37 @@ MA 02111-1307, USA
 
 package visad.data.visad;
 
+import java.lang.reflect.Method;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 /**
  * A list which allows objects to be added at a specific index,
  * padding with <tt>null</tt>s if necessary.
+ * <p>
+ * Lookups are hashed, first by identity and then by equality, so
+ * writing long series of objects does not cost a scan of the list
+ * per object.  Objects whose <tt>hashCode()</tt> is not consistent
+ * with their <tt>equals()</tt> (for example, most
+ * <tt>CoordinateSystem</tt>s) are still found by a linear scan,
+ * but only over the other objects of that sort.
  */
 public class BinaryObjectCache
 {
-  private ArrayList cache = null;
+  /** classes whose hashCode() may be used in the equality index */
+  private static HashMap<Class<?>, Boolean> hashable =
+    new HashMap<Class<?>, Boolean>();
+
+  private ArrayList<Object> cache = null;
+
+  /** index of the first entry equal to each object looked up */
+  private IdentityHashMap<Object, Integer> identIndex = null;
+  /** index of the first entry equal to each hashable object */
+  private HashMap<Object, Integer> equalIndex = null;
+  /** indices of entries which cannot be put in <tt>equalIndex</tt> */
+  private ArrayList<Integer> unhashed = null;
 
   /**
    * Create an empty list.
@@ -69,17 +91,20 @@ public class BinaryObjectCache
 
     // build a new list if necessary
     if (cache == null) {
-      cache = new ArrayList();
+      cache = new ArrayList<Object>();
     }
 
     final int cacheLen = cache.size();
     if (index < 0 || index == cacheLen) {
-      // add to end of list, then find out where it was added
+      // add to end of list
       cache.add(obj);
-      index = cache.lastIndexOf(obj);
+      index = cacheLen;
+      indexEntry(index, obj);
     } else if (index < cacheLen) {
-      // overwrite the current entry
+      // overwrite the current entry, which may invalidate any
+      // of the indices, so rebuild them when they're next needed
       cache.set(index, obj);
+      identIndex = null;
     } else {
       // pad with nulls
       for (int i = cacheLen; i < index; i++) {
@@ -88,11 +113,96 @@ public class BinaryObjectCache
 
       // add to end of list
       cache.add(obj);
+      indexEntry(index, obj);
     }
 
     return index;
   }
 
+  /**
+   * Build the lookup tables from the current list contents.
+   */
+  private void buildIndex()
+  {
+    identIndex = new IdentityHashMap<Object, Integer>();
+    equalIndex = new HashMap<Object, Integer>();
+    unhashed = new ArrayList<Integer>();
+
+    final int cacheLen = (cache == null ? 0 : cache.size());
+    for (int i = 0; i < cacheLen; i++) {
+      Object obj = cache.get(i);
+      if (obj != null) {
+        indexEntry(i, obj);
+      }
+    }
+  }
+
+  /**
+   * Add a newly appended entry to the lookup tables.
+   * Earlier entries take precedence, matching <tt>List.indexOf()</tt>.
+   *
+   * @param index Index of the new entry.
+   * @param obj The new entry.
+   */
+  private void indexEntry(int index, Object obj)
+  {
+    // tables will be built from scratch on the next lookup
+    if (identIndex == null) {
+      return;
+    }
+
+    // identIndex is only filled in by getIndex(), since the first
+    // entry equal to this object may not be this object
+    Integer idx = Integer.valueOf(index);
+    if (isHashable(obj)) {
+      if (!equalIndex.containsKey(obj)) {
+        equalIndex.put(obj, idx);
+      }
+    } else {
+      unhashed.add(idx);
+    }
+  }
+
+  /**
+   * Can the object's <tt>hashCode()</tt> be trusted to agree with
+   * its <tt>equals()</tt>?  This is assumed to be the case if
+   * <tt>hashCode()</tt> is declared in the same class as
+   * <tt>equals()</tt> or in a subclass of it.
+   *
+   * @param obj Object to check.
+   *
+   * @return <tt>true</tt> if the object may be put in a hash table.
+   */
+  private static boolean isHashable(Object obj)
+  {
+    final Class<?> cl = obj.getClass();
+
+    Boolean ok;
+    synchronized (hashable) {
+      ok = hashable.get(cl);
+    }
+
+    if (ok == null) {
+      boolean result;
+      try {
+        Method eqMethod = cl.getMethod("equals", new Class<?>[] {Object.class});
+        Method hashMethod = cl.getMethod("hashCode", new Class<?>[0]);
+        result = eqMethod.getDeclaringClass().isAssignableFrom(hashMethod.getDeclaringClass());
+      } catch (NoSuchMethodException nsme) {
+        result = false;
+      } catch (SecurityException se) {
+        result = false;
+      }
+
+      ok = Boolean.valueOf(result);
+      synchronized (hashable) {
+        hashable.put(cl, ok);
+      }
+    }
+
+    return ok.booleanValue();
+  }
+
   /**
    * Return the object found at the specified index.
    *
@@ -138,7 +248,49 @@ public class BinaryObjectCache
       return -1;
     }
 
-    // return index (if any)
-    return cache.indexOf(obj);
+    if (identIndex == null) {
+      buildIndex();
+    }
+
+    // objects are usually looked up again by the same reference
+    Integer idx = identIndex.get(obj);
+    if (idx != null) {
+      return idx.intValue();
+    }
+
+    int index = -1;
+    if (isHashable(obj)) {
+      idx = equalIndex.get(obj);
+      if (idx != null) {
+        index = idx.intValue();
+      }
+    } else {
+      final int num = unhashed.size();
+      for (int i = 0; i < num; i++) {
+        final int j = unhashed.get(i).intValue();
+        if (obj.equals(cache.get(j))) {
+          index = j;
+          break;
+        }
+      }
+    }
+
+    // remember the answer for this reference
+    if (index >= 0) {
+      identIndex.put(obj, Integer.valueOf(index));
+    }
+
+    return index;
+  }
+
+  /**
+   * Return the number of entries in the list, which is also
+   * the index at which the next object will be added.
+   *
+   * @return The list size.
+   */
+  public int size()
+  {
+    return (cache == null ? 0 : cache.size());
   }
 }
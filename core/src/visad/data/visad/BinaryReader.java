@@ -31,12 +31,19 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import java.nio.channels.FileChannel;
+
 import visad.*;
 
 import visad.data.visad.object.*;
 
 /**
  * Read a {@link visad.Data Data} object in VisAD's binary format.
+ * <br><br>
+ * Files opened for random access may end with an index written by
+ * {@link visad.data.visad.BinaryWriter BinaryWriter}, in which case
+ * {@link #getData(int)} reads any saved object without reading the
+ * ones before it.
  *
  * @see <a href="http://www.ssec.wisc.edu/~dglo/binary_file_format.html">Binary File Format Spec</a>
  */
@@ -45,6 +52,11 @@ public class BinaryReader
 {
   private DataInput file;
   private boolean isRandom;
+  private FileChannel channel;
+
+  private boolean indexChecked, atIndex;
+  private BinaryIndex index;
+  private int indexSteps;
 
   private int version;
 
@@ -125,6 +137,7 @@ public class BinaryReader
   {
     file = raf;
     isRandom = true;
+    channel = raf.getChannel();
 
     version = checkMagic(file);
 
@@ -200,7 +213,7 @@ totStart = csTime = dTime = dsTime = eTime = mTime = uTime = 0;
 
 totStart = System.currentTimeMillis();
     DataImpl data = null;
-    while (data == null) {
+    while (data == null && !atIndex) {
       final byte directive;
       try {
         directive = file.readByte();
@@ -240,6 +253,11 @@ if(DEBUG_RD_MATH)System.err.println("getData: OBJ_UNIT (" + OBJ_UNIT + ")");
         BinaryUnit.read(this);
 if(DEBUG_RD_TIME)uTime += System.currentTimeMillis() - tmpStart;
         break;
+      case OBJ_INDEX:
+if(DEBUG_RD_MATH)System.err.println("getData: OBJ_INDEX (" + OBJ_INDEX + ")");
+        // the index follows the last object
+        atIndex = true;
+        break;
       default:
         throw new IOException("Unknown directive " + directive);
       }
@@ -261,6 +279,144 @@ if(DEBUG_RD_TIME){
     return data;
   }
 
+  /**
+   * Read the specified object from a file with an index.
+   * <br><br>
+   * The units, coordinate systems, error estimates and math types saved
+   * before the object are read first, if they haven't been already,
+   * but the data objects before it are skipped.  If the file was opened
+   * for random access, <tt>FlatField</tt> samples are only read when
+   * they are used.
+   *
+   * @param n Number of the object, from <tt>0</tt> to
+   *          <tt>getDataCount()-1</tt>.
+   *
+   * @exception IOException If the file has no index or could not
+   *                        be read.
+   */
+  public DataImpl getData(int n)
+    throws IOException, VisADException
+  {
+    BinaryIndex idx = getIndex();
+    if (idx == null) {
+      throw new IOException("File has no index");
+    }
+    if (n < 0 || n >= idx.getDataCount()) {
+      throw new IOException("Bad object number " + n + " (file holds " +
+                            idx.getDataCount() + ")");
+    }
+
+    // read definition blocks (even steps) and the objects which
+    // define more objects within their data (odd steps) in file order
+    for (; indexSteps <= 2 * n; indexSteps++) {
+      final int k = indexSteps / 2;
+      if ((indexSteps & 1) == 0) {
+        seek(idx.getDefinitionOffset(k));
+        readDefinitions(idx.getDataOffset(k));
+      } else if (idx.definesObjects(k)) {
+        seek(idx.getDataOffset(k));
+        getData();
+      }
+    }
+
+    atIndex = false;
+    seek(idx.getDataOffset(n));
+    return getData();
+  }
+
+  /**
+   * Return the number of objects in the file's index.
+   *
+   * @return The number of objects, or <tt>-1</tt> if the file
+   *         has no index.
+   *
+   * @exception IOException If the index could not be read.
+   */
+  public int getDataCount()
+    throws IOException
+  {
+    BinaryIndex idx = getIndex();
+    return (idx == null ? -1 : idx.getDataCount());
+  }
+
+  /**
+   * Return the index at the end of the file.
+   *
+   * @return The index, or <tt>null</tt> if the file was not opened
+   *         for random access or has no index.
+   *
+   * @exception IOException If the index could not be read.
+   */
+  public BinaryIndex getIndex()
+    throws IOException
+  {
+    if (!indexChecked) {
+      indexChecked = true;
+      if (isRandom) {
+        index = readIndex();
+      }
+    }
+
+    return index;
+  }
+
+  private BinaryIndex readIndex()
+    throws IOException
+  {
+    final long len = getLength();
+    final long headerLen = MAGIC_STR.length() + 4;
+    if (len < headerLen + 1 + BinaryIndex.TRAILER_LENGTH) {
+      return null;
+    }
+
+    final long curPtr = getFilePointer();
+    try {
+      seek(len - BinaryIndex.TRAILER_LENGTH);
+      final long indexPtr = file.readLong();
+
+      byte[] magic = new byte[INDEX_MAGIC_STR.length()];
+      file.readFully(magic);
+      if (!INDEX_MAGIC_STR.equals(new String(magic)) ||
+          indexPtr < headerLen || indexPtr >= len)
+      {
+        return null;
+      }
+
+      seek(indexPtr);
+      if (file.readByte() != OBJ_INDEX) {
+        return null;
+      }
+
+      return BinaryIndex.read(file);
+    } finally {
+      seek(curPtr);
+    }
+  }
+
+  private void readDefinitions(long end)
+    throws IOException, VisADException
+  {
+    while (getFilePointer() < end) {
+      final byte directive = file.readByte();
+      switch (directive) {
+      case OBJ_COORDSYS:
+        BinaryCoordinateSystem.read(this);
+        break;
+      case OBJ_ERROR:
+        BinaryErrorEstimate.read(this);
+        break;
+      case OBJ_MATH:
+        BinaryMathType.read(this);
+        break;
+      case OBJ_UNIT:
+        BinaryUnit.read(this);
+        break;
+      default:
+        throw new IOException("Unknown definition directive " + directive);
+      }
+    }
+  }
+
   public final BinaryObjectCache getCoordinateSystemCache()
   {
     return cSysCache;
@@ -281,6 +437,18 @@ if(DEBUG_RD_TIME){
   }
 
   public final DataInput getInput() { return file; }
+
+  private final long getLength()
+    throws IOException
+  {
+    if (file instanceof java.io.RandomAccessFile) {
+      return ((java.io.RandomAccessFile )file).length();
+    } else if (file instanceof ucar.netcdf.RandomAccessFile) {
+      return ((ucar.netcdf.RandomAccessFile )file).length();
+    }
+
+    return -1;
+  }
   public final BinaryObjectCache getTypeCache() { return typeCache; }
   public final BinaryObjectCache getUnitCache() { return unitCache; }
 
@@ -568,4 +736,37 @@ if(DEBUG_RD_TIME){
                             file.getClass().getName());
     }
   }
+
+  /**
+   * Fill an array with floats read from the file.
+   *
+   * @exception IOException If the array could not be read.
+   */
+  public final void readArray(float[] array)
+    throws IOException
+  {
+    BinaryArrayIO.read(file, channel, array, 0, array.length);
+  }
+
+  /**
+   * Fill an array with doubles read from the file.
+   *
+   * @exception IOException If the array could not be read.
+   */
+  public final void readArray(double[] array)
+    throws IOException
+  {
+    BinaryArrayIO.read(file, channel, array, 0, array.length);
+  }
+
+  /**
+   * Fill an array with ints read from the file.
+   *
+   * @exception IOException If the array could not be read.
+   */
+  public final void readArray(int[] array)
+    throws IOException
+  {
+    BinaryArrayIO.read(file, channel, array, 0, array.length);
+  }
 }
@@ -27,9 +27,12 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import java.nio.channels.FileChannel;
+
 import visad.*;
 
 import visad.data.BaseDataProcessor;
@@ -39,6 +42,14 @@ import visad.data.visad.object.*;
 
 /**
  * Write a {@link visad.Data Data} object in VisAD's binary format.
+ * <br><br>
+ * If the writer is indexed, an index of the saved objects is written
+ * when the file is closed, which lets
+ * {@link visad.data.visad.BinaryReader BinaryReader} go straight to any
+ * of them.  Readers which predate the index can read the objects, but
+ * fail when they reach the index, so the index is only written if it
+ * is turned on with {@link #setIndexed(boolean)} or the system property
+ * <tt>visad.binary.index</tt>.
  *
  * @see <a href="http://www.ssec.wisc.edu/~dglo/binary_file_format.html">Binary File Format Spec</a>
  */
@@ -46,8 +57,15 @@ public class BinaryWriter
   extends BaseDataProcessor
   implements BinaryFile, DataWriter
 {
+  private static boolean defaultIndexed = Boolean.getBoolean("visad.binary.index");
+
   private boolean initialized;
   private DataOutputStream file;
+  private PositionStream position;
+  private FileChannel channel;
+
+  private boolean indexed = defaultIndexed;
+  private BinaryIndex index;
 
   private BinaryObjectCache unitCache, errorCache, cSysCache, typeCache;
 
@@ -65,7 +83,7 @@ public class BinaryWriter
   public BinaryWriter(File ref)
     throws IOException
   {
-    this(new BufferedOutputStream(new FileOutputStream(ref)));
+    this(new FileOutputStream(ref));
   }
 
   public BinaryWriter(OutputStream stream)
@@ -77,8 +95,10 @@ public class BinaryWriter
   public void close()
     throws IOException
   {
+    writeIndex();
     file.close();
     file = null;
+    channel = null;
   }
 
   public void flush()
@@ -93,10 +113,39 @@ public class BinaryWriter
 
   public final BinaryObjectCache getCoordinateSystemCache() { return cSysCache; }
   public final BinaryObjectCache getErrorEstimateCache() { return errorCache; }
+  /**
+   * Return the number of bytes written to the file so far.
+   *
+   * @exception IOException If there is no active file.
+   */
+  public final long getFilePointer()
+    throws IOException
+  {
+    if (file == null) {
+      throw new IOException("No active file");
+    }
+
+    return position.getCount();
+  }
+
   public final DataOutput getOutput() { return file; }
   public final BinaryObjectCache getTypeCache() { return typeCache; }
   public final BinaryObjectCache getUnitCache() { return unitCache; }
 
+  /**
+   * Return the next ID of each object type, in
+   * {@link BinaryIndex} order.
+   */
+  private int[] getNextIDs()
+  {
+    int[] ids = new int[BinaryIndex.numTypes()];
+    ids[BinaryIndex.typeNumber(OBJ_UNIT)] = unitCache.size();
+    ids[BinaryIndex.typeNumber(OBJ_ERROR)] = errorCache.size();
+    ids[BinaryIndex.typeNumber(OBJ_COORDSYS)] = cSysCache.size();
+    ids[BinaryIndex.typeNumber(OBJ_MATH)] = typeCache.size();
+    return ids;
+  }
+
   private final void initVars()
   {
     if (!initialized) {
@@ -107,8 +156,15 @@ public class BinaryWriter
     this.errorCache = new BinaryObjectCache();
     this.cSysCache = new BinaryObjectCache();
     this.typeCache = new BinaryObjectCache();
+    this.index = new BinaryIndex();
   }
 
+  /**
+   * Return <tt>true</tt> if an index of the saved objects
+   * will be written when the file is closed.
+   */
+  public boolean isIndexed() { return indexed; }
+
   public void processDoubleSet(SetType type, CoordinateSystem cs,
                                Unit[] units, DoubleSet set, Object token)
     throws VisADException
@@ -963,8 +1019,28 @@ public class BinaryWriter
       dependToken = BinaryObject.SAVE_DEPEND;
     }
 
-    process(data, dependToken);
-    process(data, BinaryObject.SAVE_DATA);
+    if (file == null) {
+      throw new VisADException("No active file");
+    }
+
+    try {
+      final long defPtr = getFilePointer();
+      final int[] startIDs = getNextIDs();
+
+      process(data, dependToken);
+
+      final long dataPtr = getFilePointer();
+      final int[] defIDs = getNextIDs();
+
+      process(data, BinaryObject.SAVE_DATA);
+
+      index.add(defPtr, dataPtr, getFilePointer(), startIDs, defIDs,
+                getNextIDs());
+    } catch (IOException ioe) {
+      throw new VisADException("Couldn't save " + data.getClass().getName() +
+                               ": " + ioe.getClass().getName() + ": " +
+                               ioe.getMessage());
+    }
   }
 
   public void setFile(String name)
@@ -979,13 +1055,26 @@ public class BinaryWriter
     setOutputStream(new FileOutputStream(ref));
   }
 
+  /**
+   * Turn the index of saved objects on or off.
+   *
+   * @param indexed <tt>true</tt> if an index should be written
+   *                when the file is closed.
+   */
+  public void setIndexed(boolean indexed)
+  {
+    this.indexed = indexed;
+  }
+
   public void setOutputStream(OutputStream stream)
     throws IOException
   {
     if (file != null) {
+      writeIndex();
       file.flush();
       file.close();
       file = null;
+      channel = null;
     }
 
     initVars();
@@ -994,9 +1083,118 @@ public class BinaryWriter
       throw new IOException("Null OutputStream");
     }
 
-    file = new DataOutputStream(new BufferedOutputStream(stream));
+    if (stream instanceof FileOutputStream) {
+      channel = ((FileOutputStream )stream).getChannel();
+    }
+
+    position = new PositionStream(new BufferedOutputStream(stream));
+    file = new DataOutputStream(position);
 
     file.writeBytes(MAGIC_STR);
     file.writeInt(FORMAT_VERSION);
   }
+
+  /**
+   * Write an array of floats.
+   *
+   * @exception IOException If the array could not be written.
+   */
+  public final void writeArray(float[] array)
+    throws IOException
+  {
+    startArray();
+    BinaryArrayIO.write(file, channel, array, 0, array.length);
+    endArray(array.length * 4L);
+  }
+
+  /**
+   * Write an array of doubles.
+   *
+   * @exception IOException If the array could not be written.
+   */
+  public final void writeArray(double[] array)
+    throws IOException
+  {
+    startArray();
+    BinaryArrayIO.write(file, channel, array, 0, array.length);
+    endArray(array.length * 8L);
+  }
+
+  /**
+   * Write an array of ints.
+   *
+   * @exception IOException If the array could not be written.
+   */
+  public final void writeArray(int[] array)
+    throws IOException
+  {
+    startArray();
+    BinaryArrayIO.write(file, channel, array, 0, array.length);
+    endArray(array.length * 4L);
+  }
+
+  /** arrays are written straight to the channel, so flush the stream */
+  private void startArray()
+    throws IOException
+  {
+    if (channel != null) {
+      file.flush();
+    }
+  }
+
+  /** count the bytes written to the channel */
+  private void endArray(long bytes)
+  {
+    if (channel != null) {
+      position.skip(bytes);
+    }
+  }
+
+  private void writeIndex()
+    throws IOException
+  {
+    if (!indexed || index == null) {
+      return;
+    }
+
+    final long indexPtr = getFilePointer();
+    file.writeByte(OBJ_INDEX);
+    index.write(file);
+    file.writeLong(indexPtr);
+    file.writeBytes(INDEX_MAGIC_STR);
+    index = null;
+  }
+
+  /**
+   * Count the bytes written to the file.
+   */
+  private static class PositionStream
+    extends FilterOutputStream
+  {
+    private long count;
+
+    PositionStream(OutputStream out)
+    {
+      super(out);
+      count = 0;
+    }
+
+    long getCount() { return count; }
+
+    void skip(long bytes) { count += bytes; }
+
+    public void write(int b)
+      throws IOException
+    {
+      out.write(b);
+      count++;
+    }
+
+    public void write(byte[] b, int off, int len)
+      throws IOException
+    {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
 }
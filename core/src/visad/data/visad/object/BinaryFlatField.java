@@ -117,7 +117,7 @@ public class BinaryFlatField
       final int len = fld.getLength();
 
       if (dim > 0 && len > 0) {
-        samplesLen = 4 + dim * (4 + len * 8);
+        samplesLen = 1 + 4 + dim * (4 + len * 8);
       }
     }
 
@@ -211,6 +211,18 @@ if(DEBUG_RD_MATH)System.err.println("rdFlFld: type index (" + typeIndex + ")");
     // skip to the end of this object
     rdr.seek(filePtr + (long )objLen);
 
+    // older writers undercounted the object length by the samples marker,
+    // leaving the pointer on the trailing FLD_END
+    boolean atEnd;
+    try {
+      atEnd = (rdr.getInput().readByte() == FLD_END);
+    } catch (EOFException eofe) {
+      atEnd = false;
+    }
+    if (!atEnd) {
+      rdr.seek(filePtr + (long )objLen);
+    }
+
     return new FileFlatField(new BinaryAccessor(rdr, filePtr, ft), strategy);
   }
 
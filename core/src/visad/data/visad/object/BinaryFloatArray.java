@@ -50,56 +50,29 @@ if(DEBUG_RD_DATA)System.err.println("rdFltRA: len (" + len + ")");
     }
 
     float[] array = new float[len];
-    for (int i = 0; i < len; i++) {
-      array[i] = file.readFloat();
-if(DEBUG_RD_DATA_DETAIL)System.err.println("rdFltRA: #" + i +" (" + array[i] + ")");
-    }
+    reader.readArray(array);
+if(DEBUG_RD_DATA_DETAIL){
+  for (int i = 0; i < len; i++) {
+    System.err.println("rdFltRA: #" + i +" (" + array[i] + ")");
+  }
+}
 
     return array;
   }
 
-  private static final boolean fasterButUglier = true;
-
   public static final void write(BinaryWriter writer, float[] array,
                                  Object token)
     throws IOException
   {
     DataOutput file = writer.getOutput();
 
-    if (fasterButUglier) {
-      byte[] buf = new byte[computeBytes(array)];
-      int bufIdx = 0;
-
-if(DEBUG_WR_DATA)System.err.println("wrFltRA: len (" + array.length + ")");
-      for (int b = 3, l = array.length; b >= 0; b--) {
-        buf[bufIdx + b] = (byte )(l & 0xff);
-        l >>= 8;
-      }
-      bufIdx += 4;
-
-      for (int i = 0; i < array.length; i++) {
-if(DEBUG_WR_DATA_DETAIL)System.err.println("wrFltRA: #" + i + " (" + array[i] + ")");
-        long x = Float.floatToIntBits(array[i]);
-        for (int b = 3; b >= 0; b--) {
-          buf[bufIdx + b] = (byte )(x & 0xff);
-          x >>= 8;
-        }
-        bufIdx += 4;
-      }
-
-      if (bufIdx < buf.length) {
-        System.err.println("BinaryFloatArray: Missing " +
-                           (buf.length - bufIdx) + " bytes");
-      }
-
-      file.write(buf);
-    } else { // !fasterButUglier
 if(DEBUG_WR_DATA)System.err.println("wrFltRA: len (" + array.length + ")");
-      file.writeInt(array.length);
-      for (int i = 0; i < array.length; i++) {
-if(DEBUG_WR_DATA_DETAIL)System.err.println("wrFltRA: #" + i + " (" + array[i] + ")");
-        file.writeFloat(array[i]);
-      }
-    }
+    file.writeInt(array.length);
+if(DEBUG_WR_DATA_DETAIL){
+  for (int i = 0; i < array.length; i++) {
+    System.err.println("wrFltRA: #" + i + " (" + array[i] + ")");
+  }
+}
+    writer.writeArray(array);
   }
 }
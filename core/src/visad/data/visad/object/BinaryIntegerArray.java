@@ -69,56 +69,29 @@ if(DEBUG_RD_DATA)System.err.println("rdIntRA: len (" + len + ")");
     }
 
     int[] array = new int[len];
-    for (int i = 0; i < len; i++) {
-      array[i] = file.readInt();
-if(DEBUG_RD_DATA_DETAIL)System.err.println("rdIntRA: #" + i +" (" + array[i] + ")");
-    }
+    reader.readArray(array);
+if(DEBUG_RD_DATA_DETAIL){
+  for (int i = 0; i < len; i++) {
+    System.err.println("rdIntRA: #" + i +" (" + array[i] + ")");
+  }
+}
 
     return array;
   }
 
-  private static final boolean fasterButUglier = true;
-
   public static final void write(BinaryWriter writer, int[] array,
                                  Object token)
     throws IOException
   {
     DataOutput file = writer.getOutput();
 
-    if (fasterButUglier) {
-      byte[] buf = new byte[computeBytes(array)];
-      int bufIdx = 0;
-
-if(DEBUG_WR_DATA)System.err.println("wrFltRA: len (" + array.length + ")");
-      for (int b = 3, l = array.length; b >= 0; b--) {
-        buf[bufIdx + b] = (byte )(l & 0xff);
-        l >>= 8;
-      }
-      bufIdx += 4;
-
-      for (int i = 0; i < array.length; i++) {
-if(DEBUG_WR_DATA_DETAIL)System.err.println("wrFltRA: #" + i + " (" + array[i] + ")");
-        int x = array[i];
-        for (int b = 3; b >= 0; b--) {
-          buf[bufIdx + b] = (byte )(x & 0xff);
-          x >>= 8;
-        }
-        bufIdx += 4;
-      }
-
-      if (bufIdx < buf.length) {
-        System.err.println("BinaryIntegerArray: Missing " +
-                           (buf.length - bufIdx) + " bytes");
-      }
-
-      file.write(buf);
-    } else { // !fasterButUglier
 if(DEBUG_WR_DATA)System.err.println("wrIntRA: len (" + array.length + ")");
-      file.writeInt(array.length);
-      for (int i = 0; i < array.length; i++) {
-if(DEBUG_WR_DATA_DETAIL)System.err.println("wrIntRA: #" + i + " (" + array[i] + ")");
-        file.writeInt(array[i]);
-      }
-    }
+    file.writeInt(array.length);
+if(DEBUG_WR_DATA_DETAIL){
+  for (int i = 0; i < array.length; i++) {
+    System.err.println("wrIntRA: #" + i + " (" + array[i] + ")");
+  }
+}
+    writer.writeArray(array);
   }
 }
@@ -26,6 +26,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import visad.data.visad.BinaryArrayIO;
 import visad.data.visad.BinaryWriter;
 
 public class BinaryIntegerMatrix
@@ -59,17 +60,17 @@ if(DEBUG_RD_DATA)System.err.println("rdIntMtx: len (" + len + ")");
       final int len2 = file.readInt();
 if(DEBUG_RD_DATA)System.err.println("rdIntMtx: #" + i + " len (" + len2 + ")");
       matrix[i] = new int[len2];
-      for (int j = 0; j < len2; j++) {
-        matrix[i][j] = file.readInt();
-if(DEBUG_RD_DATA_DETAIL)System.err.println("rdIntMtx: #" + i + "," + j +" (" + matrix[i][j] + ")");
-      }
+      BinaryArrayIO.read(file, null, matrix[i], 0, len2);
+if(DEBUG_RD_DATA_DETAIL){
+  for (int j = 0; j < len2; j++) {
+    System.err.println("rdIntMtx: #" + i + "," + j +" (" + matrix[i][j] + ")");
+  }
+}
     }
 
     return matrix;
   }
 
-  private static final boolean fasterButUglier = true;
-
   static final void write(DataOutput file, int[][] matrix)
     throws IOException
   {
@@ -77,50 +78,18 @@ if(DEBUG_RD_DATA_DETAIL)System.err.println("rdIntMtx: #" + i + "," + j +" (" + m
 if(DEBUG_WR_DATA)System.err.println("wrIntMtx: null (" + -1 + ")");
       file.writeInt(-1);
     } else {
-      if (fasterButUglier) {
-        byte[] buf = new byte[4+matrix.length*(4+4*matrix[0].length)];
-        int bufIdx = 0;
-
-if(DEBUG_WR_DATA)System.err.println("wrIntMtx: row len (" + matrix.length + ")");
-        for (int b = 3, l = matrix.length; b >= 0; b--) {
-          buf[bufIdx + b] = (byte )(l & 0xff);
-          l >>= 8;
-        }
-        bufIdx += 4;
-
-        for (int i = 0; i < matrix.length; i++) {
-          final int len = matrix[i].length;
-if(DEBUG_WR_DATA)System.err.println("wrIntMtx: #" + i + " len (" + matrix[i].length + ")");
-          for (int b = 3, l = len; b >= 0; b--) {
-            buf[bufIdx + b] = (byte )(l & 0xff);
-            l >>= 8;
-          }
-          bufIdx += 4;
-
-          for (int j = 0; j < len; j++) {
-if(DEBUG_WR_DATA_DETAIL)System.err.println("wrIntMtx: #" + i + "," + j + " (" + matrix[i][j] + ")");
-            int x = matrix[i][j];
-            for (int b = 3; b >= 0; b--) {
-              buf[bufIdx + b] = (byte )(x & 0xff);
-              x >>= 8;
-            }
-            bufIdx += 4;
-          }
-        }
-
-        file.write(buf);
-      } else { // !fasterButUglier
 if(DEBUG_WR_DATA)System.err.println("wrIntMtx: row len (" + matrix.length + ")");
-        file.writeInt(matrix.length);
-        for (int i = 0; i < matrix.length; i++) {
-          final int len = matrix[i].length;
+      file.writeInt(matrix.length);
+      for (int i = 0; i < matrix.length; i++) {
+        final int len = matrix[i].length;
 if(DEBUG_WR_DATA)System.err.println("wrIntMtx: #" + i + " len (" + matrix[i].length + ")");
-          file.writeInt(len);
-          for (int j = 0; j < len; j++) {
-if(DEBUG_WR_DATA_DETAIL)System.err.println("wrIntMtx: #" + i + "," + j + " (" + matrix[i][j] + ")");
-            file.writeInt(matrix[i][j]);
-          }
-        }
+        file.writeInt(len);
+if(DEBUG_WR_DATA_DETAIL){
+  for (int j = 0; j < len; j++) {
+    System.err.println("wrIntMtx: #" + i + "," + j + " (" + matrix[i][j] + ")");
+  }
+}
+        BinaryArrayIO.write(file, null, matrix[i], 0, len);
       }
     }
   }
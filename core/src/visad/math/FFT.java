@@ -32,8 +32,8 @@ import java.rmi.*;
 
 /**
  FFT is the VisAD class for Fourier Transforms, using
- the Fast Fourier Transform when the domain length is
- a power of two.<p>
+ the Fast Fourier Transform for any domain length (see
+ {@link FFTPlan}).<p>
 */
 
 public class FFT {
@@ -258,13 +258,20 @@ public class FFT {
     if (use_double) {
       double[][] values = field.getValues(false);
       if (values.length == 1) {
+        // real values take about half the work of complex values
         int n = values[0].length;
         double[][] new_values = new double[2][n];
-        System.arraycopy(values[0], 0, new_values[0], 0, n);
-        for (int i=0; i<n; i++) new_values[1][i] = 0.0;
+        if (ddim == 1) {
+          FFTPlan.getPlan(n).realTransform(values[0], new_values[0],
+                                           new_values[1], forward);
+        }
+        else { // ddim == 2
+          FFTPlan.realTransform2D(field_lens[0], field_lens[1], values[0],
+                                  new_values[0], new_values[1], forward);
+        }
         values = new_values;
       }
-      if (ddim == 1) {
+      else if (ddim == 1) {
         values = FT1D(values, forward);
       }
       else { // ddim == 2
@@ -275,13 +282,20 @@ public class FFT {
     else { // !use_double
       float[][] values = field.getFloats(false);
       if (values.length == 1) {
+        // real values take about half the work of complex values
         int n = values[0].length;
         float[][] new_values = new float[2][n];
-        System.arraycopy(values[0], 0, new_values[0], 0, n);
-        for (int i=0; i<n; i++) new_values[1][i] = 0.0f;
+        if (ddim == 1) {
+          FFTPlan.getPlan(n).realTransform(values[0], new_values[0],
+                                           new_values[1], forward);
+        }
+        else { // ddim == 2
+          FFTPlan.realTransform2D(field_lens[0], field_lens[1], values[0],
+                                  new_values[0], new_values[1], forward);
+        }
         values = new_values;
       }
-      if (ddim == 1) {
+      else if (ddim == 1) {
         values = FT1D(values, forward);
       }
       else { // ddim == 2
@@ -294,8 +308,8 @@ public class FFT {
 
 
   /**
-   * compute 2-D Fourier transform, calling 1-D FT twice
-   * use FFT if rows and cols are powers of 2
+   * compute 2-D Fourier transform, transforming along rows and
+   * then along columns with an {@link FFTPlan} for each
    * @param rows first dimension for 2-D
    * @param cols second dimension for 2-D
    * @param x array for take Fourier transform of, dimensioned
@@ -316,41 +330,14 @@ public class FFT {
     if (rows * cols != n) {
       throw new FieldException(rows + " * " + cols + " must equal " + n);
     }
-    float[][] y = new float[2][n];
-    float[][] z = new float[2][rows];
-    for (int c=0; c<cols; c++) {
-      int i = c * rows;
-      for (int r=0; r<rows; r++) {
-        z[0][r] = x[0][i + r];
-        z[1][r] = x[1][i + r];
-      }
-      z = FT1D(z, forward);
-      for (int r=0; r<rows; r++) {
-        y[0][i + r] = z[0][r];
-        y[1][i + r] = z[1][r];
-      }
-    }
-
-    float[][] u = new float[2][n];
-    float[][] v = new float[2][cols];
-    for (int r=0; r<rows; r++) {
-      int i = r;
-      for (int c=0; c<cols; c++) {
-        v[0][c] = y[0][i + c * rows];
-        v[1][c] = y[1][i + c * rows];
-      }
-      v = FT1D(v, forward);
-      for (int c=0; c<cols; c++) {
-        u[0][i + c * rows] = v[0][c];
-        u[1][i + c * rows] = v[1][c];
-      }
-    }
-    return u;
+    float[][] y = {(float[]) x[0].clone(), (float[]) x[1].clone()};
+    if (n > 0) FFTPlan.transform2D(rows, cols, y[0], y[1], forward);
+    return y;
   }
 
   /**
-   * compute 2-D Fourier transform, calling 1-D FT twice
-   * use FFT if rows and cols are powers of 2
+   * compute 2-D Fourier transform, transforming along rows and
+   * then along columns with an {@link FFTPlan} for each
    * @param rows first dimension for 2-D
    * @param cols second dimension for 2-D
    * @param x array for take Fourier transform of, dimensioned
@@ -371,41 +358,14 @@ public class FFT {
     if (rows * cols != n) {
       throw new FieldException(rows + " * " + cols + " must equal " + n);
     }
-    double[][] y = new double[2][n];
-    double[][] z = new double[2][rows];
-    for (int c=0; c<cols; c++) {
-      int i = c * rows;
-      for (int r=0; r<rows; r++) {
-        z[0][r] = x[0][i + r];
-        z[1][r] = x[1][i + r];
-      }
-      z = FT1D(z, forward);
-      for (int r=0; r<rows; r++) {
-        y[0][i + r] = z[0][r];
-        y[1][i + r] = z[1][r];
-      }
-    }
-
-    double[][] u = new double[2][n];
-    double[][] v = new double[2][cols];
-    for (int r=0; r<rows; r++) {
-      int i = r;
-      for (int c=0; c<cols; c++) {
-        v[0][c] = y[0][i + c * rows];
-        v[1][c] = y[1][i + c * rows];
-      }
-      v = FT1D(v, forward);
-      for (int c=0; c<cols; c++) {
-        u[0][i + c * rows] = v[0][c];
-        u[1][i + c * rows] = v[1][c];
-      }
-    }
-    return u;
+    double[][] y = {(double[]) x[0].clone(), (double[]) x[1].clone()};
+    if (n > 0) FFTPlan.transform2D(rows, cols, y[0], y[1], forward);
+    return y;
   }
 
   /**
-   * compute 1-D Fourier transform
-   * use FFT if length (2nd dimension of x) is a power of 2
+   * compute 1-D Fourier transform of any length, using the
+   * {@link FFTPlan} for the length
    * @param x array for take Fourier transform of, dimensioned
    *          [2][length], the first index (2) is over real &
    *          imaginary parts
@@ -419,42 +379,9 @@ public class FFT {
     if (x.length != 2 || x[0].length != x[1].length) {
       throw new FieldException("bad x lengths");
     }
-    int n = x[0].length;
-    int n2 = 1;
-    boolean fft = true;
-    while (n2 < n) {
-      n2 *= 2;
-      if (n2 > n) {
-        fft = false;
-      }
-    }
-    if (fft) return FFT1D(x, forward);
-
-    float[][] temp = new float[2][n];
-    float angle = (float) (-2.0 * Math.PI / n);
-    if (!forward) angle = -angle;
-    for (int i=0; i<n; i++) {
-      temp[0][i] = (float) Math.cos(i * angle);
-      temp[1][i] = (float) Math.sin(i * angle);
-    }
-    float[][] y = new float[2][n];
-    for (int i=0; i<n; i++) {
-      float re = 0.0f;
-      float im = 0.0f;
-      for (int j=0; j<n; j++) {
-        int m = (i * j) % n;
-        re += x[0][j] * temp[0][m] - x[1][j] * temp[1][m];
-        im += x[0][j] * temp[1][m] + x[1][j] * temp[0][m];
-      }
-      y[0][i] = re;
-      y[1][i] = im;
-    }
-    if (!forward) {
-      for(int i=0; i<n; i++) {
-        y[0][i] /= n;
-        y[1][i] /= n;
-      }
-    }
+    float[][] y = {(float[]) x[0].clone(), (float[]) x[1].clone()};
+    int n = y[0].length;
+    if (n > 0) FFTPlan.getPlan(n).transform(y[0], y[1], forward);
     return y;
   }
 
@@ -474,82 +401,13 @@ public class FFT {
     if (x.length != 2 || x[0].length != x[1].length) {
       throw new FieldException("bad x lengths");
     }
-    int n = x[0].length;
-    int n2 = 1;
-    while (n2 < n) {
-      n2 *= 2;
-      if (n2 > n) {
-        throw new FieldException("x length must be power of 2");
-      }
-    }
-    n2 = n/2;
-    float[][] temp = new float[2][n2];
-    float angle = (float) (-2.0 * Math.PI / n);
-    if (!forward) angle = -angle;
-    for (int i=0; i<n2; i++) { 
-      temp[0][i] = (float) Math.cos(i * angle);
-      temp[1][i] = (float) Math.sin(i * angle);
-    }
-    float[][] y = FFT1D(x, temp);
-    if (!forward) {
-      for(int i=0; i<n; i++) {
-        y[0][i] /= n;
-        y[1][i] /= n; 
-      }
-    }
-    return y; 
-  }
-
-  /** inner function for 1-D Fast Fourier Transform */
-  private static float[][] FFT1D(float[][] x, float[][] temp) {
-    int n = x[0].length;
-    int n2 = n/2;
-    int k=0;
-    int butterfly;
-    int buttered=0; 
-    if (n==1) {
-      float[][] z1 = {{x[0][0]}, {x[1][0]}};
-      return z1;
-    }
-
-    butterfly= (temp[0].length/n2);
-
-    float[][] z = new float[2][n2];
-    float[][] w = new float[2][n2];
-
-    for (k=0; k<n/2; k++) {  
-      int k2 = 2*k;
-      z[0][k] = x[0][k2];
-      z[1][k] = x[1][k2];
-      w[0][k] = x[0][k2 + 1];
-      w[1][k] = x[1][k2 + 1];
-    }
-
-    z = FFT1D(z, temp);
-    w = FFT1D(w, temp);
-
-    float[][] y = new float[2][n];
-    for (k=0; k<n2;k++) {
-      y[0][k] = z[0][k];
-      y[1][k] = z[1][k];
-
-      float re = w[0][k] * temp[0][buttered] - w[1][k] * temp[1][buttered];
-      float im = w[0][k] * temp[1][buttered] + w[1][k] * temp[0][buttered];
-      w[0][k] = re;
-      w[1][k] = im;
-
-      y[0][k] += w[0][k];
-      y[1][k] += w[1][k];
-      y[0][k + n2] = z[0][k] - w[0][k];
-      y[1][k + n2] = z[1][k] - w[1][k];
-      buttered += butterfly;
-    }
-    return y;
+    checkPowerOfTwo(x[0].length);
+    return FT1D(x, forward);
   }
 
   /**
-   * compute 1-D Fourier transform
-   * use FFT if length (2nd dimension of x) is a power of 2
+   * compute 1-D Fourier transform of any length, using the
+   * {@link FFTPlan} for the length
    * @param x array for take Fourier transform of, dimensioned
    *          [2][length], the first index (2) is over real &
    *          imaginary parts
@@ -563,42 +421,9 @@ public class FFT {
     if (x.length != 2 || x[0].length != x[1].length) {
       throw new FieldException("bad x lengths");
     }
-    int n = x[0].length;
-    int n2 = 1;
-    boolean fft = true;
-    while (n2 < n) {
-      n2 *= 2;
-      if (n2 > n) {
-        fft = false;
-      }
-    }
-    if (fft) return FFT1D(x, forward);
-
-    double[][] temp = new double[2][n];
-    double angle = -2.0 * Math.PI / n;
-    if (!forward) angle = -angle;
-    for (int i=0; i<n; i++) {
-      temp[0][i] = Math.cos(i * angle);
-      temp[1][i] = Math.sin(i * angle);
-    }
-    double[][] y = new double[2][n];
-    for (int i=0; i<n; i++) {
-      double re = 0.0;
-      double im = 0.0;
-      for (int j=0; j<n; j++) {
-        int m = (i * j) % n;
-        re += x[0][j] * temp[0][m] - x[1][j] * temp[1][m];
-        im += x[0][j] * temp[1][m] + x[1][j] * temp[0][m];
-      }
-      y[0][i] = re;
-      y[1][i] = im;
-    }
-    if (!forward) {
-      for(int i=0; i<n; i++) {
-        y[0][i] /= n;
-        y[1][i] /= n;
-      }
-    }
+    double[][] y = {(double[]) x[0].clone(), (double[]) x[1].clone()};
+    int n = y[0].length;
+    if (n > 0) FFTPlan.getPlan(n).transform(y[0], y[1], forward);
     return y;
   }
 
@@ -618,7 +443,11 @@ public class FFT {
     if (x.length != 2 || x[0].length != x[1].length) {
       throw new FieldException("bad x lengths");
     }
-    int n = x[0].length;
+    checkPowerOfTwo(x[0].length);
+    return FT1D(x, forward);
+  }
+
+  private static void checkPowerOfTwo(int n) throws VisADException {
     int n2 = 1;
     while (n2 < n) {
       n2 *= 2;
@@ -626,69 +455,6 @@ public class FFT {
         throw new FieldException("x length must be power of 2");
       }
     }
-    n2 = n/2;
-    double[][] temp = new double[2][n2];
-    double angle = (double) (-2.0 * Math.PI / n);
-    if (!forward) angle = -angle;
-    for (int i=0; i<n2; i++) {
-      temp[0][i] = (double) Math.cos(i * angle);
-      temp[1][i] = (double) Math.sin(i * angle);
-    }
-    double[][] y = FFT1D(x, temp);
-    if (!forward) {
-      for(int i=0; i<n; i++) {
-        y[0][i] /= n;
-        y[1][i] /= n; 
-      }
-    }
-    return y; 
-  }
-
-  /** inner function for 1-D Fast Fourier Transform */
-  private static double[][] FFT1D(double[][] x, double[][] temp) {
-    int n = x[0].length;
-    int n2 = n/2;
-    int k=0;
-    int butterfly;
-    int buttered=0; 
-    if (n==1) {
-      double[][] z1 = {{x[0][0]}, {x[1][0]}};
-      return z1;
-    }
-
-    butterfly= (temp[0].length/n2);
-
-    double[][] z = new double[2][n2];
-    double[][] w = new double[2][n2];
-
-    for (k=0; k<n2; k++) {
-      int k2 = 2 * k;
-      z[0][k] = x[0][k2];
-      z[1][k] = x[1][k2];
-      w[0][k] = x[0][k2 + 1];
-      w[1][k] = x[1][k2 + 1];
-    }
-
-    z = FFT1D(z, temp);
-    w = FFT1D(w, temp);
-
-    double[][] y = new double[2][n];
-    for (k=0; k<n2;k++) {
-      y[0][k] = z[0][k];
-      y[1][k] = z[1][k];
-
-      double re = w[0][k] * temp[0][buttered] - w[1][k] * temp[1][buttered];
-      double im = w[0][k] * temp[1][buttered] + w[1][k] * temp[0][buttered];
-      w[0][k] = re;
-      w[1][k] = im;
-
-      y[0][k] += w[0][k];
-      y[1][k] += w[1][k];
-      y[0][k + n2] = z[0][k] - w[0][k];
-      y[1][k + n2] = z[1][k] - w[1][k];
-      buttered += butterfly;
-    }
-    return y;
   }
 
   /** test Fourier Transform methods */
@@ -0,0 +1,924 @@
+//
+// FFTPlan.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.math;
+
+import visad.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ FFTPlan is a reusable Fast Fourier Transform of one length.<p>
+
+ Any length is supported: the length is factored into radix 4, 2,
+ 3, 5 and general odd radix butterfly stages (in the manner of Mark
+ Borgerding's KISS FFT), and lengths with a prime factor above
+ {@link #MAX_RADIX} are done by Bluestein's chirp-z algorithm with
+ a power of two convolution.  Twiddle factors are computed once per
+ plan, and plans are shared through {@link #getPlan(int)}, so a plan
+ may be used by several threads at once.<p>
+
+ Transforms follow {@link FFT}: the forward transform is
+ X[k] = sum x[j] * exp(-2 pi i j k / n), and the backward transform
+ uses exp(+2 pi i j k / n) and divides by n.  Real input can be
+ transformed with about half the work of complex input.<p>
+
+ The 2-D transforms run their row and column passes on a fork-join
+ pool; the number of threads defaults to the
+ <code>visad.math.fft.parallelism</code> system property, or to the
+ number of processors.<p>
+*/
+public final class FFTPlan {
+
+  /** largest radix done by a butterfly stage; lengths with larger
+      prime factors use Bluestein's algorithm */
+  public static final int MAX_RADIX = 64;
+
+  /** number of threads for 2-D transforms */
+  private static volatile int parallelism =
+    Integer.getInteger("visad.math.fft.parallelism",
+                       Runtime.getRuntime().availableProcessors()).intValue();
+
+  /** smallest 2-D transform done by more than one thread */
+  private static final int PARALLEL_SIZE = 65536;
+
+  /** lines of a column pass that are gathered together */
+  private static final int TILE = 16;
+
+  /** plans by length */
+  private static final ConcurrentHashMap<Integer, FFTPlan> plans =
+    new ConcurrentHashMap<Integer, FFTPlan>();
+
+  /** one pool per parallelism level */
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools =
+    new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  /** transform length */
+  private final int n;
+
+  /** radix and remaining length of each butterfly stage, in pairs;
+      null for Bluestein plans */
+  private final int[] factors;
+
+  /** largest radix of a stage */
+  private final int maxRadix;
+
+  /** exp(-2 pi i k / n) for k < n, for butterfly stages */
+  private final double[] twRe, twIm;
+
+  /** Bluestein convolution length, plan, chirp exp(-pi i k^2 / n),
+      and transformed conjugate chirp divided by the length */
+  private final int bm;
+  private final FFTPlan inner;
+  private final double[] chirpRe, chirpIm;
+  private final double[] convRe, convIm;
+
+  /** for real input of even length: the plan of half the length,
+      and exp(-2 pi i k / n) for k < n/2 */
+  private final FFTPlan half;
+  private final double[] realRe, realIm;
+
+  private FFTPlan(int length) throws VisADException {
+    n = length;
+
+    // factor n into radix 4, then 2, then odd radices
+    List<Integer> list = new ArrayList<Integer>();
+    int rem = n;
+    int p = 4;
+    double floor_sqrt = Math.floor(Math.sqrt(n));
+    int max = 1;
+    do {
+      while (rem % p != 0) {
+        if (p == 4) p = 2;
+        else if (p == 2) p = 3;
+        else p += 2;
+        if (p > floor_sqrt) p = rem;
+      }
+      rem /= p;
+      list.add(Integer.valueOf(p));
+      list.add(Integer.valueOf(rem));
+      max = Math.max(max, p);
+    } while (rem > 1);
+
+    if (max <= MAX_RADIX) {
+      factors = new int[list.size()];
+      for (int i=0; i<factors.length; i++) {
+        factors[i] = list.get(i).intValue();
+      }
+      maxRadix = max;
+      twRe = new double[n];
+      twIm = new double[n];
+      for (int i=0; i<n; i++) {
+        double angle = -2.0 * Math.PI * i / n;
+        twRe[i] = Math.cos(angle);
+        twIm[i] = Math.sin(angle);
+      }
+      bm = 0;
+      inner = null;
+      chirpRe = chirpIm = convRe = convIm = null;
+    }
+    else {
+      factors = null;
+      maxRadix = 0;
+      twRe = twIm = null;
+      int m = 1;
+      while (m < 2 * n - 1) m *= 2;
+      bm = m;
+      inner = getPlan(m);
+      chirpRe = new double[n];
+      chirpIm = new double[n];
+      long n2 = 2L * n;
+      for (int k=0; k<n; k++) {
+        // k^2 mod 2n keeps the angle small and exact
+        double angle = -Math.PI * (((long) k * k) % n2) / n;
+        chirpRe[k] = Math.cos(angle);
+        chirpIm[k] = Math.sin(angle);
+      }
+      double[] bRe = new double[m];
+      double[] bIm = new double[m];
+      bRe[0] = chirpRe[0];
+      bIm[0] = -chirpIm[0];
+      for (int k=1; k<n; k++) {
+        bRe[k] = bRe[m - k] = chirpRe[k];
+        bIm[k] = bIm[m - k] = -chirpIm[k];
+      }
+      convRe = new double[m];
+      convIm = new double[m];
+      Workspace ws = inner.newWorkspace();
+      inner.forward(bRe, bIm, 0, convRe, convIm, 0, ws);
+      double scale = 1.0 / m;
+      for (int k=0; k<m; k++) {
+        convRe[k] *= scale;
+        convIm[k] *= scale;
+      }
+    }
+
+    if (n % 2 == 0) {
+      int h = n / 2;
+      half = getPlan(h);
+      realRe = new double[h];
+      realIm = new double[h];
+      for (int k=0; k<h; k++) {
+        double angle = -2.0 * Math.PI * k / n;
+        realRe[k] = Math.cos(angle);
+        realIm[k] = Math.sin(angle);
+      }
+    }
+    else {
+      half = null;
+      realRe = realIm = null;
+    }
+  }
+
+  /**
+   * return the plan for transforms of length n, making it if needed
+   * @param n transform length
+   * @return the plan
+   * @throws VisADException  n is not positive
+   */
+  public static FFTPlan getPlan(int n) throws VisADException {
+    if (n < 1) {
+      throw new VisADException("FFTPlan: length must be positive: " + n);
+    }
+    Integer key = Integer.valueOf(n);
+    FFTPlan plan = plans.get(key);
+    if (plan == null) {
+      FFTPlan new_plan = new FFTPlan(n);
+      plan = plans.putIfAbsent(key, new_plan);
+      if (plan == null) plan = new_plan;
+    }
+    return plan;
+  }
+
+  /**
+   * @return the transform length
+   */
+  public int getLength() {
+    return n;
+  }
+
+  /**
+   * Set the number of threads used by 2-D transforms.
+   * @param level number of threads; 1 (or less) transforms sequentially
+   */
+  public static void setParallelism(int level) {
+    parallelism = Math.max(1, level);
+  }
+
+  /**
+   * @return the number of threads used by 2-D transforms
+   */
+  public static int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * transform complex values in place
+   * @param re real parts, of length getLength()
+   * @param im imaginary parts, of length getLength()
+   * @param forward true for forward and false for backward
+   */
+  public void transform(double[] re, double[] im, boolean forward) {
+    checkLength(re.length);
+    checkLength(im.length);
+    transform(re, im, 0, forward, newWorkspace());
+  }
+
+  /**
+   * transform complex values in place
+   * @param re real parts, of length getLength()
+   * @param im imaginary parts, of length getLength()
+   * @param forward true for forward and false for backward
+   */
+  public void transform(float[] re, float[] im, boolean forward) {
+    checkLength(re.length);
+    checkLength(im.length);
+    double[] dre = new double[n];
+    double[] dim = new double[n];
+    for (int i=0; i<n; i++) {
+      dre[i] = re[i];
+      dim[i] = im[i];
+    }
+    transform(dre, dim, 0, forward, newWorkspace());
+    for (int i=0; i<n; i++) {
+      re[i] = (float) dre[i];
+      im[i] = (float) dim[i];
+    }
+  }
+
+  /**
+   * transform real values
+   * @param x real values, of length getLength()
+   * @param re return real parts of the transform, of length getLength()
+   * @param im return imaginary parts of the transform, of length
+   *           getLength()
+   * @param forward true for forward and false for backward
+   */
+  public void realTransform(double[] x, double[] re, double[] im,
+                            boolean forward) {
+    checkLength(x.length);
+    checkLength(re.length);
+    checkLength(im.length);
+    realTransform(x, 0, re, im, 0, forward, newWorkspace());
+  }
+
+  /**
+   * transform real values
+   * @param x real values, of length getLength()
+   * @param re return real parts of the transform, of length getLength()
+   * @param im return imaginary parts of the transform, of length
+   *           getLength()
+   * @param forward true for forward and false for backward
+   */
+  public void realTransform(float[] x, float[] re, float[] im,
+                            boolean forward) {
+    checkLength(x.length);
+    checkLength(re.length);
+    checkLength(im.length);
+    double[] dx = new double[n];
+    for (int i=0; i<n; i++) dx[i] = x[i];
+    double[] dre = new double[n];
+    double[] dim = new double[n];
+    realTransform(dx, 0, dre, dim, 0, forward, newWorkspace());
+    for (int i=0; i<n; i++) {
+      re[i] = (float) dre[i];
+      im[i] = (float) dim[i];
+    }
+  }
+
+  private void checkLength(int length) {
+    if (length != n) {
+      throw new IllegalArgumentException("FFTPlan: array length " + length +
+                                         " must equal " + n);
+    }
+  }
+
+  /**
+   * transform 2-D complex values in place, as {@link FFT#FT2D}
+   * @param rows first (fastest varying) dimension
+   * @param cols second dimension
+   * @param re real parts, of length rows * cols
+   * @param im imaginary parts, of length rows * cols
+   * @param forward true for forward and false for backward
+   * @throws VisADException  a VisAD error occurred
+   */
+  public static void transform2D(int rows, int cols, double[] re,
+                                 double[] im, boolean forward)
+         throws VisADException {
+    run2D(rows, cols, null, null, re, im, null, null, forward);
+  }
+
+  /**
+   * transform 2-D complex values in place, as {@link FFT#FT2D}
+   * @param rows first (fastest varying) dimension
+   * @param cols second dimension
+   * @param re real parts, of length rows * cols
+   * @param im imaginary parts, of length rows * cols
+   * @param forward true for forward and false for backward
+   * @throws VisADException  a VisAD error occurred
+   */
+  public static void transform2D(int rows, int cols, float[] re,
+                                 float[] im, boolean forward)
+         throws VisADException {
+    run2D(rows, cols, null, null, null, null, re, im, forward);
+  }
+
+  /**
+   * transform 2-D real values
+   * @param rows first (fastest varying) dimension
+   * @param cols second dimension
+   * @param x real values, of length rows * cols
+   * @param re return real parts of the transform, of length rows * cols
+   * @param im return imaginary parts of the transform, of length
+   *           rows * cols
+   * @param forward true for forward and false for backward
+   * @throws VisADException  a VisAD error occurred
+   */
+  public static void realTransform2D(int rows, int cols, double[] x,
+                                     double[] re, double[] im,
+                                     boolean forward)
+         throws VisADException {
+    run2D(rows, cols, x, null, re, im, null, null, forward);
+  }
+
+  /**
+   * transform 2-D real values
+   * @param rows first (fastest varying) dimension
+   * @param cols second dimension
+   * @param x real values, of length rows * cols
+   * @param re return real parts of the transform, of length rows * cols
+   * @param im return imaginary parts of the transform, of length
+   *           rows * cols
+   * @param forward true for forward and false for backward
+   * @throws VisADException  a VisAD error occurred
+   */
+  public static void realTransform2D(int rows, int cols, float[] x,
+                                     float[] re, float[] im,
+                                     boolean forward)
+         throws VisADException {
+    run2D(rows, cols, null, x, null, null, re, im, forward);
+  }
+
+  /** transform along rows (contiguous lines, starting from the real
+      values dx or fx if either is non-null), then along columns;
+      the result is in either dre and dim or fre and fim */
+  private static void run2D(int rows, int cols, double[] dx, float[] fx,
+                            double[] dre, double[] dim,
+                            float[] fre, float[] fim, boolean forward)
+          throws VisADException {
+    int n = rows * cols;
+    int[] lengths = (dre != null) ?
+      new int[] {dre.length, dim.length} :
+      new int[] {fre.length, fim.length};
+    for (int i=0; i<lengths.length; i++) {
+      if (lengths[i] != n) {
+        throw new FieldException(rows + " * " + cols + " must equal " +
+                                 lengths[i]);
+      }
+    }
+    if (dx != null && dx.length != n || fx != null && fx.length != n) {
+      throw new FieldException(rows + " * " + cols + " must equal " +
+                               (dx != null ? dx.length : fx.length));
+    }
+    FFTPlan row_plan = getPlan(rows);
+    FFTPlan col_plan = getPlan(cols);
+
+    int level = parallelism;
+    if (level <= 1 || n < PARALLEL_SIZE) level = 1;
+    List<Pass> tasks = new ArrayList<Pass>();
+    int ntasks = Math.min(cols, 4 * level);
+    for (int t=0; t<ntasks; t++) {
+      tasks.add(new Pass(row_plan, true, rows, cols, t * cols / ntasks,
+                         (t + 1) * cols / ntasks, dx, fx, dre, dim,
+                         fre, fim, forward));
+    }
+    invoke(tasks, level);
+
+    tasks.clear();
+    int ntiles = (rows + TILE - 1) / TILE;
+    ntasks = Math.min(ntiles, 4 * level);
+    for (int t=0; t<ntasks; t++) {
+      tasks.add(new Pass(col_plan, false, rows, cols,
+                         Math.min(rows, (t * ntiles / ntasks) * TILE),
+                         Math.min(rows, ((t + 1) * ntiles / ntasks) * TILE),
+                         null, null, dre, dim, fre, fim, forward));
+    }
+    invoke(tasks, level);
+  }
+
+  private static void invoke(final List<Pass> tasks, int level) {
+    if (level > 1 && tasks.size() > 1) {
+      getPool(level).invoke(new RecursiveAction() {
+        protected void compute() {
+          ForkJoinTask.invokeAll(tasks);
+        }
+      });
+    }
+    else {
+      for (Pass task : tasks) task.compute();
+    }
+  }
+
+  private static ForkJoinPool getPool(int level) {
+    Integer key = Integer.valueOf(level);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool new_pool = new ForkJoinPool(level);
+      pool = pools.putIfAbsent(key, new_pool);
+      if (pool == null) pool = new_pool;
+      else new_pool.shutdown();
+    }
+    return pool;
+  }
+
+  /** one thread's share of a 2-D pass: lines start .. end-1, along
+      rows (each line is a column index, of contiguous values) or
+      along columns (each line is a row index, of values a row apart,
+      gathered TILE lines at a time) */
+  private static class Pass extends RecursiveAction {
+    private final FFTPlan plan;
+    private final boolean along_rows;
+    private final int rows, cols, start, end;
+    private final double[] dx, dre, dim;
+    private final float[] fx, fre, fim;
+    private final boolean forward;
+
+    Pass(FFTPlan plan, boolean along_rows, int rows, int cols,
+         int start, int end, double[] dx, float[] fx, double[] dre,
+         double[] dim, float[] fre, float[] fim, boolean forward) {
+      this.plan = plan;
+      this.along_rows = along_rows;
+      this.rows = rows;
+      this.cols = cols;
+      this.start = start;
+      this.end = end;
+      this.dx = dx;
+      this.fx = fx;
+      this.dre = dre;
+      this.dim = dim;
+      this.fre = fre;
+      this.fim = fim;
+      this.forward = forward;
+    }
+
+    protected void compute() {
+      Workspace ws = plan.newWorkspace();
+      if (along_rows) {
+        double[] re = new double[rows];
+        double[] im = new double[rows];
+        double[] x = (dx != null || fx != null) ? new double[rows] : null;
+        for (int c=start; c<end; c++) {
+          int i = c * rows;
+          if (x != null) {
+            if (dx != null) System.arraycopy(dx, i, x, 0, rows);
+            else for (int r=0; r<rows; r++) x[r] = fx[i + r];
+            plan.realTransform(x, 0, re, im, 0, forward, ws);
+          }
+          else {
+            if (dre != null) {
+              System.arraycopy(dre, i, re, 0, rows);
+              System.arraycopy(dim, i, im, 0, rows);
+            }
+            else {
+              for (int r=0; r<rows; r++) {
+                re[r] = fre[i + r];
+                im[r] = fim[i + r];
+              }
+            }
+            plan.transform(re, im, 0, forward, ws);
+          }
+          if (dre != null) {
+            System.arraycopy(re, 0, dre, i, rows);
+            System.arraycopy(im, 0, dim, i, rows);
+          }
+          else {
+            for (int r=0; r<rows; r++) {
+              fre[i + r] = (float) re[r];
+              fim[i + r] = (float) im[r];
+            }
+          }
+        }
+      }
+      else {
+        double[] re = new double[TILE * cols];
+        double[] im = new double[TILE * cols];
+        for (int r0=start; r0<end; r0+=TILE) {
+          int nr = Math.min(TILE, end - r0);
+          for (int c=0; c<cols; c++) {
+            int i = c * rows + r0;
+            for (int b=0; b<nr; b++) {
+              if (dre != null) {
+                re[b * cols + c] = dre[i + b];
+                im[b * cols + c] = dim[i + b];
+              }
+              else {
+                re[b * cols + c] = fre[i + b];
+                im[b * cols + c] = fim[i + b];
+              }
+            }
+          }
+          for (int b=0; b<nr; b++) {
+            plan.transform(re, im, b * cols, forward, ws);
+          }
+          for (int c=0; c<cols; c++) {
+            int i = c * rows + r0;
+            for (int b=0; b<nr; b++) {
+              if (dre != null) {
+                dre[i + b] = re[b * cols + c];
+                dim[i + b] = im[b * cols + c];
+              }
+              else {
+                fre[i + b] = (float) re[b * cols + c];
+                fim[i + b] = (float) im[b * cols + c];
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** scratch arrays for one thread's transforms with a plan */
+  private static final class Workspace {
+    /** copy of the input */
+    double[] tRe, tIm;
+    /** values of one general radix butterfly */
+    double[] sRe, sIm;
+    /** Bluestein convolution arrays */
+    double[] aRe, aIm, bRe, bIm;
+    Workspace inner;
+    /** real input packed as complex values, and its transform */
+    double[] zRe, zIm, yRe, yIm;
+    Workspace half;
+  }
+
+  private Workspace newWorkspace() {
+    Workspace ws = new Workspace();
+    ws.tRe = new double[n];
+    ws.tIm = new double[n];
+    if (factors != null) {
+      if (maxRadix > 5) {
+        ws.sRe = new double[maxRadix];
+        ws.sIm = new double[maxRadix];
+      }
+    }
+    else {
+      ws.aRe = new double[bm];
+      ws.aIm = new double[bm];
+      ws.bRe = new double[bm];
+      ws.bIm = new double[bm];
+      ws.inner = inner.newWorkspace();
+    }
+    if (half != null) {
+      int h = n / 2;
+      ws.zRe = new double[h];
+      ws.zIm = new double[h];
+      ws.yRe = new double[h];
+      ws.yIm = new double[h];
+      ws.half = half.newWorkspace();
+    }
+    return ws;
+  }
+
+  /** transform re and im from off to off+n-1 in place */
+  private void transform(double[] re, double[] im, int off,
+                         boolean forward, Workspace ws) {
+    // the backward transform is the conjugate of the forward
+    // transform of the conjugate
+    System.arraycopy(re, off, ws.tRe, 0, n);
+    if (forward) {
+      System.arraycopy(im, off, ws.tIm, 0, n);
+    }
+    else {
+      for (int i=0; i<n; i++) ws.tIm[i] = -im[off + i];
+    }
+    forward(ws.tRe, ws.tIm, 0, re, im, off, ws);
+    if (!forward) {
+      double scale = 1.0 / n;
+      for (int i=off; i<off+n; i++) {
+        re[i] *= scale;
+        im[i] *= -scale;
+      }
+    }
+  }
+
+  /** transform the real values x from xoff to xoff+n-1, into re and
+      im from off to off+n-1 */
+  private void realTransform(double[] x, int xoff, double[] re,
+                             double[] im, int off, boolean forward,
+                             Workspace ws) {
+    if (half == null) {
+      System.arraycopy(x, xoff, ws.tRe, 0, n);
+      for (int i=0; i<n; i++) ws.tIm[i] = 0.0;
+      forward(ws.tRe, ws.tIm, 0, re, im, off, ws);
+    }
+    else {
+      // transform the even and odd values as the real and imaginary
+      // parts of half as many complex values, and separate them
+      int h = n / 2;
+      for (int k=0; k<h; k++) {
+        ws.zRe[k] = x[xoff + 2 * k];
+        ws.zIm[k] = x[xoff + 2 * k + 1];
+      }
+      half.forward(ws.zRe, ws.zIm, 0, ws.yRe, ws.yIm, 0, ws.half);
+      for (int k=0; k<=h; k++) {
+        int k1 = (k == h) ? 0 : k;
+        int k2 = (k == 0) ? 0 : h - k;
+        double zr = ws.yRe[k1];
+        double zi = ws.yIm[k1];
+        double cr = ws.yRe[k2];
+        double ci = -ws.yIm[k2];
+        double er = 0.5 * (zr + cr);
+        double ei = 0.5 * (zi + ci);
+        double or = 0.5 * (zi - ci);
+        double oi = -0.5 * (zr - cr);
+        double wr = (k < h) ? realRe[k] : -1.0;
+        double wi = (k < h) ? realIm[k] : 0.0;
+        double xr = er + wr * or - wi * oi;
+        double xi = ei + wr * oi + wi * or;
+        re[off + k] = xr;
+        im[off + k] = xi;
+        if (k > 0 && k < h) {
+          re[off + n - k] = xr;
+          im[off + n - k] = -xi;
+        }
+      }
+    }
+    if (!forward) {
+      // for real x the backward transform is the conjugate of the
+      // forward transform, divided by n
+      double scale = 1.0 / n;
+      for (int i=off; i<off+n; i++) {
+        re[i] *= scale;
+        im[i] *= -scale;
+      }
+    }
+  }
+
+  /** forward transform of in (from ioff) into out (from ooff) */
+  private void forward(double[] inRe, double[] inIm, int ioff,
+                       double[] outRe, double[] outIm, int ooff,
+                       Workspace ws) {
+    if (n == 1) {
+      outRe[ooff] = inRe[ioff];
+      outIm[ooff] = inIm[ioff];
+      return;
+    }
+    if (factors != null) {
+      work(outRe, outIm, ooff, inRe, inIm, ioff, 1, 0, ws);
+      return;
+    }
+
+    // Bluestein: multiply by the chirp, convolve with its conjugate,
+    // and multiply by the chirp again
+    double[] aRe = ws.aRe;
+    double[] aIm = ws.aIm;
+    for (int k=0; k<n; k++) {
+      double xr = inRe[ioff + k];
+      double xi = inIm[ioff + k];
+      aRe[k] = xr * chirpRe[k] - xi * chirpIm[k];
+      aIm[k] = xr * chirpIm[k] + xi * chirpRe[k];
+    }
+    for (int k=n; k<bm; k++) {
+      aRe[k] = 0.0;
+      aIm[k] = 0.0;
+    }
+    inner.forward(aRe, aIm, 0, ws.bRe, ws.bIm, 0, ws.inner);
+    for (int k=0; k<bm; k++) {
+      double br = ws.bRe[k];
+      double bi = ws.bIm[k];
+      // conjugate of the product, to transform backward
+      aRe[k] = br * convRe[k] - bi * convIm[k];
+      aIm[k] = -(br * convIm[k] + bi * convRe[k]);
+    }
+    inner.forward(aRe, aIm, 0, ws.bRe, ws.bIm, 0, ws.inner);
+    for (int k=0; k<n; k++) {
+      double cr = ws.bRe[k];
+      double ci = -ws.bIm[k];
+      outRe[ooff + k] = cr * chirpRe[k] - ci * chirpIm[k];
+      outIm[ooff + k] = cr * chirpIm[k] + ci * chirpRe[k];
+    }
+  }
+
+  /** butterfly stage s and the stages after it: transform the values
+      of in from f, fstride apart, into out from o */
+  private void work(double[] re, double[] im, int o,
+                    double[] inRe, double[] inIm, int f, int fstride,
+                    int s, Workspace ws) {
+    int p = factors[2 * s];
+    int m = factors[2 * s + 1];
+    int end = o + p * m;
+    if (m == 1) {
+      for (int i=o; i<end; i++) {
+        re[i] = inRe[f];
+        im[i] = inIm[f];
+        f += fstride;
+      }
+    }
+    else {
+      for (int i=o; i<end; i+=m) {
+        work(re, im, i, inRe, inIm, f, fstride * p, s + 1, ws);
+        f += fstride;
+      }
+    }
+    switch (p) {
+      case 2: butterfly2(re, im, o, fstride, m); break;
+      case 3: butterfly3(re, im, o, fstride, m); break;
+      case 4: butterfly4(re, im, o, fstride, m); break;
+      case 5: butterfly5(re, im, o, fstride, m); break;
+      default: butterfly(re, im, o, fstride, m, p, ws); break;
+    }
+  }
+
+  private void butterfly2(double[] re, double[] im, int o, int fstride,
+                          int m) {
+    int tw = 0;
+    for (int k=0; k<m; k++) {
+      int a = o + k;
+      int b = a + m;
+      double wr = twRe[tw];
+      double wi = twIm[tw];
+      double tr = re[b] * wr - im[b] * wi;
+      double ti = re[b] * wi + im[b] * wr;
+      re[b] = re[a] - tr;
+      im[b] = im[a] - ti;
+      re[a] += tr;
+      im[a] += ti;
+      tw += fstride;
+    }
+  }
+
+  private void butterfly3(double[] re, double[] im, int o, int fstride,
+                          int m) {
+    double epi3 = twIm[fstride * m];
+    int tw1 = 0;
+    int tw2 = 0;
+    for (int k=0; k<m; k++) {
+      int a = o + k;
+      int b = a + m;
+      int c = b + m;
+      double s1r = re[b] * twRe[tw1] - im[b] * twIm[tw1];
+      double s1i = re[b] * twIm[tw1] + im[b] * twRe[tw1];
+      double s2r = re[c] * twRe[tw2] - im[c] * twIm[tw2];
+      double s2i = re[c] * twIm[tw2] + im[c] * twRe[tw2];
+      double s3r = s1r + s2r;
+      double s3i = s1i + s2i;
+      double s0r = (s1r - s2r) * epi3;
+      double s0i = (s1i - s2i) * epi3;
+      double br = re[a] - 0.5 * s3r;
+      double bi = im[a] - 0.5 * s3i;
+      re[a] += s3r;
+      im[a] += s3i;
+      re[c] = br + s0i;
+      im[c] = bi - s0r;
+      re[b] = br - s0i;
+      im[b] = bi + s0r;
+      tw1 += fstride;
+      tw2 += 2 * fstride;
+    }
+  }
+
+  private void butterfly4(double[] re, double[] im, int o, int fstride,
+                          int m) {
+    int tw1 = 0;
+    int tw2 = 0;
+    int tw3 = 0;
+    for (int k=0; k<m; k++) {
+      int a = o + k;
+      int b = a + m;
+      int c = b + m;
+      int d = c + m;
+      double s0r = re[b] * twRe[tw1] - im[b] * twIm[tw1];
+      double s0i = re[b] * twIm[tw1] + im[b] * twRe[tw1];
+      double s1r = re[c] * twRe[tw2] - im[c] * twIm[tw2];
+      double s1i = re[c] * twIm[tw2] + im[c] * twRe[tw2];
+      double s2r = re[d] * twRe[tw3] - im[d] * twIm[tw3];
+      double s2i = re[d] * twIm[tw3] + im[d] * twRe[tw3];
+      double s5r = re[a] - s1r;
+      double s5i = im[a] - s1i;
+      double ar = re[a] + s1r;
+      double ai = im[a] + s1i;
+      double s3r = s0r + s2r;
+      double s3i = s0i + s2i;
+      double s4r = s0r - s2r;
+      double s4i = s0i - s2i;
+      re[c] = ar - s3r;
+      im[c] = ai - s3i;
+      re[a] = ar + s3r;
+      im[a] = ai + s3i;
+      re[b] = s5r + s4i;
+      im[b] = s5i - s4r;
+      re[d] = s5r - s4i;
+      im[d] = s5i + s4r;
+      tw1 += fstride;
+      tw2 += 2 * fstride;
+      tw3 += 3 * fstride;
+    }
+  }
+
+  private void butterfly5(double[] re, double[] im, int o, int fstride,
+                          int m) {
+    double yar = twRe[fstride * m];
+    double yai = twIm[fstride * m];
+    double ybr = twRe[2 * fstride * m];
+    double ybi = twIm[2 * fstride * m];
+    for (int u=0; u<m; u++) {
+      int i0 = o + u;
+      int i1 = i0 + m;
+      int i2 = i1 + m;
+      int i3 = i2 + m;
+      int i4 = i3 + m;
+      int t = u * fstride;
+      double s0r = re[i0];
+      double s0i = im[i0];
+      double s1r = re[i1] * twRe[t] - im[i1] * twIm[t];
+      double s1i = re[i1] * twIm[t] + im[i1] * twRe[t];
+      double s2r = re[i2] * twRe[2 * t] - im[i2] * twIm[2 * t];
+      double s2i = re[i2] * twIm[2 * t] + im[i2] * twRe[2 * t];
+      double s3r = re[i3] * twRe[3 * t] - im[i3] * twIm[3 * t];
+      double s3i = re[i3] * twIm[3 * t] + im[i3] * twRe[3 * t];
+      double s4r = re[i4] * twRe[4 * t] - im[i4] * twIm[4 * t];
+      double s4i = re[i4] * twIm[4 * t] + im[i4] * twRe[4 * t];
+      double s7r = s1r + s4r;
+      double s7i = s1i + s4i;
+      double s10r = s1r - s4r;
+      double s10i = s1i - s4i;
+      double s8r = s2r + s3r;
+      double s8i = s2i + s3i;
+      double s9r = s2r - s3r;
+      double s9i = s2i - s3i;
+      re[i0] = s0r + s7r + s8r;
+      im[i0] = s0i + s7i + s8i;
+      double s5r = s0r + s7r * yar + s8r * ybr;
+      double s5i = s0i + s7i * yar + s8i * ybr;
+      double s6r = s10i * yai + s9i * ybi;
+      double s6i = -s10r * yai - s9r * ybi;
+      re[i1] = s5r - s6r;
+      im[i1] = s5i - s6i;
+      re[i4] = s5r + s6r;
+      im[i4] = s5i + s6i;
+      double s11r = s0r + s7r * ybr + s8r * yar;
+      double s11i = s0i + s7i * ybr + s8i * yar;
+      double s12r = -s10i * ybi + s9i * yai;
+      double s12i = s10r * ybi - s9r * yai;
+      re[i2] = s11r + s12r;
+      im[i2] = s11i + s12i;
+      re[i3] = s11r - s12r;
+      im[i3] = s11i - s12i;
+    }
+  }
+
+  /** butterfly of any radix p, by direct summation */
+  private void butterfly(double[] re, double[] im, int o, int fstride,
+                         int m, int p, Workspace ws) {
+    double[] sRe = ws.sRe;
+    double[] sIm = ws.sIm;
+    for (int u=0; u<m; u++) {
+      for (int q=0, k=u; q<p; q++, k+=m) {
+        sRe[q] = re[o + k];
+        sIm[q] = im[o + k];
+      }
+      for (int q1=0, k=u; q1<p; q1++, k+=m) {
+        int tw = 0;
+        double accr = sRe[0];
+        double acci = sIm[0];
+        for (int q=1; q<p; q++) {
+          tw += fstride * k;
+          if (tw >= n) tw -= n;
+          accr += sRe[q] * twRe[tw] - sIm[q] * twIm[tw];
+          acci += sRe[q] * twIm[tw] + sIm[q] * twRe[tw];
+        }
+        re[o + k] = accr;
+        im[o + k] = acci;
+      }
+    }
+  }
+}
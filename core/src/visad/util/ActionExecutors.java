@@ -0,0 +1,164 @@
+//
+// ActionExecutors.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+
+package visad.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factories for the executors that run {@link visad.ActionImpl}s
+ * (displays and cells).  By default every ActionImpl runs on the shared
+ * "ActionThread" {@link ThreadPool}; an executor made here may instead be
+ * installed for all ActionImpls with
+ * {@link visad.ActionImpl#setDefaultExecutor} or for a single display or
+ * cell, or a group of them, with {@link visad.ActionImpl#setExecutor}.<P>
+ *
+ * The default executor may also be chosen with the system property
+ * <code>visad.actionimpl.executor</code>:
+ * <UL>
+ * <LI><code>pool</code> - the shared ThreadPool (the default)
+ * <LI><code>thread</code> - a thread per task; on Java 21 and later the
+ *     threads are virtual threads
+ * <LI><i>n</i> - a bounded pool of <i>n</i> threads
+ * </UL>
+ */
+public final class ActionExecutors {
+
+  /** keep idle threads of thread-per-task executors this long */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private ActionExecutors() {}
+
+  /**
+   * return an executor with at most threads threads; tasks wait in
+   * an unbounded queue when all threads are busy
+   * @param name prefix of the thread names
+   * @param threads maximum number of threads
+   */
+  public static ExecutorService newBoundedExecutor(String name, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive: " +
+                                         threads);
+    }
+    ThreadPoolExecutor exec = new ThreadPoolExecutor(threads, threads,
+      KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+    exec.allowCoreThreadTimeOut(true);
+    return exec;
+  }
+
+  /**
+   * return an executor that runs each task in its own thread, so tasks
+   * that block (for example on remote data) never delay other tasks;
+   * the threads are virtual threads when the Java runtime supports them,
+   * otherwise idle platform threads are reused
+   * @param name prefix of the thread names of platform threads
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String name) {
+    ExecutorService exec = newVirtualThreadPerTaskExecutor();
+    if (exec != null) return exec;
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+      KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new SynchronousQueue<Runnable>(), new NamedThreadFactory(name));
+  }
+
+  /**
+   * return true if newThreadPerTaskExecutor makes virtual threads in
+   * this Java runtime
+   */
+  public static boolean hasVirtualThreads() {
+    return getVirtualFactory() != null;
+  }
+
+  /**
+   * return the executor named by spec: "pool" or null for none (the
+   * shared ThreadPool), "thread" for a thread per task, or a number of
+   * threads for a bounded executor
+   * @param name prefix of the thread names
+   * @param spec executor specification
+   * @throws IllegalArgumentException if spec is not understood
+   */
+  public static ExecutorService fromSpec(String name, String spec) {
+    if (spec == null) return null;
+    spec = spec.trim();
+    if (spec.length() == 0 || spec.equalsIgnoreCase("pool")) return null;
+    if (spec.equalsIgnoreCase("thread") || spec.equalsIgnoreCase("virtual")) {
+      return newThreadPerTaskExecutor(name);
+    }
+    try {
+      return newBoundedExecutor(name, Integer.parseInt(spec));
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("unknown executor \"" + spec + "\"");
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    Method factory = getVirtualFactory();
+    if (factory == null) return null;
+    try {
+      return (ExecutorService) factory.invoke(null);
+    }
+    catch (Exception e) {
+      return null;
+    }
+  }
+
+  /** Executors.newVirtualThreadPerTaskExecutor, if it exists */
+  private static Method getVirtualFactory() {
+    try {
+      return java.util.concurrent.Executors.class.getMethod(
+        "newVirtualThreadPerTaskExecutor");
+    }
+    catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /** makes daemon threads named prefix-1, prefix-2, ... */
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+//
+// DataCacheManagerTest.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the eviction of arrays from the {@link DataCacheManager}.
+ */
+public class DataCacheManagerTest {
+
+  private static final int LENGTH = 1000;
+
+  private DataCacheManager manager;
+  private File oldCacheDir;
+  private File dir;
+  private List<Object> ids = new ArrayList<Object>();
+
+  @Before
+  public void setUp() throws Exception {
+    manager = DataCacheManager.getCacheManager();
+    oldCacheDir = manager.getCacheDir();
+    dir = File.createTempFile("cachetest", "");
+    dir.delete();
+    dir.mkdir();
+    manager.setCacheDir(dir);
+  }
+
+  @After
+  public void tearDown() {
+    for (Object id : ids) {
+      manager.removeFromCache(id);
+    }
+    manager.setCacheDir(oldCacheDir);
+    manager.setEvictionPolicy(DataCacheManager.createPolicy("lru"));
+    manager.setMemoryPercent(0.25);
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) f.delete();
+    }
+    dir.delete();
+  }
+
+  private Object add() {
+    Object id = manager.addToCache(new float[1][LENGTH]);
+    ids.add(id);
+    return id;
+  }
+
+  /** wait until the background thread has moved id out of memory */
+  private boolean awaitSpill(Object id) throws InterruptedException {
+    for (int i = 0; i < 500 && manager.inMemory(id); i++) {
+      Thread.sleep(10);
+    }
+    return !manager.inMemory(id);
+  }
+
+  @Test
+  public void testFailedWriteStaysEvictable() throws Exception {
+    // a cache file under a plain file can't be written
+    dir.delete();
+    dir.createNewFile();
+    Object id = add();
+
+    manager.setMaxBytes(0);
+    for (int i = 0; i < 500 && manager.getEvictionPolicy().size() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(manager.inMemory(id));
+    assertEquals(1, manager.getEvictionPolicy().size());
+
+    // once the file can be written, the array is evicted again
+    dir.delete();
+    dir.mkdir();
+    // the failed write may still count as pending for a moment
+    for (int i = 0; i < 500 && manager.inMemory(id); i++) {
+      manager.checkCache();
+      Thread.sleep(10);
+    }
+    assertFalse(manager.inMemory(id));
+    assertEquals(LENGTH, manager.getFloatArray2D(id)[0].length);
+  }
+
+  @Test
+  public void testUpdateKeepsUseCount() throws Exception {
+    manager.setEvictionPolicy(new LFUEvictionPolicy());
+    Object often = add();
+    Object rarely = add();
+    for (int i = 0; i < 3; i++) {
+      manager.getFloatArray2D(often);
+    }
+    manager.getFloatArray2D(rarely);
+    manager.updateData(often, new float[1][LENGTH]);
+
+    manager.setMaxBytes(manager.getTotalSize() - 1);
+    assertTrue(awaitSpill(rarely));
+    assertTrue(manager.inMemory(often));
+  }
+}
@@ -0,0 +1,182 @@
+//
+// FileFlatFieldCacheTest.java
+//
+
+/*
+VisAD system for interactive analysis and visualization of numerical
+data.  Copyright (C) 1996 - 2018 Bill Hibbard, Curtis Rueden, Tom
+Rink, Dave Glowacki, Steve Emmerson, Tom Whittaker, Don Murray, and
+Tommy Jasmin.
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the Free
+Software Foundation, Inc., 59 Temple Place - Suite 330, Boston,
+MA 02111-1307, USA
+*/
+
+package visad.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import visad.*;
+
+/**
+ * Tests the write-back and eviction of changed FileFlatFields.
+ */
+public class FileFlatFieldCacheTest {
+
+  private static final int LENGTH = 10000;
+
+  private FunctionType type;
+  private Set domain;
+  private FileFlatFieldCache cache;
+  private long oldMaxBytes;
+
+  /** keeps the values of a FlatField in an array, the "file" */
+  private class ArrayAccessor extends FileAccessor {
+    private final boolean writable;
+    volatile double[][] stored;
+    volatile int reads = 0;
+    volatile int writes = 0;
+
+    ArrayAccessor(double value, boolean writable) {
+      this.writable = writable;
+      stored = new double[1][LENGTH];
+      Arrays.fill(stored[0], value);
+    }
+
+    public void writeFile(int[] fileLocations, Data range) {
+    }
+
+    public double[][] readFlatField(FlatField template, int[] fileLocation) {
+      return null;
+    }
+
+    public void writeFlatField(double[][] values, FlatField template,
+                               int[] fileLocation) {
+      stored = values;
+      writes++;
+    }
+
+    public FlatField getFlatField() throws VisADException, RemoteException {
+      reads++;
+      FlatField field = new FlatField(type, domain);
+      field.setSamples(new double[][] {(double[]) stored[0].clone()}, false);
+      return field;
+    }
+
+    public FunctionType getFunctionType() {
+      return type;
+    }
+
+    public boolean canWriteFlatField() {
+      return writable;
+    }
+  }
+
+  @Before
+  public void setUp() throws VisADException {
+    RealType x = RealType.getRealType("FileFlatFieldCacheTest_x");
+    RealType v = RealType.getRealType("FileFlatFieldCacheTest_v");
+    type = new FunctionType(x, v);
+    domain = new Integer1DSet(x, LENGTH);
+    cache = FileFlatFieldCache.getCache();
+    oldMaxBytes = cache.getMaxBytes();
+  }
+
+  @After
+  public void tearDown() {
+    cache.setMaxBytes(oldMaxBytes);
+  }
+
+  private static double valueAt(FlatField field, int index)
+          throws VisADException, RemoteException {
+    return ((Real) field.getSample(index)).getValue();
+  }
+
+  private static Real real(FlatField field, double value) {
+    RealType v = (RealType) ((FunctionType) field.getType()).getRange();
+    return new Real(v, value);
+  }
+
+  /** wait for the background write-back of accessor */
+  private static void awaitWrite(ArrayAccessor accessor)
+          throws InterruptedException {
+    for (int i = 0; i < 500 && accessor.writes == 0; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testEvictionWritesBack() throws Exception {
+    ArrayAccessor changed = new ArrayAccessor(1, true);
+    ArrayAccessor other = new ArrayAccessor(2, true);
+    FileFlatField field = new FileFlatField(changed, new CacheStrategy());
+    FileFlatField otherField = new FileFlatField(other, new CacheStrategy());
+
+    field.setSample(7, real(field, 99));
+    assertEquals(0, changed.writes);
+
+    // room for one of the two FlatFields
+    cache.setMaxBytes(field.getRangeSize() + 1);
+    otherField.getLength();
+    awaitWrite(changed);
+
+    assertEquals(1, changed.writes);
+    assertEquals(99, changed.stored[0][7], 0);
+    assertEquals(99, valueAt(field, 7), 0);
+  }
+
+  @Test
+  public void testFlushWritesChanges() throws Exception {
+    ArrayAccessor accessor = new ArrayAccessor(3, true);
+    FileFlatField field = new FileFlatField(accessor, new CacheStrategy());
+
+    field.setSample(3, real(field, -5));
+    field.flushCache();
+    assertEquals(1, accessor.writes);
+    assertEquals(-5, accessor.stored[0][3], 0);
+
+    // nothing more to write
+    field.flushCache();
+    assertEquals(1, accessor.writes);
+  }
+
+  @Test
+  public void testUnwritableChangesStayWithField() throws Exception {
+    ArrayAccessor accessor = new ArrayAccessor(4, false);
+    ArrayAccessor other = new ArrayAccessor(5, false);
+    FileFlatField field = new FileFlatField(accessor, new CacheStrategy());
+    FileFlatField otherField = new FileFlatField(other, new CacheStrategy());
+
+    field.setSample(11, real(field, 42));
+    long size = field.getRangeSize();
+    cache.setMaxBytes(size + 1);
+    otherField.getLength();
+    Thread.sleep(50);
+
+    // no longer counted by the cache, but not lost or reread
+    assertTrue(cache.getTotalSize() <= size);
+    assertEquals(42, valueAt(field, 11), 0);
+    assertEquals(1, accessor.reads);
+    assertEquals(0, accessor.writes);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 1998, University Corporation for Atmospheric Research
+ * All Rights Reserved.
+ * See file LICENSE for copying and redistribution conditions.
+ */
+
+package visad.data.netcdf.in;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.multiarray.ArrayMultiArray;
+import ucar.netcdf.Attribute;
+import ucar.netcdf.Dimension;
+import ucar.netcdf.NetcdfFile;
+import ucar.netcdf.ProtoVariable;
+import ucar.netcdf.Schema;
+import visad.FlatField;
+import visad.RealTuple;
+import visad.data.netcdf.QuantityDBManager;
+
+/**
+ * Tests that the samples of a {@link HyperslabFlatField}, which come from
+ * cached tiles, have the values of {@link FlatField#getValues()}.
+ */
+public class HyperslabFlatFieldTest
+{
+    private static final int    NX = 300;
+    private static final int    NY = 200;
+
+    private File                file;
+    private NetcdfFile          netcdf;
+    private FlatField           field;
+
+    @Before
+    public void
+    setUp()
+        throws Exception
+    {
+        Dimension       x = new Dimension("x", NX);
+        Dimension       y = new Dimension("y", NY);
+        Schema          schema = new Schema();
+
+        schema.put(new ProtoVariable("packed", short.class,
+            new Dimension[] {y, x},
+            new Attribute[] {new Attribute("scale_factor", 0.01),
+                new Attribute("add_offset", 273.15)}));
+        schema.put(new ProtoVariable("counts", int.class,
+            new Dimension[] {y, x}));
+        schema.put(new ProtoVariable("valid", int.class,
+            new Dimension[] {y, x},
+            new Attribute[] {new Attribute("valid_range",
+                new int[] {120000000, 121000000})}));
+
+        short[][]       packed = new short[NY][NX];
+        int[][]         counts = new int[NY][NX];
+        int[][]         valid = new int[NY][NX];
+
+        for (int j = 0; j < NY; ++j)
+            for (int i = 0; i < NX; ++i)
+            {
+                packed[j][i] = (short)(j * NX + i - 30000);
+                counts[j][i] = 120000001 + 7 * (j * NX + i);
+                valid[j][i] = 120000001 + 5 * (j * NX + i);
+            }
+
+        file = File.createTempFile("hyperslab", ".nc");
+        NetcdfFile      out = new NetcdfFile(file.getPath(), true, true,
+            schema);
+        out.get("packed").copyin(new int[] {0, 0},
+            new ArrayMultiArray(packed));
+        out.get("counts").copyin(new int[] {0, 0},
+            new ArrayMultiArray(counts));
+        out.get("valid").copyin(new int[] {0, 0},
+            new ArrayMultiArray(valid));
+        out.close();
+
+        netcdf = new NetcdfFile(file.getPath(), true);
+        field = (FlatField)new NetcdfAdapter(netcdf,
+            QuantityDBManager.instance()).getData(
+                Strategy.HYPERSLAB_FLAT_FIELDS);
+    }
+
+    @After
+    public void
+    tearDown()
+        throws Exception
+    {
+        netcdf.close();
+        file.delete();
+    }
+
+    @Test
+    public void
+    testSamplesMatchValues()
+        throws Exception
+    {
+        assertTrue(field instanceof HyperslabFlatField);
+        assertEquals(3, field.getRangeDimension());
+
+        double[][]      values = field.getValues(false);
+
+        for (int index = 0; index < NX * NY; index += 97)
+        {
+            double[]    sample =
+                ((RealTuple)field.getSample(index)).getValues();
+
+            for (int i = 0; i < values.length; ++i)
+                assertEquals(values[i][index], sample[i], 0.0);
+        }
+    }
+
+    @Test
+    public void
+    testSubsetMatchesValues()
+        throws Exception
+    {
+        double[][]      values = field.getValues(false);
+        FlatField       subset = ((HyperslabFlatField)field).subset(
+            new int[] {3, 5}, new int[] {20, 30}, new int[] {2, 3});
+        double[][]      subValues = subset.getValues(false);
+
+        for (int j = 0; j < 30; ++j)
+            for (int i = 0; i < 20; ++i)
+                for (int k = 0; k < values.length; ++k)
+                    assertEquals(values[k][(5 + 3 * j) * NX + 3 + 2 * i],
+                        subValues[k][j * 20 + i], 0.0);
+    }
+}
@@ -162,9 +162,34 @@ public class IndexIterator {
 	public void
 	advance(int nsteps)
 	{
-		// TODO: make this smarter and faster;
-		while(nsteps-- > 0)
-			incr();
+		int digit = counter.length -1;
+		if(digit < 0)
+		{
+			// counter is zero length array <==> scalar
+			ncycles += nsteps;
+			return;
+		}
+		// add nsteps to the counter as a mixed radix number
+		int carry = nsteps;
+		while(carry > 0)
+		{
+			final int radix = limits[digit];
+			if(radix <= 0)
+			{
+				ncycles++; // empty, as for incr()
+				break;
+			}
+			final long sum = (long)counter[digit] + carry;
+			counter[digit] = (int)(sum % radix);
+			carry = (int)(sum / radix);
+			if(digit == 0)
+			{
+				ncycles += carry; // rolled over
+				break;
+			}
+			// else
+			digit--;
+		}
 	}
 
 	public String
@@ -74,5 +74,42 @@ OffsetIndexIterator
 		}
 	}
 
+	/**
+	 * Increment the odometer nsteps times
+	 * @param nsteps the number of times to increment the value.
+	 */
+	public void
+	advance(int nsteps)
+	{
+		int digit = counter.length -1;
+		if(digit < 0)
+		{
+			// counter is zero length array <==> scalar
+			ncycles += nsteps;
+			return;
+		}
+		// add nsteps to the counter as a mixed radix number
+		int carry = nsteps;
+		while(carry > 0)
+		{
+			final int radix = limits[digit] - offset[digit];
+			if(radix <= 0)
+			{
+				ncycles++; // empty, as for incr()
+				break;
+			}
+			final long sum = (long)(counter[digit] - offset[digit]) + carry;
+			counter[digit] = offset[digit] + (int)(sum % radix);
+			carry = (int)(sum / radix);
+			if(digit == 0)
+			{
+				ncycles += carry; // rolled over
+				break;
+			}
+			// else
+			digit--;
+		}
+	}
+
 	private final int[] offset;
 }
@@ -813,7 +813,12 @@ public class NetcdfFile	extends AbstractNetcdf {
         {
                 int product = 1;
                 int minIndex = 0;
-                if(isUnlimited)
+                /*
+                 * Successive records of a variable are adjacent in the
+                 * file only when it is the sole (non-empty) record
+                 * variable, which is then stored without padding.
+                 */
+                if(isUnlimited && recsize != dsizes[0] * xsz)
                         minIndex = 1;
                 for(int ii = shape.length -1; ii >= minIndex; ii--)
                 {
@@ -1120,7 +1125,7 @@ public class NetcdfFile	extends AbstractNetcdf {
                         throws IOException {
                 final byte [] values = (byte []) into;
                 raf.seek(offset);
-                raf.read(values, begin, nelems);
+                raf.readFully(values, begin, nelems);
         }
 
         public byte
@@ -1260,10 +1265,7 @@ public class NetcdfFile	extends AbstractNetcdf {
                         throws IOException {
                 final short [] values = (short []) into;
                 raf.seek(offset);
-                final int end = begin + nelems;
-                for(int ii = begin; ii < end; ii++) {
-                        values[ii] = raf.readShort();
-                }
+                raf.readFully(values, begin, nelems);
         }
 
         public short
@@ -1332,10 +1334,7 @@ public class NetcdfFile	extends AbstractNetcdf {
                         throws IOException {
                 final int [] values = (int []) into;
                 raf.seek(offset);
-                final int end = begin + nelems;
-                for(int ii = begin; ii < end; ii++) {
-                        values[ii] = raf.readInt();
-                }
+                raf.readFully(values, begin, nelems);
         }
 
         public int
@@ -1399,16 +1398,12 @@ public class NetcdfFile	extends AbstractNetcdf {
                 super(var);
         }
 
-        void  readArray(long offset, Object into, int begin, int nelems)
-	    throws IOException {
-	    //	    if (begin+nelems>100)
-	    float [] values = (float []) into;
-	    raf.seek (offset);
-	    final int end = begin + nelems;
-	    for(int ii = begin; ii < end; ii++) {
-		values[ii] = raf.readFloat();
-	    }
-
+        void
+        readArray(long offset, Object into, int begin, int nelems)
+                        throws IOException {
+                final float [] values = (float []) into;
+                raf.seek(offset);
+                raf.readFully(values, begin, nelems);
         }
 
         public float
@@ -1477,10 +1472,7 @@ public class NetcdfFile	extends AbstractNetcdf {
                         throws IOException {
                 final double [] values = (double []) into;
                 raf.seek(offset);
-                final int end = begin + nelems;
-                for(int ii = begin; ii < end; ii++) {
-                        values[ii] = raf.readDouble();
-                }
+                raf.readFully(values, begin, nelems);
         }
 
         public double
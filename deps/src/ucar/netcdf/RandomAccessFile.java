@@ -37,6 +37,14 @@ import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 
 import java.util.Random; // used in test method
 import java.util.Date;
@@ -107,6 +115,22 @@ implements DataInput, DataOutput {
    /** True if the data in the buffer has been modified. */
    boolean bufferModified = false;
 
+   /** The size, in bytes, of the scratch buffer used by the bulk typed
+    *  reads when the file can't be mapped. */
+   private static final int bulkBufferSize = 65536;
+
+   /** The read-only mapping of the file used by the bulk typed reads, or
+    *  <code>null</code>. */
+   private MappedByteBuffer mapped;
+
+   /** The offset in bytes of the start of the mapping, from the start of
+    *  the file. */
+   private long mappedStart;
+
+   /** The scratch buffer used by the bulk typed reads when the file can't
+    *  be mapped. */
+   private byte[] bulkBuffer;
+
      // subclasses only
    protected RandomAccessFile(int bufferSize) {
     // Initialise the buffer
@@ -322,6 +346,7 @@ implements DataInput, DataOutput {
       }
 
       // Close the underlying file object.
+      mapped = null;
       file.close( );
    }
 
@@ -981,6 +1006,167 @@ implements DataInput, DataOutput {
       return Double.longBitsToDouble(readLong());
    }
 
+   //
+   // Bulk typed reads.
+   //
+
+   /**
+    * Reads exactly <code>len</code> big-endian <code>short</code>s from
+    * this file into an array. The result is the same as calling
+    * <code>readShort</code> <code>len</code> times, but the values are
+    * converted in bulk rather than assembled a byte at a time.
+    *
+    * @param      v     the array into which the data is read.
+    * @param      off   the start offset in the array.
+    * @param      len   the number of values to read.
+    * @exception  EOFException  if this file reaches the end before reading
+    *                           all the values.
+    * @exception  IOException   if an I/O error occurs.
+    */
+   public final void readFully( short v[], int off, int len )
+   throws IOException {
+      while( len > 0 ) {
+         ShortBuffer in = bulkBytes( 2, len ).asShortBuffer( );
+         int n = in.remaining( );
+         in.get( v, off, n );
+         off += n;
+         len -= n;
+      }
+   }
+
+   /**
+    * Reads exactly <code>len</code> big-endian <code>int</code>s from this
+    * file into an array. The result is the same as calling
+    * <code>readInt</code> <code>len</code> times.
+    *
+    * @param      v     the array into which the data is read.
+    * @param      off   the start offset in the array.
+    * @param      len   the number of values to read.
+    * @exception  EOFException  if this file reaches the end before reading
+    *                           all the values.
+    * @exception  IOException   if an I/O error occurs.
+    */
+   public final void readFully( int v[], int off, int len )
+   throws IOException {
+      while( len > 0 ) {
+         IntBuffer in = bulkBytes( 4, len ).asIntBuffer( );
+         int n = in.remaining( );
+         in.get( v, off, n );
+         off += n;
+         len -= n;
+      }
+   }
+
+   /**
+    * Reads exactly <code>len</code> big-endian <code>float</code>s from
+    * this file into an array. The result is the same as calling
+    * <code>readFloat</code> <code>len</code> times.
+    *
+    * @param      v     the array into which the data is read.
+    * @param      off   the start offset in the array.
+    * @param      len   the number of values to read.
+    * @exception  EOFException  if this file reaches the end before reading
+    *                           all the values.
+    * @exception  IOException   if an I/O error occurs.
+    */
+   public final void readFully( float v[], int off, int len )
+   throws IOException {
+      while( len > 0 ) {
+         FloatBuffer in = bulkBytes( 4, len ).asFloatBuffer( );
+         int n = in.remaining( );
+         in.get( v, off, n );
+         off += n;
+         len -= n;
+      }
+   }
+
+   /**
+    * Reads exactly <code>len</code> big-endian <code>double</code>s from
+    * this file into an array. The result is the same as calling
+    * <code>readDouble</code> <code>len</code> times.
+    *
+    * @param      v     the array into which the data is read.
+    * @param      off   the start offset in the array.
+    * @param      len   the number of values to read.
+    * @exception  EOFException  if this file reaches the end before reading
+    *                           all the values.
+    * @exception  IOException   if an I/O error occurs.
+    */
+   public final void readFully( double v[], int off, int len )
+   throws IOException {
+      while( len > 0 ) {
+         DoubleBuffer in = bulkBytes( 8, len ).asDoubleBuffer( );
+         int n = in.remaining( );
+         in.get( v, off, n );
+         off += n;
+         len -= n;
+      }
+   }
+
+   /**
+    * Returns a big-endian view of the bytes of up to <code>count</code>
+    * values of <code>size</code> bytes each, starting at the file position,
+    * and advances the file position past them. A local file opened
+    * read-only is mapped into memory and the view is taken from the
+    * mapping; otherwise (e.g. for a writable file, whose buffer may hold
+    * unwritten data, or for a subclass without a local file) the bytes
+    * are copied through the buffer into a scratch array.
+    *
+    * @param size   the size of a value in bytes.
+    * @param count  the maximum number of values wanted; at least one.
+    * @return a view of a whole number of values.
+    * @exception EOFException  if the file ends before the first value.
+    * @exception IOException   if an I/O error occurs.
+    */
+   private ByteBuffer bulkBytes( int size, int count ) throws IOException {
+      if( file != null && (mode & WRITE) == 0 ) {
+         int  nbytes = Math.min( count, Integer.MAX_VALUE / size ) * size;
+         long end = filePosition + nbytes;
+
+         if( mapped == null || filePosition < mappedStart ||
+             end > mappedStart + mapped.capacity( ) )
+            map( end );
+
+         if( mapped != null ) {
+            ByteBuffer bytes = mapped.duplicate( );
+            bytes.position( (int)(filePosition - mappedStart) );
+            bytes.limit( bytes.position( ) + nbytes );
+            filePosition = end;
+            return bytes.slice( ).order( ByteOrder.BIG_ENDIAN );
+         }
+      }
+
+      if( bulkBuffer == null )
+         bulkBuffer = new byte[Math.max( bulkBufferSize, buffer.length )];
+      int nbytes = Math.min( count, bulkBuffer.length / size ) * size;
+      readFully( bulkBuffer, 0, nbytes );
+      return ByteBuffer.wrap( bulkBuffer, 0, nbytes );
+   }
+
+   /**
+    * Maps the file, or as much of it from the file position on as will fit
+    * in a single mapping, into memory. The mapping is cleared if it would
+    * not reach <code>end</code> (e.g. at the end of the file), in which case
+    * the caller reads through the buffer instead.
+    *
+    * @param end  the offset in bytes, from the start of the file, that the
+    *             mapping must reach.
+    * @exception IOException  if an I/O error occurs.
+    */
+   private void map( long end ) throws IOException {
+      mapped = null;
+      long fileLength = file.length( );
+      long start = (fileLength <= Integer.MAX_VALUE) ? 0 : filePosition;
+      long size = Math.min( fileLength - start, Integer.MAX_VALUE );
+
+      if( end > start + size )
+         return;
+
+      mapped = file.getChannel( ).map( FileChannel.MapMode.READ_ONLY,
+                                       start, size );
+      mappedStart = start;
+   }
+
    /**
     * Reads the next line of text from this file. This method
     * successively reads bytes from the file until it reaches the end of